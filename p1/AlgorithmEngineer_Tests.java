@@ -0,0 +1,531 @@
+import java.util.HashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * This class tests the hashtable implementations that the CHSearchBackend is
+ * built on top of: HashtableMap and HashtableWithDuplicateKeysAE.
+ */
+public class AlgorithmEngineer_Tests {
+
+    /**
+     * Tests that HashtableMap stores and retrieves many keys across several
+     * resizes, and that its capacity is always a power of two.
+     *
+     * @return true if the test passed, false otherwise
+     */
+    public static boolean test1() {
+        HashtableMap<String, Integer> map = new HashtableMap<>(10);
+        if (map.getCapacity() != 16) // requested capacities are rounded up
+            return false;
+        for (int i = 0; i < 10000; i++)
+            map.put("key" + i, i);
+        if (map.getSize() != 10000 || Integer.bitCount(map.getCapacity()) != 1)
+            return false;
+        // every key must still be found after being moved by rehash()
+        for (int i = 0; i < 10000; i++)
+            if (!map.containsKey("key" + i) || map.get("key" + i) != i)
+                return false;
+        if (map.containsKey("key10000") || map.containsKey(null))
+            return false;
+        return true;
+    }
+
+    /**
+     * Tests that HashtableMap rejects null and duplicate keys, and reports missing
+     * keys with NoSuchElementException.
+     *
+     * @return true if the test passed, false otherwise
+     */
+    public static boolean test2() {
+        HashtableMap<String, Integer> map = new HashtableMap<>();
+        map.put("apple", 1);
+        try {
+            map.put("apple", 2);
+            return false;
+        } catch (IllegalArgumentException e) {
+        } // expected
+        try {
+            map.put(null, 2);
+            return false;
+        } catch (IllegalArgumentException e) {
+        } // expected
+        try {
+            map.get("banana");
+            return false;
+        } catch (NoSuchElementException e) {
+        } // expected
+        try {
+            map.remove("banana");
+            return false;
+        } catch (NoSuchElementException e) {
+        } // expected
+        return map.get("apple") == 1;
+    }
+
+    /**
+     * Tests removing keys from HashtableMap, including keys that share a probe
+     * sequence with keys that remain stored, and re-adding removed keys.
+     *
+     * @return true if the test passed, false otherwise
+     */
+    public static boolean test3() {
+        HashtableMap<Integer, Integer> map = new HashtableMap<>(64);
+        for (int i = 0; i < 40; i++)
+            map.put(i * 64, i); // all of these keys share low bits before spreading
+        for (int i = 0; i < 40; i += 2)
+            if (map.remove(i * 64) != i)
+                return false;
+        if (map.getSize() != 20)
+            return false;
+        for (int i = 0; i < 40; i++)
+            if (map.containsKey(i * 64) != (i % 2 == 1))
+                return false;
+        for (int i = 0; i < 40; i += 2)
+            map.put(i * 64, -i);
+        for (int i = 0; i < 40; i++)
+            if (map.get(i * 64) != (i % 2 == 1 ? i : -i))
+                return false;
+        map.clear();
+        return map.getSize() == 0 && !map.containsKey(64);
+    }
+
+    /**
+     * Tests that heavy add/remove churn on HashtableMap keeps every live key
+     * reachable, and that the mean probe length does not grow with the number of
+     * removals (no tombstones are left behind).
+     *
+     * @return true if the test passed, false otherwise
+     */
+    public static boolean test4() {
+        HashtableMap<Integer, Integer> map = new HashtableMap<>();
+        Random random = new Random(1);
+        int[] live = new int[1000];
+        for (int i = 0; i < live.length; i++) {
+            live[i] = i;
+            map.put(i, i);
+        }
+        double initialProbeLength = map.getMeanProbeLength();
+        int capacity = map.getCapacity();
+        for (int next = live.length; next < 200000; next++) {
+            int slot = random.nextInt(live.length);
+            map.remove(live[slot]);
+            live[slot] = next;
+            map.put(next, next);
+        }
+        for (int key : live)
+            if (map.get(key) != key)
+                return false;
+        return map.getSize() == live.length && map.getCapacity() == capacity
+                && map.getMeanProbeLength() < initialProbeLength * 2;
+    }
+
+    /**
+     * Tests RobinHoodHashtableMap against java.util.HashMap over a random mix of
+     * puts and removes, and checks that its probe counters are kept.
+     *
+     * @return true if the test passed, false otherwise
+     */
+    public static boolean test5() {
+        RobinHoodHashtableMap<Integer, Integer> map = new RobinHoodHashtableMap<>();
+        HashMap<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(2);
+        for (int i = 0; i < 50000; i++) {
+            int key = random.nextInt(5000) * 1024; // clustered keys
+            if (expected.containsKey(key)) {
+                if (!map.remove(key).equals(expected.remove(key)))
+                    return false;
+            } else {
+                map.put(key, i);
+                expected.put(key, i);
+            }
+        }
+        if (map.getSize() != expected.size())
+            return false;
+        for (int key = 0; key < 5000 * 1024; key += 1024)
+            if (map.containsKey(key) != expected.containsKey(key))
+                return false;
+
+        // every recorded lookup lands in exactly one histogram bucket
+        long total = 0;
+        for (long count : map.getProbeHistogram())
+            total += count;
+        if (total != map.getLookupCount() || map.getMaxProbeLength() < map.getMeanProbeLength())
+            return false;
+        map.resetProbeStatistics();
+        return map.getLookupCount() == 0 && map.getMeanProbeLength() == 0.0;
+    }
+
+    /**
+     * Tests ConcurrentHashtableWithDuplicateKeysAE with one thread calling putOne
+     * while several threads look keys up, across many cooperative resizes. Every
+     * list a reader sees must be free of gaps, and once the writer is done every
+     * key must map to all of its values, whose ids are those of the table, and
+     * ids must be freed once their values are removed from every key.
+     *
+     * @return true if the test passed, false otherwise
+     */
+    public static boolean test6() throws InterruptedException {
+        ConcurrentHashtableWithDuplicateKeysAE<String, Integer> table = new ConcurrentHashtableWithDuplicateKeysAE<>();
+        int keys = 20000;
+        AtomicBoolean done = new AtomicBoolean(false);
+        AtomicBoolean failed = new AtomicBoolean(false);
+
+        Thread writer = new Thread(() -> {
+            for (int value = 0; value < 4; value++)
+                for (int key = 0; key < keys; key++)
+                    table.putOne("word" + key, value);
+            done.set(true);
+        });
+        Thread[] readers = new Thread[4];
+        for (int r = 0; r < readers.length; r++) {
+            readers[r] = new Thread(() -> {
+                Random random = new Random();
+                while (!done.get()) {
+                    String key = "word" + random.nextInt(keys);
+                    try {
+                        List<Integer> values = table.get(key);
+                        int expected = 0;
+                        for (int value : values) // values are appended in order
+                            if (value != expected++)
+                                failed.set(true);
+                    } catch (NoSuchElementException e) {
+                    } // not added yet
+                }
+            });
+        }
+        writer.start();
+        for (Thread reader : readers)
+            reader.start();
+        writer.join();
+        for (Thread reader : readers)
+            reader.join();
+
+        if (failed.get() || table.getSize() != keys || table.getNumberOfValues() != keys * 4)
+            return false;
+        for (int key = 0; key < keys; key++)
+            if (table.get("word" + key).size() != 4)
+                return false;
+
+        // the ids of a key's values come from the list, and match the table's ids
+        PostingBitmap ids = table.getValueIds("word1");
+        if (ids.getCardinality() != 4 || table.getValueById(ids.last()) != 3
+                || !table.getValueIds("none").isEmpty())
+            return false;
+
+        // duplicate values are ignored, and removing the last value removes the key
+        table.putOne("word0", 3);
+        table.putOne("word0", 1); // not the most recently added value
+        for (int value = 0; value < 4; value++)
+            table.removeOne("word0", value);
+        if (table.containsKey("word0") || table.getNumberOfValues() != (keys - 1) * 4)
+            return false;
+
+        // a value that no key maps to any more has its id freed, and a put of a
+        // duplicate key assigns no ids
+        ConcurrentHashtableWithDuplicateKeysAE<String, String> small = new ConcurrentHashtableWithDuplicateKeysAE<>();
+        small.putOne("x", "v");
+        small.removeOne("x", "v");
+        if (small.getValueById(0) != null)
+            return false;
+        small.put("y", List.of("a", "b"));
+        try {
+            small.put("y", List.of("c"));
+            return false;
+        } catch (IllegalArgumentException e) {
+        } // expected
+        small.remove("y");
+        if (small.getValueById(1) != null || small.getValueById(2) != null || small.getNumberOfValues() != 0)
+            return false;
+        small.putOne("z", "c");
+        if (!"c".equals(small.getValueById(3)) || small.getValueById(4) != null)
+            return false; // c was never given an id by the failed put
+        small.clear();
+        small.putOne("z", "d");
+        return "d".equals(small.getValueById(0)) && small.getValueById(3) == null;
+    }
+
+    /**
+     * Tests a HashtableMap that resizes incrementally against java.util.HashMap
+     * over a random mix of puts and removes, checking every key while entries
+     * are still being moved out of the old arrays.
+     *
+     * @return true if the test passed, false otherwise
+     */
+    public static boolean test7() {
+        HashtableMap<Integer, Integer> map = new HashtableMap<>(8, true);
+        HashMap<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(3);
+        for (int i = 0; i < 100000; i++) {
+            int key = random.nextInt(40000);
+            if (random.nextInt(3) == 0 && expected.containsKey(key)) {
+                if (!map.remove(key).equals(expected.remove(key)))
+                    return false;
+            } else if (!expected.containsKey(key)) {
+                map.put(key, i);
+                expected.put(key, i);
+            }
+            if (i % 997 == 0) { // spot check in the middle of resizes
+                int probe = random.nextInt(40000);
+                if (map.containsKey(probe) != expected.containsKey(probe))
+                    return false;
+            }
+        }
+        if (map.getSize() != expected.size())
+            return false;
+        for (int key = 0; key < 40000; key++) {
+            if (map.containsKey(key) != expected.containsKey(key))
+                return false;
+            if (expected.containsKey(key) && !map.get(key).equals(expected.get(key)))
+                return false;
+        }
+        try {
+            map.put(expected.keySet().iterator().next(), 0); // duplicates are still rejected
+            return false;
+        } catch (IllegalArgumentException e) {
+        } // expected
+        return true;
+    }
+
+    /**
+     * Tests that HashtableWithDuplicateKeysAE stores each key's values as a
+     * compact, sorted posting list: values come back in the order they were first
+     * added, duplicates are ignored, values added out of order are inserted in id
+     * order, the list can be read backwards, removing values keeps the count of
+     * values in sync, values that no key maps to any more are freed, and a put
+     * that is rejected assigns no ids.
+     *
+     * @return true if the test passed, false otherwise
+     */
+    public static boolean test8() {
+        HashtableWithDuplicateKeysAE<String, String> table = new HashtableWithDuplicateKeysAE<>();
+        String[] posts = new String[1000];
+        for (int i = 0; i < posts.length; i++) {
+            posts[i] = "post" + i;
+            table.putOne("the", posts[i]);
+            table.putOne("the", posts[i]); // a word repeated within a post
+            if (i % 3 == 0)
+                table.putOne("three", posts[i]);
+        }
+        table.putOne("late", posts[999]);
+        table.putOne("late", posts[5]); // out of order
+        if (table.getNumberOfValues() != 1000 + 334 + 2 || table.getSize() != 3)
+            return false;
+
+        List<String> the = table.get("the");
+        if (the.size() != 1000 || !the.contains("post500") || the.contains("missing"))
+            return false;
+        int i = 0;
+        for (String post : the)
+            if (!post.equals(posts[i++]))
+                return false;
+        if (!table.get("late").get(0).equals("post5") || !table.get("late").get(1).equals("post999"))
+            return false;
+
+        // a list of 1000 ids is stored in an array container, at two bytes per id
+        if (((PostingListAE<String>) the).getSizeInBytes() > 2100)
+            return false;
+
+        // the list can also be read backwards, so every List method works on it
+        ListIterator<String> backwards = the.listIterator(the.size());
+        for (i = posts.length - 1; backwards.hasPrevious(); i--)
+            if (!backwards.previous().equals(posts[i]) || backwards.nextIndex() != i)
+                return false;
+        if (i != -1 || the.lastIndexOf("post10") != 10 || the.lastIndexOf("missing") != -1
+                || !the.subList(3, 6).equals(List.of("post3", "post4", "post5")))
+            return false;
+        HashtableWithDuplicateKeysAE<String, String> letters = new HashtableWithDuplicateKeysAE<>();
+        for (String letter : new String[] { "a", "b", "c", "d" })
+            letters.putOne("k", letter);
+        ListIterator<String> removing = letters.get("k").listIterator(3);
+        removing.previous();
+        removing.remove(); // c, which is then after the iterator's position
+        if (!removing.previous().equals("b") || !removing.next().equals("b") || !removing.next().equals("d")
+                || !letters.get("k").equals(List.of("a", "b", "d")))
+            return false;
+
+        table.removeOne("the", "post500");
+        table.removeOne("late", "post5");
+        table.removeOne("late", "post999");
+        if (table.getNumberOfValues() != 999 + 334 || table.get("the").contains("post500")
+                || table.containsKey("late") || table.get("the").size() != 999)
+            return false;
+
+        // a value that no key maps to any more is forgotten, and gets a new id if it is added again
+        int id = table.findId("post999");
+        table.removeOne("the", "post999");
+        if (table.findId("post999") != id)
+            return false;
+        table.removeOne("three", "post999");
+        if (table.findId("post999") != -1 || table.getValueById(id) != null)
+            return false;
+        table.putOne("the", "post999");
+        if (table.findId("post999") <= id || table.findId("post500") != -1)
+            return false;
+
+        // a put of a duplicate key, or of another table's list, changes nothing
+        int values = table.getNumberOfValues();
+        try {
+            table.put("the", List.of("post12345"));
+            return false;
+        } catch (IllegalArgumentException e) {
+        } // expected
+        try {
+            table.put("other", new PostingListAE<>(new HashtableWithDuplicateKeysAE<String, String>()));
+            return false;
+        } catch (IllegalArgumentException e) {
+        } // expected
+        return table.findId("post12345") == -1 && !table.containsKey("other")
+                && table.getNumberOfValues() == values;
+    }
+
+    /**
+     * Tests PostingBitmap union, intersection, and difference against TreeSets,
+     * for sets that are sparse (array containers), dense (bitmap containers), and
+     * a mix of the two (unioning both two and several bitmaps at once), finding
+     * the ids next to any id, and that getValueIds shares ids between keys.
+     *
+     * @return true if the test passed, false otherwise
+     */
+    public static boolean test9() {
+        Random random = new Random(9);
+        int[][] shapes = { { 200, 1 << 20 }, { 60_000, 70_000 }, { 5_000, 1 << 17 } }; // {count, range}
+        for (int[] x : shapes) {
+            for (int[] y : shapes) {
+                TreeSet<Integer> a = new TreeSet<>();
+                TreeSet<Integer> b = new TreeSet<>();
+                PostingBitmap bitsA = new PostingBitmap();
+                PostingBitmap bitsB = new PostingBitmap();
+                for (int i = 0; i < x[0]; i++) {
+                    int id = random.nextInt(x[1]);
+                    if (a.add(id) != bitsA.add(id))
+                        return false;
+                }
+                for (int i = 0; i < y[0]; i++) {
+                    int id = random.nextInt(y[1]);
+                    if (b.add(id) != bitsB.add(id))
+                        return false;
+                }
+                TreeSet<Integer> union = new TreeSet<>(a);
+                union.addAll(b);
+                TreeSet<Integer> intersection = new TreeSet<>(a);
+                intersection.retainAll(b);
+                TreeSet<Integer> difference = new TreeSet<>(a);
+                difference.removeAll(b);
+                if (!sameIds(union, PostingBitmap.or(bitsA, bitsB))
+                        || !sameIds(union, PostingBitmap.or(List.of(bitsA, new PostingBitmap(), bitsB, bitsA)))
+                        || !sameIds(intersection, PostingBitmap.and(bitsA, bitsB))
+                        || !sameIds(difference, PostingBitmap.andNot(bitsA, bitsB)))
+                    return false;
+                for (int probe = -1; probe < x[1]; probe += 1 + random.nextInt(x[1] / 100))
+                    if (bitsA.lower(probe) != (a.lower(probe) == null ? -1 : a.lower(probe))
+                            || bitsA.higher(probe) != (a.higher(probe) == null ? -1 : a.higher(probe)))
+                        return false;
+            }
+        }
+
+        HashtableWithDuplicateKeysAE<String, String> table = new HashtableWithDuplicateKeysAE<>();
+        table.putOne("T:apple", "post a");
+        table.putOne("T:apple", "post b");
+        table.putOne("B:apple", "post b");
+        table.putOne("B:pear", "post c");
+        PostingBitmap apples = PostingBitmap.or(table.getValueIds("T:apple"), table.getValueIds("B:apple"));
+        return apples.getCardinality() == 2 && table.getValueById(apples.last()).equals("post b")
+                && PostingBitmap.and(apples, table.getValueIds("B:pear")).isEmpty()
+                && table.getValueIds("T:missing").isEmpty();
+    }
+
+    /**
+     * Tests getOrDefault and computeIfAbsent on every MapADT implementation
+     * against java.util.HashMap, over a random mix of lookups, upserts and
+     * removes, including keys that are still in the old arrays of an
+     * incrementally resizing HashtableMap.
+     *
+     * @return true if the test passed, false otherwise
+     */
+    public static boolean test10() {
+        List<MapADT<Integer, Integer>> maps = List.of(new HashtableMap<>(), new HashtableMap<>(8, true),
+                new RobinHoodHashtableMap<>(), new ConcurrentHashtableMap<>());
+        for (MapADT<Integer, Integer> map : maps) {
+            HashMap<Integer, Integer> expected = new HashMap<>();
+            Random random = new Random(10);
+            int[] computed = new int[1]; // the number of values that computeIfAbsent computed
+            for (int i = 0; i < 50000; i++) {
+                int key = random.nextInt(5000);
+                int action = random.nextInt(4);
+                if (action == 0) {
+                    boolean present = expected.containsKey(key);
+                    int before = computed[0];
+                    int value = map.computeIfAbsent(key, k -> {
+                        computed[0]++;
+                        return k * 2;
+                    });
+                    // the value is only computed for a missing key
+                    if (value != expected.computeIfAbsent(key, k -> k * 2) || (computed[0] > before) == present)
+                        return false;
+                } else if (action == 1 && expected.containsKey(key)) {
+                    if (!map.remove(key).equals(expected.remove(key)))
+                        return false;
+                } else if (action == 2 && !expected.containsKey(key)) {
+                    map.put(key, key * 2);
+                    expected.put(key, key * 2);
+                } else if (map.getOrDefault(key, -1) != (int) expected.getOrDefault(key, -1)) {
+                    return false;
+                }
+            }
+            if (map.getSize() != expected.size() || map.computeIfAbsent(-1, k -> null) != null
+                    || map.containsKey(-1) || map.getOrDefault(null, 7) != 7)
+                return false;
+            try {
+                map.computeIfAbsent(null, k -> 1);
+                return false;
+            } catch (IllegalArgumentException e) {
+            } // keys cannot be null
+        }
+
+        // putOne upserts with computeIfAbsent, and counts its values the same way
+        HashtableWithDuplicateKeysAE<String, String> table = new HashtableWithDuplicateKeysAE<>();
+        table.putOne("a", "x");
+        table.putOne("a", "y");
+        table.putOne("a", "x");
+        table.putOne("b", "x");
+        return table.getNumberOfValues() == 3 && table.getSize() == 2 && table.getOrDefault("c", null) == null
+                && table.getOrDefault("a", null).size() == 2 && table.findId("y") == 1 && table.findId("z") == -1;
+    }
+
+    private static boolean sameIds(TreeSet<Integer> expected, PostingBitmap actual) {
+        if (expected.size() != actual.getCardinality())
+            return false;
+        PostingBitmap.IdIterator ids = actual.iterator();
+        for (int id : expected)
+            if (!ids.hasNext() || ids.next() != id || !actual.contains(id))
+                return false;
+        return !ids.hasNext();
+    }
+
+    /**
+     * Main method for testing, runs all tests and prints the results.
+     *
+     * @param args
+     */
+    public static void main(String[] args) {
+        System.out.println("AlgorithmEngineer Individual Test 1: " + (test1() ? "passed" : "failed"));
+        System.out.println("AlgorithmEngineer Individual Test 2: " + (test2() ? "passed" : "failed"));
+        System.out.println("AlgorithmEngineer Individual Test 3: " + (test3() ? "passed" : "failed"));
+        System.out.println("AlgorithmEngineer Individual Test 4: " + (test4() ? "passed" : "failed"));
+        System.out.println("AlgorithmEngineer Individual Test 5: " + (test5() ? "passed" : "failed"));
+        System.out.println("AlgorithmEngineer Individual Test 7: " + (test7() ? "passed" : "failed"));
+        System.out.println("AlgorithmEngineer Individual Test 8: " + (test8() ? "passed" : "failed"));
+        System.out.println("AlgorithmEngineer Individual Test 9: " + (test9() ? "passed" : "failed"));
+        System.out.println("AlgorithmEngineer Individual Test 10: " + (test10() ? "passed" : "failed"));
+        try {
+            System.out.println("AlgorithmEngineer Individual Test 6: " + (test6() ? "passed" : "failed"));
+        } catch (InterruptedException e) {
+            System.out.println("AlgorithmEngineer Individual Test 6: failed");
+        }
+    }
+}
@@ -0,0 +1,1209 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * This class tests the searches that CHSearchBackendBD supports beyond matching
+ * any one of several words: requiring all words, excluding words, matching
+ * exact phrases, ranking the best matches, wildcard and fuzzy words, and paging
+ * through results with cursors. It also tests how the backend gets there: its
+ * tokenizer, term dictionary and term filter, index files and segments, the
+ * query cache, query shards, loading in the background, and following a file
+ * that posts are appended to.
+ */
+public class BackendDeveloper_Tests {
+
+    /**
+     * Creates a backend and loads it with posts whose titles are the specified
+     * strings, and whose bodies are these same strings reversed word by word.
+     * Each post's url is its index.
+     */
+    private static CHSearchBackendBD loadPosts(String... titles) {
+        List<PostInterface> posts = new ArrayList<>();
+        for (int i = 0; i < titles.length; i++) {
+            List<String> words = new ArrayList<>(Arrays.asList(titles[i].split(" ")));
+            Collections.reverse(words);
+            posts.add(new PostDW(titles[i], "" + i, String.join(" ", words)));
+        }
+        CHSearchBackendBD backend = new CHSearchBackendBD(new HashtableWithDuplicateKeysAE<>(), filename -> posts);
+        try {
+            backend.loadData("posts");
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+        return backend;
+    }
+
+    /**
+     * Tests that findPostsByAllTitleOrBodyWords only returns posts containing
+     * every word, in either field.
+     *
+     * @return true if the test passed, false otherwise
+     */
+    public static boolean test1() {
+        CHSearchBackendBD backend = loadPosts("apple pie", "apple crumble", "pear pie", "Apple, and PIE!");
+        List<String> results = backend.findPostsByAllTitleOrBodyWords("pie apple");
+        if (!results.equals(Arrays.asList("Apple, and PIE! - 3", "apple pie - 0")))
+            return false;
+        return backend.findPostsByAllTitleOrBodyWords("apple").size() == 3
+                && backend.findPostsByAllTitleOrBodyWords("apple missing").isEmpty()
+                && backend.findPostsByAllTitleOrBodyWords(" ").isEmpty();
+    }
+
+    /**
+     * Tests that findPostsByTitleOrBodyWordsExcluding leaves out every post that
+     * contains an excluded word.
+     *
+     * @return true if the test passed, false otherwise
+     */
+    public static boolean test2() {
+        CHSearchBackendBD backend = loadPosts("apple pie", "apple crumble", "pear pie", "plum tart");
+        if (!backend.findPostsByTitleOrBodyWordsExcluding("apple pear", "pie")
+                .equals(Arrays.asList("apple crumble - 1")))
+            return false;
+        if (!backend.findPostsByTitleOrBodyWordsExcluding("pie tart", "apple crumble")
+                .equals(Arrays.asList("pear pie - 2", "plum tart - 3")))
+            return false;
+        return backend.findPostsByTitleOrBodyWordsExcluding("apple", "").size() == 2;
+    }
+
+    /**
+     * Tests that findPostsByTitleOrBodyPhrase requires the words of a phrase to be
+     * adjacent and in order within one field.
+     *
+     * @return true if the test passed, false otherwise
+     */
+    public static boolean test3() {
+        CHSearchBackendBD backend = loadPosts("hot apple pie", "apple hot pie", "pie is very very hot",
+                "Hot, apple pie");
+        // "apple pie" is in the titles of 0 and 3, "pie apple" is in the bodies of 0 and 3
+        if (!backend.findPostsByTitleOrBodyPhrase("Apple PIE").equals(Arrays.asList("Hot, apple pie - 3",
+                "hot apple pie - 0")))
+            return false;
+        if (!backend.findPostsByTitleOrBodyPhrase("pie apple").equals(Arrays.asList("Hot, apple pie - 3",
+                "hot apple pie - 0")))
+            return false;
+        // "hot pie" only appears as the title of 1
+        if (!backend.findPostsByTitleOrBodyPhrase("hot pie").equals(Arrays.asList("apple hot pie - 1")))
+            return false;
+        if (!backend.findPostsByTitleOrBodyPhrase("very very hot").equals(Arrays.asList("pie is very very hot - 2")))
+            return false;
+        return backend.findPostsByTitleOrBodyPhrase("very very very").isEmpty()
+                && backend.findPostsByTitleOrBodyPhrase("apple missing").isEmpty()
+                && backend.findPostsByTitleOrBodyPhrase("").isEmpty();
+    }
+
+    /**
+     * Tests the phrase and boolean searches against the posts in data/small.txt.
+     *
+     * @return true if the test passed, false otherwise
+     */
+    public static boolean test4() {
+        CHSearchBackendBD backend = new CHSearchBackendBD(new HashtableWithDuplicateKeysAE<>(), new PostReaderDW());
+        try {
+            backend.loadData("data/small.txt");
+        } catch (FileNotFoundException e) {
+            return false;
+        }
+        List<String> phrase = backend.findPostsByTitleOrBodyPhrase("orange chicken");
+        if (phrase.size() != 1 || !phrase.get(0).startsWith("ORANGE CHICKEN"))
+            return false;
+        // every post containing both words also contains each one, and excluding
+        // one word removes exactly the posts that contain both
+        List<String> both = backend.findPostsByAllTitleOrBodyWords("protein snack");
+        List<String> protein = backend.findPostsByTitleOrBodyWords("protein");
+        List<String> proteinOnly = backend.findPostsByTitleOrBodyWordsExcluding("protein", "snack");
+        return !both.isEmpty() && protein.containsAll(both) && protein.containsAll(proteinOnly)
+                && both.size() + proteinOnly.size() == protein.size();
+    }
+
+    /**
+     * Tests that findTopPostsByTitleOrBodyWords ranks title matches above body
+     * matches, and rarer words above common ones.
+     *
+     * @return true if the test passed, false otherwise
+     */
+    public static boolean test5() {
+        CHSearchBackendBD backend = loadPosts("soup of the day", "the best bread", "day old bread",
+                "the bread of the day", "bread");
+        // every post but the first has bread in its title, and the shortest title wins
+        List<String> top = backend.findTopPostsByTitleOrBodyWords("bread", 2);
+        if (!top.equals(Arrays.asList("bread - 4", "the best bread - 1")))
+            return false;
+        // soup is rarer than day, so the only post with soup comes first
+        top = backend.findTopPostsByTitleOrBodyWords("day soup", 10);
+        return top.size() == 3 && top.get(0).equals("soup of the day - 0")
+                && backend.findTopPostsByTitleOrBodyWords("missing", 10).isEmpty()
+                && backend.findTopPostsByTitleOrBodyWords("bread", 0).isEmpty();
+    }
+
+    /**
+     * Tests that the pruned top k search of PositionalIndexBD returns the same
+     * scores as scoring every post in data/large.txt.
+     *
+     * @return true if the test passed, false otherwise
+     */
+    public static boolean test6() {
+        List<PostInterface> posts;
+        try {
+            posts = new PostReaderDW().readPostsFromFile("data/large.txt");
+        } catch (FileNotFoundException e) {
+            return false;
+        }
+        PositionalIndexBD index = new PositionalIndexBD();
+        for (PostInterface post : posts)
+            index.addPost(post, words(post.getTitle()), words(post.getBody()));
+
+        String[] queries = { "protein", "cheap healthy meals", "the", "rice and beans", "chicken chicken" };
+        for (String query : queries) {
+            for (int k : new int[] { 1, 10, 100 }) {
+                int[] top = index.findTopPosts(words(query), k);
+                double[] all = new double[posts.size()];
+                int matches = 0;
+                for (int id = 0; id < all.length; id++) {
+                    all[id] = -index.score(id, words(query)); // negated, to sort best first
+                    if (all[id] < 0)
+                        matches++;
+                }
+                Arrays.sort(all);
+                if (top.length != Math.min(k, matches))
+                    return false;
+                for (int i = 0; i < top.length; i++) {
+                    if (Math.abs(index.score(top[i], words(query)) + all[i]) > 1e-9)
+                        return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Tests that loading data/large.txt on several threads gives the same
+     * statistics and search results as loading it on one.
+     *
+     * @return true if the test passed, false otherwise
+     */
+    public static boolean test7() {
+        CHSearchBackendBD sequential = new CHSearchBackendBD(new HashtableWithDuplicateKeysAE<>(), new PostReaderDW());
+        CHSearchBackendBD parallel = new CHSearchBackendBD(new HashtableWithDuplicateKeysAE<>(), new PostReaderDW(), 4);
+        try {
+            sequential.loadData("data/large.txt");
+            parallel.loadData("data/large.txt");
+        } catch (FileNotFoundException e) {
+            return false;
+        }
+        if (!sequential.getStatisticsString().equals(parallel.getStatisticsString()))
+            return false;
+        String[] queries = { "protein", "cheap healthy meals", "rice and beans", "the" };
+        for (String query : queries) {
+            if (!sequential.findPostsByTitleOrBodyWords(query).equals(parallel.findPostsByTitleOrBodyWords(query))
+                    || !sequential.findPostsByTitleOrBodyPhrase(query)
+                            .equals(parallel.findPostsByTitleOrBodyPhrase(query))
+                    || !sequential.findTopPostsByTitleOrBodyWords(query, 20)
+                            .equals(parallel.findTopPostsByTitleOrBodyWords(query, 20)))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Tests that TokenizerBD finds the same words as stripping punctuation with a
+     * regular expression and splitting around spaces, without the empty words
+     * that splitting leaves between repeated spaces.
+     *
+     * @return true if the test passed, false otherwise
+     */
+    public static boolean test8() {
+        TokenizerBD tokenizer = new TokenizerBD();
+        if (!tokenizer.words("  Don't  STOP-me now!! 42 ").equals(Arrays.asList("dont", "stopme", "now"))
+                || !tokenizer.words("").isEmpty() || !tokenizer.words(" ?! ").isEmpty())
+            return false;
+        if (!tokenizer.words("Ünïcode café, naïve").equals(Arrays.asList("ncode", "caf", "nave")))
+            return false;
+        // a word longer than the buffer the tokenizer starts with
+        String longWord = "abcdefghijklmnopqrstuvwxyz".repeat(10);
+        if (!tokenizer.words(longWord.toUpperCase() + " x").equals(Arrays.asList(longWord, "x")))
+            return false;
+
+        List<PostInterface> posts;
+        try {
+            posts = new PostReaderDW().readPostsFromFile("data/large.txt");
+        } catch (FileNotFoundException e) {
+            return false;
+        }
+        for (PostInterface post : posts) {
+            for (String text : new String[] { post.getTitle(), post.getBody() }) {
+                List<String> expected = new ArrayList<>();
+                for (String word : text.replaceAll("[^a-zA-Z ]", "").toLowerCase().split(" "))
+                    if (!word.isEmpty())
+                        expected.add(word);
+                if (!expected.equals(tokenizer.words(text)))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Tests that TermDictionaryBD gives terms dense ids that stay the same through
+     * rehashing, finds the same id from a char buffer as from a String, shares one
+     * key String per term and field, and that its size shows up in the backend's
+     * statistics.
+     *
+     * @return true if the test passed, false otherwise
+     */
+    public static boolean test9() {
+        TermDictionaryBD terms = new TermDictionaryBD();
+        if (terms.idOf("apple") != 0 || terms.idOf("pie") != 1 || terms.idOf("apple") != 0
+                || terms.find("cherry") != -1 || terms.getSize() != 2)
+            return false;
+        char[] buffer = "xxpiexx".toCharArray();
+        if (terms.idOf(buffer, 2, 3) != 1 || terms.idOf(buffer, 2, 2) != 2 || !terms.getTerm(2).equals("pi"))
+            return false;
+        String key = terms.getKey(0, TermDictionaryBD.TITLE);
+        if (!key.equals("T:apple") || key != terms.getKey(0, TermDictionaryBD.TITLE)
+                || !terms.getKey(1, TermDictionaryBD.BODY).equals("B:pie"))
+            return false;
+        // enough terms to rehash the table many times over
+        for (int i = 0; i < 20000; i++)
+            if (terms.idOf("term" + i) != i + 3)
+                return false;
+        for (int i = 0; i < 20000; i++)
+            if (terms.find("term" + i) != i + 3 || !terms.getTerm(i + 3).equals("term" + i))
+                return false;
+        if (terms.find("apple") != 0 || terms.getSize() != 20003 || terms.getSizeInBytes() <= 0)
+            return false;
+
+        CHSearchBackendBD backend = new CHSearchBackendBD(new HashtableWithDuplicateKeysAE<>(), new PostReaderDW());
+        try {
+            backend.loadData("data/small.txt");
+        } catch (FileNotFoundException e) {
+            return false;
+        }
+        return backend.getStatisticsString().contains("terms in the term dictionary")
+                && backend.findPostsByTitleOrBodyWords("nosuchwordanywhere").isEmpty();
+    }
+
+    /**
+     * Tests that a dataset saved with saveIndex and opened again by loadData
+     * answers every kind of search the same way, that damage to the file is
+     * caught by its checksum, that a save that fails leaves the old file whole,
+     * that files of another format version are refused, and that loading more
+     * posts after opening an index file gives the same dataset as loading all of
+     * them from text.
+     *
+     * @return true if the test passed, false otherwise
+     */
+    public static boolean test10() {
+        CHSearchBackendBD built = new CHSearchBackendBD(new HashtableWithDuplicateKeysAE<>(), new PostReaderDW());
+        CHSearchBackendBD opened = new CHSearchBackendBD(new HashtableWithDuplicateKeysAE<>(), new PostReaderDW());
+        File file;
+        try {
+            file = File.createTempFile("large", ".chix");
+            file.deleteOnExit();
+            built.loadData("data/large.txt");
+            built.saveIndex(file.getPath());
+            opened.loadData(file.getPath());
+            if (!IndexFileBD.open(file.getPath()).verifyChecksum())
+                return false;
+        } catch (IOException e) {
+            return false;
+        }
+        // a save that fails part way through leaves the saved file as it was
+        try {
+            IndexFileBD.write(file.getPath(), new PositionalIndexBD() {
+                @Override
+                public synchronized int getPostCount() {
+                    throw new IllegalStateException("failed part way through");
+                }
+            }, 0, 0);
+            return false;
+        } catch (IllegalStateException | IOException e) {
+            // expected
+        }
+        try {
+            String[] left = file.getParentFile().list((folder, name) -> name.startsWith(file.getName() + "."));
+            if (!IndexFileBD.open(file.getPath()).verifyChecksum() || left == null || left.length != 0)
+                return false;
+        } catch (IOException e) {
+            return false;
+        }
+        String[] builtStatistics = built.getStatisticsString().split("\n");
+        String[] openedStatistics = opened.getStatisticsString().split("\n");
+        for (int i = 0; i < 4; i++)
+            if (!builtStatistics[i].equals(openedStatistics[i]))
+                return false;
+        for (String query : new String[] { "protein", "cheap healthy meals", "rice and beans", "nosuchword" }) {
+            if (!built.findPostsByTitleWords(query).equals(opened.findPostsByTitleWords(query))
+                    || !built.findPostsByBodyWords(query).equals(opened.findPostsByBodyWords(query))
+                    || !built.findPostsByAllTitleOrBodyWords(query).equals(opened.findPostsByAllTitleOrBodyWords(query))
+                    || !built.findPostsByTitleOrBodyPhrase(query).equals(opened.findPostsByTitleOrBodyPhrase(query))
+                    || !built.findTopPostsByTitleOrBodyWords(query, 5)
+                            .equals(opened.findTopPostsByTitleOrBodyWords(query, 5))
+                    || !built.findPostsByTitleOrBodyWordsExcluding(query, "rice")
+                            .equals(opened.findPostsByTitleOrBodyWordsExcluding(query, "rice")))
+                return false;
+        }
+
+        // load a text file on top of the opened index, and compare to loading both as text
+        CHSearchBackendBD both = new CHSearchBackendBD(new HashtableWithDuplicateKeysAE<>(), new PostReaderDW());
+        try {
+            both.loadData("data/large.txt");
+            both.loadData("data/small.txt");
+            opened.loadData("data/small.txt");
+        } catch (FileNotFoundException e) {
+            return false;
+        }
+        // the query caches of the two backends have been used differently
+        if (!both.getStatisticsString().split("\nQuery cache:")[0]
+                .equals(opened.getStatisticsString().split("\nQuery cache:")[0])
+                || !both.findPostsByTitleOrBodyWords("protein").equals(opened.findPostsByTitleOrBodyWords("protein")))
+            return false;
+
+        // flip one byte in the middle of the file, and then change its version
+        try (RandomAccessFile damaged = new RandomAccessFile(file, "rw")) {
+            damaged.seek(damaged.length() / 2);
+            int b = damaged.read();
+            damaged.seek(damaged.length() / 2);
+            damaged.write(b ^ 1);
+            if (IndexFileBD.open(file.getPath()).verifyChecksum())
+                return false;
+            damaged.seek(4);
+            damaged.writeInt(99);
+        } catch (IOException e) {
+            return false;
+        }
+        try {
+            new CHSearchBackendBD(new HashtableWithDuplicateKeysAE<>(), new PostReaderDW()).loadData(file.getPath());
+            return false;
+        } catch (UncheckedIOException e) {
+            return true;
+        } catch (FileNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Tests that a SegmentedIndexBD that seals a segment every 16 posts, and so
+     * merges many times over, finds the same phrases and best matches as one
+     * PositionalIndexBD of the same posts, both while merges may be running and
+     * after they finish, and that posts removed from it are left out the same way
+     * as never adding them.
+     *
+     * @return true if the test passed, false otherwise
+     */
+    public static boolean test11() {
+        List<PostInterface> posts;
+        try {
+            posts = new PostReaderDW().readPostsFromFile("data/large.txt");
+        } catch (FileNotFoundException e) {
+            return false;
+        }
+        TermDictionaryBD terms = new TermDictionaryBD();
+        SegmentedIndexBD segmented = new SegmentedIndexBD(terms, 16, 2);
+        for (PostInterface post : posts) {
+            List<String> title = words(post.getTitle());
+            List<String> body = words(post.getBody());
+            int[] termIds = new int[title.size() + body.size()];
+            for (int i = 0; i < termIds.length; i++)
+                termIds[i] = terms.idOf(i < title.size() ? title.get(i) : body.get(i - title.size()));
+            segmented.addPost(post, termIds, title.size(), termIds.length);
+        }
+        if (!sameResults(segmented, posts, -1))
+            return false;
+        segmented.awaitMerges();
+        if (segmented.getMergeCount() == 0 || segmented.getSegmentCount() > 12 || !sameResults(segmented, posts, -1))
+            return false;
+
+        // remove every third post, then let merges drop them
+        for (int i = 0; i < posts.size(); i += 3) {
+            List<String> title = words(posts.get(i).getTitle());
+            List<String> body = words(posts.get(i).getBody());
+            String word = !title.isEmpty() ? title.get(0) : !body.isEmpty() ? body.get(0) : null;
+            PostInterface copy = new PostDW(posts.get(i).getTitle(), posts.get(i).getUrl(), posts.get(i).getBody());
+            if (!segmented.removePost(copy, word, title.isEmpty() ? TermDictionaryBD.BODY : TermDictionaryBD.TITLE))
+                return false;
+        }
+        if (segmented.getPostCount() != posts.size() - (posts.size() + 2) / 3 || !sameResults(segmented, posts, 3))
+            return false;
+        segmented.awaitMerges();
+        return sameResults(segmented, posts, 3) && segmented.compact().getPostCount() == segmented.getPostCount();
+    }
+
+    /**
+     * @return true if segmented finds the same phrases and best posts as a single
+     *         PositionalIndexBD of posts, leaving out every removedEvery-th post
+     *         (starting from the first) when that is positive
+     */
+    private static boolean sameResults(SegmentedIndexBD segmented, List<PostInterface> posts, int removedEvery) {
+        PositionalIndexBD single = new PositionalIndexBD();
+        for (int i = 0; i < posts.size(); i++)
+            if (removedEvery <= 0 || i % removedEvery != 0)
+                single.addPost(posts.get(i), words(posts.get(i).getTitle()), words(posts.get(i).getBody()));
+        for (String query : new String[] { "protein", "cheap healthy meals", "rice and beans", "the", "a" }) {
+            List<PostInterface> expected = new ArrayList<>();
+            for (int id : single.findTopPosts(words(query), 25))
+                expected.add(single.getPost(id));
+            if (!expected.equals(segmented.findTopPosts(words(query), 25)))
+                return false;
+            for (int field : new int[] { TermDictionaryBD.TITLE, TermDictionaryBD.BODY }) {
+                expected.clear();
+                for (int id : single.findPhrase(field, words(query)))
+                    expected.add(single.getPost(id));
+                if (!expected.equals(segmented.findPhrase(field, words(query))))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Tests that adding and removing posts one at a time, including posts read
+     * from an index file and a post without any words, gives the same dataset as
+     * loading just the posts that remain, that both wait for searches reading
+     * the hashtable, and that removed posts are freed.
+     *
+     * @return true if the test passed, false otherwise
+     */
+    public static boolean test12() {
+        List<PostInterface> posts;
+        CHSearchBackendBD changed = new CHSearchBackendBD(new HashtableWithDuplicateKeysAE<>(), new PostReaderDW());
+        try {
+            posts = new PostReaderDW().readPostsFromFile("data/large.txt");
+            File file = File.createTempFile("large", ".chix");
+            file.deleteOnExit();
+            CHSearchBackendBD saved = new CHSearchBackendBD(new HashtableWithDuplicateKeysAE<>(), new PostReaderDW());
+            saved.loadData("data/large.txt");
+            saved.saveIndex(file.getPath());
+            changed.loadData(file.getPath());
+        } catch (IOException e) {
+            return false;
+        }
+        List<PostInterface> remaining = new ArrayList<>();
+        for (int i = 0; i < posts.size(); i++) {
+            PostInterface post = posts.get(i);
+            if (i % 4 == 1 && !changed.removePost(new PostDW(post.getTitle(), post.getUrl(), post.getBody())))
+                return false;
+            if (i % 4 != 1)
+                remaining.add(post);
+        }
+        PostInterface empty = new PostDW("!!", "empty", "42");
+        PostInterface added = new PostDW("Protein pancakes", "added", "protein pancakes with rice");
+        changed.addPost(empty);
+        changed.addPost(added);
+        if (changed.removePost(new PostDW("not", "a", "post")) || !changed.removePost(new PostDW("!!", "empty", "42")))
+            return false;
+        remaining.add(added);
+
+        CHSearchBackendBD expected = new CHSearchBackendBD(new HashtableWithDuplicateKeysAE<>(),
+                filename -> remaining);
+        try {
+            expected.loadData("posts");
+        } catch (FileNotFoundException e) {
+            return false;
+        }
+        String[] expectedStatistics = expected.getStatisticsString().split("\n");
+        String[] changedStatistics = changed.getStatisticsString().split("\n");
+        for (int i = 0; i < 4; i++)
+            if (!expectedStatistics[i].equals(changedStatistics[i]))
+                return false;
+        for (String query : new String[] { "protein", "protein pancakes", "rice and beans", "the" }) {
+            if (!expected.findPostsByTitleOrBodyWords(query).equals(changed.findPostsByTitleOrBodyWords(query))
+                    || !expected.findPostsByAllTitleOrBodyWords(query)
+                            .equals(changed.findPostsByAllTitleOrBodyWords(query))
+                    || !expected.findPostsByTitleOrBodyPhrase(query).equals(changed.findPostsByTitleOrBodyPhrase(query))
+                    || !expected.findTopPostsByTitleOrBodyWords(query, 10)
+                            .equals(changed.findTopPostsByTitleOrBodyWords(query, 10)))
+                return false;
+        }
+
+        // adding and removing wait for searches that are reading the hashtable,
+        // and a removed post is no longer held by the hashtable
+        PausingHashtable table = new PausingHashtable();
+        CHSearchBackendBD searched = new CHSearchBackendBD(table, new PostReaderDW());
+        try {
+            searched.loadData("data/small.txt");
+            return waitsForSearch(searched, table, () -> searched.addPost(added)) && table.findId(added) >= 0
+                    && waitsForSearch(searched, table,
+                            () -> searched.removePost(new PostDW(added.getTitle(), added.getUrl(), added.getBody())))
+                    && table.findId(added) == -1 && searched.findPostsByTitleWords("pancakes").isEmpty();
+        } catch (FileNotFoundException | InterruptedException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Tests that QueryCacheBD evicts the least recently used queries, but only to
+     * make room for a more popular one, and ignores results from before it was
+     * invalidated, and that the backend's cached results are forgotten whenever
+     * its dataset changes.
+     *
+     * @return true if the test passed, false otherwise
+     */
+    public static boolean test13() {
+        QueryCacheBD cache = new QueryCacheBD(10);
+        for (String key : new String[] { "a", "b", "c", "c" })
+            if (cache.get(key) != null)
+                return false;
+        cache.put("a", cache.getVersion(), List.of("1", "2", "3")); // 4 of the 10
+        cache.put("b", cache.getVersion(), List.of("1", "2", "3"));
+        cache.get("a"); // b is now the least recently used
+        cache.put("c", cache.getVersion(), List.of("1", "2")); // asked more often than b, so b is evicted
+        cache.put("d", cache.getVersion(), List.of("1", "2", "3")); // not asked more often than a, so not kept
+        if (cache.get("b") != null || cache.get("d") != null || cache.get("a") == null || cache.getEvictions() != 1
+                || cache.getSize() != 2 || cache.getResultCount() != 5)
+            return false;
+        long version = cache.getVersion();
+        cache.invalidate();
+        cache.put("e", version, List.of("1"));
+        if (cache.get("a") != null || cache.get("e") != null || cache.getHits() != 2 || cache.getMisses() != 8)
+            return false;
+
+        CHSearchBackendBD backend = new CHSearchBackendBD(new HashtableWithDuplicateKeysAE<>(), new PostReaderDW());
+        try {
+            backend.loadData("data/small.txt");
+            List<String> first = backend.findPostsByTitleOrBodyWords("Protein, RICE");
+            first.clear(); // callers can change the list they are given
+            List<String> second = backend.findPostsByTitleOrBodyWords("rice protein protein");
+            if (second.isEmpty() || !backend.getStatisticsString().contains("1 hits, 1 misses"))
+                return false;
+            PostInterface added = new PostDW("Protein rice", "added", "");
+            backend.addPost(added);
+            List<String> third = backend.findPostsByTitleOrBodyWords("rice protein");
+            if (third.size() != second.size() + 1 || !third.contains("Protein rice - added"))
+                return false;
+            backend.removePost(added);
+            if (!backend.findPostsByTitleOrBodyWords("rice protein").equals(second))
+                return false;
+            List<String> top = backend.findTopPostsByTitleOrBodyWords("protein", 3);
+            backend.loadData("data/large.txt");
+            return !backend.findTopPostsByTitleOrBodyWords("protein", 3).equals(top)
+                    && !backend.findTopPostsByTitleOrBodyWords("protein", 2).equals(top);
+        } catch (FileNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Tests that wildcard patterns match the right terms of a TermDictionaryBD,
+     * including terms added after it was first searched, and that wildcard
+     * searches find the same posts as searching for every matching word, both
+     * in memory and from an index file, and refuse patterns that match too many
+     * words.
+     *
+     * @return true if the test passed, false otherwise
+     */
+    public static boolean test14() {
+        TermDictionaryBD terms = new TermDictionaryBD();
+        for (String term : new String[] { "recipes", "rice", "recipe", "apple", "reciprocal" })
+            terms.idOf(term);
+        if (!terms.findMatching("recip*", 10).equals(List.of("recipe", "recipes", "reciprocal"))
+                || !terms.findMatching("r?ce", 10).equals(List.of("rice"))
+                || !terms.findMatching("*e*", 10).equals(List.of("apple", "recipe", "recipes", "reciprocal", "rice"))
+                || !terms.findMatching("recip*", 2).equals(List.of("recipe", "recipes"))
+                || !terms.findMatching("rice?", 10).isEmpty())
+            return false;
+        terms.idOf("recipient");
+        if (!terms.findMatching("re*i*t", 10).equals(List.of("recipient")))
+            return false;
+
+        CHSearchBackendBD built = new CHSearchBackendBD(new HashtableWithDuplicateKeysAE<>(), new PostReaderDW());
+        CHSearchBackendBD opened = new CHSearchBackendBD(new HashtableWithDuplicateKeysAE<>(), new PostReaderDW());
+        List<PostInterface> posts;
+        try {
+            posts = new PostReaderDW().readPostsFromFile("data/large.txt");
+            File file = File.createTempFile("large", ".chix");
+            file.deleteOnExit();
+            built.loadData("data/large.txt");
+            built.saveIndex(file.getPath());
+            opened.loadData(file.getPath());
+        } catch (IOException e) {
+            return false;
+        }
+        TreeSet<String> vocabulary = new TreeSet<>();
+        for (PostInterface post : posts) {
+            vocabulary.addAll(words(post.getTitle()));
+            vocabulary.addAll(words(post.getBody()));
+        }
+        for (String pattern : new String[] { "prot*", "Rec?pe*", "*berry", "ch*n", "nosuch*" }) {
+            String regex = pattern.toLowerCase().replace("?", ".").replace("*", ".*");
+            List<String> matching = new ArrayList<>();
+            for (String word : vocabulary)
+                if (word.matches(regex))
+                    matching.add(word);
+            List<String> expected = built.findPostsByTitleOrBodyWords(String.join(" ", matching));
+            if (!expected.equals(built.findPostsByTitleOrBodyWildcard(pattern))
+                    || !expected.equals(opened.findPostsByTitleOrBodyWildcard(pattern)))
+                return false;
+        }
+        try {
+            opened.findPostsByTitleOrBodyWildcard("*e*"); // matches thousands of words
+            return false;
+        } catch (IllegalArgumentException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Tests that a Levenshtein automaton run over the sorted terms finds exactly
+     * the terms within its distance, in memory and in an index file, that
+     * similar words are ranked by distance and then by how many posts have them,
+     * and that a misspelled fuzzy search finds the posts with the word it meant.
+     *
+     * @return true if the test passed, false otherwise
+     */
+    public static boolean test15() {
+        TermDictionaryBD terms = new TermDictionaryBD();
+        for (String term : new String[] { "protein", "proteins", "protean", "potion", "pro", "rice" })
+            terms.idOf(term);
+        LevenshteinAutomatonBD automaton = new LevenshteinAutomatonBD("protien", 2);
+        List<String> found = new ArrayList<>();
+        for (LevenshteinAutomatonBD.Match match : terms.findSimilar(automaton))
+            found.add(match.term + " " + match.distance);
+        if (!found.equals(List.of("potion 2", "protean 2", "protein 2")) || automaton.distance("proteins") != -1
+                || new LevenshteinAutomatonBD("rice", 1).distance("ric") != 1)
+            return false;
+
+        CHSearchBackendBD built = new CHSearchBackendBD(new HashtableWithDuplicateKeysAE<>(), new PostReaderDW());
+        CHSearchBackendBD opened = new CHSearchBackendBD(new HashtableWithDuplicateKeysAE<>(), new PostReaderDW());
+        TreeSet<String> vocabulary = new TreeSet<>();
+        try {
+            for (PostInterface post : new PostReaderDW().readPostsFromFile("data/large.txt")) {
+                vocabulary.addAll(words(post.getTitle()));
+                vocabulary.addAll(words(post.getBody()));
+            }
+            File file = File.createTempFile("large", ".chix");
+            file.deleteOnExit();
+            built.loadData("data/large.txt");
+            built.saveIndex(file.getPath());
+            opened.loadData(file.getPath());
+        } catch (IOException e) {
+            return false;
+        }
+        for (String word : new String[] { "protien", "recipe", "chiken", "xq" }) {
+            for (int distance = 0; distance <= 2; distance++) {
+                TreeSet<String> expected = new TreeSet<>();
+                for (String term : vocabulary)
+                    if (editDistance(word, term) <= distance)
+                        expected.add(term);
+                List<String> similar = built.findSimilarWords(word, distance);
+                // short words are close to many others, and only the best MAX_FUZZY_TERMS are kept
+                if (expected.size() > CHSearchBackendBD.MAX_FUZZY_TERMS ? !expected.containsAll(similar)
+                        || similar.size() != CHSearchBackendBD.MAX_FUZZY_TERMS : !expected.equals(new TreeSet<>(similar)))
+                    return false;
+                if (!similar.equals(opened.findSimilarWords(word, distance)))
+                    return false;
+                for (int i = 1; i < similar.size(); i++) // ranked by distance first
+                    if (editDistance(word, similar.get(i - 1)) > editDistance(word, similar.get(i)))
+                        return false;
+            }
+        }
+        List<String> misspelled = built.findPostsByTitleOrBodyFuzzy("proteim", 2);
+        List<String> meant = built.findPostsByTitleOrBodyWords("protein");
+        if (!built.findSimilarWords("proteim", 2).get(0).equals("protein")
+                || !misspelled.subList(0, meant.size()).equals(meant)
+                || !misspelled.equals(opened.findPostsByTitleOrBodyFuzzy("proteim", 2)))
+            return false;
+        try {
+            built.findPostsByTitleOrBodyFuzzy("protien", 3);
+            return false;
+        } catch (IllegalArgumentException e) {
+            return true;
+        }
+    }
+
+    /**
+     * @return the fewest insertions, deletions, and substitutions of one char
+     *         that turn a into b
+     */
+    private static int editDistance(String a, String b) {
+        int[][] distances = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++)
+            for (int j = 0; j <= b.length(); j++)
+                distances[i][j] = i == 0 ? j : j == 0 ? i
+                        : Math.min(Math.min(distances[i - 1][j], distances[i][j - 1]) + 1,
+                                distances[i - 1][j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1));
+        return distances[a.length()][b.length()];
+    }
+
+    private static List<String> words(String text) {
+        return new TokenizerBD().words(text);
+    }
+
+    /**
+     * Tests that a TermFilterBD never rejects a term that is in it, rejects most
+     * words that are not, grows past the number of terms it was first sized for,
+     * forgets removed terms, and works at a rate close to 1, and that a backend
+     * with a term filter finds the same posts as one without, as posts are
+     * loaded, added and removed.
+     *
+     * @return true if the test passed, false otherwise
+     */
+    public static boolean test16() {
+        try {
+            new TermFilterBD(new TermDictionaryBD(), 1.5);
+            return false;
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        TermDictionaryBD few = new TermDictionaryBD();
+        TermFilterBD loose = new TermFilterBD(few, 0.9999); // less than a counter per term
+        loose.add(few.idOf("word"));
+        if (!loose.mightContain("word"))
+            return false;
+        TermDictionaryBD terms = new TermDictionaryBD();
+        TermFilterBD filter = new TermFilterBD(terms, 0.01);
+        for (int i = 0; i < 5000; i++) // several times the 1024 terms it starts out sized for
+            filter.add(terms.idOf("word" + i));
+        for (int i = 0; i < 5000; i++)
+            if (!filter.mightContain("word" + i))
+                return false;
+        int passed = 0;
+        for (int i = 0; i < 10000; i++)
+            if (filter.mightContain("missing" + i))
+                passed++;
+        if (passed > 300 || filter.getSize() != 5000)
+            return false;
+        filter.remove(terms.find("word7"));
+        filter.remove(terms.find("word7"));
+        if (filter.mightContain("word7") || filter.getSize() != 4999)
+            return false;
+
+        CHSearchBackendBD plain = new CHSearchBackendBD(new HashtableWithDuplicateKeysAE<>(), new PostReaderDW());
+        CHSearchBackendBD filtered = new CHSearchBackendBD(new HashtableWithDuplicateKeysAE<>(), new PostReaderDW());
+        try {
+            filtered.enableTermFilter(0.01);
+            plain.loadData("data/small.txt");
+            filtered.loadData("data/small.txt");
+            String[] queries = { "protein rice", "proteinn ryce", "xyzzy", "the", "quinoa salad" };
+            for (String query : queries)
+                if (!plain.findPostsByTitleOrBodyWords(query).equals(filtered.findPostsByTitleOrBodyWords(query))
+                        || !plain.findPostsByTitleWords(query).equals(filtered.findPostsByTitleWords(query)))
+                    return false;
+            PostInterface added = new PostDW("Zyzzyva stew", "added", "zyzzyva");
+            filtered.addPost(added);
+            if (filtered.findPostsByTitleOrBodyWords("zyzzyva").size() != 1)
+                return false;
+            filtered.removePost(added);
+            String statistics = filtered.getStatisticsString();
+            return filtered.findPostsByTitleOrBodyWords("zyzzyva").isEmpty()
+                    && statistics.contains("\nTerm filter:\n") && statistics.contains("% false positives")
+                    && statistics.contains(" rejected (")
+                    && !plain.getStatisticsString().contains("Term filter");
+        } catch (FileNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Tests that a backend with several query shards finds the same posts as one
+     * without, for searches whose results are split between the shards, where
+     * posts in different shards can share a title and url, and that it refuses
+     * fewer than one shard.
+     *
+     * @return true if the test passed, false otherwise
+     */
+    public static boolean test17() {
+        try {
+            List<PostInterface> original = new PostReaderDW().readPostsFromFile("data/large.txt");
+            List<PostInterface> posts = new ArrayList<>();
+            for (int copy = 0; copy < 20; copy++) // every title - url is shared by ten posts, spread over the ids
+                for (PostInterface post : original)
+                    posts.add(new PostDW(post.getTitle(), post.getUrl() + "#" + copy % 2, post.getBody()));
+            CHSearchBackendBD plain = new CHSearchBackendBD(new HashtableWithDuplicateKeysAE<>(), filename -> posts);
+            CHSearchBackendBD sharded = new CHSearchBackendBD(new HashtableWithDuplicateKeysAE<>(), filename -> posts);
+            plain.loadData("posts");
+            sharded.loadData("posts");
+            try {
+                sharded.setQueryShards(0);
+                return false;
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+            sharded.setQueryShards(3);
+            List<String> broad = plain.findPostsByTitleOrBodyWords("the and");
+            if (broad.size() < 1000 // of some 13000 posts, enough for 3 shards
+                    || !broad.equals(sharded.findPostsByTitleOrBodyWords("the and"))
+                    || !plain.findPostsByAllTitleOrBodyWords("the a").equals(sharded.findPostsByAllTitleOrBodyWords("the a"))
+                    || !plain.findPostsByTitleWords("protein").equals(sharded.findPostsByTitleWords("protein")))
+                return false;
+            sharded.setQueryShards(1);
+            return plain.findPostsByTitleOrBodyWords("the a").equals(sharded.findPostsByTitleOrBodyWords("the a"))
+                    && new TreeSet<>(broad).size() == broad.size();
+        } catch (FileNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Tests that result cursors and pages return the same results, in the same
+     * order, as the searches that return every result, for broad searches (which
+     * walk every post in order) and narrow ones, including posts that share a
+     * title and url, posts added after the first cursor, and pages past the end.
+     *
+     * @return true if the test passed, false otherwise
+     */
+    public static boolean test18() {
+        try {
+            List<PostInterface> original = new PostReaderDW().readPostsFromFile("data/large.txt");
+            List<PostInterface> posts = new ArrayList<>();
+            for (int copy = 0; copy < 3; copy++)
+                for (PostInterface post : original)
+                    posts.add(new PostDW(post.getTitle(), post.getUrl() + "#" + copy % 2, post.getBody()));
+            CHSearchBackendBD backend = new CHSearchBackendBD(new HashtableWithDuplicateKeysAE<>(), filename -> posts);
+            backend.loadData("posts");
+            try {
+                backend.findPostsByTitleOrBodyWords("the", -1, 10);
+                return false;
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+            for (String query : new String[] { "the", "protein rice", "xyzzy" }) {
+                List<String> all = backend.findPostsByTitleOrBodyWords(query);
+                List<String> paged = new ArrayList<>();
+                ResultCursorBD cursor = backend.openPostsByTitleOrBodyWords(query);
+                for (List<String> page; !(page = cursor.nextPage(7)).isEmpty();)
+                    paged.addAll(page);
+                if (!paged.equals(all) || cursor.hasNext()
+                        || !backend.findPostsByTitleOrBodyWords(query, 5, 3).equals(all.subList(Math.min(5,
+                                all.size()), Math.min(8, all.size())))
+                        || !backend.findPostsByTitleOrBodyWords(query, all.size(), 3).isEmpty())
+                    return false;
+            }
+            ResultCursorBD titles = backend.openPostsByTitleWords("the");
+            titles.skip(2);
+            if (!titles.next().equals(backend.findPostsByTitleWords("the").get(2)))
+                return false;
+            backend.addPost(new PostDW("Added the", "added", "the")); // sorted in among the others
+            List<String> all = backend.findPostsByTitleOrBodyWords("the");
+            return all.contains("Added the - added")
+                    && backend.findPostsByTitleOrBodyWords("the", 0, all.size()).equals(all);
+        } catch (FileNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Tests that a file loaded in the background can be searched while it loads:
+     * searches see exactly the posts of the latest snapshot (all of the posts
+     * up to some point of the file, and none that were indexed after it), and
+     * once loading ends they see every post, as if it was loaded with loadData.
+     * Also checks the progress shown in the statistics, that a load waits for
+     * the searches already reading the hashtable, and that a load that fails
+     * part way is reported.
+     *
+     * @return true if the test passed, false otherwise
+     */
+    public static boolean test19() {
+        try {
+            List<PostInterface> posts = new PostReaderDW().readPostsFromFile("data/large.txt");
+            CountDownLatch paused = new CountDownLatch(1);
+            CountDownLatch resume = new CountDownLatch(1);
+            PostReaderInterface reader = new PostReaderInterface() {
+                @Override
+                public List<PostInterface> readPostsFromFile(String filename) {
+                    return posts;
+                }
+
+                @Override
+                public void readPostsFromFile(String filename, Consumer<PostInterface> consumer) {
+                    for (int i = 0; i < posts.size(); i++) {
+                        consumer.accept(posts.get(i));
+                        if (i == 119) { // two snapshots of 50 posts have been published
+                            paused.countDown();
+                            try {
+                                resume.await();
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        }
+                    }
+                }
+            };
+            CHSearchBackendBD backend = new CHSearchBackendBD(new HashtableWithDuplicateKeysAE<>(), reader);
+            try {
+                backend.loadDataInBackground("data/large.txt", 0);
+                return false;
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+            try {
+                backend.loadDataInBackground("data/missing.txt");
+                return false;
+            } catch (FileNotFoundException e) {
+                // expected
+            }
+            backend.loadDataInBackground("data/large.txt", 50);
+            paused.await();
+            CHSearchBackendBD prefix = new CHSearchBackendBD(new HashtableWithDuplicateKeysAE<>(),
+                    filename -> posts.subList(0, 100));
+            prefix.loadData("posts");
+            String[] queries = { "the", "protein rice", "a" };
+            for (String query : queries)
+                if (!backend.findPostsByTitleOrBodyWords(query).equals(prefix.findPostsByTitleOrBodyWords(query))
+                        || !backend.findPostsByAllTitleOrBodyWords(query)
+                                .equals(prefix.findPostsByAllTitleOrBodyWords(query))
+                        || !backend.findTopPostsByTitleOrBodyWords(query, 5)
+                                .equals(prefix.findTopPostsByTitleOrBodyWords(query, 5))
+                        || !backend.findPostsByTitleOrBodyWords(query, 2, 5)
+                                .equals(prefix.findPostsByTitleOrBodyWords(query, 2, 5)))
+                    return false;
+            String statistics = backend.getStatisticsString();
+            if (!statistics.contains("Loading data/large.txt in the background")
+                    || !statistics.contains("120 posts indexed")
+                    || !statistics.contains("100 of them searchable, from 3 snapshots"))
+                return false;
+            resume.countDown();
+            if (!backend.awaitLoad())
+                return false;
+            CHSearchBackendBD all = new CHSearchBackendBD(new HashtableWithDuplicateKeysAE<>(), reader);
+            all.loadData("posts");
+            for (String query : queries)
+                if (!backend.findPostsByTitleOrBodyWords(query).equals(all.findPostsByTitleOrBodyWords(query))
+                        || !backend.findTopPostsByTitleOrBodyWords(query, 5)
+                                .equals(all.findTopPostsByTitleOrBodyWords(query, 5)))
+                    return false;
+            if (!backend.getStatisticsString().contains("Loaded data/large.txt in the background:\n    "
+                    + posts.size() + " posts indexed"))
+                return false;
+            // a load does not change the hashtable while a search is reading it
+            PausingHashtable table = new PausingHashtable();
+            CHSearchBackendBD searched = new CHSearchBackendBD(table, new MappedPostReaderDW());
+            searched.loadData("data/small.txt");
+            if (!waitsForSearch(searched, table, () -> {
+                try {
+                    searched.loadDataInBackground("data/large.txt");
+                } catch (FileNotFoundException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }) || !searched.awaitLoad())
+                return false;
+            CHSearchBackendBD both = new CHSearchBackendBD(new HashtableWithDuplicateKeysAE<>(), new PostReaderDW());
+            both.loadData("data/small.txt");
+            both.loadData("data/large.txt");
+            if (!searched.findPostsByTitleOrBodyWords("the").equals(both.findPostsByTitleOrBodyWords("the")))
+                return false;
+
+            // a load that fails part way leaves the posts read until then
+            CHSearchBackendBD failing = new CHSearchBackendBD(new HashtableWithDuplicateKeysAE<>(),
+                    new PostReaderInterface() {
+                        @Override
+                        public List<PostInterface> readPostsFromFile(String filename) {
+                            return posts;
+                        }
+
+                        @Override
+                        public void readPostsFromFile(String filename, Consumer<PostInterface> consumer) {
+                            for (int i = 0; i < 10; i++)
+                                consumer.accept(posts.get(i));
+                            throw new UncheckedIOException(new IOException("disk on fire"));
+                        }
+                    }, 1);
+            failing.loadDataInBackground("data/large.txt");
+            return !failing.awaitLoad() && failing.getStatisticsString().contains("disk on fire")
+                    && failing.getStatisticsString().contains("10 posts\n");
+        } catch (FileNotFoundException | InterruptedException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Tests that a backend following a file adds the posts already in it, then
+     * the posts appended to it, reports how far behind the file it is, and that
+     * following the file again from the offset it got to only adds the posts
+     * after that offset, that following it from two threads at once adds its
+     * posts once, that the file is read by the backend's own PostStoreDW, and
+     * that posts from the file wait for searches that are reading the hashtable.
+     *
+     * @return true if the test passed, false otherwise
+     */
+    public static boolean test20() {
+        try {
+            File file = File.createTempFile("posts", ".txt");
+            file.deleteOnExit();
+            Files.write(file.toPath(), "Alpha first+++url1+++body\nAlpha second+++url2+++body\nBeta".getBytes());
+            CHSearchBackendBD backend = new CHSearchBackendBD(new HashtableWithDuplicateKeysAE<>(), new PostReaderDW());
+            backend.followData(file.getPath());
+            if (!backend.findPostsByTitleWords("alpha").equals(List.of("Alpha first - url1", "Alpha second - url2"))
+                    || !backend.findPostsByTitleWords("beta").isEmpty())
+                return false;
+            long offset = backend.getFollowedOffset();
+            Files.write(file.toPath(), " third+++url3+++body\n".getBytes(), StandardOpenOption.APPEND);
+            for (int waited = 0; backend.findPostsByTitleWords("beta").isEmpty() && waited < 5000; waited += 10)
+                Thread.sleep(10);
+            String statistics = backend.getStatisticsString();
+            if (!backend.findPostsByTitleWords("beta").equals(List.of("Beta third - url3"))
+                    || !statistics.contains("Following " + file.getPath() + ":\n    3 posts added, read up to byte "
+                            + file.length() + ", 0 bytes of a line still being written")
+                    || !statistics.contains("ingest lag"))
+                return false;
+            backend.stopFollowing();
+            if (!backend.getStatisticsString().contains("Followed " + file.getPath()))
+                return false;
+            CHSearchBackendBD resumed = new CHSearchBackendBD(new HashtableWithDuplicateKeysAE<>(), new PostReaderDW());
+            resumed.followData(file.getPath(), offset);
+            resumed.stopFollowing();
+            if (!resumed.findPostsByTitleWords("alpha beta").equals(List.of("Beta third - url3")))
+                return false;
+            // following from two threads at once adds the file's posts once, and
+            // leaves no follower running after stopFollowing
+            CHSearchBackendBD twice = new CHSearchBackendBD(new HashtableWithDuplicateKeysAE<>(), new PostReaderDW());
+            Thread[] following = new Thread[2];
+            for (int i = 0; i < following.length; i++) {
+                following[i] = new Thread(() -> {
+                    try {
+                        twice.followData(file.getPath());
+                    } catch (FileNotFoundException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                following[i].start();
+            }
+            for (Thread thread : following)
+                thread.join();
+            twice.stopFollowing();
+            Files.write(file.toPath(), "Gamma+++url4+++body\n".getBytes(), StandardOpenOption.APPEND);
+            Thread.sleep(PostFileFollowerDW.POLL_MILLIS + 500);
+            if (!twice.findPostsByTitleWords("beta").equals(List.of("Beta third - url3"))
+                    || !twice.findPostsByTitleWords("gamma").isEmpty())
+                return false;
+            // a backend reading through a PostStoreDW follows the file through it too
+            PostStoreDW store = new PostStoreDW();
+            CHSearchBackendBD stored = new CHSearchBackendBD(new HashtableWithDuplicateKeysAE<>(), store);
+            stored.followData(file.getPath());
+            stored.stopFollowing();
+            if (store.getPostCount() != 4 || !stored.findPostsByTitleWords("gamma").equals(List.of("Gamma - url4")))
+                return false;
+            // posts from the file are not put into the hashtable while a search is reading it
+            PausingHashtable table = new PausingHashtable();
+            CHSearchBackendBD searched = new CHSearchBackendBD(table, new PostReaderDW());
+            searched.loadData("data/small.txt");
+            boolean waited = waitsForSearch(searched, table, () -> {
+                try {
+                    searched.followData(file.getPath());
+                } catch (FileNotFoundException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            searched.stopFollowing();
+            return waited && searched.findPostsByTitleWords("beta").equals(List.of("Beta third - url3"));
+        } catch (IOException | InterruptedException e) {
+            return false;
+        }
+    }
+
+    /**
+     * A hashtable that can hold the next search that reads it part way through,
+     * until it is let go, and that counts the values put into and removed from
+     * it.
+     */
+    private static class PausingHashtable extends HashtableWithDuplicateKeysAE<String, PostInterface> {
+        volatile CountDownLatch searching; // counted down once the held search is reading the hashtable
+        volatile CountDownLatch resume; // what the next search waits for, or null for none to
+        volatile int changes;
+
+        @Override
+        public PostingBitmap getValueIds(String key) {
+            CountDownLatch waitFor = resume;
+            if (waitFor != null) {
+                resume = null;
+                searching.countDown();
+                try {
+                    waitFor.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return super.getValueIds(key);
+        }
+
+        @Override
+        public void putOne(String key, PostInterface value) {
+            changes++;
+            super.putOne(key, value);
+        }
+
+        @Override
+        public void removeOne(String key, PostInterface value) {
+            changes++;
+            super.removeOne(key, value);
+        }
+    }
+
+    /**
+     * Holds a search of the backend's hashtable part way through, and checks
+     * that a change started on another thread meanwhile does not put anything
+     * into or remove anything from the hashtable until the search is let go.
+     *
+     * @param backend searches table, and not a snapshot
+     * @param change  changes the dataset of the backend
+     * @return true if the change waited for the search, or false if it did not,
+     *         or if the search or the change did not finish in time
+     */
+    private static boolean waitsForSearch(CHSearchBackendBD backend, PausingHashtable table, Runnable change)
+            throws InterruptedException {
+        CountDownLatch resume = new CountDownLatch(1);
+        table.searching = new CountDownLatch(1);
+        table.resume = resume;
+        Thread search = new Thread(() -> backend.openPostsByTitleOrBodyWords("the")); // not cached
+        search.setDaemon(true); // so that a search that never finishes does not keep the tests running
+        search.start();
+        if (!table.searching.await(5, TimeUnit.SECONDS)) { // the search never reached the hashtable
+            table.resume = null;
+            resume.countDown();
+            return false;
+        }
+        int changes = table.changes;
+        Thread changing = new Thread(change);
+        changing.setDaemon(true);
+        changing.start();
+        // long enough for the change to reach the hashtable, if it did not wait
+        for (int slept = 0; slept < 500 && table.changes == changes; slept += 10)
+            Thread.sleep(10);
+        boolean waited = table.changes == changes;
+        resume.countDown();
+        search.join(5000);
+        changing.join(30000);
+        return waited && !search.isAlive() && !changing.isAlive();
+    }
+
+    /**
+     * Main method for testing, runs all tests and prints the results.
+     *
+     * @param args
+     */
+    public static void main(String[] args) {
+        System.out.println("BackendDeveloper Individual Test 1: " + (test1() ? "passed" : "failed"));
+        System.out.println("BackendDeveloper Individual Test 2: " + (test2() ? "passed" : "failed"));
+        System.out.println("BackendDeveloper Individual Test 3: " + (test3() ? "passed" : "failed"));
+        System.out.println("BackendDeveloper Individual Test 4: " + (test4() ? "passed" : "failed"));
+        System.out.println("BackendDeveloper Individual Test 5: " + (test5() ? "passed" : "failed"));
+        System.out.println("BackendDeveloper Individual Test 6: " + (test6() ? "passed" : "failed"));
+        System.out.println("BackendDeveloper Individual Test 7: " + (test7() ? "passed" : "failed"));
+        System.out.println("BackendDeveloper Individual Test 8: " + (test8() ? "passed" : "failed"));
+        System.out.println("BackendDeveloper Individual Test 9: " + (test9() ? "passed" : "failed"));
+        System.out.println("BackendDeveloper Individual Test 10: " + (test10() ? "passed" : "failed"));
+        System.out.println("BackendDeveloper Individual Test 11: " + (test11() ? "passed" : "failed"));
+        System.out.println("BackendDeveloper Individual Test 12: " + (test12() ? "passed" : "failed"));
+        System.out.println("BackendDeveloper Individual Test 13: " + (test13() ? "passed" : "failed"));
+        System.out.println("BackendDeveloper Individual Test 14: " + (test14() ? "passed" : "failed"));
+        System.out.println("BackendDeveloper Individual Test 15: " + (test15() ? "passed" : "failed"));
+        System.out.println("BackendDeveloper Individual Test 16: " + (test16() ? "passed" : "failed"));
+        System.out.println("BackendDeveloper Individual Test 17: " + (test17() ? "passed" : "failed"));
+        System.out.println("BackendDeveloper Individual Test 18: " + (test18() ? "passed" : "failed"));
+        System.out.println("BackendDeveloper Individual Test 19: " + (test19() ? "passed" : "failed"));
+        System.out.println("BackendDeveloper Individual Test 20: " + (test20() ? "passed" : "failed"));
+    }
+}
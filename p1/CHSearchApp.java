@@ -8,7 +8,7 @@ import java.util.Scanner;
 public class CHSearchApp {
 	public static void main(String[] args) {
 		// Use data wrangler's code to load post data
-		PostReaderInterface postLoader = new PostReaderDW();
+		PostReaderInterface postLoader = new PostStoreDW();
 		// Use algorithm engineer's code to store and search for data
 		HashtableWithDuplicateKeysInterface<String, PostInterface> hashtable;
 		hashtable = new HashtableWithDuplicateKeysAE<>();
@@ -1,20 +1,299 @@
+import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Performs all application specific computation for the CHSearchApp. This
  * primarily involved loading post data, efficiently searching through that
  * data, and reporting statistics about the current dataset.
  * 
+ * Methods that change the dataset are synchronized, since posts can also be
+ * added by a file being followed. Searches are not. A search that reads the
+ * hashtable holds the read lock of hashtableLock until it is done, and the
+ * hashtable is only changed under its write lock, or while searches read a
+ * snapshot of the positional index instead: loading a file only holds the
+ * write lock for long enough to point searches at a snapshot, which is never
+ * changed, so searches carry on while the file loads.
+ * 
  * @author BackendDeveloper, courtesy of the CS400 course staff.
  */
 public class CHSearchBackendBD implements CHSearchBackendInterface {
 	private HashtableWithDuplicateKeysInterface<String, PostInterface> hashtable;
 	private PostReaderInterface postReader;
-	private int postCount;
+	private final SegmentedIndexBD positions; // where each word occurs within each post
+	private volatile IndexFileBD indexFile; // the file that the dataset was opened from, if any
+	private volatile int postCount; // read by query threads while another thread loads data
+	private final int threads; // the number of threads that loadData tokenizes posts with
+	private final TermDictionaryBD terms; // the id of each word, and its keys in the hashtable
+	private final PostTokenizer postTokenizer; // only used while loading data
+	private final QueryCacheBD cache; // the results of recent searches
+	private volatile TermFilterBD termFilter; // rejects words that are in no post, once enabled
+	private volatile ForkJoinPool queryPool; // runs one thread per shard of a query, when there are several
+	private volatile PostOrder postOrder; // every post in the order of its string, for result cursors
+	private volatile SegmentedIndexBD.Snapshot snapshot; // what searches read instead of the hashtable, if anything
+	private final ReentrantReadWriteLock hashtableLock = new ReentrantReadWriteLock(); // read by searches
+	private volatile BackgroundLoad backgroundLoad; // the latest load started by loadDataInBackground
+	private volatile PostFileFollowerDW follower; // adds the posts appended to a file, once followData is called
+	private final Object followLock = new Object(); // held while follower is replaced, apart from this backend's
+
+	protected static final int CHUNK_SIZE = 256; // posts tokenized together by one thread
+	protected static final int MAX_WILDCARD_TERMS = 1024; // the most words one wildcard pattern can match
+	protected static final int MAX_FUZZY_TERMS = 32; // the most similar words searched for each query word
+	protected static final int MIN_SHARD_POSTS = 4096; // the fewest posts in a result worth a thread of their own
+	protected static final int CURSOR_WALK_RATIO = 64; // cursors walk every post once one in this many is found
+	protected static final int SNAPSHOT_POSTS = 4 * SegmentedIndexBD.FLUSH_SIZE; // posts loaded between snapshots
+
+	/**
+	 * Breaks a post's title and body into the ids of their words, looking each
+	 * word up in a term dictionary straight from the tokenizer's buffer. The ids
+	 * are written into one array that is reused for every post.
+	 */
+	private static class PostTokenizer {
+		final TokenizerBD tokenizer = new TokenizerBD();
+		final TermDictionaryBD terms;
+		final TokenizerBD.TokenConsumer addTermId = this::addTermId;
+		int[] termIds = new int[64]; // the title's word ids, followed by the body's
+		int titleLength; // the number of words in the title
+		int length; // the number of words in the title and body
+
+		PostTokenizer(TermDictionaryBD terms) {
+			this.terms = terms;
+		}
+
+		void tokenize(PostInterface post) {
+			length = 0;
+			tokenizer.tokenize(post.getTitle(), addTermId);
+			titleLength = length;
+			tokenizer.tokenize(post.getBody(), addTermId);
+		}
+
+		private void addTermId(char[] token, int tokenLength) {
+			if (length == termIds.length)
+				termIds = Arrays.copyOf(termIds, length * 2);
+			termIds[length++] = terms.idOf(token, 0, tokenLength);
+		}
+	}
+
+	/**
+	 * The posts in one chunk of a file, tokenized into the ids of their words in a
+	 * term dictionary of their own, along with a positional index of just these
+	 * posts. Chunks are built in parallel, since they do not share anything.
+	 */
+	private class IndexChunk extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		final List<PostInterface> posts;
+		int[][] termIds; // the title and body word ids of each post, in the chunk's dictionary
+		int[] titleLengths; // the number of those ids that are from each post's title
+		PositionalIndexBD positions;
+
+		IndexChunk(List<PostInterface> posts) {
+			this.posts = posts;
+		}
+
+		@Override
+		protected void compute() {
+			termIds = new int[posts.size()][];
+			titleLengths = new int[posts.size()];
+			PostTokenizer tokenizer = new PostTokenizer(new TermDictionaryBD());
+			positions = new PositionalIndexBD(tokenizer.terms);
+			for (int i = 0; i < termIds.length; i++) {
+				PostInterface post = posts.get(i);
+				tokenizer.tokenize(post);
+				termIds[i] = Arrays.copyOf(tokenizer.termIds, tokenizer.length);
+				titleLengths[i] = tokenizer.titleLength;
+				positions.addPost(post, tokenizer.termIds, tokenizer.titleLength, tokenizer.length);
+			}
+		}
+	}
+
+	/**
+	 * The posts of a search result whose ids are in one range, turned into their
+	 * sorted title - url strings. A range that is split between several shards
+	 * is split in half, and each half is done in parallel and then merged.
+	 */
+	private class QueryShard extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		final SegmentedIndexBD.Snapshot index; // the snapshot whose posts the ids are, or null for the hashtable
+		final int[] ids; // the ids of every post in the result, in increasing order
+		final int from; // the range of ids for this shard, from ids[from] to ids[to - 1]
+		final int to;
+		final int shards; // the number of shards to split the range into
+		List<String> postStrings; // the sorted title - url strings of the range, without duplicates
+
+		QueryShard(SegmentedIndexBD.Snapshot index, int[] ids, int from, int to, int shards) {
+			this.index = index;
+			this.ids = ids;
+			this.from = from;
+			this.to = to;
+			this.shards = shards;
+		}
+
+		@Override
+		protected void compute() {
+			if (shards == 1) {
+				postStrings = toPostStrings(index, ids, from, to);
+				return;
+			}
+			int middle = (int) (from + (long) (to - from) * (shards / 2) / shards);
+			QueryShard left = new QueryShard(index, ids, from, middle, shards / 2);
+			QueryShard right = new QueryShard(index, ids, middle, to, shards - shards / 2);
+			invokeAll(left, right);
+			postStrings = mergeWithoutDuplicates(left.postStrings, right.postStrings);
+		}
+	}
+
+	/**
+	 * The ids of the posts in the dataset, sorted by their title - url strings,
+	 * which cursors over broad searches walk through to return results in order
+	 * without sorting them. Posts added since the order was last used are sorted
+	 * on their own and merged in, the next time a cursor needs them.
+	 */
+	private class PostOrder {
+		final SegmentedIndexBD.Snapshot index; // the snapshot whose posts the ids are, or null for the hashtable
+		int[] sorted = new int[0]; // the ids from 0 to sorted.length - 1, in order
+
+		PostOrder(SegmentedIndexBD.Snapshot index) {
+			this.index = index;
+		}
+
+		/**
+		 * @return the ids from 0 to at least postIds - 1, in the order of the
+		 *         strings of their posts
+		 */
+		synchronized int[] cover(int postIds) {
+			final int count = sorted.length;
+			if (postIds <= count)
+				return sorted;
+			String[] strings = new String[postIds - count]; // of the posts being added
+			Integer[] added = new Integer[strings.length];
+			for (int i = 0; i < strings.length; i++) {
+				strings[i] = orderString(count + i);
+				added[i] = count + i;
+			}
+			Arrays.sort(added, Comparator.comparing(id -> strings[id - count]));
+			int[] merged = new int[postIds];
+			int i = 0;
+			int j = 0;
+			String current = count > 0 ? orderString(sorted[0]) : null; // of sorted[i]
+			for (int k = 0; k < merged.length; k++) {
+				if (j == added.length || (i < count && current.compareTo(strings[added[j] - count]) <= 0)) {
+					merged[k] = sorted[i++];
+					current = i < count ? orderString(sorted[i]) : null;
+				} else {
+					merged[k] = added[j++];
+				}
+			}
+			sorted = merged;
+			return merged;
+		}
+
+		/**
+		 * @return the string that the post with the specified id is ordered by,
+		 *         where posts that have been removed from the hashtable come first
+		 */
+		String orderString(int id) {
+			String postString = postString(id, index);
+			return postString != null ? postString : "";
+		}
+	}
+
+	/**
+	 * A file being loaded on a thread of its own by loadDataInBackground, and how
+	 * far along it is. Every snapshotPosts posts, the positional index is
+	 * snapshotted, and the snapshot becomes what searches read, so they see the
+	 * posts loaded so far (and those that were already in the dataset), without
+	 * reading the hashtable while it is being changed.
+	 */
+	private class BackgroundLoad {
+		final String filename;
+		final int snapshotPosts;
+		final long startTime = System.nanoTime();
+		final Thread thread;
+		volatile int indexed; // the posts of the file indexed so far, only changed by the loading thread
+		volatile int published; // the posts of the file in the latest snapshot
+		volatile int snapshots; // the number of snapshots published
+		volatile long endTime; // when loading ended, or 0 while it goes on
+		volatile Exception failure; // what loading failed with, if it did
+
+		BackgroundLoad(String filename, int snapshotPosts) {
+			this.filename = filename;
+			this.snapshotPosts = snapshotPosts;
+			this.thread = new Thread(this::run, "background loader");
+			thread.setDaemon(true); // so that loading never keeps the program running
+		}
+
+		private void run() {
+			try {
+				load(filename, this);
+			} catch (FileNotFoundException | RuntimeException e) {
+				failure = e;
+			} finally {
+				restoreSearches(); // the hashtable (or index file) now holds every post
+				endTime = System.nanoTime();
+			}
+		}
+
+		/**
+		 * Counts posts that have been added to the dataset, and publishes a new
+		 * snapshot once snapshotPosts more have been added since the last one.
+		 */
+		void indexed(int count) {
+			indexed += count;
+			if (indexed - published >= snapshotPosts)
+				publish();
+		}
+
+		/**
+		 * Makes every post indexed so far searchable.
+		 */
+		void publish() {
+			snapshot = positions.snapshot();
+			published = indexed;
+			snapshots++;
+			cache.invalidate();
+		}
+
+		boolean isDone() {
+			return endTime != 0;
+		}
+	}
+
+	/**
+	 * A word of the dataset that is similar to a word of a fuzzy search, along
+	 * with the posts that contain it.
+	 */
+	private static class SimilarWord {
+		final String word;
+		final int distance; // the fewest edits from a word of the search to this word
+		final PostingBitmap ids; // the posts with this word in their title or body
+
+		// by distance, then by the number of posts with the word (most first), then alphabetically
+		static final Comparator<SimilarWord> ORDER = Comparator.comparingInt((SimilarWord similar) -> similar.distance)
+				.thenComparingInt(similar -> -similar.ids.getCardinality()).thenComparing(similar -> similar.word);
+
+		SimilarWord(String word, int distance, PostingBitmap ids) {
+			this.word = word;
+			this.distance = distance;
+			this.ids = ids;
+		}
+	}
 
 	/**
 	 * Initialize backend to make use of the provided HashtableWithDuplicateKeys and
@@ -26,21 +305,426 @@ public class CHSearchBackendBD implements CHSearchBackendInterface {
 	 */
 	public CHSearchBackendBD(HashtableWithDuplicateKeysInterface<String, PostInterface> hashtable,
 			PostReaderInterface postReader) {
+		this(hashtable, postReader, 1);
+	}
+
+	/**
+	 * Initialize backend to make use of the provided HashtableWithDuplicateKeys and
+	 * PostReader, and to split the work of loading data between several threads.
+	 * 
+	 * @param hashtable  stores the mapping from each word to the posts containing
+	 *                   it
+	 * @param postReader reads posts from files
+	 * @param threads    the number of threads to tokenize posts with while loading
+	 *                   data, where 1 loads every post on the calling thread
+	 */
+	public CHSearchBackendBD(HashtableWithDuplicateKeysInterface<String, PostInterface> hashtable,
+			PostReaderInterface postReader, int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException("threads must be at least 1");
 		this.hashtable = hashtable;
 		this.postReader = postReader;
+		this.terms = new TermDictionaryBD();
+		this.postTokenizer = new PostTokenizer(terms);
+		this.positions = new SegmentedIndexBD(terms);
+		this.cache = new QueryCacheBD(QueryCacheBD.CAPACITY);
 		this.postCount = 0;
+		this.threads = threads;
 	}
 
 	/**
 	 * Use DataWrangler's code to load posts from the specified file, and then add
-	 * those posts one a time into the hashtable/dataset.
+	 * those posts one a time into the hashtable/dataset. Each post is added as
+	 * soon as it is read, so readers that stream posts never hold the whole file.
+	 * 
+	 * The file can also be an index file saved by saveIndex. When nothing has
+	 * been loaded yet, the dataset is then searched straight from that file,
+	 * without adding its posts to the hashtable. Otherwise its posts are added
+	 * like those of any other file.
+	 * 
+	 * Cached search results are forgotten once the data is loaded, even when
+	 * loading fails part way through. A file that is being loaded in the
+	 * background is loaded first.
 	 * 
 	 * @param filename the path and name of the file to load post data from
+	 * @throws UncheckedIOException when the file is a damaged index file, or one
+	 *                              with a format version that cannot be read
 	 */
-	public void loadData(String filename) throws FileNotFoundException {
-		List<PostInterface> posts = postReader.readPostsFromFile(filename);
-		for (PostInterface post : posts)
-			addPostToHashtable(post);
+	public synchronized void loadData(String filename) throws FileNotFoundException {
+		awaitLoad();
+		divertSearches();
+		try {
+			load(filename, null);
+		} finally {
+			restoreSearches();
+		}
+	}
+
+	/**
+	 * Starts loading posts from the specified file on a thread of its own, like
+	 * loadData, and returns straight away, so that the dataset can be searched
+	 * while a large file loads. Searches see a snapshot of the dataset that is
+	 * replaced every SNAPSHOT_POSTS posts: every search sees all of the posts of
+	 * the file up to some point (along with the posts that were in the dataset
+	 * before), and never a post that is only partly indexed. The progress of
+	 * loading is shown by getStatisticsString.
+	 * 
+	 * @param filename the path and name of the file to load post data from
+	 * @throws FileNotFoundException when the file cannot be read
+	 */
+	public void loadDataInBackground(String filename) throws FileNotFoundException {
+		loadDataInBackground(filename, SNAPSHOT_POSTS);
+	}
+
+	/**
+	 * Starts loading posts from the specified file on a thread of its own, like
+	 * loadDataInBackground(filename), making the posts loaded so far searchable
+	 * every snapshotPosts posts. A smaller number makes posts searchable sooner,
+	 * but splits the positional index into more segments for its merges to
+	 * combine.
+	 * 
+	 * Adding, removing, saving and loading data (other than by searching) wait
+	 * until the file has been loaded.
+	 * 
+	 * @param filename      the path and name of the file to load post data from
+	 * @param snapshotPosts the number of posts loaded between snapshots
+	 * @throws FileNotFoundException    when the file cannot be read
+	 * @throws IllegalArgumentException when snapshotPosts is less than 1
+	 */
+	public synchronized void loadDataInBackground(String filename, int snapshotPosts) throws FileNotFoundException {
+		if (snapshotPosts < 1)
+			throw new IllegalArgumentException("snapshotPosts must be at least 1");
+		awaitLoad();
+		if (!new File(filename).canRead())
+			throw new FileNotFoundException(filename + " cannot be read");
+		BackgroundLoad load = new BackgroundLoad(filename, snapshotPosts);
+		hashtableLock.writeLock().lock(); // once the searches reading the hashtable are done
+		try {
+			load.publish(); // before anything changes, so searches stop reading the hashtable
+		} finally {
+			hashtableLock.writeLock().unlock();
+		}
+		backgroundLoad = load;
+		load.thread.start();
+	}
+
+	/**
+	 * Waits until the file being loaded in the background, if there is one, has
+	 * been loaded.
+	 * 
+	 * @return false if loading the file failed, or true if it succeeded or there
+	 *         was none
+	 */
+	public boolean awaitLoad() {
+		BackgroundLoad load = backgroundLoad;
+		if (load == null)
+			return true;
+		try {
+			load.thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return load.isDone() && load.failure == null;
+	}
+
+	/**
+	 * Follows a data file that posts keep being appended to: every post in the
+	 * file is added to the dataset, and from then on, whenever the file grows,
+	 * the posts on the lines added to it are added too, as soon as the change is
+	 * noticed (at most PostFileFollowerDW.POLL_MILLIS milliseconds later). Only
+	 * the bytes added since the file was last read are read, and a line that is
+	 * still being written is added once it is finished. A file that was being
+	 * followed before is no longer followed. How far behind the file the
+	 * dataset is (the ingest lag) is shown by getStatisticsString. The file is
+	 * read by this backend's post reader when that is a MappedPostReaderDW (or
+	 * a PostStoreDW), and by a MappedPostReaderDW of its own otherwise.
+	 * 
+	 * @param filename the path and name of the file to follow
+	 * @throws FileNotFoundException when the file cannot be read
+	 */
+	public void followData(String filename) throws FileNotFoundException {
+		followData(filename, 0);
+	}
+
+	/**
+	 * Follows a data file that posts keep being appended to, like
+	 * followData(filename), but only adds the posts from the specified offset
+	 * of the file on, such as the offset that getFollowedOffset returned when
+	 * the file was last followed. The posts already in the file from that offset
+	 * on are added before this method returns.
+	 * 
+	 * @param filename the path and name of the file to follow
+	 * @param start    the offset of the first line to add
+	 * @throws FileNotFoundException    when the file cannot be read
+	 * @throws IllegalArgumentException when start is negative
+	 */
+	public void followData(String filename, long start) throws FileNotFoundException {
+		// not synchronized on this backend, since the old follower may be waiting
+		// to add posts, and the first poll adds posts too
+		synchronized (followLock) {
+			stopFollowing();
+			MappedPostReaderDW reader = postReader instanceof MappedPostReaderDW ? (MappedPostReaderDW) postReader
+					: new MappedPostReaderDW();
+			PostFileFollowerDW followed = new PostFileFollowerDW(filename, start, reader, this::addFollowedPosts);
+			followed.poll();
+			follower = followed;
+			followed.start();
+		}
+	}
+
+	/**
+	 * Stops following the file that followData was last called for, if any,
+	 * once the posts being added from it (if any) have been added.
+	 */
+	public void stopFollowing() {
+		synchronized (followLock) {
+			PostFileFollowerDW followed = follower;
+			if (followed != null)
+				followed.close();
+		}
+	}
+
+	/**
+	 * @return the offset just past the last line added from the file being
+	 *         followed (or last followed), which following it again can start
+	 *         from, or 0 if no file has been followed
+	 */
+	public long getFollowedOffset() {
+		PostFileFollowerDW followed = follower;
+		return followed != null ? followed.getOffset() : 0;
+	}
+
+	/**
+	 * Helper method that adds the posts read from the file being followed.
+	 * Once the searches that are reading the hashtable are done, searches read
+	 * a snapshot of the positional index instead while the posts are added, as
+	 * they do while a file loads, and then they see all of the new posts at
+	 * once.
+	 * 
+	 * @param posts the posts on the lines added to the file since it was last
+	 *              read
+	 */
+	private synchronized void addFollowedPosts(List<PostInterface> posts) {
+		awaitLoad();
+		divertSearches();
+		try {
+			if (indexFile != null)
+				leaveIndexFile();
+			for (PostInterface post : posts)
+				addPostToHashtable(post);
+		} finally {
+			restoreSearches();
+		}
+	}
+
+	/**
+	 * Helper method that loads posts from the specified file into the dataset,
+	 * as for loadData. Searches must be reading a snapshot while it does.
+	 * 
+	 * @param filename the path and name of the file to load post data from
+	 * @param progress counts the posts loaded and publishes snapshots of them,
+	 *                 when loading in the background, or else null
+	 */
+	private void load(String filename, BackgroundLoad progress) throws FileNotFoundException {
+		if (IndexFileBD.isIndexFile(filename)) {
+			loadIndex(filename, progress);
+			return;
+		}
+		if (indexFile != null)
+			leaveIndexFile();
+		if (threads == 1) {
+			postReader.readPostsFromFile(filename, progress == null ? this::addPostToHashtable : post -> {
+				addPostToHashtable(post);
+				progress.indexed(1);
+			});
+			return;
+		}
+		ParallelLoader loader = new ParallelLoader(progress);
+		try {
+			postReader.readPostsFromFile(filename, loader);
+			loader.finish();
+		} finally {
+			loader.pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Opens an index file, and either searches it directly (when the dataset is
+	 * empty) or adds its posts to the dataset, counting them in progress if it is
+	 * not null.
+	 */
+	private void loadIndex(String filename, BackgroundLoad progress) throws FileNotFoundException {
+		IndexFileBD file;
+		try {
+			file = IndexFileBD.open(filename);
+		} catch (FileNotFoundException e) {
+			throw e;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		if (postCount == 0) {
+			positions.addSegment(new PositionalIndexBD(file));
+			indexFile = file;
+			postCount = file.getPostCount();
+			if (progress != null)
+				progress.indexed(postCount);
+			return;
+		}
+		if (indexFile != null)
+			leaveIndexFile();
+		for (int id = 0; id < file.getPostCount(); id++) {
+			addPostToHashtable(file.readPost(id));
+			if (progress != null)
+				progress.indexed(1);
+		}
+	}
+
+	/**
+	 * Adds the posts of the index file that this dataset was opened from to the
+	 * hashtable, so that posts can be added and removed like those of any other
+	 * file. Their word positions stay in the segment read from the file.
+	 * Searches keep reading the snapshot that holds the file until the caller
+	 * is done changing the hashtable and restores them.
+	 */
+	private void leaveIndexFile() {
+		IndexFileBD file = indexFile;
+		for (int id = 0; id < file.getPostCount(); id++) {
+			PostInterface post = file.readPost(id);
+			postTokenizer.tokenize(post);
+			putKeys(postTokenizer, post);
+		}
+		indexFile = null;
+	}
+
+	/**
+	 * Helper method that makes searches read a snapshot of the positional index
+	 * rather than the hashtable, once the searches that are reading the
+	 * hashtable are done, so that the hashtable can then be changed while
+	 * searches carry on. restoreSearches undoes this.
+	 */
+	private void divertSearches() {
+		hashtableLock.writeLock().lock();
+		try {
+			snapshot = positions.snapshot();
+		} finally {
+			hashtableLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Helper method that makes searches read the hashtable again (or the index
+	 * file that the dataset is searched from), once it holds every change, and
+	 * forgets cached results, which might be out of date.
+	 */
+	private void restoreSearches() {
+		snapshot = indexFile != null ? positions.snapshot() : null;
+		cache.invalidate();
+	}
+
+	/**
+	 * Helper method that runs a search while holding the read lock of the
+	 * hashtable, so that the hashtable does not change while the search reads
+	 * it. The search must read which snapshot to use (if any) once it holds the
+	 * lock.
+	 * 
+	 * @param search the search to run
+	 * @return the results of the search
+	 */
+	private <T> T reading(Supplier<T> search) {
+		hashtableLock.readLock().lock();
+		try {
+			return search.get();
+		} finally {
+			hashtableLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Saves the current dataset to an index file, which loadData can later open
+	 * in a fraction of the time that it takes to load the posts themselves.
+	 * 
+	 * @param filename the path and name of the file to save to, which is replaced
+	 *                 if it exists
+	 * @throws IOException when the file cannot be written, or is the index file
+	 *                     that this dataset is being searched from
+	 */
+	public synchronized void saveIndex(String filename) throws IOException {
+		awaitLoad();
+		IndexFileBD file = indexFile;
+		if (file != null && Files.exists(Paths.get(filename))
+				&& Files.isSameFile(Paths.get(filename), Paths.get(file.getFilename())))
+			throw new IOException("Cannot replace " + filename + " while searching it");
+		long uniqueWords = file != null ? file.getUniqueWords() : hashtable.getSize();
+		long wordPostPairs = file != null ? file.getWordPostPairs() : hashtable.getNumberOfValues();
+		IndexFileBD.write(filename, positions.compact(), uniqueWords, wordPostPairs);
+	}
+
+	/**
+	 * Collects posts into chunks as they are read, and tokenizes these chunks and
+	 * indexes their word positions on a pool of threads. Each chunk is merged into
+	 * the dataset once it and the chunks before it are done, so reading, indexing
+	 * and merging all overlap.
+	 * 
+	 * Chunks are merged in order, and each chunk adds its posts to the hashtable
+	 * in order, so the resulting dataset is exactly the one that adding these
+	 * posts one at a time would give.
+	 */
+	private class ParallelLoader implements Consumer<PostInterface> {
+		final ForkJoinPool pool = new ForkJoinPool(threads);
+		final ArrayDeque<IndexChunk> pending = new ArrayDeque<>(); // submitted, in file order
+		final BackgroundLoad progress; // counts the posts merged, when loading in the background
+		List<PostInterface> batch = new ArrayList<>(CHUNK_SIZE);
+
+		ParallelLoader(BackgroundLoad progress) {
+			this.progress = progress;
+		}
+
+		@Override
+		public void accept(PostInterface post) {
+			batch.add(post);
+			if (batch.size() == CHUNK_SIZE) {
+				submitBatch();
+				// merge what is already done, and wait rather than read far ahead
+				while (!pending.isEmpty() && (pending.peek().isDone() || pending.size() > 4 * threads))
+					merge(pending.poll());
+			}
+		}
+
+		/**
+		 * Merges every chunk that is still pending, including the partial last one.
+		 */
+		void finish() {
+			if (!batch.isEmpty())
+				submitBatch();
+			while (!pending.isEmpty())
+				merge(pending.poll());
+		}
+
+		private void submitBatch() {
+			IndexChunk chunk = new IndexChunk(batch);
+			pending.add(chunk);
+			pool.execute(chunk);
+			batch = new ArrayList<>(CHUNK_SIZE);
+		}
+
+		private void merge(IndexChunk chunk) {
+			chunk.join();
+			int[] map = positions.addAll(chunk.positions); // from the chunk's term ids to ours
+			for (int i = 0; i < chunk.termIds.length; i++) {
+				int[] ids = chunk.termIds[i];
+				for (int j = 0; j < ids.length; j++)
+					hashtable.putOne(terms.getKey(map[ids[j]], j < chunk.titleLengths[i] ? TermDictionaryBD.TITLE
+							: TermDictionaryBD.BODY), chunk.posts.get(i));
+			}
+			TermFilterBD filter = termFilter;
+			if (filter != null)
+				for (int[] ids : chunk.termIds)
+					for (int id : ids)
+						filter.add(map[id]);
+			postCount += chunk.termIds.length;
+			if (progress != null)
+				progress.indexed(chunk.termIds.length);
+		}
 	}
 
 	/**
@@ -50,31 +734,238 @@ public class CHSearchBackendBD implements CHSearchBackendInterface {
 	 * @param post contains the data to add to the searchable dataset
 	 */
 	private void addPostToHashtable(PostInterface post) {
-		List<String> titleWords = getWords(post.getTitle());
-		List<String> bodyWords = getWords(post.getBody());
-		for (String word : titleWords)
-			hashtable.putOne("T:" + word, post);
-		for (String word : bodyWords)
-			hashtable.putOne("B:" + word, post);
+		PostTokenizer tokenizer = postTokenizer;
+		tokenizer.tokenize(post);
+		putKeys(tokenizer, post);
+		positions.addPost(post, tokenizer.termIds, tokenizer.titleLength, tokenizer.length);
 		postCount++;
 	}
 
 	/**
-	 * Helper method to extract words from a string of text, and return a single
-	 * list. This method also strips out punctuation and converts any upper case
-	 * letter to lowercase to help find variations in punctuation and casing later.
-	 * This is used for both storing and later searching for all words.
+	 * Helper method that maps the key of each word of a tokenized post to that
+	 * post in the hashtable, and adds each word to the term filter if there is
+	 * one.
+	 */
+	private void putKeys(PostTokenizer tokenizer, PostInterface post) {
+		for (int i = 0; i < tokenizer.length; i++)
+			hashtable.putOne(terms.getKey(tokenizer.termIds[i],
+					i < tokenizer.titleLength ? TermDictionaryBD.TITLE : TermDictionaryBD.BODY), post);
+		TermFilterBD filter = termFilter;
+		if (filter != null)
+			for (int i = 0; i < tokenizer.length; i++)
+				filter.add(tokenizer.termIds[i]);
+	}
+
+	/**
+	 * Splits the posts that each search finds into the specified number of
+	 * ranges of post ids (shards), whose title - url strings are built and
+	 * sorted in parallel, one thread per shard, and then merged. Results with
+	 * fewer than MIN_SHARD_POSTS posts per shard are split into fewer shards,
+	 * since a thread costs more than it saves on those.
+	 * 
+	 * @param shards the number of shards, where 1 builds every result on the
+	 *               thread that searches
+	 * @throws IllegalArgumentException when shards is less than 1
+	 */
+	public void setQueryShards(int shards) {
+		if (shards < 1)
+			throw new IllegalArgumentException("shards must be at least 1");
+		// a pool that is replaced is not shut down, since a search might still be
+		// using it, and its threads end on their own once they are idle
+		queryPool = shards > 1 ? new ForkJoinPool(shards) : null;
+	}
+
+	/**
+	 * Puts a Bloom filter in front of the term dictionary, so that searches for
+	 * words that are in no post skip looking them up. The filter is built from
+	 * the words of the current dataset, and kept up to date as posts are loaded,
+	 * added and removed. Searches of a dataset that is opened from an index file
+	 * do not use the filter, until posts are added to or removed from it.
+	 * 
+	 * @param falsePositiveRate the fraction of words that are in no post but
+	 *                          are still looked up, between 0 and 1
+	 * @throws IllegalArgumentException when falsePositiveRate is not between 0
+	 *                                  and 1
+	 */
+	public synchronized void enableTermFilter(double falsePositiveRate) {
+		awaitLoad();
+		TermFilterBD filter = new TermFilterBD(terms, falsePositiveRate);
+		for (int id = 0; id < terms.getSize(); id++)
+			if (hashtable.containsKey(terms.getKey(id, TermDictionaryBD.TITLE))
+					|| hashtable.containsKey(terms.getKey(id, TermDictionaryBD.BODY)))
+				filter.add(id);
+		termFilter = filter;
+	}
+
+	/**
+	 * Adds one post to the dataset, where searches find it straight away. Only
+	 * the newest segment of the positional index changes, so this costs the same
+	 * however many posts are already in the dataset.
+	 * 
+	 * @param post the post to add
+	 */
+	public synchronized void addPost(PostInterface post) {
+		awaitLoad();
+		if (indexFile != null)
+			leaveIndexFile(); // while searches still read the index file's snapshot
+		hashtableLock.writeLock().lock(); // once the searches reading the hashtable are done
+		try {
+			addPostToHashtable(post);
+			restoreSearches();
+		} finally {
+			hashtableLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Removes one post with the same title, url and body as the specified post
+	 * from the dataset. Its words are removed from the hashtable, and it is
+	 * marked as removed in the segment of the positional index that holds it,
+	 * until that segment is merged.
+	 * 
+	 * @param post has the title, url and body of the post to remove
+	 * @return true if a post was removed, false if the dataset has no such post
+	 */
+	public synchronized boolean removePost(PostInterface post) {
+		awaitLoad();
+		boolean left = indexFile != null;
+		if (left)
+			leaveIndexFile(); // while searches still read the index file's snapshot
+		hashtableLock.writeLock().lock(); // once the searches reading the hashtable are done
+		try {
+			boolean removed = removePostFromHashtable(post);
+			if (removed || left)
+				restoreSearches();
+			return removed;
+		} finally {
+			hashtableLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Helper method that removes one post with the same contents as the
+	 * specified post from the hashtable, along with its words, and marks it as
+	 * removed in the positional index.
+	 * 
+	 * @param post has the title, url and body of the post to remove
+	 * @return true if a post was removed, false if the dataset has no such post
+	 */
+	private boolean removePostFromHashtable(PostInterface post) {
+		PostTokenizer tokenizer = postTokenizer;
+		tokenizer.tokenize(post);
+		if (tokenizer.length == 0) {
+			// a post without words is not in the hashtable at all
+			if (!positions.removePost(post, null, TermDictionaryBD.TITLE))
+				return false;
+			postCount--;
+			return true;
+		}
+		// each distinct key of the post, as term id * 2 + field
+		int[] keys = new int[tokenizer.length];
+		for (int i = 0; i < keys.length; i++)
+			keys[i] = tokenizer.termIds[i] * 2 + (i < tokenizer.titleLength ? TermDictionaryBD.TITLE
+					: TermDictionaryBD.BODY);
+		// look for the post among those with its rarest key, which are the fewest
+		int rarest = keys[0];
+		int fewest = Integer.MAX_VALUE;
+		for (int key : keys) {
+			int count = hashtable.getValueIds(terms.getKey(key / 2, key % 2)).getCardinality();
+			if (count < fewest) {
+				rarest = key;
+				fewest = count;
+			}
+		}
+		List<PostInterface> candidates = hashtable.getOrDefault(terms.getKey(rarest / 2, rarest % 2), null);
+		if (candidates == null)
+			return false;
+		PostInterface stored = null; // the post that the hashtable holds
+		for (PostInterface candidate : candidates)
+			if (SegmentedIndexBD.sameContents(candidate, post))
+				stored = candidate;
+		if (stored == null)
+			return false;
+		Arrays.sort(keys);
+		for (int i = 0; i < keys.length; i++)
+			if (i == 0 || keys[i] != keys[i - 1])
+				hashtable.removeOne(terms.getKey(keys[i] / 2, keys[i] % 2), stored);
+		TermFilterBD filter = termFilter;
+		if (filter != null) // words that are now in no post leave the filter
+			for (int key : keys)
+				if (!hashtable.containsKey(terms.getKey(key / 2, TermDictionaryBD.TITLE))
+						&& !hashtable.containsKey(terms.getKey(key / 2, TermDictionaryBD.BODY)))
+					filter.remove(key / 2);
+		positions.removePost(post, terms.getTerm(rarest / 2), rarest % 2);
+		postCount--;
+		return true;
+	}
+
+	/**
+	 * Helper method to extract words from a search query, using the same
+	 * TokenizerBD rules that posts are stored with: punctuation is stripped out
+	 * and upper case letters are converted to lowercase, to help find variations
+	 * in punctuation and casing.
 	 * 
 	 * @param text contains words separated by spaces
 	 * @return list of lowercase words without punctuation
 	 */
-	private List<String> getWords(String text) {
-		// strip out all punctuation and make all letters to lower case
-		text = text.replaceAll("[^a-zA-Z ]", "").toLowerCase();
+	private static List<String> getWords(String text) {
+		// each query gets its own tokenizer, since queries can run while data loads
+		return new TokenizerBD().words(text);
+	}
+
+	/**
+	 * Helper method to extract wildcard patterns from a search query, with the
+	 * same rules as getWords, except that * and ? are kept.
+	 * 
+	 * @param text contains patterns separated by spaces
+	 * @return list of lowercase patterns without punctuation
+	 */
+	private static List<String> getPatterns(String text) {
+		List<String> patterns = new ArrayList<>();
+		StringBuilder pattern = new StringBuilder();
+		for (int i = 0; i <= text.length(); i++) {
+			char c = i < text.length() ? text.charAt(i) : ' ';
+			if (c >= 'A' && c <= 'Z') {
+				pattern.append((char) (c + 'a' - 'A'));
+			} else if ((c >= 'a' && c <= 'z') || c == '*' || c == '?') {
+				pattern.append(c);
+			} else if (c == ' ' && pattern.length() > 0) {
+				patterns.add(pattern.toString());
+				pattern.setLength(0);
+			}
+		}
+		return patterns;
+	}
 
-		// break remaining letters into words around spaces
-		String[] words = text.split(" ");
-		return Arrays.asList(words);
+	/**
+	 * Helper method that normalizes the words of a query whose results do not
+	 * depend on their order, or on how often each is repeated.
+	 * 
+	 * @param words the words of the query
+	 * @return the distinct words, sorted and separated by spaces
+	 */
+	private static String wordSet(List<String> words) {
+		String[] sorted = words.toArray(new String[0]);
+		return String.join(" ", sortedWithoutDuplicates(sorted, sorted.length));
+	}
+
+	/**
+	 * Helper method that returns the cached results of a query when there are
+	 * any, and otherwise runs the search and caches its results.
+	 * 
+	 * @param key    the kind of search, followed by the normalized words of the
+	 *               query
+	 * @param search finds the results of the query
+	 * @return a new list of the query's results, which the caller may change
+	 */
+	private List<String> cached(String key, Supplier<List<String>> search) {
+		long version = cache.getVersion(); // before searching, so results found while data changes are not kept
+		List<String> results = cache.get(key);
+		if (results == null) {
+			results = reading(search);
+			cache.put(key, version, results);
+		}
+		return new ArrayList<>(results);
 	}
 
 	/**
@@ -85,10 +976,8 @@ public class CHSearchBackendBD implements CHSearchBackendInterface {
 	 *         string contains the title followed by the url for that post
 	 */
 	public List<String> findPostsByTitleWords(String words) {
-		List<String> wordList = getWords(words);
-		List<String> postStrings = new ArrayList<>();
-		findPostsHelper(wordList, postStrings, "T:");
-		return postStrings;
+		List<String> query = getWords(words);
+		return cached("title:" + wordSet(query), () -> findPostStrings(query, TermDictionaryBD.TITLE));
 	}
 
 	/**
@@ -99,10 +988,8 @@ public class CHSearchBackendBD implements CHSearchBackendInterface {
 	 *         string contains the title followed by the url for that post
 	 */
 	public List<String> findPostsByBodyWords(String words) {
-		List<String> wordList = getWords(words);
-		List<String> postStrings = new ArrayList<>();
-		findPostsHelper(wordList, postStrings, "B:");
-		return postStrings;
+		List<String> query = getWords(words);
+		return cached("body:" + wordSet(query), () -> findPostStrings(query, TermDictionaryBD.BODY));
 	}
 
 	/**
@@ -115,57 +1002,569 @@ public class CHSearchBackendBD implements CHSearchBackendInterface {
 	 */
 
 	public List<String> findPostsByTitleOrBodyWords(String words) {
-		List<String> wordList = getWords(words);
-		List<String> postStrings = new ArrayList<>();
-		findPostsHelper(wordList, postStrings, "T:");
-		findPostsHelper(wordList, postStrings, "B:");
-		return postStrings;
+		List<String> query = getWords(words);
+		return cached("any:" + wordSet(query),
+				() -> findPostStrings(query, TermDictionaryBD.TITLE, TermDictionaryBD.BODY));
+	}
+
+	/**
+	 * Returns one page of the posts that contain any of the specified words in
+	 * either their title or their body, in the same order as
+	 * findPostsByTitleOrBodyWords. Only the strings of the posts up to the end of
+	 * the page are built.
+	 * 
+	 * @param words  contains space separated words
+	 * @param offset the number of results before the page
+	 * @param limit  the most results on the page
+	 * @return the strings of the posts on the page, each string contains the
+	 *         title followed by the url for that post
+	 * @throws IllegalArgumentException when offset or limit is negative
+	 */
+	public List<String> findPostsByTitleOrBodyWords(String words, int offset, int limit) {
+		if (offset < 0 || limit < 0)
+			throw new IllegalArgumentException("offset and limit must not be negative");
+		ResultCursorBD cursor = openPostsByTitleOrBodyWords(words);
+		cursor.skip(offset);
+		return cursor.nextPage(limit);
+	}
+
+	/**
+	 * Opens a cursor over the posts that contain any of the specified words in
+	 * their title, which returns the same results as findPostsByTitleWords a page
+	 * at a time. Cursors do not use the query cache.
+	 * 
+	 * @param words contains space separated words
+	 * @return a cursor over the strings for these posts
+	 */
+	public ResultCursorBD openPostsByTitleWords(String words) {
+		return openCursor(getWords(words), TermDictionaryBD.TITLE);
+	}
+
+	/**
+	 * Opens a cursor over the posts that contain any of the specified words in
+	 * their body, which returns the same results as findPostsByBodyWords a page
+	 * at a time. Cursors do not use the query cache.
+	 * 
+	 * @param words contains space separated words
+	 * @return a cursor over the strings for these posts
+	 */
+	public ResultCursorBD openPostsByBodyWords(String words) {
+		return openCursor(getWords(words), TermDictionaryBD.BODY);
+	}
+
+	/**
+	 * Opens a cursor over the posts that contain any of the specified words in
+	 * either their title or their body, which returns the same results as
+	 * findPostsByTitleOrBodyWords a page at a time. Cursors do not use the query
+	 * cache.
+	 * 
+	 * @param words contains space separated words
+	 * @return a cursor over the strings for these posts
+	 */
+	public ResultCursorBD openPostsByTitleOrBodyWords(String words) {
+		return openCursor(getWords(words), TermDictionaryBD.TITLE, TermDictionaryBD.BODY);
+	}
+
+	/**
+	 * Helper method that opens a cursor over the posts containing any of the
+	 * specified words, in any of the specified fields.
+	 * 
+	 * @param words  the words to search for
+	 * @param fields TermDictionaryBD.TITLE and/or TermDictionaryBD.BODY, the
+	 *               fields to search in
+	 * @return a cursor over the strings of these posts
+	 */
+	private ResultCursorBD openCursor(List<String> words, int... fields) {
+		return reading(() -> {
+			SegmentedIndexBD.Snapshot index = snapshot;
+			return cursor(index, findPostIds(index, words, fields));
+		});
+	}
+
+	/**
+	 * Helper method that opens a cursor over the specified posts. When they are
+	 * at least one in CURSOR_WALK_RATIO of the dataset, the cursor walks through
+	 * every post in order, and otherwise their strings are built and sorted
+	 * straight away, since there are few of them (or since a file is being
+	 * loaded in the background, which would replace the order with each
+	 * snapshot). A cursor over posts in the hashtable builds each string under
+	 * the read lock of the hashtable.
+	 * 
+	 * @param index the snapshot that the posts were found in, or null for the
+	 *              hashtable
+	 * @param ids   the ids of the posts that were found
+	 * @return a cursor over the strings of these posts
+	 */
+	private ResultCursorBD cursor(SegmentedIndexBD.Snapshot index, PostingBitmap ids) {
+		BackgroundLoad load = backgroundLoad;
+		if (ids.isEmpty() || (long) ids.getCardinality() * CURSOR_WALK_RATIO < postCount
+				|| (load != null && !load.isDone()))
+			return new ResultCursorBD(toPostStrings(index, ids));
+		PostOrder order = postOrder;
+		if (order == null || order.index != index) {
+			order = new PostOrder(index);
+			postOrder = order;
+		}
+		return new ResultCursorBD(ids, order.cover(ids.last() + 1),
+				index != null ? id -> postString(id, index) : id -> reading(() -> postString(id, null)));
+	}
+
+	/**
+	 * Finds all posts that contain every one of the specified words, each in
+	 * either their title or their body.
+	 * 
+	 * @param words contains space separated words
+	 * @return list of the strings for posts that contain all of these words, each
+	 *         string contains the title followed by the url for that post
+	 */
+	public List<String> findPostsByAllTitleOrBodyWords(String words) {
+		List<String> query = getWords(words);
+		return cached("all:" + wordSet(query), () -> findPostsByAllWords(query));
+	}
+
+	/**
+	 * Helper method that finds all posts that contain every one of the specified
+	 * words, each in either their title or their body.
+	 * 
+	 * @param words the words to search for
+	 * @return the sorted list of title - url strings for these posts
+	 */
+	private List<String> findPostsByAllWords(List<String> words) {
+		SegmentedIndexBD.Snapshot index = snapshot;
+		List<PostingBitmap> lists = new ArrayList<>();
+		for (String word : words)
+			lists.add(findPostIds(index, Arrays.asList(word), TermDictionaryBD.TITLE, TermDictionaryBD.BODY));
+		if (lists.isEmpty())
+			return new ArrayList<>();
+		// intersect from the rarest word up, so the work is bounded by its list
+		lists.sort((a, b) -> Integer.compare(a.getCardinality(), b.getCardinality()));
+		PostingBitmap ids = lists.get(0);
+		for (int i = 1; i < lists.size() && !ids.isEmpty(); i++)
+			ids = PostingBitmap.and(ids, lists.get(i));
+		return toPostStrings(index, ids);
+	}
+
+	/**
+	 * Finds all posts that contain any of the specified words in either their title
+	 * or their body, but none of the excluded words in either.
+	 * 
+	 * @param words         contains space separated words
+	 * @param excludedWords contains space separated words that matching posts
+	 *                      must not contain
+	 * @return list of the strings for posts that contain any of words and none of
+	 *         excludedWords, each string contains the title followed by the url
+	 *         for that post
+	 */
+	public List<String> findPostsByTitleOrBodyWordsExcluding(String words, String excludedWords) {
+		List<String> query = getWords(words);
+		List<String> excluded = getWords(excludedWords);
+		return cached("excluding:" + wordSet(query) + " -" + wordSet(excluded), () -> {
+			SegmentedIndexBD.Snapshot index = snapshot;
+			PostingBitmap ids = findPostIds(index, query, TermDictionaryBD.TITLE, TermDictionaryBD.BODY);
+			return toPostStrings(index, PostingBitmap.andNot(ids,
+					findPostIds(index, excluded, TermDictionaryBD.TITLE, TermDictionaryBD.BODY)));
+		});
 	}
 
 	/**
-	 * Helper method that searches for posts according to a specific title or body
-	 * word, adds all such posts to a list, and then removes any duplicates from
-	 * that list.
+	 * Finds all posts whose title or body contains the specified words next to
+	 * each other, in the same order. Punctuation and casing are ignored, as they
+	 * are for all searches.
 	 * 
-	 * @param words       is the colliection of words to search for in post dataset
-	 * @param postStrings is the collection (eventually without duplicates) of
-	 *                    matches that have been found (used as both input and
-	 *                    output)
-	 * @param typeString  is prepended to words to indicate searching in either
-	 *                    title "T:" or body "B:"
+	 * @param phrase contains space separated words
+	 * @return list of the strings for posts that contain this phrase, each string
+	 *         contains the title followed by the url for that post
 	 */
-	private void findPostsHelper(List<String> words, List<String> postStrings, String typeString) {
+	public List<String> findPostsByTitleOrBodyPhrase(String phrase) {
+		List<String> words = getWords(phrase);
+		return cached("phrase:" + String.join(" ", words), () -> findPostsByPhrase(words));
+	}
+
+	/**
+	 * Helper method that finds all posts whose title or body contains the
+	 * specified words next to each other, in the same order.
+	 * 
+	 * @param words the words of the phrase
+	 * @return the sorted list of title - url strings for these posts
+	 */
+	private List<String> findPostsByPhrase(List<String> words) {
+		SegmentedIndexBD.Snapshot index = snapshot;
+		List<PostInterface> posts = index != null ? index.findPhrase(TermDictionaryBD.TITLE, words)
+				: positions.findPhrase(TermDictionaryBD.TITLE, words);
+		posts.addAll(index != null ? index.findPhrase(TermDictionaryBD.BODY, words)
+				: positions.findPhrase(TermDictionaryBD.BODY, words));
+		String[] postStrings = new String[posts.size()];
+		int count = 0;
+		for (PostInterface post : posts)
+			postStrings[count++] = post.getTitle() + " - " + post.getUrl();
+		// a post with the phrase in both its title and body is only listed once
+		return sortedWithoutDuplicates(postStrings, count);
+	}
+
+	/**
+	 * Finds all posts that contain a word matching any of the specified patterns
+	 * in either their title or their body. In a pattern, * stands for any number
+	 * of letters and ? for exactly one, so "recip*" finds posts with recipe or
+	 * recipes in them. The words that a pattern matches are found in the sorted
+	 * terms of the term dictionary (or index file), and the posting lists of all
+	 * of them are then unioned at once.
+	 * 
+	 * @param patterns contains space separated patterns
+	 * @return list of the strings for posts that contain any matching word, each
+	 *         string contains the title followed by the url for that post
+	 * @throws IllegalArgumentException when a pattern matches more than
+	 *                                  MAX_WILDCARD_TERMS words
+	 */
+	public List<String> findPostsByTitleOrBodyWildcard(String patterns) {
+		List<String> query = getPatterns(patterns);
+		return cached("wildcard:" + wordSet(query), () -> {
+			IndexFileBD file = indexFile;
+			List<String> words = new ArrayList<>();
+			for (String pattern : query) {
+				List<String> matching = file != null ? file.findMatching(pattern, MAX_WILDCARD_TERMS + 1)
+						: terms.findMatching(pattern, MAX_WILDCARD_TERMS + 1);
+				if (matching.size() > MAX_WILDCARD_TERMS)
+					throw new IllegalArgumentException(
+							"\"" + pattern + "\" matches more than " + MAX_WILDCARD_TERMS + " words");
+				words.addAll(matching);
+			}
+			return findPostStrings(words, TermDictionaryBD.TITLE, TermDictionaryBD.BODY);
+		});
+	}
+
+	/**
+	 * Finds the words in the dataset that are within a few edits (insertions,
+	 * deletions, or substitutions of one letter) of any of the specified words,
+	 * such as the words that a misspelled search was meant to have. The closest
+	 * words come first, and among words that are equally close, the ones that
+	 * the most posts contain. At most MAX_FUZZY_TERMS words are found for each
+	 * of the specified words.
+	 * 
+	 * @param words       contains space separated words
+	 * @param maxDistance the most edits that a word found can be from one of
+	 *                    words, from 0 to 2
+	 * @return the similar words, best first
+	 * @throws IllegalArgumentException when maxDistance is not from 0 to 2
+	 */
+	public List<String> findSimilarWords(String words, int maxDistance) {
+		List<String> similarWords = new ArrayList<>();
+		List<String> query = getWords(words);
+		for (SimilarWord similar : reading(() -> findSimilarWords(snapshot, query, maxDistance)))
+			similarWords.add(similar.word);
+		return similarWords;
+	}
+
+	/**
+	 * Finds all posts that contain a word within a few edits of any of the
+	 * specified words, in either their title or their body, so that misspelled
+	 * words still find posts. Posts with the best of the words that
+	 * findSimilarWords finds are listed first, followed by those with the next
+	 * best word, and so on.
+	 * 
+	 * @param words       contains space separated words
+	 * @param maxDistance the most edits that a matching word can be from one of
+	 *                    words, from 0 to 2
+	 * @return list of the strings for posts that contain a similar word, each
+	 *         string contains the title followed by the url for that post
+	 * @throws IllegalArgumentException when maxDistance is not from 0 to 2
+	 */
+	public List<String> findPostsByTitleOrBodyFuzzy(String words, int maxDistance) {
+		List<String> query = getWords(words);
+		return cached("fuzzy " + maxDistance + ":" + wordSet(query), () -> {
+			SegmentedIndexBD.Snapshot index = snapshot;
+			LinkedHashSet<String> postStrings = new LinkedHashSet<>();
+			PostingBitmap listed = new PostingBitmap();
+			for (SimilarWord similar : findSimilarWords(index, query, maxDistance)) {
+				postStrings.addAll(toPostStrings(index, PostingBitmap.andNot(similar.ids, listed)));
+				listed = PostingBitmap.or(listed, similar.ids);
+			}
+			return new ArrayList<>(postStrings);
+		});
+	}
+
+	/**
+	 * Helper method that finds the words of the dataset that are similar to the
+	 * specified words, by running a Levenshtein automaton for each of them over
+	 * the sorted terms of the term dictionary (or index file).
+	 * 
+	 * @param index       the snapshot to find posts in, or null for the hashtable
+	 * @param words       the words to find similar words for
+	 * @param maxDistance the most edits a similar word can be from one of words
+	 * @return the similar words that posts still contain, best first
+	 */
+	private List<SimilarWord> findSimilarWords(SegmentedIndexBD.Snapshot index, List<String> words,
+			int maxDistance) {
+		if (maxDistance < 0 || maxDistance > 2)
+			throw new IllegalArgumentException("maxDistance must be from 0 to 2");
+		IndexFileBD file = indexFile;
+		List<SimilarWord> similarWords = new ArrayList<>();
 		for (String word : words) {
-			try {
-				// search for each word in the list, using the specified type: title/body
-				List<PostInterface> posts = hashtable.get(typeString + word);
-				// then add each of those posts as title - url strings into list
-				for (PostInterface post : posts) {
-					String postString = post.getTitle() + " - " + post.getUrl();
-					postStrings.add(postString);
-				}
-			} catch (NoSuchElementException e) {
-			} // when one key is not found, try the next.
+			LevenshteinAutomatonBD automaton = new LevenshteinAutomatonBD(word, maxDistance);
+			List<SimilarWord> found = new ArrayList<>();
+			for (LevenshteinAutomatonBD.Match match : file != null ? file.findSimilar(automaton)
+					: terms.findSimilar(automaton)) {
+				PostingBitmap ids = findPostIds(index, List.of(match.term), TermDictionaryBD.TITLE,
+						TermDictionaryBD.BODY);
+				if (!ids.isEmpty()) // words of removed posts stay in the term dictionary
+					found.add(new SimilarWord(match.term, match.distance, ids));
+			}
+			found.sort(SimilarWord.ORDER);
+			similarWords.addAll(found.subList(0, Math.min(found.size(), MAX_FUZZY_TERMS)));
 		}
-		// then sort string to make it easier to find and replace duplicates
-		postStrings.sort(null);
-		// remove duplicates strings from the postString list before returning
-		for (int i = 1; i < postStrings.size(); i++)
-			if (postStrings.get(i).equals(postStrings.get(i - 1)))
-				postStrings.remove(i--);
+		similarWords.sort(SimilarWord.ORDER);
+		// a word similar to several words of the search is kept where it ranks best
+		HashSet<String> seen = new HashSet<>();
+		similarWords.removeIf(similar -> !seen.add(similar.word));
+		return similarWords;
+	}
+
+	/**
+	 * Finds the posts that best match the specified words, ranked by how often
+	 * and how prominently they contain those words (by BM25, with words in a
+	 * title counting for more than words in a body). Only the best k posts are
+	 * ever kept, no matter how many posts contain the words.
+	 * 
+	 * @param words contains space separated words
+	 * @param k     the most posts to return
+	 * @return list of the strings for the best matching posts, best first, each
+	 *         string contains the title followed by the url for that post
+	 */
+	public List<String> findTopPostsByTitleOrBodyWords(String words, int k) {
+		List<String> query = getWords(words);
+		return cached("top " + k + ":" + String.join(" ", query), () -> {
+			SegmentedIndexBD.Snapshot index = snapshot;
+			List<String> postStrings = new ArrayList<>();
+			for (PostInterface post : index != null ? index.findTopPosts(query, k) : positions.findTopPosts(query, k))
+				postStrings.add(post.getTitle() + " - " + post.getUrl());
+			return postStrings;
+		});
+	}
+
+	/**
+	 * Helper method that builds the sorted title - url strings of the posts
+	 * containing any of the specified words, in any of the specified fields,
+	 * all from what searches read at the moment it is called.
+	 * 
+	 * @param words  the words to search for
+	 * @param fields TermDictionaryBD.TITLE and/or TermDictionaryBD.BODY, the
+	 *               fields to search in
+	 * @return the sorted list of title - url strings for these posts
+	 */
+	private List<String> findPostStrings(List<String> words, int... fields) {
+		SegmentedIndexBD.Snapshot index = snapshot;
+		return toPostStrings(index, findPostIds(index, words, fields));
+	}
+
+	/**
+	 * Helper method that searches for the posts containing any of the specified
+	 * words, in any of the specified fields. The posting list of each word is a
+	 * bitmap of post ids, so combining them never touches the posts themselves.
+	 * When the dataset is searched from a snapshot (of an index file, or of a
+	 * file being loaded in the background), these are the global ids of its
+	 * posts in that snapshot, rather than their ids in the hashtable.
+	 * 
+	 * The posting lists of all the words are unioned in one pass, so searching
+	 * for many words costs about as much as reading their lists. Words that the
+	 * term filter (if there is one) rejects are not looked up at all.
+	 * 
+	 * @param index  the snapshot to search, or null for the hashtable
+	 * @param words  is the collection of words to search for in post dataset
+	 * @param fields TermDictionaryBD.TITLE and/or TermDictionaryBD.BODY, the
+	 *               fields to search in
+	 * @return the ids of all matching posts
+	 */
+	private PostingBitmap findPostIds(SegmentedIndexBD.Snapshot index, List<String> words, int... fields) {
+		List<PostingBitmap> lists = new ArrayList<>();
+		if (index != null) {
+			for (String word : words)
+				for (int field : fields)
+					lists.add(index.getPostIds(word, field));
+			return PostingBitmap.or(lists);
+		}
+		TermFilterBD filter = termFilter;
+		for (String word : words) {
+			if (filter != null && !filter.mightContain(word))
+				continue; // no post contains this word
+			int termId = terms.find(word);
+			if (filter != null)
+				filter.checkLookup(termId);
+			if (termId < 0)
+				continue; // no post has ever contained this word
+			for (int field : fields)
+				lists.add(hashtable.getValueIds(terms.getKey(termId, field)));
+		}
+		return PostingBitmap.or(lists);
+	}
+
+	/**
+	 * Helper method that builds the title - url string for each of the specified
+	 * posts, sorted and without duplicates (different posts can share a title and
+	 * url). When there are query shards, and enough posts, the posts are split
+	 * between them by id.
+	 * 
+	 * @param index the snapshot that the posts were found in, or null for the
+	 *              hashtable
+	 * @param ids   the ids of the posts to describe
+	 * @return the sorted list of title - url strings for these posts
+	 */
+	private List<String> toPostStrings(SegmentedIndexBD.Snapshot index, PostingBitmap ids) {
+		int[] postIds = ids.toArray();
+		ForkJoinPool pool = queryPool;
+		int shards = pool == null ? 1 : Math.min(pool.getParallelism(), postIds.length / MIN_SHARD_POSTS);
+		if (shards <= 1)
+			return toPostStrings(index, postIds, 0, postIds.length);
+		QueryShard all = new QueryShard(index, postIds, 0, postIds.length, shards);
+		pool.invoke(all);
+		return all.postStrings;
+	}
+
+	/**
+	 * Helper method that builds the sorted title - url strings, without
+	 * duplicates, of the posts with the ids from ids[from] to ids[to - 1] in the
+	 * specified snapshot (or the hashtable, when it is null).
+	 */
+	private List<String> toPostStrings(SegmentedIndexBD.Snapshot index, int[] ids, int from, int to) {
+		String[] postStrings = new String[to - from];
+		for (int i = from; i < to; i++)
+			postStrings[i - from] = postString(ids[i], index);
+		return sortedWithoutDuplicates(postStrings, postStrings.length);
+	}
+
+	/**
+	 * Helper method that builds the title - url string of one post.
+	 * 
+	 * @param id    the id of the post
+	 * @param index the snapshot whose global id id is, or null when it is the
+	 *              id of a post in the hashtable
+	 * @return the title of the post, followed by its url, or null if the post
+	 *         has been removed from the hashtable since it was found
+	 */
+	private String postString(int id, SegmentedIndexBD.Snapshot index) {
+		PostInterface post = index != null ? index.getPost(id) : hashtable.getValueById(id);
+		return post != null ? post.getTitle() + " - " + post.getUrl() : null;
+	}
+
+	/**
+	 * Helper method that merges two sorted lists of distinct strings into one,
+	 * keeping a string that is in both lists only once.
+	 * 
+	 * @param a the first sorted list
+	 * @param b the second sorted list
+	 * @return the sorted list of the strings in either
+	 */
+	private static List<String> mergeWithoutDuplicates(List<String> a, List<String> b) {
+		List<String> merged = new ArrayList<>(a.size() + b.size());
+		int i = 0;
+		int j = 0;
+		while (i < a.size() && j < b.size()) {
+			int order = a.get(i).compareTo(b.get(j));
+			if (order < 0) {
+				merged.add(a.get(i++));
+			} else if (order > 0) {
+				merged.add(b.get(j++));
+			} else {
+				merged.add(a.get(i++));
+				j++;
+			}
+		}
+		merged.addAll(a.subList(i, a.size()));
+		merged.addAll(b.subList(j, b.size()));
+		return merged;
+	}
+
+	/**
+	 * Helper method that sorts an array of title - url strings, and returns them
+	 * without duplicates.
+	 * 
+	 * @param postStrings the strings to sort, which this method reorders
+	 * @param count       the number of strings in use
+	 * @return the sorted list of distinct strings
+	 */
+	private static List<String> sortedWithoutDuplicates(String[] postStrings, int count) {
+		Arrays.sort(postStrings, 0, count);
+		// duplicates are now adjacent, so copy each string only once
+		List<String> unique = new ArrayList<>(count);
+		for (int i = 0; i < count; i++)
+			if (i == 0 || !postStrings[i].equals(postStrings[i - 1]))
+				unique.add(postStrings[i]);
+		return unique;
 	}
 
 	/**
 	 * Displays statistics regarding the number of posts, unique words, and total
 	 * word-post pairs that are a part of the current dataset being searched
-	 * through.
+	 * through, along with the size of the term dictionary, how well the query
+	 * cache and term filter (if there is one) are doing, how far behind the file
+	 * being followed the dataset is (if one is), and how far along loading a
+	 * file in the background is (if one was).
 	 */
 	public String getStatisticsString() {
+		String queryStatistics = "\nQuery cache:\n" +
+				"    " + cache.getHits() + " hits, " + cache.getMisses() + " misses, " + cache.getEvictions()
+				+ " evictions\n" +
+				"    " + cache.getSize() + " queries cached, holding " + cache.getResultCount() + " results";
+		TermFilterBD filter = termFilter;
+		if (filter != null) {
+			long lookups = filter.getLookups();
+			long rejections = filter.getRejections();
+			long falsePositives = filter.getFalsePositives();
+			queryStatistics += "\nTerm filter:\n" +
+					"    " + lookups + " lookups, " + rejections + " rejected ("
+					+ String.format("%.1f%%", lookups > 0 ? 100.0 * rejections / lookups : 0.0) + "), "
+					+ falsePositives + " false positives ("
+					+ String.format("%.2f%%", rejections + falsePositives > 0
+							? 100.0 * falsePositives / (rejections + falsePositives) : 0.0)
+					+ " of missing words)\n" +
+					"    " + filter.getSize() + " words in " + (filter.getSizeInBytes() + 1023) / 1024
+					+ " KB, sized for " + String.format("%.2f%%", 100 * filter.getFalsePositiveRate())
+					+ " false positives";
+		}
+		PostFileFollowerDW followed = follower;
+		if (followed != null) {
+			queryStatistics += "\n" + (followed.isFollowing() ? "Following " : "Followed ") + followed.getFilename()
+					+ ":\n" +
+					"    " + followed.getPostCount() + " posts added, read up to byte " + followed.getOffset() + ", "
+					+ followed.getPendingBytes() + " bytes of a line still being written\n" +
+					"    ingest lag " + followed.getLastLagMillis() + " ms for the latest posts, "
+					+ followed.getMaxLagMillis() + " ms at most";
+			if (followed.getFailure() != null)
+				queryStatistics += "\n    stopped by " + followed.getFailure();
+		}
+		BackgroundLoad load = backgroundLoad;
+		if (load != null) {
+			boolean done = load.isDone();
+			int indexed = load.indexed;
+			double seconds = ((done ? load.endTime : System.nanoTime()) - load.startTime) / 1e9;
+			String rate = String.format("%.1f s (%.0f posts per second)", seconds, seconds > 0 ? indexed / seconds : 0.0);
+			if (!done)
+				queryStatistics += "\nLoading " + load.filename + " in the background:\n" +
+						"    " + indexed + " posts indexed in " + rate + "\n" +
+						"    " + load.published + " of them searchable, from " + load.snapshots + " snapshots";
+			else if (load.failure != null)
+				queryStatistics += "\nLoading " + load.filename + " in the background failed:\n" +
+						"    " + load.failure + "\n" +
+						"    after " + indexed + " posts indexed in " + rate;
+			else
+				queryStatistics += "\nLoaded " + load.filename + " in the background:\n" +
+						"    " + indexed + " posts indexed in " + rate + ", searchable from " + load.snapshots
+						+ " snapshots along the way";
+		}
+		IndexFileBD file = indexFile;
+		if (file != null)
+			return "Dataset contains:\n" +
+					"    " + postCount + " posts\n" +
+					"    " + file.getUniqueWords() + " unique words\n" +
+					"    " + file.getWordPostPairs() + " total word-post pairs\n" +
+					"    note that words in titles vs bodies are counted separately\n" +
+					"    " + file.getTermCount() + " terms in the term dictionary, using about "
+					+ (file.getTermsSizeInBytes() + 1023) / 1024 + " KB of " + file.getFilename() + queryStatistics;
 		return "Dataset contains:\n" +
 				"    " + postCount + " posts\n" +
 				"    " + hashtable.getSize() + " unique words\n" +
 				"    " + hashtable.getNumberOfValues() + " total word-post pairs\n" +
-				"    note that words in titles vs bodies are counted separately";
+				"    note that words in titles vs bodies are counted separately\n" +
+				"    " + terms.getSize() + " terms in the term dictionary, using about "
+				+ (terms.getSizeInBytes() + 1023) / 1024 + " KB" + queryStatistics;
 	}
 
 }
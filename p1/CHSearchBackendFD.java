@@ -15,6 +15,11 @@ public class CHSearchBackendFD implements CHSearchBackendInterface {
 
     }
 
+    @Override
+    public void loadDataInBackground(String filename) throws FileNotFoundException {
+        loadData(filename);
+    }
+
     @Override
     public List<String> findPostsByTitleWords(String words) {
         List<String> posts = new ArrayList<String>();
@@ -68,6 +73,52 @@ public class CHSearchBackendFD implements CHSearchBackendInterface {
         return posts;
     }
 
+    @Override
+    public List<String> findPostsByTitleOrBodyWords(String words, int offset, int limit) {
+        List<String> posts = findPostsByTitleOrBodyWords(words);
+        return posts.subList(Math.min(offset, posts.size()), Math.min(offset + limit, posts.size()));
+    }
+
+    @Override
+    public List<String> findPostsByAllTitleOrBodyWords(String words) {
+        return findPostsByTitleOrBodyWords(words);
+    }
+
+    @Override
+    public List<String> findPostsByTitleOrBodyWordsExcluding(String words, String excludedWords) {
+        return findPostsByTitleOrBodyWords(words);
+    }
+
+    @Override
+    public List<String> findPostsByTitleOrBodyPhrase(String phrase) {
+        return findPostsByTitleOrBodyWords(phrase);
+    }
+
+    @Override
+    public List<String> findTopPostsByTitleOrBodyWords(String words, int k) {
+        List<String> posts = findPostsByTitleOrBodyWords(words);
+        return posts.subList(0, Math.min(k, posts.size()));
+    }
+
+    @Override
+    public List<String> findPostsByTitleOrBodyWildcard(String patterns) {
+        return findPostsByTitleOrBodyWords(patterns.replace("*", "").replace("?", ""));
+    }
+
+    @Override
+    public List<String> findPostsByTitleOrBodyFuzzy(String words, int maxDistance) {
+        return findPostsByTitleOrBodyWords(words);
+    }
+
+    @Override
+    public void addPost(PostInterface post) {
+    }
+
+    @Override
+    public boolean removePost(PostInterface post) {
+        return false;
+    }
+
     @Override
     public String getStatisticsString() {
         return "Statistics: 4 posts, 4 unique words";
@@ -7,11 +7,35 @@ public interface CHSearchBackendInterface {
     // hashtable, PostReaderInterface postReader);
     public void loadData(String filename) throws FileNotFoundException;
 
+    // starts loading the file on another thread and returns straight away, so
+    // that searches can find the posts loaded so far while the rest load
+    public void loadDataInBackground(String filename) throws FileNotFoundException;
+
     public List<String> findPostsByTitleWords(String words);
 
     public List<String> findPostsByBodyWords(String words);
 
     public List<String> findPostsByTitleOrBodyWords(String words);
 
+    // one page of the results of findPostsByTitleOrBodyWords, skipping the first
+    // offset of them and returning at most limit
+    public List<String> findPostsByTitleOrBodyWords(String words, int offset, int limit);
+
+    public List<String> findPostsByAllTitleOrBodyWords(String words);
+
+    public List<String> findPostsByTitleOrBodyWordsExcluding(String words, String excludedWords);
+
+    public List<String> findPostsByTitleOrBodyPhrase(String phrase);
+
+    public List<String> findTopPostsByTitleOrBodyWords(String words, int k);
+
+    public List<String> findPostsByTitleOrBodyWildcard(String patterns);
+
+    public List<String> findPostsByTitleOrBodyFuzzy(String words, int maxDistance);
+
+    public void addPost(PostInterface post);
+
+    public boolean removePost(PostInterface post);
+
     public String getStatisticsString();
 }
\ No newline at end of file
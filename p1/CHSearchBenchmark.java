@@ -0,0 +1,689 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Benchmarks for the CHSearchBackend as a whole, run from the command line like
+ * HashtableBenchmark:
+ *
+ * java CHSearchBenchmark load [copies]
+ * java CHSearchBenchmark read [copies]
+ * java CHSearchBenchmark tokenize [copies]
+ * java CHSearchBenchmark ingest [copies]
+ * java CHSearchBenchmark cache [queries]
+ * java CHSearchBenchmark prefix [terms]
+ * java CHSearchBenchmark fuzzy [terms]
+ * java CHSearchBenchmark filter [queries]
+ * java CHSearchBenchmark shards [copies]
+ * java CHSearchBenchmark pages [copies]
+ * java CHSearchBenchmark store [copies]
+ * java CHSearchBenchmark background [copies]
+ * java CHSearchBenchmark follow [appends]
+ */
+public class CHSearchBenchmark {
+
+    /**
+     * Reads the posts in a file, repeated the specified number of times, so that
+     * benchmarks can run on more posts than are in the data folder. Each copy
+     * is a separate PostDW with the same contents.
+     */
+    static List<PostInterface> readCopies(String filename, int copies) throws FileNotFoundException {
+        List<PostInterface> original = new PostReaderDW().readPostsFromFile(filename);
+        List<PostInterface> posts = new ArrayList<>(original.size() * copies);
+        for (int copy = 0; copy < copies; copy++)
+            for (PostInterface post : original)
+                posts.add(new PostDW(post.getTitle(), post.getUrl() + "#" + copy, post.getBody()));
+        return posts;
+    }
+
+    /**
+     * @return a word that is in no post, and different for every n, made up of
+     *         letters only so that it is not changed by tokenizing
+     */
+    static String missingWord(int n) {
+        StringBuilder word = new StringBuilder("zzq");
+        do {
+            word.append((char) ('a' + n % 26));
+            n /= 26;
+        } while (n > 0);
+        return word.toString();
+    }
+
+    /**
+     * Loads copies of data/large.txt with 1, 2, 4 and 8 threads, and reports the
+     * time each takes and the speedup over a single thread. The statistics of
+     * every parallel load are checked against those of the single threaded one.
+     *
+     * @param copies the number of times to repeat the posts in data/large.txt
+     */
+    public static void load(int copies) throws FileNotFoundException {
+        List<PostInterface> posts = readCopies("data/large.txt", copies);
+        System.out.println(posts.size() + " posts, " + Runtime.getRuntime().availableProcessors()
+                + " available processors");
+        System.out.println("threads  ms (best of 5)  speedup");
+        String expected = null;
+        double single = 0;
+        for (int threads : new int[] { 1, 2, 4, 8 }) {
+            long best = Long.MAX_VALUE;
+            for (int round = 0; round < 5; round++) { // the first rounds also warm up the JIT
+                CHSearchBackendBD backend = new CHSearchBackendBD(new HashtableWithDuplicateKeysAE<>(),
+                        filename -> posts, threads);
+                long start = System.nanoTime();
+                backend.loadData("posts");
+                best = Math.min(best, System.nanoTime() - start);
+                if (expected == null)
+                    expected = backend.getStatisticsString();
+                else if (!expected.equals(backend.getStatisticsString()))
+                    System.out.println("statistics differ with " + threads + " threads");
+            }
+            if (threads == 1)
+                single = best;
+            System.out.printf("%7d  %14.1f  %7.2f%n", threads, best / 1e6, single / best);
+        }
+    }
+
+    /**
+     * Writes copies of data/large.txt into one temporary file, and then reads it
+     * with PostReaderDW and with MappedPostReaderDW (streaming its posts into a
+     * counter rather than a list), and reports how long each takes.
+     *
+     * @param copies the number of times to repeat the posts in data/large.txt
+     */
+    public static void read(int copies) throws IOException {
+        File file = File.createTempFile("posts", ".txt");
+        file.deleteOnExit();
+        try (PrintWriter out = new PrintWriter(file, "UTF-8")) {
+            for (PostInterface post : readCopies("data/large.txt", copies))
+                out.println(post.getTitle() + "+++" + post.getUrl() + "+++" + post.getBody());
+        }
+        System.out.printf("%.1f MB file%n", file.length() / 1e6);
+        System.out.println("reader              posts  ms (best of 5)");
+        long bestScanner = Long.MAX_VALUE;
+        long bestMapped = Long.MAX_VALUE;
+        int listed = 0;
+        int[] streamed = new int[1];
+        for (int round = 0; round < 5; round++) { // the first rounds also warm up the JIT
+            long start = System.nanoTime();
+            listed = new PostReaderDW().readPostsFromFile(file.getPath()).size();
+            bestScanner = Math.min(bestScanner, System.nanoTime() - start);
+            streamed[0] = 0;
+            start = System.nanoTime();
+            new MappedPostReaderDW().readPostsFromFile(file.getPath(), post -> streamed[0]++);
+            bestMapped = Math.min(bestMapped, System.nanoTime() - start);
+        }
+        System.out.printf("PostReaderDW        %5d  %14.1f%n", listed, bestScanner / 1e6);
+        System.out.printf("MappedPostReaderDW  %5d  %14.1f%n", streamed[0], bestMapped / 1e6);
+        file.delete();
+    }
+
+    /**
+     * Breaks the titles and bodies of copies of data/large.txt into words three
+     * ways, and reports the tokens per second and bytes allocated per post of
+     * each: with the regular expressions that CHSearchBackendBD used to use, with
+     * TokenizerBD only counting words, and with TokenizerBD building a String of
+     * each word (as parsing a search query does).
+     *
+     * @param copies the number of times to repeat the posts in data/large.txt
+     */
+    public static void tokenize(int copies) throws FileNotFoundException {
+        List<PostInterface> posts = readCopies("data/large.txt", copies);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        TokenizerBD tokenizer = new TokenizerBD();
+        long[] tokens = new long[1];
+        TokenizerBD.TokenConsumer counter = (token, length) -> tokens[0]++;
+        String[] names = { "regex split", "TokenizerBD", "TokenizerBD words" };
+        System.out.println(posts.size() + " posts");
+        System.out.println("tokenizer         Mtokens/s  bytes/post");
+        for (int round = 0; round < 5; round++) { // the first rounds warm up the JIT
+            for (int variant = 0; variant < names.length; variant++) {
+                tokens[0] = 0;
+                long allocated = threads.getCurrentThreadAllocatedBytes();
+                long start = System.nanoTime();
+                for (PostInterface post : posts) {
+                    for (String text : new String[] { post.getTitle(), post.getBody() }) {
+                        if (variant == 0) {
+                            for (String word : text.replaceAll("[^a-zA-Z ]", "").toLowerCase().split(" "))
+                                if (!word.isEmpty())
+                                    tokens[0]++;
+                        } else if (variant == 1) {
+                            tokenizer.tokenize(text, counter);
+                        } else {
+                            tokens[0] += tokenizer.words(text).size();
+                        }
+                    }
+                }
+                long elapsed = System.nanoTime() - start;
+                allocated = threads.getCurrentThreadAllocatedBytes() - allocated;
+                if (round == 4)
+                    System.out.printf("%-16s  %9.1f  %10d%n", names[variant], tokens[0] * 1e3 / elapsed,
+                            allocated / posts.size());
+            }
+        }
+    }
+
+    /**
+     * Adds copies of data/large.txt to a backend one post at a time with addPost,
+     * removing every tenth post added with removePost, and reports the posts
+     * added per millisecond for each tenth of the posts, so that it shows whether
+     * adding posts slows down as the dataset grows (and segments are sealed and
+     * merged).
+     *
+     * @param copies the number of times to repeat the posts in data/large.txt
+     */
+    public static void ingest(int copies) throws FileNotFoundException {
+        List<PostInterface> posts = readCopies("data/large.txt", copies);
+        CHSearchBackendBD backend = new CHSearchBackendBD(new HashtableWithDuplicateKeysAE<>(), filename -> posts);
+        backend.loadData("posts"); // to warm up the JIT
+        backend = new CHSearchBackendBD(new HashtableWithDuplicateKeysAE<>(), filename -> posts);
+        System.out.println(posts.size() + " posts, added in batches of " + posts.size() / 10);
+        System.out.println("posts so far  posts/ms");
+        int batch = posts.size() / 10;
+        for (int start = 0; start + batch <= posts.size(); start += batch) {
+            long begin = System.nanoTime();
+            for (int i = start; i < start + batch; i++) {
+                backend.addPost(posts.get(i));
+                if (i % 10 == 9)
+                    backend.removePost(posts.get(i - 5));
+            }
+            System.out.printf("%12d  %8.1f%n", start + batch, batch / ((System.nanoTime() - begin) / 1e6));
+        }
+        System.out.println(backend.getStatisticsString());
+    }
+
+    /**
+     * Runs a skewed log of queries against data/large.txt, where the i-th most
+     * popular query is asked about 1/i times as often as the most popular one (a
+     * Zipf distribution, as in real query logs). The queries are the titles of
+     * the posts, searched for with findPostsByTitleOrBodyWords. Reports the
+     * average time of the first time each query is asked, which the query cache
+     * cannot answer, and of the times it is asked again, followed by the
+     * backend's statistics.
+     *
+     * @param queries the number of queries in the log
+     */
+    public static void cache(int queries) throws FileNotFoundException {
+        List<PostInterface> posts = new PostReaderDW().readPostsFromFile("data/large.txt");
+        String[] log = new String[queries];
+        double[] cumulative = new double[posts.size()];
+        for (int i = 0; i < cumulative.length; i++)
+            cumulative[i] = (i > 0 ? cumulative[i - 1] : 0) + 1.0 / (i + 1);
+        Random random = new Random(400);
+        for (int i = 0; i < queries; i++) {
+            int rank = Arrays.binarySearch(cumulative, random.nextDouble() * cumulative[cumulative.length - 1]);
+            log[i] = posts.get(rank < 0 ? -rank - 1 : rank).getTitle();
+        }
+        for (int round = 0; round < 3; round++) { // the first rounds warm up the JIT
+            CHSearchBackendBD backend = new CHSearchBackendBD(new HashtableWithDuplicateKeysAE<>(), filename -> posts);
+            backend.loadData("posts");
+            Set<String> asked = new HashSet<>();
+            long firstTime = 0;
+            long againTime = 0;
+            for (String query : log) {
+                long start = System.nanoTime();
+                backend.findPostsByTitleOrBodyWords(query);
+                long elapsed = System.nanoTime() - start;
+                if (asked.add(query))
+                    firstTime += elapsed;
+                else
+                    againTime += elapsed;
+            }
+            if (round == 2) {
+                System.out.printf("%d queries, %d distinct%n", queries, asked.size());
+                System.out.printf("first time asked: %8.1f us/query%n", firstTime / 1e3 / asked.size());
+                System.out.printf("asked again:      %8.1f us/query%n", againTime / 1e3 / (queries - asked.size()));
+                System.out.println(backend.getStatisticsString());
+            }
+        }
+    }
+
+    /**
+     * Adds random words of 3 to 12 letters to a TermDictionaryBD, and reports how
+     * long its first wildcard search takes (which sorts every term), and then
+     * the average time of prefix searches for random 2 and 3 letter prefixes,
+     * each allowed to match up to 1025 terms as the backend's are. Then unions
+     * 1024 posting lists of 1000 random post ids each, one pair at a time and
+     * all at once.
+     *
+     * @param count the number of words to add
+     */
+    public static void prefix(int count) {
+        Random random = new Random(400);
+        TermDictionaryBD terms = new TermDictionaryBD();
+        char[] word = new char[12];
+        while (terms.getSize() < count) {
+            int length = 3 + random.nextInt(10);
+            for (int i = 0; i < length; i++)
+                word[i] = (char) ('a' + random.nextInt(26));
+            terms.idOf(word, 0, length);
+        }
+        long start = System.nanoTime();
+        terms.findMatching("a*", 1);
+        System.out.printf("%d terms, sorted by the first search in %.1f ms%n", count, (System.nanoTime() - start) / 1e6);
+        for (int prefixLength = 2; prefixLength <= 3; prefixLength++) {
+            for (int round = 0; round < 3; round++) { // the first rounds warm up the JIT
+                long matched = 0;
+                start = System.nanoTime();
+                for (int query = 0; query < 1000; query++) {
+                    StringBuilder pattern = new StringBuilder();
+                    for (int i = 0; i < prefixLength; i++)
+                        pattern.append((char) ('a' + random.nextInt(26)));
+                    matched += terms.findMatching(pattern.append('*').toString(), 1025).size();
+                }
+                if (round == 2)
+                    System.out.printf("%d letter prefixes: %.3f ms/query, %d terms matched per query%n",
+                            prefixLength, (System.nanoTime() - start) / 1e6 / 1000, matched / 1000);
+            }
+        }
+
+        List<PostingBitmap> lists = new ArrayList<>();
+        for (int i = 0; i < 1024; i++) {
+            PostingBitmap list = new PostingBitmap();
+            for (int j = 0; j < 1000; j++)
+                list.add(random.nextInt(1_000_000));
+            lists.add(list);
+        }
+        for (int round = 0; round < 5; round++) {
+            start = System.nanoTime();
+            PostingBitmap pairwise = new PostingBitmap();
+            for (PostingBitmap list : lists)
+                pairwise = PostingBitmap.or(pairwise, list);
+            long middle = System.nanoTime();
+            PostingBitmap all = PostingBitmap.or(lists);
+            long end = System.nanoTime();
+            if (round == 4)
+                System.out.printf("union of 1024 lists (%d ids): %.1f ms in pairs, %.1f ms at once%n",
+                        all.getCardinality(), (middle - start) / 1e6, (end - middle) / 1e6);
+        }
+    }
+
+    /**
+     * Adds random words of 3 to 12 letters to a TermDictionaryBD, and then looks
+     * for the words within 1 and 2 edits of misspelled words (words of the
+     * dictionary with one letter changed), both with a Levenshtein automaton run
+     * over the sorted terms and by checking every term. Reports the time per
+     * search of each, and how many of the terms the automaton looked at.
+     *
+     * @param count the number of words to add
+     */
+    public static void fuzzy(int count) {
+        Random random = new Random(400);
+        TermDictionaryBD terms = new TermDictionaryBD();
+        char[] word = new char[12];
+        while (terms.getSize() < count) {
+            int length = 3 + random.nextInt(10);
+            for (int i = 0; i < length; i++)
+                word[i] = (char) ('a' + random.nextInt(26));
+            terms.idOf(word, 0, length);
+        }
+        terms.findMatching("a*", 1); // sorts the terms
+        String[] misspelled = new String[200];
+        for (int i = 0; i < misspelled.length; i++) {
+            char[] chars = terms.getTerm(random.nextInt(count)).toCharArray();
+            chars[random.nextInt(chars.length)] = (char) ('a' + random.nextInt(26));
+            misspelled[i] = new String(chars);
+        }
+        System.out.println(count + " terms");
+        System.out.println("distance  automaton ms  prefixes read  matches  scan ms");
+        for (int distance = 1; distance <= 2; distance++) {
+            for (int round = 0; round < 3; round++) { // the first rounds warm up the JIT
+                long states = 0;
+                long matches = 0;
+                long start = System.nanoTime();
+                for (String query : misspelled) {
+                    LevenshteinAutomatonBD automaton = new LevenshteinAutomatonBD(query, distance);
+                    matches += terms.findSimilar(automaton).size();
+                    states += automaton.getStatesVisited();
+                }
+                long automatonTime = System.nanoTime() - start;
+                long scanned = 0;
+                start = System.nanoTime();
+                for (int i = 0; i < 10; i++) { // scanning is too slow for every query
+                    LevenshteinAutomatonBD automaton = new LevenshteinAutomatonBD(misspelled[i], distance);
+                    for (int id = 0; id < count; id++)
+                        if (automaton.distance(terms.getTerm(id)) >= 0)
+                            scanned++;
+                }
+                long scanTime = System.nanoTime() - start;
+                if (round == 2)
+                    System.out.printf("%8d  %12.3f  %13d  %7.1f  %7.1f%n", distance,
+                            automatonTime / 1e6 / misspelled.length, states / misspelled.length,
+                            (double) matches / misspelled.length, scanTime / 1e6 / 10);
+            }
+        }
+    }
+
+    /**
+     * Loads data/large.txt into backends with and without a term filter, and
+     * searches both for queries of one word each, most of them random letters
+     * that are in no post. Those are almost all different, so the query cache
+     * answers few of them. Reports the average time per query of each backend, and the
+     * statistics of the one with the filter.
+     *
+     * @param queries the number of queries to search for
+     */
+    public static void filter(int queries) throws FileNotFoundException {
+        List<PostInterface> posts = new PostReaderDW().readPostsFromFile("data/large.txt");
+        Random random = new Random(400);
+        String[] log = new String[queries];
+        for (int i = 0; i < queries; i++) {
+            if (random.nextInt(10) == 0) { // one in ten is a word of some post
+                String[] words = posts.get(random.nextInt(posts.size())).getTitle().split(" ");
+                log[i] = words[random.nextInt(words.length)];
+            } else {
+                StringBuilder word = new StringBuilder();
+                for (int length = 4 + random.nextInt(6); word.length() < length;)
+                    word.append((char) ('a' + random.nextInt(26)));
+                log[i] = word.toString();
+            }
+        }
+        for (int round = 0; round < 3; round++) { // the first rounds warm up the JIT
+            double[] times = new double[2];
+            CHSearchBackendBD backend = null;
+            for (int filtered = 0; filtered < 2; filtered++) {
+                backend = new CHSearchBackendBD(new HashtableWithDuplicateKeysAE<>(), filename -> posts);
+                if (filtered == 1)
+                    backend.enableTermFilter(0.01);
+                backend.loadData("posts");
+                long start = System.nanoTime();
+                for (String query : log)
+                    backend.findPostsByTitleOrBodyWords(query);
+                times[filtered] = (System.nanoTime() - start) / 1e3 / queries;
+            }
+            if (round == 2) {
+                System.out.printf("%d queries, 90%% of them for missing words%n", queries);
+                System.out.printf("without filter: %6.2f us/query%n", times[0]);
+                System.out.printf("with filter:    %6.2f us/query%n", times[1]);
+                System.out.println(backend.getStatisticsString());
+            }
+        }
+    }
+
+    /**
+     * Loads copies of data/large.txt, and searches it for broad queries (common
+     * words, which most posts contain) with 1, 2, 4 and 8 query shards. Each
+     * query also has a word that is in no post, different every time, so that
+     * the query cache never answers it. Reports the time per query of each and
+     * the speedup over a single shard, and checks that every number of shards
+     * finds the same posts.
+     *
+     * @param copies the number of times to repeat the posts in data/large.txt
+     */
+    public static void shards(int copies) throws FileNotFoundException {
+        List<PostInterface> posts = readCopies("data/large.txt", copies);
+        CHSearchBackendBD backend = new CHSearchBackendBD(new HashtableWithDuplicateKeysAE<>(), filename -> posts);
+        backend.loadData("posts");
+        String[] broad = { "the", "and a", "to of in", "recipe with" };
+        System.out.println(posts.size() + " posts, " + Runtime.getRuntime().availableProcessors()
+                + " available processors");
+        System.out.println("shards  ms/query (best of 5)  speedup");
+        List<List<String>> expected = new ArrayList<>();
+        double single = 0;
+        int unique = 0;
+        for (int shards : new int[] { 1, 2, 4, 8 }) {
+            backend.setQueryShards(shards);
+            long best = Long.MAX_VALUE;
+            for (int round = 0; round < 5; round++) { // the first rounds also warm up the JIT
+                long start = System.nanoTime();
+                for (int i = 0; i < broad.length; i++) {
+                    List<String> found = backend.findPostsByTitleOrBodyWords(broad[i] + " " + missingWord(unique++));
+                    if (expected.size() == i)
+                        expected.add(found);
+                    else if (!expected.get(i).equals(found))
+                        System.out.println("results differ with " + shards + " shards");
+                }
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            if (shards == 1)
+                single = best;
+            System.out.printf("%6d  %21.1f  %7.2f%n", shards, best / 1e6 / broad.length, single / best);
+        }
+        System.out.println("posts found per query: " + expected.get(0).size() + " to " + expected.get(2).size());
+    }
+
+    /**
+     * Loads copies of data/large.txt, and reports how long it takes to get every
+     * result of broad and narrow queries, and to get just their first page of 10
+     * results, which only builds the strings of the posts on that page. Each
+     * query also has a word that is in no post, different every time, so that
+     * the query cache never answers it. The first page asked for also sorts
+     * every post, which is reported on its own.
+     *
+     * @param copies the number of times to repeat the posts in data/large.txt
+     */
+    public static void pages(int copies) throws FileNotFoundException {
+        List<PostInterface> posts = readCopies("data/large.txt", copies);
+        CHSearchBackendBD backend = new CHSearchBackendBD(new HashtableWithDuplicateKeysAE<>(), filename -> posts);
+        backend.loadData("posts");
+        long start = System.nanoTime();
+        backend.findPostsByTitleOrBodyWords("the", 0, 10);
+        System.out.printf("%d posts, sorted by the first page in %.1f ms%n", posts.size(), (System.nanoTime() - start) / 1e6);
+        System.out.println("query         posts found  all results ms  first page ms");
+        int unique = 0;
+        for (String query : new String[] { "the", "and a", "recipe with", "protein", "quinoa" }) {
+            long all = Long.MAX_VALUE;
+            long page = Long.MAX_VALUE;
+            int found = 0;
+            for (int round = 0; round < 5; round++) { // the first rounds also warm up the JIT
+                start = System.nanoTime();
+                found = backend.findPostsByTitleOrBodyWords(query + " " + missingWord(unique++)).size();
+                all = Math.min(all, System.nanoTime() - start);
+                start = System.nanoTime();
+                backend.findPostsByTitleOrBodyWords(query + " " + missingWord(unique++), 0, 10);
+                page = Math.min(page, System.nanoTime() - start);
+            }
+            System.out.printf("%-12s  %11d  %14.3f  %13.3f%n", query, found, all / 1e6, page / 1e6);
+        }
+    }
+
+    /**
+     * Writes the posts of data/large.txt, repeated the specified number of times,
+     * into a temporary file that is deleted when the benchmark ends.
+     */
+    static File writeCopies(int copies) throws IOException {
+        File file = File.createTempFile("posts", ".txt");
+        file.deleteOnExit();
+        try (PrintWriter out = new PrintWriter(file, "UTF-8")) {
+            for (PostInterface post : readCopies("data/large.txt", copies))
+                out.println(post.getTitle() + "+++" + post.getUrl() + "+++" + post.getBody());
+        }
+        return file;
+    }
+
+    /**
+     * @return the bytes of heap in use, after asking for a garbage collection
+     */
+    static long usedHeap() {
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Writes copies of data/large.txt into one temporary file, and loads it into
+     * backends with MappedPostReaderDW (whose posts hold their title, url and
+     * body as Strings) and with PostStoreDW (whose posts keep their bodies in
+     * the file). Reports the heap used by each dataset, and the time it takes to
+     * get every result of a broad query, which builds the title - url string of
+     * most posts.
+     *
+     * @param copies the number of times to repeat the posts in data/large.txt
+     */
+    public static void store(int copies) throws IOException {
+        File file = writeCopies(copies);
+        System.out.printf("%.1f MB file%n", file.length() / 1e6);
+        System.out.println("reader              heap MB  broad query ms (best of 5)");
+        int unique = 0;
+        for (PostReaderInterface reader : new PostReaderInterface[] { new MappedPostReaderDW(), new PostStoreDW() }) {
+            long before = usedHeap();
+            CHSearchBackendBD backend = new CHSearchBackendBD(new HashtableWithDuplicateKeysAE<>(), reader);
+            backend.loadData(file.getPath());
+            long heap = usedHeap() - before;
+            long best = Long.MAX_VALUE;
+            for (int round = 0; round < 5; round++) { // the first rounds also warm up the JIT
+                long start = System.nanoTime();
+                backend.findPostsByTitleOrBodyWords("the and " + missingWord(unique++));
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            System.out.printf("%-18s  %7.1f  %26.1f%n", reader.getClass().getName(), heap / 1e6, best / 1e6);
+            if (backend.getStatisticsString().isEmpty()) // keeps the backend reachable until its heap is measured
+                System.out.println();
+        }
+    }
+
+    /**
+     * Writes copies of data/large.txt into one temporary file, and compares
+     * loading it with loadData, which nothing can be searched until it returns,
+     * with loadDataInBackground, searching for a common word every 10 ms while
+     * it loads. Reports how long it took until the first search found posts, how
+     * long the searches during loading took, and how much longer the load took
+     * for them.
+     *
+     * @param copies the number of times to repeat the posts in data/large.txt
+     */
+    public static void background(int copies) throws IOException {
+        File file = writeCopies(copies);
+        System.out.printf("%.1f MB file%n", file.length() / 1e6);
+        CHSearchBackendBD warmup = new CHSearchBackendBD(new HashtableWithDuplicateKeysAE<>(), new PostStoreDW());
+        warmup.loadData(file.getPath());
+        long start = System.nanoTime();
+        CHSearchBackendBD blocking = new CHSearchBackendBD(new HashtableWithDuplicateKeysAE<>(), new PostStoreDW());
+        blocking.loadData(file.getPath());
+        System.out.printf("loadData: searchable after %.0f ms%n", (System.nanoTime() - start) / 1e6);
+        CHSearchBackendBD backend = new CHSearchBackendBD(new HashtableWithDuplicateKeysAE<>(), new PostStoreDW());
+        Thread waiter = new Thread(backend::awaitLoad);
+        start = System.nanoTime();
+        backend.loadDataInBackground(file.getPath());
+        waiter.start();
+        long firstFound = 0;
+        long searchTime = 0;
+        int searches = 0;
+        while (waiter.isAlive()) {
+            long searchStart = System.nanoTime();
+            // a word that is in no post keeps each search out of the query cache
+            boolean found = !backend.findPostsByTitleOrBodyWords("protein " + missingWord(searches)).isEmpty();
+            long now = System.nanoTime();
+            searchTime += now - searchStart;
+            searches++;
+            if (found && firstFound == 0)
+                firstFound = now - start;
+            try {
+                Thread.sleep(10); // as a person would search, rather than taking the loader's CPU
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        System.out.printf("loadDataInBackground: first results after %.0f ms, loaded after %.0f ms%n", firstFound / 1e6,
+                (System.nanoTime() - start) / 1e6);
+        System.out.printf("%d searches during loading, %.2f ms each%n", searches,
+                searches > 0 ? searchTime / 1e6 / searches : 0.0);
+        String statistics = backend.getStatisticsString();
+        System.out.println(statistics.substring(statistics.indexOf("Loaded")));
+    }
+
+    /**
+     * Follows a file that starts with the posts of data/large.txt, and appends
+     * batches of posts to it, each ending with a post whose title is a word of
+     * its own. Reports how long it took from each append until searching for
+     * that word found the post.
+     *
+     * @param appends the number of batches to append
+     */
+    public static void follow(int appends) throws IOException {
+        File file = writeCopies(1);
+        List<PostInterface> posts = readCopies("data/large.txt", 1);
+        CHSearchBackendBD backend = new CHSearchBackendBD(new HashtableWithDuplicateKeysAE<>(), new PostStoreDW());
+        backend.followData(file.getPath());
+        long[] latencies = new long[appends];
+        Random random = new Random(1);
+        for (int i = 0; i < appends; i++) {
+            String marker = missingWord(i);
+            try (PrintWriter out = new PrintWriter(new FileWriter(file, true))) {
+                for (int j = 0; j < 100; j++) {
+                    PostInterface post = posts.get(random.nextInt(posts.size()));
+                    out.println(post.getTitle() + "+++" + post.getUrl() + "+++" + post.getBody());
+                }
+                out.println(marker + "+++marker+++");
+            }
+            long start = System.nanoTime();
+            while (backend.findPostsByTitleWords(marker).isEmpty()) {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            latencies[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(latencies);
+        System.out.printf("%d appends of 101 posts: searchable after %.1f ms median, %.1f ms at most%n", appends,
+                latencies[appends / 2] / 1e6, latencies[appends - 1] / 1e6);
+        String statistics = backend.getStatisticsString();
+        System.out.println(statistics.substring(statistics.indexOf("Following")));
+        backend.stopFollowing();
+    }
+
+    /**
+     * Runs the benchmark named by the first command line argument.
+     *
+     * @param args the name of the benchmark to run, followed by its arguments
+     */
+    public static void main(String[] args) throws IOException {
+        String name = args.length > 0 ? args[0] : "load";
+        switch (name) {
+            case "load":
+                load(args.length > 1 ? Integer.parseInt(args[1]) : 20);
+                break;
+            case "tokenize":
+                tokenize(args.length > 1 ? Integer.parseInt(args[1]) : 20);
+                break;
+            case "ingest":
+                ingest(args.length > 1 ? Integer.parseInt(args[1]) : 50);
+                break;
+            case "cache":
+                cache(args.length > 1 ? Integer.parseInt(args[1]) : 100000);
+                break;
+            case "prefix":
+                prefix(args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000);
+                break;
+            case "fuzzy":
+                fuzzy(args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000);
+                break;
+            case "filter":
+                filter(args.length > 1 ? Integer.parseInt(args[1]) : 200000);
+                break;
+            case "shards":
+                shards(args.length > 1 ? Integer.parseInt(args[1]) : 100);
+                break;
+            case "pages":
+                pages(args.length > 1 ? Integer.parseInt(args[1]) : 100);
+                break;
+            case "store":
+                store(args.length > 1 ? Integer.parseInt(args[1]) : 100);
+                break;
+            case "background":
+                background(args.length > 1 ? Integer.parseInt(args[1]) : 100);
+                break;
+            case "follow":
+                follow(args.length > 1 ? Integer.parseInt(args[1]) : 50);
+                break;
+            case "read":
+                read(args.length > 1 ? Integer.parseInt(args[1]) : 100);
+                break;
+            default:
+                System.out.println("Unknown benchmark: " + name);
+        }
+    }
+}
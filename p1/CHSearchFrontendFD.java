@@ -80,15 +80,26 @@ class CHSearchFrontendFD implements CHSearchFrontendInterface {
     /**
      * This method loads File data from user input. The user will type the file
      * name, and if the file exists it will send a call to backend’s loadData method
-     * with the imported file as the parameter.
+     * with the imported file as the parameter. A file name ending in & is instead
+     * sent to backend’s loadDataInBackground method, so that the user can search
+     * while a large file loads.
      */
     @Override
     public void loadDataCommand() {
-        System.out.print("Enter filename: ");
+        System.out.print("Enter filename (end it with & to search while it loads): ");
         String filename = userInput.nextLine().trim(); // get the user input and trim it of whitespace
+        boolean background = filename.endsWith("&");
+        if (background) { // drop the & from the file name
+            filename = filename.substring(0, filename.length() - 1).trim();
+        }
         try {
-            backend.loadData(filename); // try to load the file
-            System.out.println("File loaded!");
+            if (background) {
+                backend.loadDataInBackground(filename); // start loading the file
+                System.out.println("Loading file in the background, display statistics to see how far along it is.");
+            } else {
+                backend.loadData(filename); // try to load the file
+                System.out.println("File loaded!");
+            }
         } catch (FileNotFoundException e) { // if the file is not found, catch the exception
             System.out.println("File not found.");
         }
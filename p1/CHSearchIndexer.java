@@ -0,0 +1,132 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Saves the posts in a file to an index file that CHSearchApp can load without
+ * reindexing them, and checks that an index file still answers queries the
+ * same way as indexing its posts again would. Run from the command line:
+ *
+ * java CHSearchIndexer build [posts file] [index file]
+ * java CHSearchIndexer verify [posts file] [index file]
+ */
+public class CHSearchIndexer {
+
+	/**
+	 * Loads the posts in a file and saves them to an index file, reporting how
+	 * long each step takes.
+	 *
+	 * @param postsFile the file of posts to index
+	 * @param indexFile the index file to save to
+	 */
+	public static void build(String postsFile, String indexFile) throws IOException {
+		CHSearchBackendBD backend = new CHSearchBackendBD(new HashtableWithDuplicateKeysAE<>(),
+				new MappedPostReaderDW());
+		long start = System.nanoTime();
+		backend.loadData(postsFile);
+		long loaded = System.nanoTime();
+		backend.saveIndex(indexFile);
+		long saved = System.nanoTime();
+		System.out.printf("loaded %s in %.1f ms, saved %s (%d bytes) in %.1f ms%n", postsFile,
+				(loaded - start) / 1e6, indexFile, new File(indexFile).length(), (saved - loaded) / 1e6);
+	}
+
+	/**
+	 * Checks an index file's checksum, then opens it and compares the results of
+	 * every kind of query against a backend that has loaded the posts file
+	 * itself. The words queried are taken from every 10th post.
+	 *
+	 * @param postsFile the file of posts that the index file was built from
+	 * @param indexFile the index file to check
+	 * @return the number of checks that failed
+	 */
+	public static int verify(String postsFile, String indexFile) throws IOException {
+		int failures = 0;
+		long start = System.nanoTime();
+		CHSearchBackendBD opened = new CHSearchBackendBD(new HashtableWithDuplicateKeysAE<>(),
+				new MappedPostReaderDW());
+		opened.loadData(indexFile);
+		System.out.printf("opened %s in %.1f ms%n", indexFile, (System.nanoTime() - start) / 1e6);
+		if (!IndexFileBD.open(indexFile).verifyChecksum()) {
+			System.out.println("checksum does not match");
+			failures++;
+		}
+
+		CHSearchBackendBD fresh = new CHSearchBackendBD(new HashtableWithDuplicateKeysAE<>(),
+				new MappedPostReaderDW());
+		fresh.loadData(postsFile);
+		if (!datasetStatistics(fresh).equals(datasetStatistics(opened))) {
+			System.out.println("statistics differ:\n" + fresh.getStatisticsString() + "\n"
+					+ opened.getStatisticsString());
+			failures++;
+		}
+
+		List<PostInterface> posts = new MappedPostReaderDW().readPostsFromFile(postsFile);
+		List<String> queries = new ArrayList<>();
+		for (int i = 0; i < posts.size(); i += 10) {
+			queries.add(posts.get(i).getTitle());
+			String[] words = posts.get(i).getBody().split(" ");
+			queries.add(String.join(" ", List.of(words).subList(0, Math.min(3, words.length))));
+		}
+		int checks = 0;
+		for (String query : queries) {
+			String[] words = query.split(" ", 2);
+			List<List<String>> expected = List.of(fresh.findPostsByTitleWords(query),
+					fresh.findPostsByBodyWords(query), fresh.findPostsByTitleOrBodyWords(query),
+					fresh.findPostsByAllTitleOrBodyWords(query), fresh.findPostsByTitleOrBodyPhrase(query),
+					fresh.findTopPostsByTitleOrBodyWords(query, 10),
+					fresh.findPostsByTitleOrBodyWordsExcluding(words[0], words.length > 1 ? words[1] : ""));
+			List<List<String>> actual = List.of(opened.findPostsByTitleWords(query),
+					opened.findPostsByBodyWords(query), opened.findPostsByTitleOrBodyWords(query),
+					opened.findPostsByAllTitleOrBodyWords(query), opened.findPostsByTitleOrBodyPhrase(query),
+					opened.findTopPostsByTitleOrBodyWords(query, 10),
+					opened.findPostsByTitleOrBodyWordsExcluding(words[0], words.length > 1 ? words[1] : ""));
+			for (int i = 0; i < expected.size(); i++, checks++) {
+				if (!expected.get(i).equals(actual.get(i))) {
+					System.out.println("results differ for query " + i + " of \"" + query + "\"");
+					failures++;
+				}
+			}
+		}
+		System.out.println(checks + " queries compared, " + failures + " checks failed");
+		return failures;
+	}
+
+	/**
+	 * @return the statistics that describe the dataset itself, leaving out the
+	 *         line that describes how it is stored and the query cache's
+	 *         statistics after it
+	 */
+	private static String datasetStatistics(CHSearchBackendBD backend) {
+		String statistics = backend.getStatisticsString();
+		statistics = statistics.substring(0, statistics.indexOf("\nQuery cache:"));
+		return statistics.substring(0, statistics.lastIndexOf('\n'));
+	}
+
+	/**
+	 * Runs the command named by the first command line argument.
+	 *
+	 * @param args the name of the command, followed by the posts file and the
+	 *             index file
+	 */
+	public static void main(String[] args) throws IOException {
+		String name = args.length > 0 ? args[0] : "build";
+		String postsFile = args.length > 1 ? args[1] : "data/large.txt";
+		String indexFile = args.length > 2 ? args[2] : "data/large.chix";
+		switch (name) {
+			case "build":
+				build(postsFile, indexFile);
+				break;
+			case "verify":
+				if (verify(postsFile, indexFile) > 0)
+					System.exit(1);
+				break;
+			default:
+				System.out.println("Unknown command: " + name);
+				System.out.println("Usage: java CHSearchIndexer build [posts file] [index file]");
+				System.out.println("       java CHSearchIndexer verify [posts file] [index file]");
+				System.exit(2);
+		}
+	}
+}
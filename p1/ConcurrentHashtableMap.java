@@ -0,0 +1,429 @@
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This abstract data type represents a collection that maps keys to values, in
+ * which duplicate keys are not allowed (each key maps to exactly one value),
+ * and which can be shared between threads.
+ *
+ * Each slot of the table holds a chain of immutable nodes. Readers never lock:
+ * they read a slot's chain through a volatile array and walk it. Writers lock
+ * one of a fixed number of stripes (chosen by slot index), prepend new nodes,
+ * and copy the part of a chain in front of a node they remove, so a reader
+ * walking an older chain always sees a consistent list.
+ *
+ * Growing the table is cooperative. The thread whose put crosses the load
+ * factor allocates the next table, and then every writer that comes along
+ * claims a batch of slots, copies their chains into the next table under the
+ * slot's stripe lock, and leaves a forwarding node behind. Readers that run
+ * into a forwarding node simply continue their lookup in the next table, so
+ * lookups are never blocked by a resize, and no single put pays for copying
+ * the entire table.
+ *
+ * @param <KeyType>   the key type
+ * @param <ValueType> the value type
+ * @see this class is based on the MapADT interface
+ */
+@SuppressWarnings("unchecked")
+public class ConcurrentHashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueType> {
+
+    /**
+     * An immutable link in a slot's chain.
+     */
+    static class Node {
+        final Object key;
+        final int hash;
+        final Object value;
+        final Node next;
+
+        Node(Object key, int hash, Object value, Node next) {
+            this.key = key;
+            this.hash = hash;
+            this.value = value;
+            this.next = next;
+        }
+    }
+
+    /**
+     * Left in a slot of the old table once its chain has been copied into the
+     * next table.
+     */
+    static class ForwardingNode extends Node {
+        final Table nextTable;
+
+        ForwardingNode(Table nextTable) {
+            super(null, 0, null, null);
+            this.nextTable = nextTable;
+        }
+    }
+
+    /**
+     * The slots of one generation of this hashtable, along with the progress of
+     * copying them into the next generation.
+     */
+    static class Table {
+        final AtomicReferenceArray<Node> slots;
+        final int mask;
+        final AtomicInteger transferIndex; // slots below this index are unclaimed
+        final AtomicInteger transferred = new AtomicInteger(); // slots already copied
+
+        Table(int capacity) {
+            this.slots = new AtomicReferenceArray<>(capacity);
+            this.mask = capacity - 1;
+            this.transferIndex = new AtomicInteger(capacity);
+        }
+    }
+
+    protected static final int STRIPES = 64; // number of write locks, also the min capacity
+    protected static final int TRANSFER_BATCH = 64; // slots copied per claim during a resize
+    protected final double LOAD_FACTOR = 0.75; // the load factor of the hashtable
+
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+    private volatile Table table; // the table that new lookups start in
+    private final AtomicReference<Table> nextTable = new AtomicReference<>(); // set while resizing
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * Creates a new ConcurrentHashtableMap with the specified capacity. The
+     * capacity is rounded up to a power of two, and is at least STRIPES.
+     *
+     * @param capacity the initial capacity of the hashtable
+     */
+    public ConcurrentHashtableMap(int capacity) {
+        for (int i = 0; i < STRIPES; i++)
+            locks[i] = new ReentrantLock();
+        this.table = new Table(HashtableMap.tableSizeFor(Math.max(capacity, STRIPES)));
+    }
+
+    /**
+     * Creates a new ConcurrentHashtableMap with the default capacity of STRIPES.
+     */
+    public ConcurrentHashtableMap() {
+        this(STRIPES);
+    }
+
+    /**
+     * Returns the lock guarding a slot. Because every capacity is a multiple of
+     * STRIPES, a slot and the two slots it splits into when the table doubles
+     * always share a lock.
+     */
+    private ReentrantLock lockFor(int index) {
+        return locks[index & (STRIPES - 1)];
+    }
+
+    /**
+     * Finds the node holding the specified key without locking.
+     *
+     * @param key the key to search for, must not be null
+     * @return the node for this key, or null when it is not stored
+     */
+    protected Node findNode(Object key) {
+        int hash = HashtableMap.spread(key);
+        Table current = table;
+        while (true) {
+            Node node = current.slots.get(hash & current.mask);
+            if (node instanceof ForwardingNode) { // this slot has moved on
+                current = ((ForwardingNode) node).nextTable;
+                continue;
+            }
+            for (; node != null; node = node.next)
+                if (node.hash == hash && (node.key == key || node.key.equals(key)))
+                    return node;
+            return null;
+        }
+    }
+
+    /**
+     * Adds a new key-value pair/mapping to this collection. Throws exception when
+     * key is null or duplicate of one already stored.
+     *
+     * @param key   the key to be added
+     * @param value the value to be added
+     * @throws IllegalArgumentException when key is null or duplicate of one already
+     */
+    @Override
+    public void put(KeyType key, ValueType value) throws IllegalArgumentException {
+        if (key == null)
+            throw new IllegalArgumentException("Key cannot be null");
+        if (putIfAbsent(key, value) != null)
+            throw new IllegalArgumentException("Key already exists");
+    }
+
+    /**
+     * Adds a new key-value pair/mapping to this collection, unless this key is
+     * already stored. Checking for the key and adding it happen atomically.
+     *
+     * @param key   the key to be added, must not be null
+     * @param value the value to be added
+     * @return the value already stored for this key, or null when the new pair
+     *         was added
+     */
+    public ValueType putIfAbsent(KeyType key, ValueType value) {
+        int hash = HashtableMap.spread(key);
+        Table current = table;
+        while (true) {
+            int index = hash & current.mask;
+            ReentrantLock lock = lockFor(index);
+            lock.lock();
+            try {
+                Node head = current.slots.get(index);
+                if (!(head instanceof ForwardingNode)) {
+                    for (Node node = head; node != null; node = node.next)
+                        if (node.hash == hash && (node.key == key || node.key.equals(key)))
+                            return (ValueType) node.value;
+                    current.slots.set(index, new Node(key, hash, value, head));
+                    break;
+                }
+                current = ((ForwardingNode) head).nextTable;
+            } finally {
+                lock.unlock();
+            }
+        }
+        if (size.incrementAndGet() >= LOAD_FACTOR * (current.mask + 1))
+            startResize(current);
+        helpResize();
+        return null;
+    }
+
+    /**
+     * Starts growing the specified table, unless a resize is already running.
+     * Only one generation is ever being copied at a time.
+     *
+     * @param full the table that crossed the load factor
+     */
+    private void startResize(Table full) {
+        if (full == table && nextTable.get() == null)
+            nextTable.compareAndSet(null, new Table((full.mask + 1) * 2));
+    }
+
+    /**
+     * Copies one batch of slots into the next table when a resize is running,
+     * and publishes the next table once every slot has been copied.
+     */
+    private void helpResize() {
+        Table next = nextTable.get();
+        if (next == null)
+            return;
+        Table old = table;
+        if ((old.mask + 1) * 2 != next.mask + 1)
+            return; // this resize has already been published
+
+        int end = old.transferIndex.getAndAdd(-TRANSFER_BATCH);
+        if (end <= 0)
+            return; // every slot has been claimed by another thread
+        int start = Math.max(0, end - TRANSFER_BATCH);
+        ForwardingNode forward = new ForwardingNode(next);
+        for (int index = start; index < end; index++)
+            transferSlot(old, next, index, forward);
+
+        if (old.transferred.addAndGet(end - start) == old.mask + 1) {
+            // the last batch publishes the next table, unless clear() got there first
+            locks[0].lock();
+            try {
+                if (nextTable.compareAndSet(next, null))
+                    table = next;
+            } finally {
+                locks[0].unlock();
+            }
+        }
+    }
+
+    /**
+     * Copies the chain in one slot of the old table into the two slots that it
+     * splits into, and forwards later lookups of that slot to the next table.
+     */
+    private void transferSlot(Table old, Table next, int index, ForwardingNode forward) {
+        ReentrantLock lock = lockFor(index);
+        lock.lock();
+        try {
+            Node low = null; // keys that stay at index
+            Node high = null; // keys that move to index + old capacity
+            for (Node node = old.slots.get(index); node != null; node = node.next) {
+                if ((node.hash & (old.mask + 1)) == 0)
+                    low = new Node(node.key, node.hash, node.value, low);
+                else
+                    high = new Node(node.key, node.hash, node.value, high);
+            }
+            next.slots.set(index, low);
+            next.slots.set(index + old.mask + 1, high);
+            old.slots.set(index, forward);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns true if this collection contains a mapping for the specified key.
+     *
+     * @param key the key to be checked
+     * @return true if this collection contains a mapping for the specified key
+     */
+    @Override
+    public boolean containsKey(KeyType key) {
+        if (key == null) // key cannot be null
+            return false;
+        return findNode(key) != null;
+    }
+
+    /**
+     * Returns the value associated with the specified key. Throws exception when
+     * key is null or not found.
+     *
+     * @param key the key to be checked
+     * @throws NoSuchElementException when key is null or not found
+     * @return the value associated with the specified key
+     */
+    @Override
+    public ValueType get(KeyType key) throws NoSuchElementException {
+        if (key == null) // key cannot be null
+            throw new NoSuchElementException("Key cannot be null");
+        Node node = findNode(key);
+        if (node == null)
+            throw new NoSuchElementException("Key not found");
+        return (ValueType) node.value;
+    }
+
+    /**
+     * Returns the value associated with the specified key, or defaultValue when
+     * the key is null or not found, without locking or throwing an exception.
+     *
+     * @param key          the key to be checked
+     * @param defaultValue the value to return when the key is not found
+     * @return the value associated with the specified key, or defaultValue
+     */
+    @Override
+    public ValueType getOrDefault(KeyType key, ValueType defaultValue) {
+        if (key == null)
+            return defaultValue;
+        Node node = findNode(key);
+        return node != null ? (ValueType) node.value : defaultValue;
+    }
+
+    /**
+     * Returns the value associated with the specified key, first adding the value
+     * that mappingFunction computes from the key when the key is not found. The
+     * key is looked up without locking first. When it is missing, the computed
+     * value is added with putIfAbsent, so if several threads add the same key at
+     * once, mappingFunction may run on more than one of them, but they all get
+     * back the one value that was stored.
+     *
+     * @param key             the key to look up or add
+     * @param mappingFunction computes the value for a key that is not found
+     * @return the value associated with the key, or null when it was not found
+     *         and mappingFunction returned null (which is not stored)
+     * @throws IllegalArgumentException when key is null
+     */
+    @Override
+    public ValueType computeIfAbsent(KeyType key, Function<? super KeyType, ? extends ValueType> mappingFunction)
+            throws IllegalArgumentException {
+        if (key == null)
+            throw new IllegalArgumentException("Key cannot be null");
+        Node node = findNode(key);
+        if (node != null)
+            return (ValueType) node.value;
+        ValueType value = mappingFunction.apply(key);
+        if (value == null)
+            return null;
+        ValueType existing = putIfAbsent(key, value);
+        return existing != null ? existing : value;
+    }
+
+    /**
+     * Returns the removed value associated with the specified key.
+     *
+     * @param key the key to be removed
+     * @throws NoSuchElementException when key is null or not found
+     * @return the value that this key mapped to
+     */
+    @Override
+    public ValueType remove(KeyType key) throws NoSuchElementException {
+        if (key == null) // key cannot be null
+            throw new NoSuchElementException("Key cannot be null");
+        ValueType removed = removeIf(key, null);
+        if (removed == null)
+            throw new NoSuchElementException("Key not found");
+        return removed;
+    }
+
+    /**
+     * Removes the mapping for a key, provided that it currently maps to the
+     * expected value (or to anything, when expected is null).
+     *
+     * @param key      the key to be removed
+     * @param expected the value this key must map to, or null for any value
+     * @return the removed value, or null when nothing was removed
+     */
+    protected ValueType removeIf(KeyType key, ValueType expected) {
+        int hash = HashtableMap.spread(key);
+        Table current = table;
+        while (true) {
+            int index = hash & current.mask;
+            ReentrantLock lock = lockFor(index);
+            lock.lock();
+            try {
+                Node head = current.slots.get(index);
+                if (!(head instanceof ForwardingNode)) {
+                    Node found = head;
+                    while (found != null && !(found.hash == hash && (found.key == key || found.key.equals(key))))
+                        found = found.next;
+                    if (found == null || (expected != null && found.value != expected))
+                        return null;
+                    // copy the nodes in front of the removed one, so readers never see a
+                    // chain that is being modified
+                    Node chain = found.next;
+                    for (Node node = head; node != found; node = node.next)
+                        chain = new Node(node.key, node.hash, node.value, chain);
+                    current.slots.set(index, chain);
+                    size.decrementAndGet();
+                    return (ValueType) found.value;
+                }
+                current = ((ForwardingNode) head).nextTable;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Remove all key-value pairs from this collection. Pairs that other threads
+     * add while this runs may or may not be removed.
+     */
+    @Override
+    public void clear() {
+        for (int i = 0; i < STRIPES; i++)
+            locks[i].lock();
+        try {
+            table = new Table(STRIPES);
+            nextTable.set(null);
+            size.set(0);
+        } finally {
+            for (int i = STRIPES - 1; i >= 0; i--)
+                locks[i].unlock();
+        }
+    }
+
+    /**
+     * Returns the size.
+     *
+     * @return the number of key-value pairs in this collection
+     */
+    @Override
+    public int getSize() {
+        return size.get();
+    }
+
+    /**
+     * Returns the capacity.
+     *
+     * @return the capacity of this collection
+     */
+    @Override
+    public int getCapacity() {
+        return table.mask + 1;
+    }
+
+}
@@ -0,0 +1,381 @@
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class allows multiple values to be associated with the same key by
+ * grouping such duplicate values together in a list, and can be shared between
+ * an ingest thread that calls putOne and any number of query threads that call
+ * get and containsKey.
+ *
+ * Lookups never lock. Each key's values are kept in an append-only array that
+ * is published through a volatile snapshot, so a reader iterating over a list
+ * sees every value that had been added when its iteration started, even while
+ * more values are being appended.
+ *
+ * Like HashtableWithDuplicateKeysAE, this class gives each distinct value a
+ * dense id, and frees that id once the value has been removed from every key,
+ * after which getValueById returns null for it. Ids are not reused.
+ *
+ * This class builds on top of ConcurrentHashtableMap the same way that
+ * HashtableWithDuplicateKeysAE builds on top of HashtableMap.
+ *
+ * @param <KeyType>   the key type
+ * @param <ValueType> the value type
+ */
+public class ConcurrentHashtableWithDuplicateKeysAE<KeyType, ValueType>
+		extends ConcurrentHashtableMap<KeyType, List<ValueType>>
+		implements HashtableWithDuplicateKeysInterface<KeyType, ValueType> {
+
+	/**
+	 * The list of values mapped to by one key, along with the id of each value.
+	 * Writers synchronize on the list, while readers only ever read the current
+	 * snapshot.
+	 */
+	static class ValueList<ValueType> extends AbstractList<ValueType> {
+
+		/**
+		 * The values that a reader can see: the first size elements of items, and
+		 * their ids in the same positions of ids.
+		 */
+		static class Snapshot {
+			final Object[] items;
+			final int[] ids;
+			final int size;
+
+			Snapshot(Object[] items, int[] ids, int size) {
+				this.items = items;
+				this.ids = ids;
+				this.size = size;
+			}
+		}
+
+		private volatile Snapshot snapshot = new Snapshot(new Object[4], new int[4], 0);
+		private final PostingBitmap members = new PostingBitmap(); // the ids in this list, only used by writers
+		private boolean retired; // set once this list has been removed from the table
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public ValueType get(int index) {
+			Snapshot current = snapshot;
+			if (index < 0 || index >= current.size)
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + current.size);
+			return (ValueType) current.items[index];
+		}
+
+		@Override
+		public int size() {
+			return snapshot.size;
+		}
+
+		@Override
+		public Iterator<ValueType> iterator() {
+			Snapshot current = snapshot; // iterate over the values present right now
+			return new Iterator<ValueType>() {
+				int next = 0;
+
+				@Override
+				public boolean hasNext() {
+					return next < current.size;
+				}
+
+				@Override
+				@SuppressWarnings("unchecked")
+				public ValueType next() {
+					if (next >= current.size)
+						throw new NoSuchElementException();
+					return (ValueType) current.items[next++];
+				}
+			};
+		}
+
+		/**
+		 * @return the ids of the values present right now
+		 */
+		PostingBitmap getIds() {
+			Snapshot current = snapshot;
+			PostingBitmap ids = new PostingBitmap();
+			for (int i = 0; i < current.size; i++)
+				ids.add(current.ids[i]);
+			return ids;
+		}
+
+		/**
+		 * Appends a value that is not already in this list.
+		 *
+		 * @param value the value to add
+		 * @param id    the id of that value in the table
+		 * @return 1 if the value was added, 0 if it was already present, or -1 if
+		 *         this list has been removed from its table
+		 */
+		synchronized int append(ValueType value, int id) {
+			if (retired)
+				return -1;
+			Snapshot current = snapshot;
+			// values usually arrive in order, so check the last one before the rest
+			if (current.size > 0 && current.ids[current.size - 1] == id)
+				return 0;
+			if (!members.add(id))
+				return 0;
+			Object[] items = current.items;
+			int[] ids = current.ids;
+			if (current.size == items.length) {
+				items = Arrays.copyOf(items, items.length * 2);
+				ids = Arrays.copyOf(ids, ids.length * 2);
+			}
+			// slots past the published size are never read, so these writes are safe
+			items[current.size] = value;
+			ids[current.size] = id;
+			snapshot = new Snapshot(items, ids, current.size + 1);
+			return 1;
+		}
+
+		/**
+		 * Removes a value from this list, without modifying the arrays that readers
+		 * of the previous snapshot might still be iterating over.
+		 *
+		 * @param id the id of the value to remove
+		 * @return true if the value was present
+		 */
+		synchronized boolean delete(int id) {
+			if (!members.remove(id))
+				return false;
+			Snapshot current = snapshot;
+			int i = 0;
+			while (current.ids[i] != id)
+				i++;
+			Object[] items = new Object[Math.max(4, current.items.length)];
+			int[] ids = new int[items.length];
+			System.arraycopy(current.items, 0, items, 0, i);
+			System.arraycopy(current.items, i + 1, items, i, current.size - i - 1);
+			System.arraycopy(current.ids, 0, ids, 0, i);
+			System.arraycopy(current.ids, i + 1, ids, i, current.size - i - 1);
+			snapshot = new Snapshot(items, ids, current.size - 1);
+			return true;
+		}
+	}
+
+	private final AtomicInteger numberOfValues = new AtomicInteger();
+	private final ConcurrentHashtableMap<ValueType, Integer> valueIds = new ConcurrentHashtableMap<>();
+	private volatile Object[] valuesById = new Object[16]; // each value, indexed by its id, or null once freed
+	private int[] keyCounts = new int[16]; // the number of lists that hold each id, guarded by valueIds
+	private int nextValueId; // guarded by valueIds
+
+	// pass through constructors:
+
+	public ConcurrentHashtableWithDuplicateKeysAE(int capacity) {
+		super(capacity);
+	}
+
+	public ConcurrentHashtableWithDuplicateKeysAE() {
+		super();
+	}
+
+	/**
+	 * This putOne method adds a single value to the list of values associated with
+	 * the specified key, if that list does not already contain it.
+	 *
+	 * @param key   is used to store and look up this mapping
+	 * @param value is one more value that should be associated with given key
+	 */
+	@SuppressWarnings("unchecked")
+	public void putOne(KeyType key, ValueType value) {
+		while (true) {
+			Node node = findNode(key);
+			ValueList<ValueType> values;
+			if (node != null) {
+				values = (ValueList<ValueType>) node.value;
+			} else {
+				values = new ValueList<>();
+				List<ValueType> existing = putIfAbsent(key, values);
+				if (existing != null) // another thread added this key first
+					values = (ValueList<ValueType>) existing;
+			}
+			int id = acquireId(value);
+			int added = values.append(value, id);
+			if (added < 1)
+				releaseId(id);
+			if (added >= 0) {
+				numberOfValues.addAndGet(added);
+				return;
+			}
+			// the list was removed from the table after we found it, so look again
+		}
+	}
+
+	/**
+	 * This removeOne method removes a single value from the list of values
+	 * associated with the specified key, and removes the key once its list is
+	 * empty.
+	 *
+	 * @param key   is the key that this value is being removed from
+	 * @param value is the specific value that should be removed
+	 * @throws NoSuchElementException when key is not stored in this collection
+	 */
+	@SuppressWarnings("unchecked")
+	public void removeOne(KeyType key, ValueType value) {
+		ValueList<ValueType> values = (ValueList<ValueType>) get(key);
+		synchronized (values) {
+			// look the id up while holding the list, so it cannot be freed and the
+			// value added to this list again under a new id in between
+			Node node = value == null ? null : valueIds.findNode(value);
+			if (node != null && values.delete((Integer) node.value)) {
+				numberOfValues.decrementAndGet();
+				releaseId((Integer) node.value);
+			}
+			if (values.size() == 0 && !values.retired) {
+				values.retired = true;
+				removeIf(key, values);
+			}
+		}
+	}
+
+	/**
+	 * Returns the id of the specified value, assigning it the next unused id if it
+	 * has not been seen before, and counts one more list holding that id. The
+	 * count is taken before the value is added to a list, so the id cannot be
+	 * freed in between; callers release it again if the list did not take it.
+	 *
+	 * @param value the value to look up
+	 * @return the dense id of that value
+	 */
+	@SuppressWarnings("unchecked")
+	private int acquireId(ValueType value) {
+		synchronized (valueIds) {
+			Node node = valueIds.findNode(value);
+			int id;
+			if (node != null) {
+				id = (Integer) node.value;
+			} else {
+				id = nextValueId++;
+				Object[] values = valuesById;
+				if (id == values.length) {
+					values = Arrays.copyOf(values, values.length * 2);
+					keyCounts = Arrays.copyOf(keyCounts, values.length);
+				}
+				values[id] = value; // publish the value before its id
+				valuesById = values;
+				valueIds.put(value, id);
+			}
+			keyCounts[id]++;
+			return id;
+		}
+	}
+
+	/**
+	 * Counts one list fewer holding the specified id, and frees the id once no
+	 * list holds it.
+	 *
+	 * @param id the id that was removed from a list, or not added to one
+	 */
+	@SuppressWarnings("unchecked")
+	private void releaseId(int id) {
+		synchronized (valueIds) {
+			if (--keyCounts[id] > 0)
+				return;
+			Object[] values = valuesById;
+			valueIds.remove((ValueType) values[id]);
+			values[id] = null;
+			valuesById = values; // publish the freed slot
+		}
+	}
+
+	/**
+	 * Returns the ids of the values that the specified key maps to, as they are
+	 * at the time of this call. The ids are kept alongside the values, so none of
+	 * them are looked up. The bitmap is a copy, so it can be read while the key
+	 * changes, though like that of any other implementation it is read-only.
+	 *
+	 * @param key the key to look up
+	 * @return the ids of that key's values, empty when the key is not stored
+	 */
+	@SuppressWarnings("unchecked")
+	public PostingBitmap getValueIds(KeyType key) {
+		Node node = key == null ? null : findNode(key);
+		return node == null ? new PostingBitmap() : ((ValueList<ValueType>) node.value).getIds();
+	}
+
+	/**
+	 * Returns the value that was assigned the specified id.
+	 *
+	 * @param id the id of the value
+	 * @return the value with that id, or null if no value has it any more
+	 */
+	@SuppressWarnings("unchecked")
+	public ValueType getValueById(int id) {
+		Object[] values = valuesById;
+		return id < 0 || id >= values.length ? null : (ValueType) values[id];
+	}
+
+	/**
+	 * @return int number of values stored in this collection
+	 */
+	public int getNumberOfValues() {
+		return numberOfValues.get();
+	}
+
+	// the following overrides are meant to help keep numberOfValues in sync
+
+	@Override
+	public void clear() {
+		synchronized (valueIds) {
+			super.clear();
+			numberOfValues.set(0);
+			valueIds.clear();
+			keyCounts = new int[16];
+			nextValueId = 0;
+			valuesById = new Object[16];
+		}
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public List<ValueType> remove(KeyType key) {
+		ValueList<ValueType> values = (ValueList<ValueType>) get(key);
+		synchronized (values) {
+			// retire the list first, so no putOne can append to it once it is removed
+			if (values.retired)
+				throw new NoSuchElementException("Key not found");
+			values.retired = true;
+			removeIf(key, values);
+			numberOfValues.addAndGet(-values.size());
+			// the list keeps its values for the caller, but no longer holds their ids
+			ValueList.Snapshot current = values.snapshot;
+			for (int i = 0; i < current.size; i++)
+				releaseId(current.ids[i]);
+		}
+		return values;
+	}
+
+	/**
+	 * Maps a key to a copy of the specified values. Throws exception when key is
+	 * null or duplicate of one already stored, before any of the values get ids.
+	 */
+	@Override
+	public void put(KeyType key, List<ValueType> values) {
+		if (key == null)
+			throw new IllegalArgumentException("Key cannot be null");
+		if (containsKey(key))
+			throw new IllegalArgumentException("Key already exists");
+		ValueList<ValueType> copy = new ValueList<>();
+		int added = 0;
+		for (ValueType value : values) {
+			int id = acquireId(value);
+			if (copy.append(value, id) == 1)
+				added++;
+			else
+				releaseId(id);
+		}
+		if (putIfAbsent(key, copy) != null) { // another thread added this key first
+			ValueList.Snapshot current = copy.snapshot;
+			for (int i = 0; i < current.size; i++)
+				releaseId(current.ids[i]);
+			throw new IllegalArgumentException("Key already exists");
+		}
+		numberOfValues.addAndGet(added);
+	}
+
+}
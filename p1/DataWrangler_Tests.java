@@ -0,0 +1,270 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class tests that MappedPostReaderDW and PostStoreDW read the same posts
+ * as PostReaderDW, whether they read a whole file at once or one small region
+ * at a time, and that PostFileFollowerDW reads the posts appended to a file.
+ */
+public class DataWrangler_Tests {
+
+    /**
+     * @return true if both lists hold posts with the same titles, urls and bodies,
+     *         in the same order
+     */
+    private static boolean samePosts(List<PostInterface> expected, List<PostInterface> actual) {
+        if (expected.size() != actual.size())
+            return false;
+        for (int i = 0; i < expected.size(); i++) {
+            PostInterface a = expected.get(i);
+            PostInterface b = actual.get(i);
+            if (!a.getTitle().equals(b.getTitle()) || !a.getUrl().equals(b.getUrl())
+                    || !a.getBody().equals(b.getBody()))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Tests that MappedPostReaderDW reads the same posts as PostReaderDW from each
+     * of the files in the data folder.
+     *
+     * @return true if the test passed, false otherwise
+     */
+    public static boolean test1() {
+        try {
+            for (String filename : new String[] { "data/small.txt", "data/large.txt", "data/fake.txt" })
+                if (!samePosts(new PostReaderDW().readPostsFromFile(filename),
+                        new MappedPostReaderDW().readPostsFromFile(filename)))
+                    return false;
+        } catch (FileNotFoundException e) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Tests reading data/large.txt through regions that are far smaller than many
+     * of its lines, so that lines are split across regions and regions are grown.
+     *
+     * @return true if the test passed, false otherwise
+     */
+    public static boolean test2() {
+        try {
+            List<PostInterface> expected = new PostReaderDW().readPostsFromFile("data/large.txt");
+            for (int regionSize : new int[] { 1, 7, 1000, 4096 })
+                if (!samePosts(expected, new MappedPostReaderDW(regionSize).readPostsFromFile("data/large.txt")))
+                    return false;
+        } catch (FileNotFoundException e) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Tests the line endings, delimiters, and non-ASCII text that PostReaderDW
+     * accepts, and that missing files are reported the same way.
+     *
+     * @return true if the test passed, false otherwise
+     */
+    public static boolean test3() {
+        String text = "crlf+++url1+++body\r\n" + "no body+++url2\n" + "trailing+++url3+++\r"
+                + "extra plus++++url4+++body+\n" + "\n" + "café – naïve+++url5+++über\r\n"
+                + "too+++many+++parts+++here\n" + "last line+++url6+++no newline";
+        File file;
+        try {
+            file = File.createTempFile("posts", ".txt");
+            file.deleteOnExit();
+            Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            return false;
+        }
+        try {
+            List<PostInterface> expected = new PostReaderDW().readPostsFromFile(file.getPath());
+            List<PostInterface> streamed = new ArrayList<>();
+            new MappedPostReaderDW(16).readPostsFromFile(file.getPath(), streamed::add);
+            if (expected.size() != 6 || !samePosts(expected, streamed))
+                return false;
+        } catch (FileNotFoundException e) {
+            return false;
+        }
+        try {
+            new MappedPostReaderDW().readPostsFromFile("data/missing.txt");
+            return false;
+        } catch (FileNotFoundException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Tests that a backend streaming posts from MappedPostReaderDW, on one thread
+     * and on several, ends up with the same dataset as one using PostReaderDW.
+     *
+     * @return true if the test passed, false otherwise
+     */
+    public static boolean test4() {
+        CHSearchBackendBD expected = new CHSearchBackendBD(new HashtableWithDuplicateKeysAE<>(), new PostReaderDW());
+        CHSearchBackendBD streamed = new CHSearchBackendBD(new HashtableWithDuplicateKeysAE<>(),
+                new MappedPostReaderDW());
+        CHSearchBackendBD parallel = new CHSearchBackendBD(new HashtableWithDuplicateKeysAE<>(),
+                new MappedPostReaderDW(), 3);
+        try {
+            expected.loadData("data/large.txt");
+            streamed.loadData("data/large.txt");
+            parallel.loadData("data/large.txt");
+        } catch (FileNotFoundException e) {
+            return false;
+        }
+        return expected.getStatisticsString().equals(streamed.getStatisticsString())
+                && expected.getStatisticsString().equals(parallel.getStatisticsString())
+                && expected.findPostsByTitleOrBodyWords("protein").equals(parallel.findPostsByTitleOrBodyWords("protein"));
+    }
+
+    /**
+     * Tests that PostStoreDW reads the same posts as PostReaderDW, including
+     * bodies that are read from views whose regions split them, posts without a
+     * body, non-ASCII text, and a read from part way through a file that is
+     * still being written, and that a backend loading posts from it ends up
+     * with the same dataset.
+     *
+     * @return true if the test passed, false otherwise
+     */
+    public static boolean test5() {
+        String text = "no body+++url1\n" + "café – naïve+++url2+++über alles\r\n" + "last+++url3+++line";
+        File file;
+        try {
+            file = File.createTempFile("posts", ".txt");
+            file.deleteOnExit();
+            Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            return false;
+        }
+        try {
+            PostStoreDW store = new PostStoreDW(16, 5);
+            List<PostInterface> stored = store.readPostsFromFile(file.getPath());
+            if (!samePosts(new PostReaderDW().readPostsFromFile(file.getPath()), stored) || store.getPostCount() != 3
+                    || store.getBodyBytes() != "über alles".getBytes(StandardCharsets.UTF_8).length + 4)
+                return false;
+            // reading part of a file that is still being written, as a follower does
+            List<PostInterface> followed = new ArrayList<>();
+            long end = store.readPostsFromFile(file.getPath(), "no body+++url1\n".length(), false, followed::add);
+            if (end != text.getBytes(StandardCharsets.UTF_8).length - "last+++url3+++line".length()
+                    || followed.size() != 1 || !followed.get(0).getBody().equals("über alles"))
+                return false;
+            for (String filename : new String[] { "data/small.txt", "data/large.txt", "data/fake.txt" })
+                if (!samePosts(new PostReaderDW().readPostsFromFile(filename),
+                        new PostStoreDW(1000, 4096).readPostsFromFile(filename)))
+                    return false;
+            new PostStoreDW().readPostsFromFile("data/missing.txt");
+            return false;
+        } catch (FileNotFoundException e) {
+            // expected, for the missing file
+        }
+        CHSearchBackendBD expected = new CHSearchBackendBD(new HashtableWithDuplicateKeysAE<>(), new PostReaderDW());
+        CHSearchBackendBD stored = new CHSearchBackendBD(new HashtableWithDuplicateKeysAE<>(), new PostStoreDW());
+        try {
+            expected.loadData("data/large.txt");
+            stored.loadData("data/large.txt");
+            if (!expected.getStatisticsString().equals(stored.getStatisticsString())
+                    || !expected.findPostsByTitleOrBodyWords("protein").equals(stored.findPostsByTitleOrBodyWords("protein")))
+                return false;
+            // removing a post compares its body with the one read from the file
+            PostInterface first = new PostReaderDW().readPostsFromFile("data/large.txt").get(0);
+            return expected.removePost(first) && stored.removePost(first)
+                    && expected.getStatisticsString().equals(stored.getStatisticsString());
+        } catch (FileNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Tests that a PostFileFollowerDW only reads the lines appended to a file
+     * since it last read it, leaves a line that is still being written (even one
+     * that ends with the \r of a \r\n) for a later read, can resume from the
+     * offset of another follower, fails when the file shrinks, and reads
+     * appended lines on its own once started.
+     *
+     * @return true if the test passed, false otherwise
+     */
+    public static boolean test6() {
+        Path path;
+        try {
+            path = File.createTempFile("posts", ".txt").toPath();
+            path.toFile().deleteOnExit();
+            Files.write(path, "t1+++u1+++b1\nt2+++u2".getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            return false;
+        }
+        List<PostInterface> posts = new ArrayList<>();
+        PostFileFollowerDW follower = new PostFileFollowerDW(path.toString(), 0, 10, posts::addAll);
+        try {
+            if (follower.poll() != 1 || follower.getOffset() != 13 || follower.getPendingBytes() != 7
+                    || !posts.get(0).getBody().equals("b1"))
+                return false;
+            Files.write(path, "+++b2\r".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+            if (follower.poll() != 0)
+                return false;
+            Files.write(path, "\nt3+++u3\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+            if (follower.poll() != 2 || follower.getOffset() != Files.size(path) || follower.getPendingBytes() != 0
+                    || follower.poll() != 0 || follower.getPostCount() != 3 || follower.getReads() != 2)
+                return false;
+            List<PostInterface> expected = new PostReaderDW().readPostsFromFile(path.toString());
+            if (!samePosts(expected, posts))
+                return false;
+            // a follower that resumes from where the first line ends reads the others
+            List<PostInterface> resumed = new ArrayList<>();
+            new PostFileFollowerDW(path.toString(), 13, resumed::addAll).poll();
+            if (!samePosts(expected.subList(1, 3), resumed))
+                return false;
+            // once started, appended lines are read without calling poll
+            follower.start();
+            Files.write(path, "t4+++u4+++b4\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+            for (int waited = 0; follower.getPostCount() < 4 && waited < 5000; waited += 10)
+                Thread.sleep(10);
+            if (follower.getPostCount() != 4 || !follower.isFollowing() || follower.getMaxLagMillis() < 0)
+                return false;
+            follower.close();
+            if (follower.isFollowing() || follower.getFailure() != null)
+                return false;
+            Files.write(path, "t1+++u1\n".getBytes(StandardCharsets.UTF_8));
+            try {
+                new PostFileFollowerDW(path.toString(), 13, posts::addAll).poll();
+                return false;
+            } catch (UncheckedIOException e) {
+                // expected, since the file is shorter than the offset
+            }
+        } catch (IOException | InterruptedException e) {
+            return false;
+        } finally {
+            follower.close(); // in case the test failed before closing it
+        }
+        try {
+            new PostFileFollowerDW("data/missing.txt", 0, posts::addAll).poll();
+            return false;
+        } catch (FileNotFoundException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Main method for testing, runs all tests and prints the results.
+     *
+     * @param args
+     */
+    public static void main(String[] args) {
+        System.out.println("DataWrangler Individual Test 1: " + (test1() ? "passed" : "failed"));
+        System.out.println("DataWrangler Individual Test 2: " + (test2() ? "passed" : "failed"));
+        System.out.println("DataWrangler Individual Test 3: " + (test3() ? "passed" : "failed"));
+        System.out.println("DataWrangler Individual Test 4: " + (test4() ? "passed" : "failed"));
+        System.out.println("DataWrangler Individual Test 5: " + (test5() ? "passed" : "failed"));
+        System.out.println("DataWrangler Individual Test 6: " + (test6() ? "passed" : "failed"));
+    }
+}
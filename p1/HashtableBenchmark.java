@@ -0,0 +1,256 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * Small, self contained benchmarks for the hashtable implementations used by
+ * the CHSearchBackend. These are run from the command line rather than as part
+ * of the tests, since their output is meant to be read by a person:
+ *
+ * java HashtableBenchmark churn
+ * java HashtableBenchmark probes
+ * java HashtableBenchmark putLatency
+ * java HashtableBenchmark postings
+ * java HashtableBenchmark misses
+ */
+public class HashtableBenchmark {
+
+    /**
+     * Keeps a HashtableMap at a fixed number of keys while repeatedly removing a
+     * random key and adding a brand new one, and reports the mean probe length
+     * after every round. With backward-shift deletion the probe length stays flat
+     * instead of growing with the number of removals.
+     *
+     * @param liveKeys the number of keys stored throughout the benchmark
+     * @param rounds   the number of rounds to report on
+     */
+    public static void churn(int liveKeys, int rounds) {
+        HashtableMap<Integer, Integer> map = new HashtableMap<>();
+        int[] live = new int[liveKeys]; // the keys that are currently stored
+        int nextKey = 0;
+        for (int i = 0; i < liveKeys; i++) {
+            live[i] = nextKey;
+            map.put(nextKey, nextKey);
+            nextKey++;
+        }
+
+        Random random = new Random(400);
+        System.out.println("round  removals  size  capacity  meanProbeLength  nsPerLookup");
+        for (int round = 1; round <= rounds; round++) {
+            // replace every live key once per round, on average
+            for (int i = 0; i < liveKeys; i++) {
+                int slot = random.nextInt(liveKeys);
+                map.remove(live[slot]);
+                live[slot] = nextKey;
+                map.put(nextKey, nextKey);
+                nextKey++;
+            }
+
+            long start = System.nanoTime();
+            long checksum = 0;
+            for (int i = 0; i < liveKeys; i++)
+                checksum += map.get(live[i]);
+            long elapsed = System.nanoTime() - start;
+            if (checksum == 42) // keeps the lookups from being optimized away
+                System.out.println();
+
+            System.out.printf("%5d  %8d  %4d  %8d  %15.3f  %11.1f%n", round, (long) round * liveKeys,
+                    map.getSize(), map.getCapacity(), map.getMeanProbeLength(), (double) elapsed / liveKeys);
+        }
+    }
+
+    /**
+     * Loads the same clustered keys into a HashtableMap and a
+     * RobinHoodHashtableMap, looks each of them up along with as many missing
+     * keys, and reports the probe length distribution of the Robin Hood table.
+     *
+     * @param keyCount the number of keys to store
+     */
+    public static void probes(int keyCount) {
+        HashtableMap<Integer, Integer> linear = new HashtableMap<>();
+        RobinHoodHashtableMap<Integer, Integer> robinHood = new RobinHoodHashtableMap<>();
+        for (int i = 0; i < keyCount; i++) {
+            int key = (i / 8) * 4096 + (i % 8); // runs of neighbouring keys
+            linear.put(key, i);
+            robinHood.put(key, i);
+        }
+        robinHood.resetProbeStatistics();
+        for (int i = 0; i < keyCount; i++) {
+            robinHood.containsKey((i / 8) * 4096 + (i % 8));
+            robinHood.containsKey((i / 8) * 4096 + 8 + (i % 8)); // missing
+        }
+
+        System.out.printf("HashtableMap          mean probe length (hits): %.3f%n", linear.getMeanProbeLength());
+        System.out.printf("RobinHoodHashtableMap mean probe length (hits and misses): %.3f, max: %d%n",
+                robinHood.getMeanProbeLength(), robinHood.getMaxProbeLength());
+        long[] histogram = robinHood.getProbeHistogram();
+        for (int i = 1; i < histogram.length; i++)
+            if (histogram[i] > 0)
+                System.out.printf("%4s slots: %d%n", i == histogram.length - 1 ? i + "+" : "" + i, histogram[i]);
+    }
+
+    /**
+     * Times every put into a HashtableMap that grows all at once and into one that
+     * grows incrementally, and reports the latency percentiles of each. The puts
+     * that trigger a resize show up in the tail of the first table.
+     *
+     * @param keyCount the number of keys to add to each table
+     */
+    public static void putLatency(int keyCount) {
+        Integer[] keys = new Integer[keyCount];
+        for (int i = 0; i < keyCount; i++)
+            keys[i] = i * 31; // box these before timing anything
+        for (int round = 0; round < 3; round++) { // the first rounds warm up the JIT
+            for (boolean incremental : new boolean[] { false, true }) {
+                HashtableMap<Integer, Integer> map = new HashtableMap<>(8, incremental);
+                long[] latencies = new long[keyCount];
+                for (int i = 0; i < keyCount; i++) {
+                    long start = System.nanoTime();
+                    map.put(keys[i], keys[i]);
+                    latencies[i] = System.nanoTime() - start;
+                }
+                if (round < 2)
+                    continue;
+                Arrays.sort(latencies);
+                System.out.printf("%-11s p50: %6d ns  p99: %6d ns  p99.9: %8d ns  p99.99: %10d ns  max: %10d ns%n",
+                        incremental ? "incremental" : "all at once", latencies[keyCount / 2],
+                        latencies[(int) (keyCount * 0.99)], latencies[(int) (keyCount * 0.999)],
+                        latencies[(int) (keyCount * 0.9999)], latencies[keyCount - 1]);
+            }
+        }
+    }
+
+    /**
+     * Indexes synthetic posts into a HashtableWithDuplicateKeysAE, where every
+     * post contains a handful of very common words along with rarer ones, and
+     * reports the indexing rate and the stored size of each posting.
+     *
+     * @param postCount the number of posts to index
+     */
+    public static void postings(int postCount) {
+        HashtableWithDuplicateKeysAE<String, Object> table = new HashtableWithDuplicateKeysAE<>();
+        String[] common = { "the", "a", "and", "to", "of" };
+        Random random = new Random(400);
+        long start = System.nanoTime();
+        for (int i = 0; i < postCount; i++) {
+            Object post = new Object();
+            for (String word : common)
+                table.putOne(word, post);
+            for (int j = 0; j < 20; j++)
+                table.putOne("word" + random.nextInt(50_000), post);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long encodedBytes = 0;
+        for (String word : common)
+            encodedBytes += ((PostingListAE<Object>) table.get(word)).getSizeInBytes();
+        for (int w = 0; w < 50_000; w++)
+            if (table.containsKey("word" + w))
+                encodedBytes += ((PostingListAE<Object>) table.get("word" + w)).getSizeInBytes();
+
+        System.out.printf("%d posts, %d postings in %.1f ms (%.0f ns per putOne)%n", postCount,
+                table.getNumberOfValues(), elapsed / 1e6, (double) elapsed / (postCount * 25L));
+        System.out.printf("common word lists: %d postings each%n", table.get("the").size());
+        System.out.printf("stored posting bytes: %d (%.2f bytes per posting)%n", encodedBytes,
+                (double) encodedBytes / table.getNumberOfValues());
+    }
+
+    /**
+     * Looks up mostly missing keys in a HashtableMap, as a search for words that
+     * are not in the dataset does, first by catching the NoSuchElementException
+     * thrown by get, then by checking containsKey before get, and then with
+     * getOrDefault. It also compares adding to the lists stored under keys with
+     * containsKey, get, and put against doing so with computeIfAbsent.
+     *
+     * @param keyCount the number of keys stored
+     * @param missRate the fraction of lookups that are for missing keys
+     */
+    public static void misses(int keyCount, double missRate) {
+        HashtableMap<String, Integer> map = new HashtableMap<>();
+        for (int i = 0; i < keyCount; i++)
+            map.put("word" + i, i);
+        Random random = new Random(400);
+        String[] lookups = new String[keyCount];
+        for (int i = 0; i < lookups.length; i++)
+            lookups[i] = random.nextDouble() < missRate ? "missing" + i : "word" + random.nextInt(keyCount);
+
+        System.out.println("round  catchNs  containsKeyNs  getOrDefaultNs");
+        long checksum = 0;
+        for (int round = 1; round <= 5; round++) {
+            long start = System.nanoTime();
+            for (String key : lookups) {
+                try {
+                    checksum += map.get(key);
+                } catch (NoSuchElementException e) {
+                    checksum--;
+                }
+            }
+            long caught = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (String key : lookups)
+                checksum += map.containsKey(key) ? map.get(key) : -1;
+            long checked = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (String key : lookups)
+                checksum += map.getOrDefault(key, -1);
+            long defaulted = System.nanoTime() - start;
+
+            System.out.printf("%5d  %7.1f  %13.1f  %14.1f%n", round, (double) caught / lookups.length,
+                    (double) checked / lookups.length, (double) defaulted / lookups.length);
+        }
+
+        System.out.println("round  containsKeyPutNs  computeIfAbsentNs");
+        for (int round = 1; round <= 5; round++) {
+            HashtableMap<String, int[]> counts = new HashtableMap<>();
+            long start = System.nanoTime();
+            for (String key : lookups) {
+                if (!counts.containsKey(key))
+                    counts.put(key, new int[1]);
+                counts.get(key)[0]++;
+            }
+            long checked = System.nanoTime() - start;
+
+            counts = new HashtableMap<>();
+            start = System.nanoTime();
+            for (String key : lookups)
+                counts.computeIfAbsent(key, k -> new int[1])[0]++;
+            long computed = System.nanoTime() - start;
+            checksum += counts.getSize();
+
+            System.out.printf("%5d  %16.1f  %17.1f%n", round, (double) checked / lookups.length,
+                    (double) computed / lookups.length);
+        }
+        if (checksum == 42) // keeps the lookups from being optimized away
+            System.out.println();
+    }
+
+    /**
+     * Runs the benchmark named by the first command line argument.
+     *
+     * @param args the name of the benchmark to run
+     */
+    public static void main(String[] args) {
+        String name = args.length > 0 ? args[0] : "churn";
+        switch (name) {
+            case "churn":
+                churn(500_000, 20);
+                break;
+            case "probes":
+                probes(1_000_000);
+                break;
+            case "putLatency":
+                putLatency(4_000_000);
+                break;
+            case "postings":
+                postings(args.length > 1 ? Integer.parseInt(args[1]) : 200_000);
+                break;
+            case "misses":
+                misses(1_000_000, args.length > 1 ? Double.parseDouble(args[1]) : 0.9);
+                break;
+            default:
+                System.out.println("Unknown benchmark: " + name);
+        }
+    }
+}
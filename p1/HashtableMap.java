@@ -6,14 +6,33 @@
 // Notes to Grader: funny story, dragons are real and they're in my basement
 
 import java.util.NoSuchElementException;
+import java.util.function.Function;
 
 /**
  * This abstract data type represents a collection that maps keys to values,
  * utilizing open addressing with linear probing, in which duplicate keys are
  * not allowed (each key maps to exactly one value).
- * 
+ *
+ * Entries are not wrapped in node objects. Instead keys, values, and each
+ * key's (spread) hash code are kept in three parallel arrays, so a probe only
+ * touches a contiguous int array until a hash matches, and equals is only
+ * called on keys whose cached hash is identical. The capacity is always a
+ * power of two, which lets the home index be computed with a bit mask rather
+ * than a modulo.
+ *
+ * Removing a key does not leave a tombstone behind. The entries that follow it
+ * in the same cluster are shifted back into the freed slot instead, so probe
+ * lengths only ever depend on the keys that are currently stored, no matter how
+ * many keys have been added and removed before.
+ *
+ * A hashtable created with incrementalResize set does not copy every entry at
+ * once when it grows. It keeps the old arrays next to the new ones instead, and
+ * each later put or remove moves the entries from a bounded number of old slots
+ * over, so no single operation pays for the whole resize. Lookups check the new
+ * arrays first and then the old ones while entries are still being moved.
+ *
  * @author Nico
- * 
+ *
  * @param <KeyType>   the key type
  * @param <ValueType> the value type
  * @see this class is based on the MapADT interface
@@ -22,39 +41,44 @@ import java.util.NoSuchElementException;
 @SuppressWarnings("unchecked")
 public class HashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueType> {
 
-    /**
-     * This class represents a node in the hashtable. Each node contains a key, a
-     * value.
-     * 
-     * @param <KeyType>   the key type
-     * @param <ValueType> the value type
-     * @see this is a basic HashNode class
-     */
-    class Node<KeyType, ValueType> {
-        KeyType key;
-        ValueType value;
-        boolean isDeleted; // whether the node has been deleted. This is important for searching
-                           // for a key in the hashtable.
-
-        public Node(KeyType key, ValueType value) {
-            this.key = key;
-            this.value = value;
-        }
-    }
-
-    protected Node<KeyType, ValueType>[] table; // the hashtable
+    protected Object[] keys; // the key stored in each slot, null when the slot is empty
+    protected Object[] values; // the value stored in each slot
+    protected int[] hashes; // the spread hash code of the key stored in each slot
     protected int size; // the number of items in the hashtable
-    protected int capacity; // the capacity of the hashtable
+    protected int capacity; // the capacity of the hashtable, always a power of two
+    protected int mask; // capacity - 1, used in place of % capacity
     protected final double LOAD_FACTOR = 0.70; // the load factor of the hashtable
+    protected static final int MIGRATION_STEP = 4; // old slots moved per put or remove
+
+    protected final boolean incrementalResize; // whether to grow a few slots at a time
+    protected Object[] oldKeys; // the arrays being grown out of, null when not resizing
+    protected Object[] oldValues;
+    protected int[] oldHashes;
+    protected int oldSize; // the number of entries still stored in the old arrays
+    protected int migrateIndex; // every old slot before this index is empty
 
     /**
-     * Creates a new HashtableMap with the specified capacity.
-     * 
+     * Creates a new HashtableMap with the specified capacity. The capacity is
+     * rounded up to the nearest power of two.
+     *
      * @param capacity the initial capacity of the hashtable
      */
     public HashtableMap(int capacity) {
-        this.capacity = capacity;
-        this.table = new Node[capacity];
+        this(capacity, false);
+    }
+
+    /**
+     * Creates a new HashtableMap with the specified capacity, which either grows
+     * all at once or a few slots at a time. The capacity is rounded up to the
+     * nearest power of two.
+     *
+     * @param capacity          the initial capacity of the hashtable
+     * @param incrementalResize true to spread the work of each resize over the
+     *                          puts and removes that follow it
+     */
+    public HashtableMap(int capacity, boolean incrementalResize) {
+        this.incrementalResize = incrementalResize;
+        allocate(tableSizeFor(capacity));
         this.size = 0;
     }
 
@@ -65,11 +89,115 @@ public class HashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueTy
         this(8);
     }
 
+    /**
+     * Returns the smallest power of two that is greater than or equal to the
+     * requested capacity (and at least 2).
+     *
+     * @param capacity the requested capacity
+     * @return the capacity that will actually be allocated
+     */
+    protected static int tableSizeFor(int capacity) {
+        if (capacity <= 2)
+            return 2;
+        if (capacity > (1 << 30))
+            return 1 << 30;
+        return Integer.highestOneBit(capacity - 1) << 1;
+    }
+
+    /**
+     * Mixes the bits of a key's hashCode so that keys whose hash codes only differ
+     * in their upper bits still land in different slots once the mask is applied.
+     *
+     * @param key the key to hash
+     * @return the spread hash code for this key
+     */
+    protected static int spread(Object key) {
+        int h = key.hashCode() * 0x9E3779B9; // multiply by the 32 bit golden ratio
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Replaces the backing arrays with empty arrays of the specified capacity.
+     *
+     * @param newCapacity the new capacity, must be a power of two
+     */
+    private void allocate(int newCapacity) {
+        this.capacity = newCapacity;
+        this.mask = newCapacity - 1;
+        this.keys = new Object[newCapacity];
+        this.values = new Object[newCapacity];
+        this.hashes = new int[newCapacity];
+    }
+
+    /**
+     * Finds the slot holding the specified key.
+     *
+     * @param key  the key to search for, must not be null
+     * @param hash the spread hash code of that key
+     * @return the index of the slot holding this key, or -1 when it is not stored
+     */
+    protected int indexOf(Object key, int hash) {
+        return find(keys, hashes, key, hash);
+    }
+
+    /**
+     * Finds the slot holding the specified key within one set of arrays.
+     *
+     * @param keys   the keys of the arrays to search
+     * @param hashes the cached hashes of the arrays to search
+     * @param key    the key to search for, must not be null
+     * @param hash   the spread hash code of that key
+     * @return the index of the slot holding this key, or -1 when it is not stored
+     */
+    private static int find(Object[] keys, int[] hashes, Object key, int hash) {
+        int mask = keys.length - 1;
+        int index = hash & mask; // get the home index of the key
+        for (int i = 0; i < keys.length; i++) { // check each index until an empty one
+            Object current = keys[index];
+            if (current == null)
+                return -1;
+            // compare the cached hash codes before calling equals
+            if (hashes[index] == hash && (current == key || current.equals(key)))
+                return index;
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the slot holding the specified key, or the slot it would be added to,
+     * in a single pass over its probe sequence. While the hashtable is being
+     * resized incrementally, a key that is still in the old arrays is moved into
+     * that empty slot first, so the index returned is always in keys and values.
+     *
+     * @param key  the key to search for, must not be null
+     * @param hash the spread hash code of that key
+     * @return the index of the slot holding this key, or -(index of the empty
+     *         slot it would be added to) - 1 when it is not stored
+     */
+    protected int findSlot(Object key, int hash) {
+        int index = hash & mask;
+        for (Object current; (current = keys[index]) != null; index = (index + 1) & mask)
+            if (hashes[index] == hash && (current == key || current.equals(key)))
+                return index;
+        int old;
+        if (oldKeys != null && (old = find(oldKeys, oldHashes, key, hash)) >= 0) {
+            keys[index] = oldKeys[old];
+            values[index] = oldValues[old];
+            hashes[index] = hash;
+            shiftBack(oldKeys, oldValues, oldHashes, old);
+            if (--oldSize == 0)
+                migrate(0); // releases the old arrays
+            return index;
+        }
+        return -index - 1;
+    }
+
     /**
      * Adds a new key-value pair/mapping to this collection. Throws exception when
      * key is null or duplicate of one already stored. If the load factor is greater
      * than 0.70, the hashtable is resized.
-     * 
+     *
      * @param key   the key to be added
      * @param value the value to be added
      * @throws IllegalArgumentException when key is null or duplicate of one already
@@ -78,59 +206,106 @@ public class HashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueTy
     public void put(KeyType key, ValueType value) throws IllegalArgumentException {
         if (key == null)
             throw new IllegalArgumentException("Key cannot be null");
-        if (containsKey(key))
-            throw new IllegalArgumentException("Key already exists");
 
-        // get the index of the key
-        int index = Math.abs(key.hashCode()) % capacity;
+        int hash = spread(key);
+        int index = hash & mask; // get the home index of the key
 
-        // if the index is empty, add the key-value pair to the index
-        if (table[index] == null) {
-            table[index] = new Node<KeyType, ValueType>(key, value);
-            size++;
+        // check each successive index until the key or an empty index is found
+        while (keys[index] != null) {
+            Object current = keys[index];
+            if (hashes[index] == hash && (current == key || current.equals(key)))
+                throw new IllegalArgumentException("Key already exists");
+            index = (index + 1) & mask;
         }
+        if (oldKeys != null && find(oldKeys, oldHashes, key, hash) >= 0)
+            throw new IllegalArgumentException("Key already exists");
 
-        // if the index is not empty, check each successive index until an empty index
-        // is found
-        else {
-            Node<KeyType, ValueType> current = table[index];
-            for (int i = 0; i < capacity; i++) {
-                if (current == null) {
-                    table[(index + i) % capacity] = new Node<KeyType, ValueType>(key, value);
-                    size++;
-                    break;
-                }
-                current = table[(index + i + 1) % capacity];
-            }
-        }
+        keys[index] = key;
+        values[index] = value;
+        hashes[index] = hash;
+        size++;
 
+        if (oldKeys != null)
+            migrate(MIGRATION_STEP);
         // resize the hashtable if the load factor is greater than 0.70
         if ((double) size / capacity >= LOAD_FACTOR)
             rehash();
     }
 
     /**
-     * Resizes the hashtable to twice its current capacity.
+     * Places an entry that is known not to be stored yet into the first empty
+     * slot of its probe sequence.
+     */
+    private void place(Object key, Object value, int hash) {
+        int index = hash & mask;
+        while (keys[index] != null)
+            index = (index + 1) & mask;
+        keys[index] = key;
+        values[index] = value;
+        hashes[index] = hash;
+    }
+
+    /**
+     * Resizes the hashtable to twice its current capacity. Every entry is inserted
+     * into the new arrays with linear probing from its cached hash, either right
+     * away or, in incremental mode, by the puts and removes that follow.
      */
     private void rehash() {
-        // create a new hashtable with double the capacity
-        Node<KeyType, ValueType>[] newTable = new Node[capacity * 2];
+        if (oldKeys != null) // finish the previous resize before starting another
+            migrate(Integer.MAX_VALUE);
 
-        // copy all the key-value pairs from the old hashtable to the new hashtable
-        for (int i = 0; i < capacity; i++) {
-            if (table[i] != null && !table[i].isDeleted)
-                newTable[Math.abs(table[i].key.hashCode()) % (capacity * 2)] = table[i];
+        Object[] previousKeys = keys;
+        Object[] previousValues = values;
+        int[] previousHashes = hashes;
+
+        // create new arrays with double the capacity
+        allocate(capacity * 2);
+
+        if (incrementalResize) {
+            oldKeys = previousKeys;
+            oldValues = previousValues;
+            oldHashes = previousHashes;
+            oldSize = size;
+            migrateIndex = 0;
+            return;
         }
 
-        // set the new hashtable as the hashtable, and double the capacity
-        table = newTable;
-        capacity *= 2;
+        // copy all the key-value pairs from the old arrays to the new arrays
+        for (int i = 0; i < previousKeys.length; i++)
+            if (previousKeys[i] != null)
+                place(previousKeys[i], previousValues[i], previousHashes[i]);
+    }
 
+    /**
+     * Moves the entries in up to the specified number of old slots into the new
+     * arrays, and releases the old arrays once they are empty. Each moved entry is
+     * removed from the old arrays with backward-shift deletion, which may pull a
+     * later entry into the same slot, so a slot is only passed over once it is
+     * empty. This keeps the old arrays a valid table for lookups throughout.
+     *
+     * @param steps the max number of old slots to empty
+     */
+    private void migrate(int steps) {
+        for (int step = 0; step < steps && oldSize > 0; step++) {
+            Object key = oldKeys[migrateIndex];
+            if (key == null) {
+                migrateIndex++;
+                continue;
+            }
+            place(key, oldValues[migrateIndex], oldHashes[migrateIndex]);
+            shiftBack(oldKeys, oldValues, oldHashes, migrateIndex);
+            oldSize--;
+        }
+        if (oldSize == 0) {
+            oldKeys = null;
+            oldValues = null;
+            oldHashes = null;
+        }
     }
 
     /**
      * Returns true if this collection contains a mapping for the specified key.
-     * 
+     *
      * @param key the key to be checked
      * @return true if this collection contains a mapping for the specified key
      */
@@ -138,38 +313,91 @@ public class HashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueTy
     public boolean containsKey(KeyType key) {
         if (key == null) // key cannot be null
             return false;
-        int index = Math.abs(key.hashCode()) % capacity; // get the index of the key
-        while (table[index] != null) { // check each index until the key is found
-            if (table[index].key.equals(key) && !table[index].isDeleted)
-                return true; // return true if the key is found
-            index = (index + 1) % capacity;
-        }
-        return false; // otherwise return false
+        int hash = spread(key);
+        if (indexOf(key, hash) >= 0)
+            return true;
+        return oldKeys != null && find(oldKeys, oldHashes, key, hash) >= 0;
     }
 
     /**
      * Returns the value associated with the specified key. Throws exception when
      * key
      * is null or not found.
-     * 
+     *
      * @param key the key to be checked
      * @throws NoSuchElementException when key is null or not found
      * @return the value associated with the specified key
      */
     public ValueType get(KeyType key) throws NoSuchElementException {
-        int index = Math.abs(key.hashCode()) % capacity; // get the index of the key
-        ValueType value = null; // the value to be returned
-        while (table[index] != null) { // check each index until the key is found
-            if (table[index].key.equals(key) && !table[index].isDeleted) {
-                value = table[index].value;
-                break; // return the value if the key is found
-            }
-            index = (index + 1) % capacity; // otherwise, check the next index
-        }
-        if (value == null) // if the value is still null, the key was not found
-            throw new NoSuchElementException("Key not found");
+        if (key == null) // key cannot be null
+            throw new NoSuchElementException("Key cannot be null");
+        int hash = spread(key);
+        int index = indexOf(key, hash);
+        if (index >= 0)
+            return (ValueType) values[index]; // return the value
+        if (oldKeys != null && (index = find(oldKeys, oldHashes, key, hash)) >= 0)
+            return (ValueType) oldValues[index]; // not moved over yet
+        throw new NoSuchElementException("Key not found"); // the key was not found
+    }
 
-        return value; // return the value
+    /**
+     * Returns the value associated with the specified key, or defaultValue when
+     * the key is null or not found. Unlike get, a missing key is not an
+     * exception, and the key is only looked for once.
+     *
+     * @param key          the key to be checked
+     * @param defaultValue the value to return when the key is not found
+     * @return the value associated with the specified key, or defaultValue
+     */
+    @Override
+    public ValueType getOrDefault(KeyType key, ValueType defaultValue) {
+        if (key == null)
+            return defaultValue;
+        int hash = spread(key);
+        int index = indexOf(key, hash);
+        if (index >= 0)
+            return (ValueType) values[index];
+        if (oldKeys != null && (index = find(oldKeys, oldHashes, key, hash)) >= 0)
+            return (ValueType) oldValues[index];
+        return defaultValue;
+    }
+
+    /**
+     * Returns the value associated with the specified key, first adding the value
+     * that mappingFunction computes from the key when the key is not found. The
+     * key's probe sequence is only walked once, and the new entry is placed in
+     * the empty slot that ended it. If the load factor is greater than 0.70
+     * afterwards, the hashtable is resized.
+     *
+     * @param key             the key to look up or add
+     * @param mappingFunction computes the value for a key that is not found, and
+     *                        must not change this hashtable
+     * @return the value associated with the key, or null when it was not found
+     *         and mappingFunction returned null (which is not stored)
+     * @throws IllegalArgumentException when key is null
+     */
+    @Override
+    public ValueType computeIfAbsent(KeyType key, Function<? super KeyType, ? extends ValueType> mappingFunction)
+            throws IllegalArgumentException {
+        if (key == null)
+            throw new IllegalArgumentException("Key cannot be null");
+        int hash = spread(key);
+        int index = findSlot(key, hash);
+        if (index >= 0)
+            return (ValueType) values[index];
+        ValueType value = mappingFunction.apply(key);
+        if (value == null)
+            return null;
+        index = -index - 1;
+        keys[index] = key;
+        values[index] = value;
+        hashes[index] = hash;
+        size++;
+        if (oldKeys != null)
+            migrate(MIGRATION_STEP);
+        if ((double) size / capacity >= LOAD_FACTOR)
+            rehash();
+        return value;
     }
 
     /**
@@ -180,21 +408,55 @@ public class HashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueTy
 
         if (key == null) // key cannot be null
             throw new NoSuchElementException("Key cannot be null");
-        if (!containsKey(key)) // key must be found
+        int hash = spread(key);
+        int index = indexOf(key, hash);
+        ValueType value;
+        if (index >= 0) {
+            value = (ValueType) values[index];
+            deleteSlot(index);
+        } else if (oldKeys != null && (index = find(oldKeys, oldHashes, key, hash)) >= 0) {
+            value = (ValueType) oldValues[index];
+            shiftBack(oldKeys, oldValues, oldHashes, index);
+            oldSize--;
+        } else { // key must be found
             throw new NoSuchElementException("Key not found");
+        }
+        size--; // decrease the size
+        if (oldKeys != null)
+            migrate(MIGRATION_STEP);
+        return value; // return the value
+    }
 
-        int index = Math.abs(key.hashCode()) % capacity; // get the index of the key
-        ValueType value = null; // the value to be returned
+    /**
+     * Empties the specified slot using backward-shift deletion: each following
+     * entry in the cluster that would no longer be reachable from its home index
+     * is moved back into the hole, until an empty slot ends the cluster.
+     *
+     * @param hole the index of the slot to empty
+     */
+    protected void deleteSlot(int hole) {
+        shiftBack(keys, values, hashes, hole);
+    }
 
-        while (value == null) { // check each index until the key is found
-            if (table[index].key.equals(key) && !table[index].isDeleted) {
-                value = table[index].value; // if it is
-                table[index].isDeleted = true; // mark the node as deleted
-                size--; // decrease the size
+    /**
+     * Performs backward-shift deletion of one slot within one set of arrays.
+     */
+    private static void shiftBack(Object[] keys, Object[] values, int[] hashes, int hole) {
+        int mask = keys.length - 1;
+        int index = (hole + 1) & mask;
+        while (keys[index] != null) {
+            int home = hashes[index] & mask;
+            // move this entry when the hole lies between its home and its slot
+            if (((index - home) & mask) >= ((index - hole) & mask)) {
+                keys[hole] = keys[index];
+                values[hole] = values[index];
+                hashes[hole] = hashes[index];
+                hole = index;
             }
-            index = (index + 1) % capacity; // otherwise, check the next index
+            index = (index + 1) & mask;
         }
-        return value; // return the value
+        keys[hole] = null;
+        values[hole] = null;
     }
 
     /**
@@ -202,15 +464,47 @@ public class HashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueTy
      */
     @Override
     public void clear() {
+        oldKeys = null; // drop any resize in progress
+        oldValues = null;
+        oldHashes = null;
+        oldSize = 0;
         for (int i = 0; i < capacity; i++) {
-            table[i] = null;
+            keys[i] = null;
+            values[i] = null;
         }
         size = 0;
     }
 
+    /**
+     * Returns the average number of slots that a successful lookup inspects,
+     * which is 1.0 when every key is stored at its home index.
+     *
+     * @return the mean probe length over all stored keys
+     */
+    public double getMeanProbeLength() {
+        if (size == 0)
+            return 0.0;
+        long total = probeLengths(keys, hashes);
+        if (oldKeys != null) // entries not moved yet are only found after a miss in the new arrays
+            total += probeLengths(oldKeys, oldHashes) + (long) oldSize;
+        return (double) total / size;
+    }
+
+    /**
+     * Sums the distance from home + 1 of every entry in one set of arrays.
+     */
+    private static long probeLengths(Object[] keys, int[] hashes) {
+        int mask = keys.length - 1;
+        long total = 0;
+        for (int i = 0; i < keys.length; i++)
+            if (keys[i] != null)
+                total += ((i - (hashes[i] & mask)) & mask) + 1;
+        return total;
+    }
+
     /**
      * Returns the size.
-     * 
+     *
      * @return the number of key-value pairs in this collection
      */
     @Override
@@ -220,7 +514,7 @@ public class HashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueTy
 
     /**
      * Returns the capacity.
-     * 
+     *
      * @return the capacity of this collection
      */
     @Override
@@ -228,4 +522,4 @@ public class HashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueTy
         return capacity;
     }
 
-}
\ No newline at end of file
+}
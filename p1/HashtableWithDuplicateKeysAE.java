@@ -1,13 +1,25 @@
 import java.util.List;
-import java.util.NoSuchElementException;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * This class allows multiple values to be associated with the same key by
  * grouping such duplicate values together in a list.
- * 
+ *
+ * Each distinct value is assigned a dense int id the first time it is added,
+ * and the list for each key is a PostingListAE that stores only these ids, in
+ * a compressed bitmap. Values that are added in the order they are
+ * first seen (as posts are while a file is being loaded) are appended to the
+ * end of each list, and a duplicate is detected by comparing against the id at
+ * the end of the list, rather than by searching the whole list.
+ *
+ * Once a value has been removed from the list of every key, its id is freed:
+ * the table forgets the value, so that it can be garbage collected, and
+ * getValueById returns null for its id. Ids are not reused, so an id found
+ * before the value was removed never refers to a different value.
+ *
  * This class builds on top of the P1W2 HashtableMap implementation.
- * 
+ *
  * @author AlgorithmEngineer, courtesy of the CS400 course staff.
  */
 public class HashtableWithDuplicateKeysAE<KeyType, ValueType> extends HashtableMap<KeyType, List<ValueType>>
@@ -15,41 +27,151 @@ public class HashtableWithDuplicateKeysAE<KeyType, ValueType> extends HashtableM
 
 	int numberOfValues;
 
+	private HashtableMap<ValueType, Integer> valueIds; // the id assigned to each value
+	private ArrayList<ValueType> valuesById; // each value, indexed by its id, or null once it is freed
+	private int[] keyCounts; // the number of lists that hold each id
+	private ValueType lastValue; // the most recently looked up value, and its id
+	private int lastValueId = -1;
+
 	// pass through constructors:
 
 	public HashtableWithDuplicateKeysAE(int capacity) {
 		super(capacity);
 		numberOfValues = 0;
+		resetValueIds();
 	}
 
 	public HashtableWithDuplicateKeysAE() {
 		super();
 		numberOfValues = 0;
+		resetValueIds();
+	}
+
+	public HashtableWithDuplicateKeysAE(int capacity, boolean incrementalResize) {
+		super(capacity, incrementalResize);
+		numberOfValues = 0;
+		resetValueIds();
+	}
+
+	/**
+	 * Forgets the ids assigned to all values, so the next value added gets id 0.
+	 */
+	private void resetValueIds() {
+		valueIds = new HashtableMap<>();
+		valuesById = new ArrayList<>();
+		keyCounts = new int[16];
+		lastValue = null;
+		lastValueId = -1;
+	}
+
+	/**
+	 * Returns the id of the specified value, assigning it the next unused id if it
+	 * has not been seen before.
+	 *
+	 * @param value the value to look up
+	 * @return the dense id of that value
+	 */
+	public int idOf(ValueType value) {
+		if (value == lastValue && lastValueId >= 0) // the same post is added for each of its words
+			return lastValueId;
+		// a new value is given the next id in the same probe that finds it missing
+		int id = valueIds.computeIfAbsent(value, newValue -> {
+			valuesById.add(newValue);
+			return valuesById.size() - 1;
+		});
+		lastValue = value;
+		lastValueId = id;
+		return id;
+	}
+
+	/**
+	 * Counts one more list holding the specified id.
+	 *
+	 * @param id the id that was added to a list
+	 */
+	void keyAdded(int id) {
+		if (id >= keyCounts.length)
+			keyCounts = Arrays.copyOf(keyCounts, Math.max(id + 1, keyCounts.length * 2));
+		keyCounts[id]++;
+	}
+
+	/**
+	 * Counts one list fewer holding the specified id, and frees the id once no
+	 * list holds it.
+	 *
+	 * @param id the id that was removed from a list
+	 */
+	void keyRemoved(int id) {
+		if (--keyCounts[id] > 0)
+			return;
+		valueIds.remove(valuesById.get(id));
+		valuesById.set(id, null);
+		if (lastValueId == id) {
+			lastValue = null;
+			lastValueId = -1;
+		}
+	}
+
+	/**
+	 * Returns the id of the specified value without assigning a new one.
+	 *
+	 * @param value the value to look up
+	 * @return the id of that value, or -1 if it has never been added
+	 */
+	public int findId(Object value) {
+		if (value == null)
+			return -1;
+		if (value == lastValue && lastValueId >= 0)
+			return lastValueId;
+		@SuppressWarnings("unchecked")
+		ValueType key = (ValueType) value;
+		Integer id = valueIds.getOrDefault(key, null);
+		return id != null ? id : -1;
+	}
+
+	/**
+	 * Returns the value that was assigned the specified id.
+	 *
+	 * @param id the id of the value
+	 * @return the value with that id, or null if it has since been removed from
+	 *         every key
+	 */
+	public ValueType getValueById(int id) {
+		return valuesById.get(id);
+	}
+
+	/**
+	 * Returns the ids of the values that the specified key maps to. The bitmap of
+	 * a stored key is shared with its list rather than copied, so it must only be
+	 * read, and only until the key's values next change.
+	 *
+	 * @param key the key to look up
+	 * @return the ids of that key's values, empty when the key is not stored
+	 */
+	public PostingBitmap getValueIds(KeyType key) {
+		List<ValueType> values = getOrDefault(key, null);
+		if (values == null)
+			return new PostingBitmap();
+		return ((PostingListAE<ValueType>) values).getBitmap();
 	}
 
 	/**
 	 * This putOne method adds a single value to the list of values associated with
 	 * the specified key. This is different from the inherited put method, which
 	 * assigns an entire List<ValueType> to the specified key.
-	 * 
+	 *
 	 * @param key   is used to store and look up this mapping
 	 * @param value is one more value that should be associated with given key
 	 */
 	public void putOne(KeyType key, ValueType value) {
-		// if the key is already a part of this collection
-		if (containsKey(key)) {
-			List<ValueType> values = get(key);
-			// and it doesn't already map to the specified value
-			if (!values.contains(value))
-				// then add this value to the list of values for the given key
-				values.add(value);
-		} else {
-			// otherwise map this key to a new list containing this value
-			List<ValueType> values = new ArrayList<>();
-			values.add(value);
-			put(key, values);
-		}
-		numberOfValues++; // and track the number of values added via this method
+		int id = idOf(value);
+		// find the key's list, or map the key to a new empty list, in one probe
+		PostingListAE<ValueType> values = (PostingListAE<ValueType>) computeIfAbsent(key,
+				newKey -> new PostingListAE<>(this));
+		// then add this value to the list of values for the given key, unless the
+		// list already contains it
+		if (values.addId(id))
+			numberOfValues++; // and track the number of values added via this method
 	}
 
 	/**
@@ -57,16 +179,16 @@ public class HashtableWithDuplicateKeysAE<KeyType, ValueType> extends HashtableM
 	 * associated with the specified key. This is different from the inherited
 	 * remove method, which removes the entire list of values mapped to from this
 	 * key.
-	 * 
+	 *
 	 * @param key   is the key that this value is being removed from
 	 * @param value is the specific value that should be removed
 	 */
 	public void removeOne(KeyType key, ValueType value) {
 		List<ValueType> values = get(key);
-		values.remove(value);
+		if (values.remove(value))
+			numberOfValues--; // and track the number of values removed via this method
 		if (values.size() == 0)
 			remove(key);
-		numberOfValues--; // and track the number of values removed via this method
 	}
 
 	/**
@@ -81,23 +203,47 @@ public class HashtableWithDuplicateKeysAE<KeyType, ValueType> extends HashtableM
 	@Override
 	public void clear() {
 		numberOfValues = 0;
+		resetValueIds();
 		super.clear();
 	}
 
+	/**
+	 * Removes a key along with its values, and returns the values as a list of
+	 * their own, since the ids of those that no other key maps to are freed.
+	 */
 	@Override
 	public List<ValueType> remove(KeyType key) {
 		numberOfValues -= this.get(key).size();
-		return super.remove(key);
+		List<ValueType> values = super.remove(key);
+		List<ValueType> removed = new ArrayList<>(values);
+		values.clear();
+		return removed;
 	}
 
+	/**
+	 * Maps a key to the specified values, which are copied into a PostingListAE
+	 * unless they already are one of this hashtable's. Throws exception when key
+	 * is null or duplicate of one already stored, before any of the values get
+	 * ids, or when values is a PostingListAE of another hashtable, whose ids mean
+	 * nothing to this one.
+	 */
 	@Override
 	public void put(KeyType key, List<ValueType> values) {
-		try {
-			numberOfValues -= this.get(key).size();
-		} catch (NoSuchElementException e) {
-		} // nothing to remove
-		numberOfValues += values.size();
+		if (key == null)
+			throw new IllegalArgumentException("Key cannot be null");
+		if (containsKey(key))
+			throw new IllegalArgumentException("Key already exists");
+		if (values instanceof PostingListAE) {
+			if (!((PostingListAE<ValueType>) values).belongsTo(this))
+				throw new IllegalArgumentException("Values belong to another hashtable");
+		} else {
+			PostingListAE<ValueType> copy = new PostingListAE<>(this);
+			for (ValueType value : values)
+				copy.add(value);
+			values = copy;
+		}
 		super.put(key, values);
+		numberOfValues += values.size();
 	}
 
 }
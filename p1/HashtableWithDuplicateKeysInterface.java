@@ -6,4 +6,12 @@ public interface HashtableWithDuplicateKeysInterface<KeyType, ValueType> extends
     public void putOne(KeyType key, ValueType value);
     public void removeOne(KeyType key, ValueType value);
     public int getNumberOfValues();
+    // ids of the values that key maps to (empty when key is not stored), every
+    // distinct value keeps one dense id no matter how many keys map to it; the
+    // result is read-only, since an implementation may return the bitmap it
+    // stores the key's ids in, which is only safe to read until that key changes
+    public PostingBitmap getValueIds(KeyType key);
+    // the value with that id, or null once the value has been removed from every
+    // key, since ids are freed then and never reused
+    public ValueType getValueById(int id);
 }
@@ -0,0 +1,613 @@
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * An index saved to a file, so that a dataset can be searched again without
+ * reading and tokenizing all of its posts. A file holds everything that a
+ * PositionalIndexBD holds: the length of each post's title and body, the
+ * posting list (with word offsets) of each term in each field, every post's
+ * title, url and body, and a dictionary of the terms, sorted so that a word's id
+ * can be found by binary search.
+ *
+ * Opening a file maps it into memory and reads nothing but its header and the
+ * lengths of each post. Terms are looked up within the mapped file, and a
+ * posting list or post is only decoded when a query asks for it, so a file of
+ * any size opens in milliseconds. Each section of a file must be smaller than
+ * 2GB, since that is the most that Java maps into a single buffer.
+ *
+ * A file starts with a magic number and format version, and a CRC32 checksum of
+ * the rest of the file. Checking this means reading the whole file, so it is
+ * only done by verifyChecksum, not when opening.
+ *
+ * Layout (all numbers are big endian):
+ * <pre>
+ * header    magic, version, checksum, post and term counts, the total title and
+ *           body lengths, the dataset's unique words and word-post pairs, and
+ *           the offset of each section below
+ * lengths   int title length of each post, then int body length of each post
+ * postings  for each list: int post count, int position count, int maximum
+ *           frequency, int[] post ids, int[] starts (one more than the posts),
+ *           and int[] positions, as in PositionalIndexBD.Postings
+ * post data the UTF-8 title, url and body of each post, one after the other
+ * post ends long[] offset within post data where each title, url and body ends
+ * terms     int[] start of each term's chars (one more than the terms), long[]
+ *           offset within postings of each term's title and body list (-1 when
+ *           it has none), and the chars of every term, in sorted order
+ * </pre>
+ *
+ * @author BackendDeveloper
+ */
+public class IndexFileBD {
+
+	protected static final int MAGIC = 0x43484958; // "CHIX"
+	protected static final int VERSION = 1;
+	protected static final int HEADER_SIZE = 104;
+	private static final int CHECKSUM_OFFSET = 8; // the checksum covers the header after it
+
+	private final int postCount;
+	private final int termCount;
+	private final long totalTitleLength;
+	private final long totalBodyLength;
+	private final long uniqueWords; // the number of keys of the hashtable that was saved
+	private final long wordPostPairs; // the number of values of that hashtable
+	private final long fileLength;
+	private final long checksum;
+	private final String filename;
+	private final ByteBuffer header;
+	private final ByteBuffer lengths;
+	private final ByteBuffer postings;
+	private final ByteBuffer postData;
+	private final ByteBuffer postEnds;
+	private final ByteBuffer terms;
+	private final int termCharsStart; // the index in terms of the first term's chars
+
+	/**
+	 * Maps the sections of an index file into memory.
+	 */
+	private IndexFileBD(String filename, FileChannel channel) throws IOException {
+		this.filename = filename;
+		long size = channel.size();
+		if (size < HEADER_SIZE)
+			throw new IOException(filename + " is not an index file");
+		header = map(channel, 0, HEADER_SIZE);
+		if (header.getInt(0) != MAGIC)
+			throw new IOException(filename + " is not an index file");
+		if (header.getInt(4) != VERSION)
+			throw new IOException(filename + " has index format version " + header.getInt(4) + ", but only version "
+					+ VERSION + " can be read");
+		checksum = header.getLong(CHECKSUM_OFFSET);
+		postCount = header.getInt(16);
+		termCount = header.getInt(20);
+		totalTitleLength = header.getLong(24);
+		totalBodyLength = header.getLong(32);
+		uniqueWords = header.getLong(40);
+		wordPostPairs = header.getLong(48);
+		long[] offsets = new long[6]; // where each section starts, and the end of the file
+		for (int i = 0; i < offsets.length; i++)
+			offsets[i] = header.getLong(56 + 8 * i);
+		fileLength = offsets[5];
+		if (fileLength != size || offsets[0] != HEADER_SIZE)
+			throw new IOException(filename + " is not a complete index file");
+		for (int i = 0; i < 5; i++)
+			if (offsets[i] > offsets[i + 1])
+				throw new IOException(filename + " is not a complete index file");
+		lengths = map(channel, offsets[0], offsets[1]);
+		postings = map(channel, offsets[1], offsets[2]);
+		postData = map(channel, offsets[2], offsets[3]);
+		postEnds = map(channel, offsets[3], offsets[4]);
+		terms = map(channel, offsets[4], offsets[5]);
+		termCharsStart = 4 * (termCount + 1) + 16 * termCount;
+		if (lengths.capacity() != 8L * postCount || postEnds.capacity() != 24L * postCount
+				|| terms.capacity() < termCharsStart)
+			throw new IOException(filename + " is not a complete index file");
+	}
+
+	/**
+	 * @return the bytes of the file from start up to end, mapped read only
+	 */
+	private static ByteBuffer map(FileChannel channel, long start, long end) throws IOException {
+		if (end - start > Integer.MAX_VALUE)
+			throw new IOException("Index sections larger than 2GB are not supported");
+		return channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+	}
+
+	/**
+	 * Opens an index file that was saved by write.
+	 *
+	 * @param filename the path and name of the file
+	 * @return the opened file
+	 * @throws FileNotFoundException when the file cannot be read from
+	 * @throws IOException           when the file is not an index file, or has a
+	 *                               format version that cannot be read
+	 */
+	public static IndexFileBD open(String filename) throws IOException {
+		FileChannel channel;
+		try {
+			channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+		} catch (IOException e) {
+			throw new FileNotFoundException(filename);
+		}
+		try (channel) {
+			return new IndexFileBD(filename, channel); // the mappings outlive the channel
+		}
+	}
+
+	/**
+	 * Checks whether a file starts like an index file, rather than a file of
+	 * posts.
+	 *
+	 * @param filename the path and name of the file
+	 * @return true if the file starts with the magic number of index files, and
+	 *         false if it does not or cannot be read from
+	 */
+	public static boolean isIndexFile(String filename) {
+		try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+			ByteBuffer magic = ByteBuffer.allocate(4);
+			while (magic.hasRemaining() && channel.read(magic) >= 0)
+				;
+			return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+		} catch (IOException | RuntimeException e) {
+			return false; // leave reporting the problem to whatever reads posts from it
+		}
+	}
+
+	/**
+	 * Builds up a file through a buffer, updating a checksum with each byte.
+	 */
+	private static class Writer {
+		final FileChannel channel;
+		final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+		final CRC32 crc = new CRC32();
+		long position = HEADER_SIZE; // the header is written last, once it is known
+
+		Writer(FileChannel channel) {
+			this.channel = channel;
+		}
+
+		void ensure(int bytes) throws IOException {
+			if (buffer.remaining() < bytes)
+				flush();
+		}
+
+		void putInt(int value) throws IOException {
+			ensure(4);
+			buffer.putInt(value);
+			position += 4;
+		}
+
+		void putLong(long value) throws IOException {
+			ensure(8);
+			buffer.putLong(value);
+			position += 8;
+		}
+
+		void putChar(char value) throws IOException {
+			ensure(2);
+			buffer.putChar(value);
+			position += 2;
+		}
+
+		void putInts(int[] values, int from, int to) throws IOException {
+			for (int i = from; i < to; i++)
+				putInt(values[i]);
+		}
+
+		void putBytes(byte[] bytes) throws IOException {
+			for (int i = 0; i < bytes.length;) {
+				ensure(1);
+				int count = Math.min(buffer.remaining(), bytes.length - i);
+				buffer.put(bytes, i, count);
+				i += count;
+			}
+			position += bytes.length;
+		}
+
+		void flush() throws IOException {
+			buffer.flip();
+			crc.update(buffer.duplicate());
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+			buffer.clear();
+		}
+	}
+
+	/**
+	 * Saves an index to a file, replacing anything already in it. The index must
+	 * not change while it is saved, which is ensured by holding its lock. The
+	 * index is written to a temporary file in the same folder, which then
+	 * replaces the file in one step, so a save that fails leaves the old file as
+	 * it was.
+	 *
+	 * @param filename      the path and name of the file to write
+	 * @param index         the index to save
+	 * @param uniqueWords   the number of unique words to report for this dataset
+	 * @param wordPostPairs the number of word-post pairs to report for this
+	 *                      dataset
+	 * @throws IOException when the file cannot be written
+	 */
+	public static void write(String filename, PositionalIndexBD index, long uniqueWords, long wordPostPairs)
+			throws IOException {
+		Path target = Paths.get(filename).toAbsolutePath();
+		Path temporary = Files.createTempFile(target.getParent(), target.getFileName() + ".", ".tmp");
+		boolean moved = false;
+		try {
+			synchronized (index) {
+				try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+					write(channel, index, uniqueWords, wordPostPairs);
+					channel.force(true);
+				}
+			}
+			Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			moved = true;
+		} finally {
+			if (!moved)
+				Files.deleteIfExists(temporary);
+		}
+	}
+
+	private static void write(FileChannel channel, PositionalIndexBD index, long uniqueWords, long wordPostPairs)
+			throws IOException {
+		Writer out = new Writer(channel);
+		channel.position(HEADER_SIZE);
+		int posts = index.getPostCount();
+		long[] offsets = new long[6];
+		offsets[0] = out.position;
+		for (int id = 0; id < posts; id++)
+			out.putInt(index.getTitleLength(id));
+		for (int id = 0; id < posts; id++)
+			out.putInt(index.getBodyLength(id));
+
+		// terms are written in sorted order, so their ids in the file are their ranks
+		int termCount = index.getTermCount();
+		String[] termStrings = new String[termCount];
+		Integer[] sorted = new Integer[termCount];
+		for (int id = 0; id < termCount; id++) {
+			termStrings[id] = index.getTerm(id);
+			sorted[id] = id;
+		}
+		Arrays.sort(sorted, (a, b) -> termStrings[a].compareTo(termStrings[b]));
+
+		offsets[1] = out.position;
+		long[] listOffsets = new long[termCount * 2];
+		for (int rank = 0; rank < termCount; rank++) {
+			for (int field = 0; field < 2; field++) {
+				PositionalIndexBD.Postings list = index.getPostings(sorted[rank], field);
+				if (list == null) {
+					listOffsets[rank * 2 + field] = -1;
+					continue;
+				}
+				listOffsets[rank * 2 + field] = out.position - offsets[1];
+				out.putInt(list.postCount);
+				out.putInt(list.positionCount);
+				out.putInt(list.maxFrequency);
+				out.putInts(list.posts, 0, list.postCount);
+				out.putInts(list.starts, 0, list.postCount + 1);
+				out.putInts(list.positions, 0, list.positionCount);
+			}
+		}
+
+		offsets[2] = out.position;
+		long[] postEnds = new long[posts * 3];
+		for (int id = 0; id < posts; id++) {
+			PostInterface post = index.getPost(id);
+			String[] fields = { post.getTitle(), post.getUrl(), post.getBody() };
+			for (int i = 0; i < 3; i++) {
+				out.putBytes(fields[i].getBytes(StandardCharsets.UTF_8));
+				postEnds[id * 3 + i] = out.position - offsets[2];
+			}
+		}
+		offsets[3] = out.position;
+		for (long end : postEnds)
+			out.putLong(end);
+
+		offsets[4] = out.position;
+		int chars = 0;
+		out.putInt(0);
+		for (int rank = 0; rank < termCount; rank++) {
+			chars += termStrings[sorted[rank]].length();
+			out.putInt(chars);
+		}
+		for (long offset : listOffsets)
+			out.putLong(offset);
+		for (int rank = 0; rank < termCount; rank++)
+			for (char c : termStrings[sorted[rank]].toCharArray())
+				out.putChar(c);
+		offsets[5] = out.position;
+		out.flush();
+
+		// then the header, which the checksum covers after everything else
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putInt(MAGIC).putInt(VERSION).putLong(0);
+		header.putInt(posts).putInt(termCount);
+		header.putLong(index.getTotalTitleLength()).putLong(index.getTotalBodyLength());
+		header.putLong(uniqueWords).putLong(wordPostPairs);
+		for (long offset : offsets)
+			header.putLong(offset);
+		header.position(CHECKSUM_OFFSET + 8);
+		out.crc.update(header);
+		header.putLong(CHECKSUM_OFFSET, out.crc.getValue());
+		header.clear();
+		while (header.hasRemaining())
+			channel.write(header, header.position());
+	}
+
+	/**
+	 * Reads the whole file, and checks that it still has the checksum that was
+	 * saved with it.
+	 *
+	 * @return true if the checksum matches, false if the file has been damaged
+	 */
+	public boolean verifyChecksum() {
+		CRC32 crc = new CRC32();
+		for (ByteBuffer section : new ByteBuffer[] { lengths, postings, postData, postEnds, terms })
+			crc.update(section.duplicate().clear());
+		crc.update(header.duplicate().position(CHECKSUM_OFFSET + 8));
+		return crc.getValue() == checksum;
+	}
+
+	/**
+	 * Finds the id of a term, by binary search through the sorted terms.
+	 *
+	 * @param term the term to look up
+	 * @return the id of that term in this file, or -1 when no post contains it
+	 */
+	public int findTerm(String term) {
+		int low = 0;
+		int high = termCount - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int order = compareTerm(middle, term);
+			if (order < 0)
+				low = middle + 1;
+			else if (order > 0)
+				high = middle - 1;
+			else
+				return middle;
+		}
+		return -1;
+	}
+
+	/**
+	 * @return how the term with the specified id compares to term, in the same
+	 *         order as String.compareTo
+	 */
+	private int compareTerm(int id, String term) {
+		int start = terms.getInt(4 * id);
+		int length = terms.getInt(4 * id + 4) - start;
+		int position = termCharsStart + 2 * start;
+		for (int i = 0; i < length && i < term.length(); i++) {
+			char c = terms.getChar(position + 2 * i);
+			if (c != term.charAt(i))
+				return c - term.charAt(i);
+		}
+		return length - term.length();
+	}
+
+	/**
+	 * Returns the terms that match a wildcard pattern, as
+	 * TermDictionaryBD.findMatching does. Terms are stored in sorted order, so
+	 * those that start with the chars before the pattern's first wildcard are a
+	 * range of ids that a binary search finds.
+	 *
+	 * @param pattern the pattern to match, where * stands for any number of chars
+	 *                and ? for exactly one
+	 * @param limit   the most terms to return
+	 * @return the first limit matching terms, in sorted order
+	 */
+	public List<String> findMatching(String pattern, int limit) {
+		String prefix = TermDictionaryBD.literalPrefix(pattern);
+		// find the first term that is not less than the prefix
+		int low = 0;
+		int high = termCount;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (compareTerm(middle, prefix) < 0)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		List<String> matching = new ArrayList<>();
+		char[] chars = new char[32]; // the chars of each term, read from the file
+		for (int id = low; id < termCount && matching.size() < limit; id++) {
+			int start = terms.getInt(4 * id);
+			int length = terms.getInt(4 * id + 4) - start;
+			if (length > chars.length)
+				chars = new char[Math.max(length, chars.length * 2)];
+			for (int i = 0; i < length; i++)
+				chars[i] = terms.getChar(termCharsStart + 2 * (start + i));
+			boolean hasPrefix = length >= prefix.length();
+			for (int i = 0; hasPrefix && i < prefix.length(); i++)
+				hasPrefix = chars[i] == prefix.charAt(i);
+			if (!hasPrefix)
+				break; // past the terms that start with the prefix
+			if (TermDictionaryBD.matchesWildcard(pattern, chars, 0, length))
+				matching.add(new String(chars, 0, length));
+		}
+		return matching;
+	}
+
+	/**
+	 * Returns the terms that are within a few edits of a word, as
+	 * TermDictionaryBD.findSimilar does. Term ids are already in sorted order.
+	 *
+	 * @param automaton accepts the terms within some distance of the word
+	 * @return the matching terms, in sorted order, with their distances
+	 */
+	public List<LevenshteinAutomatonBD.Match> findSimilar(LevenshteinAutomatonBD automaton) {
+		return automaton.intersect(new LevenshteinAutomatonBD.SortedTerms() {
+			@Override
+			public int getSortedCount() {
+				return termCount;
+			}
+
+			@Override
+			public int getLength(int index) {
+				return terms.getInt(4 * index + 4) - terms.getInt(4 * index);
+			}
+
+			@Override
+			public char getChar(int index, int position) {
+				return terms.getChar(termCharsStart + 2 * (terms.getInt(4 * index) + position));
+			}
+
+			@Override
+			public String getSortedTerm(int index) {
+				return getTerm(index);
+			}
+		});
+	}
+
+	/**
+	 * Returns the term with the specified id.
+	 *
+	 * @param id the id of the term, from 0 to getTermCount() - 1
+	 * @return that term
+	 */
+	public String getTerm(int id) {
+		if (id < 0 || id >= termCount)
+			throw new IndexOutOfBoundsException("No term with id " + id);
+		int start = terms.getInt(4 * id);
+		char[] chars = new char[terms.getInt(4 * id + 4) - start];
+		for (int i = 0; i < chars.length; i++)
+			chars[i] = terms.getChar(termCharsStart + 2 * (start + i));
+		return new String(chars);
+	}
+
+	/**
+	 * Decodes the posting list of one term in one field.
+	 *
+	 * @param termId the id of the term in this file
+	 * @param field  TermDictionaryBD.TITLE or TermDictionaryBD.BODY
+	 * @return the postings of that term in that field, or null if it never occurs
+	 *         there
+	 */
+	PositionalIndexBD.Postings readPostings(int termId, int field) {
+		long offset = terms.getLong(4 * (termCount + 1) + 8 * (termId * 2 + field));
+		if (offset < 0)
+			return null;
+		ByteBuffer list = postings.duplicate().position((int) offset);
+		PositionalIndexBD.Postings read = new PositionalIndexBD.Postings();
+		read.postCount = list.getInt();
+		read.positionCount = list.getInt();
+		read.maxFrequency = list.getInt();
+		read.posts = new int[read.postCount];
+		read.starts = new int[read.postCount + 1];
+		read.positions = new int[read.positionCount];
+		list.asIntBuffer().get(read.posts).get(read.starts).get(read.positions);
+		return read;
+	}
+
+	/**
+	 * Decodes the post with the specified id.
+	 *
+	 * @param id the id of the post, from 0 to getPostCount() - 1
+	 * @return that post
+	 */
+	public PostInterface readPost(int id) {
+		if (id < 0 || id >= postCount)
+			throw new IndexOutOfBoundsException("No post with id " + id);
+		String[] fields = new String[3];
+		long start = id == 0 ? 0 : postEnds.getLong(24 * id - 8);
+		for (int i = 0; i < 3; i++) {
+			long end = postEnds.getLong(24 * id + 8 * i);
+			byte[] bytes = new byte[(int) (end - start)];
+			postData.get((int) start, bytes);
+			fields[i] = new String(bytes, StandardCharsets.UTF_8);
+			start = end;
+		}
+		return new PostDW(fields[0], fields[1], fields[2]);
+	}
+
+	/**
+	 * @return the number of words in the title of each post, by id
+	 */
+	int[] readTitleLengths() {
+		int[] read = new int[postCount];
+		lengths.duplicate().position(0).asIntBuffer().get(read);
+		return read;
+	}
+
+	/**
+	 * @return the number of words in the body of each post, by id
+	 */
+	int[] readBodyLengths() {
+		int[] read = new int[postCount];
+		lengths.duplicate().position(4 * postCount).asIntBuffer().get(read);
+		return read;
+	}
+
+	/**
+	 * @return the number of posts in this file
+	 */
+	public int getPostCount() {
+		return postCount;
+	}
+
+	/**
+	 * @return the number of terms in this file
+	 */
+	public int getTermCount() {
+		return termCount;
+	}
+
+	/**
+	 * @return the number of words in every title of this file together
+	 */
+	public long getTotalTitleLength() {
+		return totalTitleLength;
+	}
+
+	/**
+	 * @return the number of words in every body of this file together
+	 */
+	public long getTotalBodyLength() {
+		return totalBodyLength;
+	}
+
+	/**
+	 * @return the number of unique words of the dataset that was saved
+	 */
+	public long getUniqueWords() {
+		return uniqueWords;
+	}
+
+	/**
+	 * @return the number of word-post pairs of the dataset that was saved
+	 */
+	public long getWordPostPairs() {
+		return wordPostPairs;
+	}
+
+	/**
+	 * @return the size of the term dictionary within this file, in bytes
+	 */
+	public long getTermsSizeInBytes() {
+		return terms.capacity();
+	}
+
+	/**
+	 * @return the size of this file, in bytes
+	 */
+	public long getFileLength() {
+		return fileLength;
+	}
+
+	/**
+	 * @return the path and name of this file
+	 */
+	public String getFilename() {
+		return filename;
+	}
+}
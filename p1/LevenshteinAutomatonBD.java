@@ -0,0 +1,215 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Accepts the words that are within a maximum edit distance of one word, where
+ * each insertion, deletion, or substitution of a char is one edit. The state of
+ * the automaton after reading some chars is the row of edit distances between
+ * those chars and each prefix of the word, as in the usual dynamic programming
+ * algorithm, and a state from which no word can be accepted any more (one whose
+ * distances are all above the maximum) is a dead end.
+ *
+ * Rather than comparing the word against every term, the automaton is run over
+ * the terms in sorted order as if they were a trie: terms that share a prefix
+ * are next to each other, so the chars that can follow a prefix are found by
+ * binary searches within its range of terms, and the automaton reads each
+ * shared prefix once. Every prefix that reaches a dead end is skipped along
+ * with all of the terms that start with it, and once no more edits can be
+ * made, only the chars that continue a match of the word are looked for, so
+ * only a small part of a large vocabulary is ever looked at.
+ *
+ * @author BackendDeveloper
+ */
+public class LevenshteinAutomatonBD {
+
+	/**
+	 * Terms in sorted order (the same order as String.compareTo), as the
+	 * automaton reads them.
+	 */
+	public interface SortedTerms {
+		/**
+		 * @return the number of terms
+		 */
+		int getSortedCount();
+
+		/**
+		 * @param index the position of the term in sorted order
+		 * @return the number of chars in that term
+		 */
+		int getLength(int index);
+
+		/**
+		 * @param index    the position of the term in sorted order
+		 * @param position the index of the char within the term
+		 * @return that char of that term
+		 */
+		char getChar(int index, int position);
+
+		/**
+		 * @param index the position of the term in sorted order
+		 * @return that term
+		 */
+		String getSortedTerm(int index);
+	}
+
+	/**
+	 * A term that the automaton accepts, and its distance from the word.
+	 */
+	public static class Match {
+		public final String term;
+		public final int distance;
+
+		Match(String term, int distance) {
+			this.term = term;
+			this.distance = distance;
+		}
+	}
+
+	private final String word;
+	private final int maxDistance;
+	private int statesVisited; // the prefixes read by the last call to intersect
+
+	/**
+	 * Creates an automaton for the words within maxDistance edits of word.
+	 *
+	 * @param word        the word to compare terms to
+	 * @param maxDistance the most edits a term can be from word, at least 0
+	 * @throws IllegalArgumentException when maxDistance is negative
+	 */
+	public LevenshteinAutomatonBD(String word, int maxDistance) {
+		if (maxDistance < 0)
+			throw new IllegalArgumentException("maxDistance must not be negative");
+		this.word = word;
+		this.maxDistance = maxDistance;
+	}
+
+	/**
+	 * @return the state before any chars have been read: reaching each prefix of
+	 *         the word from nothing takes one insertion per char
+	 */
+	private int[] start() {
+		int[] row = new int[word.length() + 1];
+		for (int i = 0; i < row.length; i++)
+			row[i] = i;
+		return row;
+	}
+
+	/**
+	 * @return the state after reading one more char, c, from the specified state
+	 */
+	private int[] step(int[] row, char c) {
+		int[] next = new int[row.length];
+		next[0] = row[0] + 1;
+		for (int i = 1; i < row.length; i++)
+			next[i] = Math.min(Math.min(next[i - 1], row[i]) + 1, row[i - 1] + (word.charAt(i - 1) == c ? 0 : 1));
+		return next;
+	}
+
+	/**
+	 * @return true if some word starting with the chars read so far can still be
+	 *         accepted
+	 */
+	private boolean canMatch(int[] row) {
+		for (int distance : row)
+			if (distance <= maxDistance)
+				return true;
+		return false;
+	}
+
+	/**
+	 * Checks whether a single term is within the maximum distance of the word.
+	 *
+	 * @param term the term to check
+	 * @return the distance between term and the word, or -1 if it is more than
+	 *         the maximum
+	 */
+	public int distance(String term) {
+		int[] row = start();
+		for (int i = 0; i < term.length() && canMatch(row); i++)
+			row = step(row, term.charAt(i));
+		return row[word.length()] <= maxDistance ? row[word.length()] : -1;
+	}
+
+	/**
+	 * Finds every term that is within the maximum distance of the word.
+	 *
+	 * @param terms the terms to search, in sorted order
+	 * @return the matching terms, in sorted order, with their distances
+	 */
+	public List<Match> intersect(SortedTerms terms) {
+		List<Match> matches = new ArrayList<>();
+		statesVisited = 0;
+		walk(terms, 0, terms.getSortedCount(), 0, start(), matches);
+		return matches;
+	}
+
+	/**
+	 * Reads the terms from index from to index to - 1, which all start with the
+	 * same depth chars, and which led to the specified state.
+	 */
+	private void walk(SortedTerms terms, int from, int to, int depth, int[] row, List<Match> matches) {
+		statesVisited++;
+		if (from < to && terms.getLength(from) == depth) { // the prefix itself, which sorts first
+			if (row[word.length()] <= maxDistance)
+				matches.add(new Match(terms.getSortedTerm(from), row[word.length()]));
+			from++;
+		}
+		int closest = Integer.MAX_VALUE;
+		for (int distance : row)
+			closest = Math.min(closest, distance);
+		if (closest < maxDistance) {
+			// an edit can still be made, so any char can follow: read each in turn
+			while (from < to) {
+				char c = terms.getChar(from, depth);
+				int end = firstAtLeast(terms, from + 1, to, depth, (char) (c + 1));
+				int[] next = step(row, c);
+				if (canMatch(next))
+					walk(terms, from, end, depth + 1, next, matches);
+				from = end;
+			}
+			return;
+		}
+		// no more edits can be made, so only a char that extends a match of the word
+		// can follow, and only the terms with those chars next are looked for
+		char[] next = new char[word.length()];
+		int count = 0;
+		for (int i = 0; i < word.length(); i++)
+			if (row[i] <= maxDistance)
+				next[count++] = word.charAt(i);
+		Arrays.sort(next, 0, count);
+		for (int i = 0; i < count && from < to; i++) {
+			if (i > 0 && next[i] == next[i - 1])
+				continue;
+			int start = firstAtLeast(terms, from, to, depth, next[i]);
+			int end = firstAtLeast(terms, start, to, depth, (char) (next[i] + 1));
+			if (start < end)
+				walk(terms, start, end, depth + 1, step(row, next[i]), matches);
+			from = end;
+		}
+	}
+
+	/**
+	 * @return the first index from from to to - 1 of a term whose char at
+	 *         position is at least c, or to if there is none, where every term in
+	 *         that range is longer than position and sorted by that char
+	 */
+	private static int firstAtLeast(SortedTerms terms, int from, int to, int position, char c) {
+		while (from < to) {
+			int middle = (from + to) >>> 1;
+			if (terms.getChar(middle, position) < c)
+				from = middle + 1;
+			else
+				to = middle;
+		}
+		return from;
+	}
+
+	/**
+	 * @return the number of prefixes that the last call to intersect read, which
+	 *         is also the number of states it visited
+	 */
+	public int getStatesVisited() {
+		return statesVisited;
+	}
+}
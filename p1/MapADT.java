@@ -1,4 +1,5 @@
 import java.util.NoSuchElementException;
+import java.util.function.Function;
 
 /**
  * This abstract data type represents a collection that maps keys to values,
@@ -17,6 +18,30 @@ public interface MapADT<KeyType,ValueType> {
     // throws exception when key is not stored in this collection
     public ValueType get(KeyType key) throws NoSuchElementException;
 
+    // retrieve the value that a key maps to, or defaultValue when the key is
+    // null or not stored, without throwing an exception for a missing key
+    public default ValueType getOrDefault(KeyType key, ValueType defaultValue) {
+        return key != null && containsKey(key) ? get(key) : defaultValue;
+    }
+
+    // retrieve the value that a key maps to, first mapping the key to the value
+    // that mappingFunction computes from it when the key is not stored yet (a
+    // null value is returned without being stored), mappingFunction must not
+    // change this collection
+    // throws exception when key is null
+    public default ValueType computeIfAbsent(KeyType key,
+            Function<? super KeyType, ? extends ValueType> mappingFunction) throws IllegalArgumentException {
+        if (key == null)
+            throw new IllegalArgumentException("Key cannot be null");
+        ValueType value = getOrDefault(key, null);
+        if (value == null && !containsKey(key)) {
+            value = mappingFunction.apply(key);
+            if (value != null)
+                put(key, value);
+        }
+        return value;
+    }
+
     // remove the mapping for a given key from this collection
     // throws exception when key is not stored in this collection
     public ValueType remove(KeyType key) throws NoSuchElementException;
@@ -0,0 +1,247 @@
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * This class reads reddit post data from the same text files as PostReaderDW:
+ * each post is a single line, containing a title, url, and body separated by
+ * the delimiter +++. Rather than reading the file through a Scanner and
+ * splitting each line with a regular expression, it memory maps the file and
+ * scans its bytes for line breaks and delimiters, and only decodes the title,
+ * url, and body of each post into Strings.
+ *
+ * Posts are handed to a consumer as soon as they are read, so they can be
+ * indexed while the rest of the file is still being read, and files of any size
+ * can be read without holding all of their posts in memory. Large files are
+ * mapped one region at a time.
+ *
+ * @author DataWrangler
+ */
+public class MappedPostReaderDW implements PostReaderInterface {
+
+	protected static final int REGION_SIZE = 64 << 20; // bytes of the file mapped at a time
+
+	private final int regionSize;
+	private byte[] scratch = new byte[256]; // reused to decode each field
+
+	/**
+	 * Creates a reader that maps files REGION_SIZE bytes at a time.
+	 */
+	public MappedPostReaderDW() {
+		this(REGION_SIZE);
+	}
+
+	/**
+	 * Creates a reader that maps files the specified number of bytes at a time.
+	 * A region is temporarily grown when a single line does not fit in it.
+	 *
+	 * @param regionSize the number of bytes to map at a time
+	 */
+	public MappedPostReaderDW(int regionSize) {
+		if (regionSize < 1)
+			throw new IllegalArgumentException("regionSize must be at least 1");
+		this.regionSize = regionSize;
+	}
+
+	/**
+	 * This method reads each line from the specified file, and stores Post objects
+	 * with corresponding data into a list that is then returned.
+	 *
+	 * @param filename contains the path and name of the data file that should be
+	 *                 read from
+	 * @return List of post read from file
+	 * @throws FileNotFoundException when a file corresponding to the provided
+	 *                               filename cannot be read from
+	 */
+	public List<PostInterface> readPostsFromFile(String filename) throws FileNotFoundException {
+		ArrayList<PostInterface> posts = new ArrayList<>();
+		readPostsFromFile(filename, posts::add);
+		return posts;
+	}
+
+	/**
+	 * This method reads each line from the specified file, and passes a Post
+	 * object with the corresponding data to consumer before reading the next.
+	 *
+	 * @param filename contains the path and name of the data file that should be
+	 *                 read from
+	 * @param consumer is given each post, in the order they appear in the file
+	 * @throws FileNotFoundException when a file corresponding to the provided
+	 *                               filename cannot be read from
+	 * @throws UncheckedIOException  when the file can be opened, but reading from
+	 *                               it fails
+	 */
+	@Override
+	public void readPostsFromFile(String filename, Consumer<PostInterface> consumer) throws FileNotFoundException {
+		readPostsFromFile(filename, 0, true, consumer);
+	}
+
+	/**
+	 * This method reads each line from the specified offset of the specified file
+	 * on, and passes a Post object with the corresponding data to consumer before
+	 * reading the next. When the file is still being written, its last line is
+	 * only read once it ends with a line break, so that a post that has only
+	 * been partly written is read in full by a later call.
+	 *
+	 * @param filename contains the path and name of the data file that should be
+	 *                 read from
+	 * @param start    the offset of the first byte to read, which must be the
+	 *                 start of a line
+	 * @param complete true when nothing more will be written to the file, so its
+	 *                 last line is read even without a line break
+	 * @param consumer is given each post, in the order they appear in the file
+	 * @return the offset just past the last line that was read, where the next
+	 *         call should start
+	 * @throws FileNotFoundException when a file corresponding to the provided
+	 *                               filename cannot be read from
+	 * @throws UncheckedIOException  when the file can be opened, but reading from
+	 *                               it fails
+	 */
+	public synchronized long readPostsFromFile(String filename, long start, boolean complete,
+			Consumer<PostInterface> consumer) throws FileNotFoundException {
+		FileChannel channel;
+		try {
+			channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+		} catch (IOException e) {
+			throw new FileNotFoundException(filename);
+		}
+		try (channel) {
+			long size = channel.size();
+			long regionStart = start;
+			int length = regionSize;
+			while (regionStart < size) {
+				int mapped = (int) Math.min(length, size - regionStart);
+				boolean last = regionStart + mapped == size;
+				MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, regionStart, mapped);
+				int consumed = readLines(region, regionStart, mapped, last && complete, consumer);
+				if (consumed == 0) {
+					if (last)
+						break; // the rest of the file is a line that is still being written
+					// this region ends part way through its first line, so map more of it
+					if (length == Integer.MAX_VALUE)
+						throw new IOException("Line longer than " + Integer.MAX_VALUE + " bytes in " + filename);
+					length = (int) Math.min(Integer.MAX_VALUE, 2L * length);
+					continue;
+				}
+				regionStart += consumed;
+				length = regionSize;
+			}
+			return regionStart;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Reads every complete line in a region of the file. Lines end with \n, \r\n,
+	 * or \r, and the last line of the file does not need to end with any of them.
+	 *
+	 * @return the number of bytes read, up to the end of the last complete line,
+	 *         so that the next region can start with the line that follows it
+	 */
+	private int readLines(MappedByteBuffer region, long regionStart, int mapped, boolean last,
+			Consumer<PostInterface> consumer) {
+		int lineStart = 0;
+		for (int i = 0; i < mapped; i++) {
+			byte b = region.get(i);
+			if (b != '\n' && b != '\r')
+				continue;
+			if (b == '\r' && i + 1 == mapped && !last)
+				break; // this might be the first half of a \r\n, so read it with the next region
+			readLine(region, regionStart, lineStart, i, consumer);
+			if (b == '\r' && i + 1 < mapped && region.get(i + 1) == '\n')
+				i++;
+			lineStart = i + 1;
+		}
+		if (last && lineStart < mapped) {
+			readLine(region, regionStart, lineStart, mapped, consumer);
+			lineStart = mapped;
+		}
+		return lineStart;
+	}
+
+	/**
+	 * Splits one line into parts around the delimiter +++, and passes the post
+	 * that they describe to consumer. Lines are split the same way that
+	 * String.split("\\+\\+\\+") would split them: delimiters are found from left
+	 * to right without overlapping, and empty parts at the end are dropped.
+	 */
+	private void readLine(MappedByteBuffer region, long regionStart, int start, int end,
+			Consumer<PostInterface> consumer) {
+		int[] bounds = new int[8]; // the start and end of each part
+		int parts = 0;
+		int partStart = start;
+		for (int i = start; i + 2 < end; i++) {
+			if (region.get(i) == '+' && region.get(i + 1) == '+' && region.get(i + 2) == '+') {
+				if (parts * 2 + 2 > bounds.length)
+					bounds = Arrays.copyOf(bounds, bounds.length * 2);
+				bounds[parts * 2] = partStart;
+				bounds[parts * 2 + 1] = i;
+				parts++;
+				i += 2;
+				partStart = i + 1;
+			}
+		}
+		if (parts * 2 + 2 > bounds.length)
+			bounds = Arrays.copyOf(bounds, bounds.length * 2);
+		bounds[parts * 2] = partStart;
+		bounds[parts * 2 + 1] = end;
+		parts++;
+		while (parts > 1 && bounds[parts * 2 - 2] == bounds[parts * 2 - 1])
+			parts--; // like split, leave out empty parts at the end
+
+		// most lines should have all three parts
+		if (parts == 3)
+			consumer.accept(createPost(region, regionStart, bounds[0], bounds[1], bounds[2], bounds[3], bounds[4],
+					bounds[5]));
+		// although are missing a body: we'll use empty string in those cases
+		if (parts == 2)
+			consumer.accept(createPost(region, regionStart, bounds[0], bounds[1], bounds[2], bounds[3], bounds[3],
+					bounds[3]));
+		// for lines with any other number of parts, we'll print a warning message
+		if (parts < 2 || parts > 3)
+			System.out.println("Warning: found a line without exactly 2 or 3 parts: " + decode(region, start, end));
+	}
+
+	/**
+	 * Creates the post whose title, url and body are the UTF-8 text in the
+	 * specified parts of a region, as a PostDW holding all three as Strings.
+	 * Subclasses can keep posts in some other form.
+	 *
+	 * @param region      the mapped region of the file holding the post's line
+	 * @param regionStart the offset of the region within the file
+	 * @param titleStart  the index in region of the title's first byte
+	 * @param titleEnd    the index in region just after the title
+	 * @param urlStart    the index in region of the url's first byte
+	 * @param urlEnd      the index in region just after the url
+	 * @param bodyStart   the index in region of the body's first byte
+	 * @param bodyEnd     the index in region just after the body, which is
+	 *                    bodyStart for a post without a body
+	 * @return the post
+	 */
+	protected PostInterface createPost(MappedByteBuffer region, long regionStart, int titleStart, int titleEnd,
+			int urlStart, int urlEnd, int bodyStart, int bodyEnd) {
+		return new PostDW(decode(region, titleStart, titleEnd), decode(region, urlStart, urlEnd),
+				bodyStart == bodyEnd ? "" : decode(region, bodyStart, bodyEnd));
+	}
+
+	/**
+	 * @return the UTF-8 text stored from index start up to end of region
+	 */
+	private String decode(MappedByteBuffer region, int start, int end) {
+		int length = end - start;
+		if (length > scratch.length)
+			scratch = new byte[Math.max(length, scratch.length * 2)];
+		region.get(start, scratch, 0, length);
+		return new String(scratch, 0, length, StandardCharsets.UTF_8);
+	}
+}
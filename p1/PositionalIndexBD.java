@@ -0,0 +1,806 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Records where each word occurs within each post, so that the backend can find
+ * posts that contain an exact phrase. For every word in each field (title or
+ * body), this index keeps the ids of the posts that contain that word in
+ * increasing order, and for each of those posts the offsets (counted in words)
+ * of every occurrence. Words are identified by their id in a TermDictionaryBD,
+ * and the lists of a word are found by indexing an array with that id and the
+ * field, rather than by hashing a key.
+ *
+ * Posts are numbered in the order they are added, which is also the order in
+ * which their ids are appended to every list, so lists never need re-sorting.
+ * The number of offsets stored for a post is how often the word occurs in it,
+ * and along with the length of each field this lets the index rank posts by
+ * their BM25 score.
+ *
+ * An index can also be read from an IndexFileBD, in which case its posting
+ * lists and posts are decoded from that file as queries need them, and no more
+ * posts can be added to it.
+ *
+ * Methods are synchronized, so a query can run while another thread is still
+ * loading posts.
+ *
+ * @author BackendDeveloper
+ */
+public class PositionalIndexBD {
+
+	/**
+	 * The posts that contain one word, and the offsets of that word within each.
+	 * The offsets within the i-th of these posts are stored in positions, from
+	 * index starts[i] up to (but not including) index starts[i + 1].
+	 */
+	static class Postings {
+		int[] posts = new int[4];
+		int[] starts = new int[5];
+		int[] positions = new int[4];
+		int postCount;
+		int positionCount;
+		int maxFrequency; // the most times this word occurs in any one post
+
+		/**
+		 * Records every occurrence stored in another list, with offset added to
+		 * their post ids. Those ids must all be larger than the ids in this list.
+		 */
+		void addAll(Postings other, int offset) {
+			if (postCount + other.postCount > posts.length) {
+				int capacity = Math.max(posts.length * 2, postCount + other.postCount);
+				posts = Arrays.copyOf(posts, capacity);
+				starts = Arrays.copyOf(starts, capacity + 1);
+			}
+			if (positionCount + other.positionCount > positions.length)
+				positions = Arrays.copyOf(positions, Math.max(positions.length * 2, positionCount + other.positionCount));
+			for (int i = 0; i < other.postCount; i++) {
+				posts[postCount + i] = other.posts[i] + offset;
+				starts[postCount + i + 1] = positionCount + other.starts[i + 1];
+			}
+			System.arraycopy(other.positions, 0, positions, positionCount, other.positionCount);
+			postCount += other.postCount;
+			positionCount += other.positionCount;
+			maxFrequency = Math.max(maxFrequency, other.maxFrequency);
+		}
+
+		/**
+		 * Records one more occurrence of this word. Posts must be added in
+		 * increasing order, and offsets in increasing order within each post.
+		 */
+		void add(int post, int position) {
+			if (postCount == 0 || posts[postCount - 1] != post) {
+				if (postCount == posts.length) {
+					posts = Arrays.copyOf(posts, postCount * 2);
+					starts = Arrays.copyOf(starts, postCount * 2 + 1);
+				}
+				posts[postCount++] = post;
+			}
+			if (positionCount == positions.length)
+				positions = Arrays.copyOf(positions, positionCount * 2);
+			positions[positionCount++] = position;
+			starts[postCount] = positionCount;
+			maxFrequency = Math.max(maxFrequency, positionCount - starts[postCount - 1]);
+		}
+
+		/**
+		 * @return the number of times this word occurs in the post stored at index
+		 *         i of posts
+		 */
+		int frequency(int i) {
+			return starts[i + 1] - starts[i];
+		}
+
+		/**
+		 * @return true if this word occurs at the specified offset of the post
+		 *         stored at index i of posts
+		 */
+		boolean occursAt(int i, int position) {
+			return Arrays.binarySearch(positions, starts[i], starts[i + 1], position) >= 0;
+		}
+	}
+
+	/**
+	 * One field's posting list for a word of a ranked query, along with what is
+	 * needed to score its postings and how far it has been read.
+	 */
+	static class ScoredTerm {
+		final Postings postings;
+		final int order; // the index of the word in the query, times 2, plus the field
+		final double weight; // the field's weight times the word's idf
+		final int[] lengths; // the length of this field in each post
+		final double averageLength; // the average length of this field
+		final double maxScore; // no posting in this list scores higher than this
+		int cursor; // the index in postings of the next post to score
+
+		ScoredTerm(Postings postings, int order, double weight, int[] lengths, double averageLength) {
+			this.postings = postings;
+			this.order = order;
+			this.weight = weight;
+			this.lengths = lengths;
+			this.averageLength = averageLength;
+			// scores grow with frequency and shrink with length, so bound them using
+			// the highest frequency and a length of zero
+			int tf = postings.maxFrequency;
+			this.maxScore = weight * tf * (K1 + 1) / (tf + K1 * (1 - B));
+		}
+
+		/**
+		 * @return the BM25 score of the posting at index i of this list
+		 */
+		double score(int i) {
+			int tf = postings.frequency(i);
+			double norm = K1 * (1 - B + B * lengths[postings.posts[i]] / averageLength);
+			return weight * tf * (K1 + 1) / (tf + norm);
+		}
+	}
+
+	/**
+	 * A post and its score, ordered so that the worst of two is the smaller: the
+	 * one with the lower score, or the later post when scores are equal.
+	 */
+	static class ScoredPost implements Comparable<ScoredPost> {
+		final int post;
+		final double score;
+
+		ScoredPost(int post, double score) {
+			this.post = post;
+			this.score = score;
+		}
+
+		@Override
+		public int compareTo(ScoredPost other) {
+			int order = Double.compare(score, other.score);
+			return order != 0 ? order : Integer.compare(other.post, post);
+		}
+	}
+
+	/**
+	 * The numbers that BM25 scores a query by: how many posts there are, how long
+	 * their titles and bodies are in total, and how many posts contain each word
+	 * of the query in each field. These can be added up over several indexes, so
+	 * that the posts of each are scored as if they were all in one.
+	 */
+	static class Statistics {
+		final List<String> words = new ArrayList<>(); // the distinct, non-empty words of the query
+		final int[] frequencies; // the posts containing words.get(i) in field f, at i * 2 + f
+		int postCount;
+		long totalTitleLength;
+		long totalBodyLength;
+
+		Statistics(List<String> query) {
+			for (String word : query)
+				if (!word.isEmpty() && !words.contains(word))
+					words.add(word);
+			frequencies = new int[words.size() * 2];
+		}
+	}
+
+	protected static final double K1 = 1.2; // how quickly repeating a word stops mattering
+	protected static final double B = 0.75; // how much longer fields are penalized
+	protected static final double TITLE_WEIGHT = 2.0; // a word in a title counts twice
+	protected static final double BODY_WEIGHT = 1.0;
+
+	private final TermDictionaryBD terms; // the id of each word, when not read from a file
+	private final IndexFileBD file; // where lists and posts are read from, or null
+	private Postings[] postings = new Postings[128]; // the list of each term id * 2 + field
+	private ArrayList<PostInterface> posts = new ArrayList<>();
+	private int postCount;
+	private int[] titleLengths = new int[16]; // the number of words in each title
+	private int[] bodyLengths = new int[16]; // the number of words in each body
+	private long totalTitleLength;
+	private long totalBodyLength;
+
+	/**
+	 * Creates an empty index, with a dictionary of its own.
+	 */
+	public PositionalIndexBD() {
+		this(new TermDictionaryBD());
+	}
+
+	/**
+	 * Creates an empty index that identifies words by their ids in the specified
+	 * dictionary, which can be shared with the code that tokenizes posts.
+	 *
+	 * @param terms the dictionary that term ids come from
+	 */
+	public PositionalIndexBD(TermDictionaryBD terms) {
+		this.terms = terms;
+		this.file = null;
+	}
+
+	/**
+	 * Creates an index of the posts saved in an index file, which only reads the
+	 * lengths of those posts up front. Term ids are the ids within that file.
+	 *
+	 * @param file the file to read posting lists and posts from
+	 */
+	public PositionalIndexBD(IndexFileBD file) {
+		this.terms = null;
+		this.file = file;
+		this.postings = new Postings[file.getTermCount() * 2];
+		this.postCount = file.getPostCount();
+		this.titleLengths = file.readTitleLengths();
+		this.bodyLengths = file.readBodyLengths();
+		this.totalTitleLength = file.getTotalTitleLength();
+		this.totalBodyLength = file.getTotalBodyLength();
+	}
+
+	/**
+	 * @return the dictionary that this index's term ids come from, or null when
+	 *         this index is read from a file
+	 */
+	public TermDictionaryBD getTermDictionary() {
+		return terms;
+	}
+
+	/**
+	 * @return true if this index is read from a file, and so cannot be added to
+	 */
+	public boolean isReadOnly() {
+		return file != null;
+	}
+
+	private void checkWritable() {
+		if (file != null)
+			throw new UnsupportedOperationException("Cannot add posts to an index read from " + file.getFilename());
+	}
+
+	/**
+	 * Adds a post to this index, along with the ids of the words in its title and
+	 * body.
+	 *
+	 * @param post        the post to add
+	 * @param termIds     the ids of the words in that post's title, in order,
+	 *                    followed by those in its body
+	 * @param titleLength the number of those words that are in the title
+	 * @param length      the number of words in termIds
+	 * @return the id of this post within this index
+	 */
+	public synchronized int addPost(PostInterface post, int[] termIds, int titleLength, int length) {
+		checkWritable();
+		int id = postCount++;
+		posts.add(post);
+		if (id == titleLengths.length) {
+			titleLengths = Arrays.copyOf(titleLengths, id * 2);
+			bodyLengths = Arrays.copyOf(bodyLengths, id * 2);
+		}
+		for (int i = 0; i < titleLength; i++)
+			postings(termIds[i], TermDictionaryBD.TITLE).add(id, i);
+		for (int i = titleLength; i < length; i++)
+			postings(termIds[i], TermDictionaryBD.BODY).add(id, i - titleLength);
+		titleLengths[id] = titleLength;
+		bodyLengths[id] = length - titleLength;
+		totalTitleLength += titleLength;
+		totalBodyLength += length - titleLength;
+		return id;
+	}
+
+	/**
+	 * Adds a post to this index, along with the words in its title and body.
+	 *
+	 * @param post       the post to add
+	 * @param titleWords the words of that post's title, in order
+	 * @param bodyWords  the words of that post's body, in order
+	 * @return the id of this post within this index
+	 */
+	public synchronized int addPost(PostInterface post, List<String> titleWords, List<String> bodyWords) {
+		checkWritable();
+		int[] termIds = new int[titleWords.size() + bodyWords.size()];
+		int length = 0;
+		for (String word : titleWords)
+			termIds[length++] = terms.idOf(word);
+		for (String word : bodyWords)
+			termIds[length++] = terms.idOf(word);
+		return addPost(post, termIds, titleWords.size(), length);
+	}
+
+	/**
+	 * @return the postings stored for the specified term and field, which are
+	 *         added first when they are new
+	 */
+	private Postings postings(int termId, int field) {
+		int index = termId * 2 + field;
+		if (index >= postings.length)
+			postings = Arrays.copyOf(postings, Math.max(postings.length * 2, index + 1));
+		if (postings[index] == null)
+			postings[index] = new Postings();
+		return postings[index];
+	}
+
+	/**
+	 * @return the postings of the specified word in the specified field, or null
+	 *         when that word never occurs in that field
+	 */
+	private Postings find(String word, int field) {
+		int termId = file != null ? file.findTerm(word) : terms.find(word);
+		return termId < 0 ? null : getPostings(termId, field);
+	}
+
+	/**
+	 * Returns the postings of a term in a field, reading them from this index's
+	 * file the first time they are needed. The postings returned must not be
+	 * changed.
+	 *
+	 * @param termId the id of the term
+	 * @param field  TermDictionaryBD.TITLE or TermDictionaryBD.BODY
+	 * @return the postings of that term in that field, or null if it never occurs
+	 *         there
+	 */
+	synchronized Postings getPostings(int termId, int field) {
+		int index = termId * 2 + field;
+		if (index >= postings.length)
+			return null;
+		if (postings[index] == null && file != null)
+			postings[index] = file.readPostings(termId, field);
+		return postings[index];
+	}
+
+	/**
+	 * Finds the posts that contain a word in a field.
+	 *
+	 * @param word  the word to search for
+	 * @param field TermDictionaryBD.TITLE or TermDictionaryBD.BODY
+	 * @return the ids of the posts that contain that word in that field
+	 */
+	public synchronized PostingBitmap getPostIds(String word, int field) {
+		PostingBitmap ids = new PostingBitmap();
+		Postings list = find(word, field);
+		for (int i = 0; list != null && i < list.postCount; i++)
+			ids.add(list.posts[i]);
+		return ids;
+	}
+
+	/**
+	 * @return the number of terms that term ids can refer to
+	 */
+	public synchronized int getTermCount() {
+		return file != null ? file.getTermCount() : terms.getSize();
+	}
+
+	/**
+	 * Returns the term with the specified id.
+	 *
+	 * @param termId the id of the term
+	 * @return that term
+	 */
+	public synchronized String getTerm(int termId) {
+		return file != null ? file.getTerm(termId) : terms.getTerm(termId);
+	}
+
+	/**
+	 * Adds every post of another index to the end of this one, so that the ids of
+	 * its posts follow on from the ids in this index. Indexing several batches of
+	 * posts separately and then adding them together, in order, gives the same
+	 * index as adding all of their posts to one index.
+	 *
+	 * @param other the index to add the posts of, which is left unchanged
+	 * @return the id in this index's dictionary of each term id of other's
+	 */
+	public synchronized int[] addAll(PositionalIndexBD other) {
+		checkWritable();
+		int offset = postCount;
+		int count = other.getPostCount();
+		for (int id = 0; id < count; id++)
+			posts.add(other.getPost(id));
+		postCount += count;
+		if (offset + count > titleLengths.length) {
+			int capacity = Math.max(titleLengths.length * 2, offset + count);
+			titleLengths = Arrays.copyOf(titleLengths, capacity);
+			bodyLengths = Arrays.copyOf(bodyLengths, capacity);
+		}
+		System.arraycopy(other.titleLengths, 0, titleLengths, offset, count);
+		System.arraycopy(other.bodyLengths, 0, bodyLengths, offset, count);
+		totalTitleLength += other.totalTitleLength;
+		totalBodyLength += other.totalBodyLength;
+		int[] termIds = new int[other.getTermCount()];
+		for (int id = 0; id < termIds.length; id++) {
+			termIds[id] = terms == other.terms ? id : terms.idOf(other.getTerm(id));
+			for (int field = 0; field < 2; field++) {
+				Postings list = other.getPostings(id, field);
+				if (list != null)
+					postings(termIds[id], field).addAll(list, offset);
+			}
+		}
+		return termIds;
+	}
+
+	/**
+	 * Adds the posts of another index to the end of this one, like addAll, but
+	 * leaves out the specified posts. The ids of the posts that are added follow
+	 * on from the ids in this index, in the same order, without gaps.
+	 *
+	 * @param other   the index to add the posts of, which is left unchanged
+	 * @param removed the ids in other of the posts to leave out, or null
+	 * @return the id in this index's dictionary of each term id of other's
+	 */
+	public synchronized int[] addAll(PositionalIndexBD other, PostingBitmap removed) {
+		if (removed == null || removed.isEmpty())
+			return addAll(other);
+		checkWritable();
+		int count = other.getPostCount();
+		int[] postIds = new int[count]; // the id in this index of each of other's posts, or -1
+		for (int id = 0; id < count; id++) {
+			if (removed.contains(id)) {
+				postIds[id] = -1;
+				continue;
+			}
+			postIds[id] = postCount++;
+			posts.add(other.getPost(id));
+			if (postIds[id] == titleLengths.length) {
+				titleLengths = Arrays.copyOf(titleLengths, postIds[id] * 2);
+				bodyLengths = Arrays.copyOf(bodyLengths, postIds[id] * 2);
+			}
+			titleLengths[postIds[id]] = other.titleLengths[id];
+			bodyLengths[postIds[id]] = other.bodyLengths[id];
+			totalTitleLength += other.titleLengths[id];
+			totalBodyLength += other.bodyLengths[id];
+		}
+		int[] termIds = new int[other.getTermCount()];
+		for (int id = 0; id < termIds.length; id++) {
+			termIds[id] = terms == other.terms ? id : terms.idOf(other.getTerm(id));
+			for (int field = 0; field < 2; field++) {
+				Postings list = other.getPostings(id, field);
+				Postings added = null; // only made once some post of list is kept
+				for (int i = 0; list != null && i < list.postCount; i++) {
+					int post = postIds[list.posts[i]];
+					if (post < 0)
+						continue;
+					if (added == null)
+						added = postings(termIds[id], field);
+					for (int p = list.starts[i]; p < list.starts[i + 1]; p++)
+						added.add(post, list.positions[p]);
+				}
+			}
+		}
+		return termIds;
+	}
+
+	/**
+	 * Returns the post with the specified id.
+	 *
+	 * @param id the id returned when that post was added
+	 * @return the post with that id
+	 */
+	public synchronized PostInterface getPost(int id) {
+		return file != null ? file.readPost(id) : posts.get(id);
+	}
+
+	/**
+	 * @return the number of posts in this index
+	 */
+	public synchronized int getPostCount() {
+		return postCount;
+	}
+
+	/**
+	 * @return the number of words in the title of the post with the specified id
+	 */
+	public synchronized int getTitleLength(int id) {
+		return titleLengths[id];
+	}
+
+	/**
+	 * @return the number of words in the body of the post with the specified id
+	 */
+	public synchronized int getBodyLength(int id) {
+		return bodyLengths[id];
+	}
+
+	/**
+	 * @return the number of words in every title of this index together
+	 */
+	public synchronized long getTotalTitleLength() {
+		return totalTitleLength;
+	}
+
+	/**
+	 * @return the number of words in every body of this index together
+	 */
+	public synchronized long getTotalBodyLength() {
+		return totalBodyLength;
+	}
+
+	/**
+	 * Finds the k posts that best match the specified words, ranked by BM25 with
+	 * words in a title weighted above words in a body. Each field of each word
+	 * is scored as its own posting list, and these lists are read together in
+	 * order of post id, keeping the best k posts seen so far in a heap.
+	 *
+	 * Once the heap is full, any post must beat the worst score in it. Lists
+	 * whose highest possible scores add up to no more than that cannot produce a
+	 * new result on their own, so they stop driving which posts are visited
+	 * (MaxScore pruning): they are only probed, skipping ahead, for posts found
+	 * in the other lists, and not at all once a post can no longer make it in.
+	 *
+	 * @param query the words to search for (duplicates and empty words are
+	 *              ignored)
+	 * @param k     the most posts to return
+	 * @return the ids of the best matching posts, best first, with ties going to
+	 *         the earlier post
+	 */
+	public synchronized int[] findTopPosts(List<String> query, int k) {
+		Statistics statistics = new Statistics(query);
+		addStatistics(statistics, null);
+		List<ScoredPost> best = findTopPosts(statistics, k, null);
+		int[] ranked = new int[best.size()];
+		for (int i = 0; i < ranked.length; i++)
+			ranked[i] = best.get(i).post;
+		return ranked;
+	}
+
+	/**
+	 * Finds the k posts of this index that best match a query, like
+	 * findTopPosts(query, k), but scored by statistics that can cover the posts
+	 * of other indexes too, and leaving out some posts.
+	 *
+	 * The score of each post adds up what each word and field contributes in the
+	 * order of the query, however the lists happen to be read, so that a post
+	 * gets exactly the same score no matter which index it is in.
+	 *
+	 * @param statistics the statistics to score the query's words by
+	 * @param k          the most posts to return
+	 * @param removed    the ids of posts to leave out, or null
+	 * @return the best matching posts and their scores, best first
+	 */
+	synchronized List<ScoredPost> findTopPosts(Statistics statistics, int k, PostingBitmap removed) {
+		List<ScoredTerm> scored = scoredTerms(statistics);
+		List<ScoredPost> ranked = new ArrayList<>();
+		if (scored.isEmpty() || k <= 0)
+			return ranked;
+		double[] parts = new double[statistics.frequencies.length]; // each list's part of a score
+
+		// upTo[i] is the highest total score that the lists 0 to i could add
+		scored.sort((a, b) -> Double.compare(a.maxScore, b.maxScore));
+		double[] upTo = new double[scored.size()];
+		for (int i = 0; i < upTo.length; i++)
+			upTo[i] = (i > 0 ? upTo[i - 1] : 0) + scored.get(i).maxScore;
+
+		PriorityQueue<ScoredPost> best = new PriorityQueue<>(); // the worst is at the head
+		double threshold = 0; // the score to beat, once best holds k posts
+		int firstEssential = 0; // the lists before this one only get probed
+		while (true) {
+			// visit the next post in any of the essential lists
+			int post = Integer.MAX_VALUE;
+			for (int i = firstEssential; i < scored.size(); i++) {
+				ScoredTerm term = scored.get(i);
+				if (term.cursor < term.postings.postCount)
+					post = Math.min(post, term.postings.posts[term.cursor]);
+			}
+			if (post == Integer.MAX_VALUE)
+				break;
+			Arrays.fill(parts, 0);
+			double score = 0;
+			for (int i = firstEssential; i < scored.size(); i++) {
+				ScoredTerm term = scored.get(i);
+				if (term.cursor < term.postings.postCount && term.postings.posts[term.cursor] == post)
+					score += parts[term.order] = term.score(term.cursor++);
+			}
+			if (removed != null && removed.contains(post))
+				continue;
+			// then add what the other lists score it, for as long as it can still win
+			for (int i = firstEssential - 1; i >= 0 && score + upTo[i] > threshold; i--) {
+				ScoredTerm term = scored.get(i);
+				term.cursor = gallop(term.postings.posts, term.cursor, term.postings.postCount, post);
+				if (term.cursor < term.postings.postCount && term.postings.posts[term.cursor] == post)
+					score += parts[term.order] = term.score(term.cursor);
+			}
+			score = 0;
+			for (double part : parts)
+				score += part;
+
+			if (best.size() < k) {
+				best.add(new ScoredPost(post, score));
+			} else if (score > threshold) {
+				best.poll();
+				best.add(new ScoredPost(post, score));
+			} else {
+				continue;
+			}
+			if (best.size() == k) {
+				threshold = best.peek().score;
+				while (firstEssential < scored.size() && upTo[firstEssential] <= threshold)
+					firstEssential++;
+			}
+		}
+
+		while (!best.isEmpty())
+			ranked.add(0, best.poll());
+		return ranked;
+	}
+
+	/**
+	 * Adds the number of posts in this index, the lengths of their fields, and
+	 * how many of them contain each word of a query in each field, to statistics.
+	 *
+	 * @param statistics the statistics to add to
+	 * @param removed    the ids of posts to leave out, or null
+	 */
+	synchronized void addStatistics(Statistics statistics, PostingBitmap removed) {
+		statistics.postCount += postCount;
+		statistics.totalTitleLength += totalTitleLength;
+		statistics.totalBodyLength += totalBodyLength;
+		if (removed != null) {
+			statistics.postCount -= removed.getCardinality();
+			removed.forEach(id -> {
+				statistics.totalTitleLength -= titleLengths[id];
+				statistics.totalBodyLength -= bodyLengths[id];
+			});
+		}
+		for (int i = 0; i < statistics.words.size(); i++) {
+			for (int field = 0; field < 2; field++) {
+				Postings postings = find(statistics.words.get(i), field);
+				if (postings == null)
+					continue;
+				int frequency = postings.postCount;
+				if (removed != null)
+					for (PostingBitmap.IdIterator it = removed.iterator(); it.hasNext();)
+						if (Arrays.binarySearch(postings.posts, 0, postings.postCount, it.next()) >= 0)
+							frequency--;
+				statistics.frequencies[i * 2 + field] += frequency;
+			}
+		}
+	}
+
+	/**
+	 * Looks up the title and body posting lists of each word of a query, in the
+	 * order of the query, leaving out the lists of words that never occur in that
+	 * field of this index.
+	 */
+	private List<ScoredTerm> scoredTerms(Statistics statistics) {
+		List<ScoredTerm> scored = new ArrayList<>();
+		for (int i = 0; i < statistics.words.size(); i++) {
+			String word = statistics.words.get(i);
+			addScoredTerm(scored, find(word, TermDictionaryBD.TITLE), i * 2 + TermDictionaryBD.TITLE, TITLE_WEIGHT,
+					titleLengths, statistics.totalTitleLength, statistics);
+			addScoredTerm(scored, find(word, TermDictionaryBD.BODY), i * 2 + TermDictionaryBD.BODY, BODY_WEIGHT,
+					bodyLengths, statistics.totalBodyLength, statistics);
+		}
+		return scored;
+	}
+
+	/**
+	 * Adds the specified posting list to scored, unless it is null, weighted by
+	 * the inverse document frequency of its word and field in statistics.
+	 */
+	private void addScoredTerm(List<ScoredTerm> scored, Postings postings, int order, double fieldWeight,
+			int[] lengths, long totalLength, Statistics statistics) {
+		if (postings == null)
+			return;
+		int frequency = statistics.frequencies[order];
+		double idf = Math.log(1 + (statistics.postCount - frequency + 0.5) / (frequency + 0.5));
+		scored.add(new ScoredTerm(postings, order, fieldWeight * idf, lengths,
+				(double) totalLength / statistics.postCount));
+	}
+
+	/**
+	 * Returns the BM25 score of one post for the specified words, the same score
+	 * that findTopPosts ranks posts by, by looking up each word in turn.
+	 *
+	 * @param id    the id of the post to score
+	 * @param query the words to search for (duplicates and empty words are
+	 *              ignored)
+	 * @return the score of that post, or 0 if it contains none of the words
+	 */
+	public synchronized double score(int id, List<String> query) {
+		Statistics statistics = new Statistics(query);
+		addStatistics(statistics, null);
+		List<ScoredTerm> scored = scoredTerms(statistics);
+		double score = 0;
+		for (ScoredTerm term : scored) {
+			int i = gallop(term.postings.posts, 0, term.postings.postCount, id);
+			if (i < term.postings.postCount && term.postings.posts[i] == id)
+				score += term.score(i);
+		}
+		return score;
+	}
+
+	/**
+	 * Finds the posts in which the specified words appear one right after the
+	 * other, in order, within the same field. The candidates are found by
+	 * intersecting the posting lists of these words from the shortest to the
+	 * longest, skipping ahead through each longer list rather than reading it
+	 * all, and only the candidates have their offsets checked.
+	 *
+	 * @param field  TermDictionaryBD.TITLE or TermDictionaryBD.BODY, the field to
+	 *               search in
+	 * @param phrase the words of the phrase, in order (empty words are ignored)
+	 * @return the ids of the matching posts, in increasing order
+	 */
+	public synchronized int[] findPhrase(int field, List<String> phrase) {
+		List<Postings> lists = new ArrayList<>();
+		for (String word : phrase) {
+			if (word.isEmpty())
+				continue;
+			Postings postings = find(word, field);
+			if (postings == null)
+				return new int[0]; // some word of the phrase never appears
+			lists.add(postings);
+		}
+		if (lists.isEmpty())
+			return new int[0];
+
+		// intersect from the rarest word up, so the work is bounded by its list
+		Postings[] bySize = lists.toArray(new Postings[0]);
+		Arrays.sort(bySize, (a, b) -> Integer.compare(a.postCount, b.postCount));
+		int[] candidates = Arrays.copyOf(bySize[0].posts, bySize[0].postCount);
+		int count = candidates.length;
+		for (int k = 1; k < bySize.length && count > 0; k++)
+			count = retainAll(candidates, count, bySize[k]);
+
+		// then keep the candidates in which the words are also adjacent
+		int[] cursors = new int[lists.size()]; // where each candidate is in each list
+		int matches = 0;
+		for (int c = 0; c < count; c++) {
+			for (int k = 0; k < cursors.length; k++) {
+				Postings postings = lists.get(k);
+				cursors[k] = gallop(postings.posts, cursors[k], postings.postCount, candidates[c]);
+			}
+			if (containsPhrase(lists, cursors))
+				candidates[matches++] = candidates[c];
+		}
+		return Arrays.copyOf(candidates, matches);
+	}
+
+	/**
+	 * @return true if the words of lists occur at consecutive offsets within the
+	 *         post found at index cursors[k] of each list k
+	 */
+	private static boolean containsPhrase(List<Postings> lists, int[] cursors) {
+		Postings first = lists.get(0);
+		for (int p = first.starts[cursors[0]]; p < first.starts[cursors[0] + 1]; p++) {
+			int start = first.positions[p];
+			int k = 1;
+			while (k < cursors.length && lists.get(k).occursAt(cursors[k], start + k))
+				k++;
+			if (k == cursors.length)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Removes the candidates that are not in the specified list, in place.
+	 *
+	 * @param candidates the sorted ids to filter
+	 * @param count      the number of candidates in use
+	 * @param postings   the list each remaining candidate must be in
+	 * @return the number of candidates that remain
+	 */
+	private static int retainAll(int[] candidates, int count, Postings postings) {
+		int kept = 0;
+		int index = 0;
+		for (int c = 0; c < count && index < postings.postCount; c++) {
+			index = gallop(postings.posts, index, postings.postCount, candidates[c]);
+			if (index < postings.postCount && postings.posts[index] == candidates[c])
+				candidates[kept++] = candidates[c];
+		}
+		return kept;
+	}
+
+	/**
+	 * Finds the first index at or after from whose value is at least target, by
+	 * probing 1, 2, 4, ... places ahead and then binary searching the last step.
+	 * This costs time in proportion to the log of the distance skipped, rather
+	 * than the distance itself.
+	 *
+	 * @param sorted the increasing values to search
+	 * @param from   the index to start from
+	 * @param size   the number of values in use
+	 * @param target the value to search for
+	 * @return the index of the first value at least target, or size if none is
+	 */
+	static int gallop(int[] sorted, int from, int size, int target) {
+		int low = from;
+		int high = from;
+		int step = 1;
+		while (high < size && sorted[high] < target) {
+			low = high + 1;
+			high += step;
+			step <<= 1;
+		}
+		int found = Arrays.binarySearch(sorted, low, Math.min(high, size), target);
+		return found >= 0 ? found : -found - 1;
+	}
+
+}
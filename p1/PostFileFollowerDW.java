@@ -0,0 +1,320 @@
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * This class follows a data file that posts keep being appended to, like tail
+ * -f: each time the file grows, the lines added since it was last read are
+ * read (and only those), and their posts are handed to a consumer.
+ *
+ * The follower remembers the offset just past the last line it read, and the
+ * next read starts there. A line that is still being written, with no line
+ * break at its end yet, is left for a later read, so a post is never read
+ * before all of it is in the file.
+ *
+ * Once started, a thread of the follower's own waits for the file to change,
+ * through a WatchService on its folder, and reads what has been added. Since
+ * not every file system reports changes, the file is also checked every
+ * pollMillis milliseconds whether or not a change was reported.
+ *
+ * The ingest lag of each read is how long it took from the file's last
+ * change until its new posts had been handed to the consumer (and, for a
+ * consumer that indexes them, were searchable).
+ *
+ * @author DataWrangler
+ */
+public class PostFileFollowerDW implements AutoCloseable {
+
+	protected static final long POLL_MILLIS = 1000; // the longest time between checks of the file
+
+	private final String filename;
+	private final MappedPostReaderDW reader; // reads the lines added to the file
+	private final Consumer<List<PostInterface>> consumer;
+	private final long pollMillis;
+	private Thread thread; // follows the file, once started
+	private WatchService watcher; // reports changes to the file's folder, if the file system can
+
+	private volatile long offset; // just past the last line read
+	private volatile long pendingBytes; // the bytes after offset when the file was last read
+	private volatile long postCount; // the posts read
+	private volatile long reads; // the reads that found new posts
+	private volatile long lastLagMillis; // the ingest lag of the last read that found new posts
+	private volatile long maxLagMillis;
+	private volatile Exception failure; // what ended following the file, if anything did
+	private volatile boolean closed;
+
+	/**
+	 * Creates a follower that reads a file from the specified offset on, checking
+	 * it at least every POLL_MILLIS milliseconds once it is started.
+	 *
+	 * @param filename the path and name of the file to follow
+	 * @param start    the offset to read from, which must be the start of a line,
+	 *                 such as the offset that an earlier follower of the file got
+	 *                 to
+	 * @param consumer is given the posts of each read, in the order they appear in
+	 *                 the file
+	 */
+	public PostFileFollowerDW(String filename, long start, Consumer<List<PostInterface>> consumer) {
+		this(filename, start, POLL_MILLIS, new MappedPostReaderDW(), consumer);
+	}
+
+	/**
+	 * Creates a follower that reads a file from the specified offset on through
+	 * the specified reader, such as a PostStoreDW that leaves the bodies of the
+	 * posts in the file, checking it at least every POLL_MILLIS milliseconds
+	 * once it is started.
+	 *
+	 * @param filename the path and name of the file to follow
+	 * @param start    the offset to read from, which must be the start of a line
+	 * @param reader   reads the posts on the lines added to the file
+	 * @param consumer is given the posts of each read, in the order they appear in
+	 *                 the file
+	 */
+	public PostFileFollowerDW(String filename, long start, MappedPostReaderDW reader,
+			Consumer<List<PostInterface>> consumer) {
+		this(filename, start, POLL_MILLIS, reader, consumer);
+	}
+
+	/**
+	 * Creates a follower that reads a file from the specified offset on, checking
+	 * it at least every pollMillis milliseconds once it is started.
+	 *
+	 * @param filename   the path and name of the file to follow
+	 * @param start      the offset to read from, which must be the start of a
+	 *                   line
+	 * @param pollMillis the longest time between checks of the file
+	 * @param consumer   is given the posts of each read, in the order they appear
+	 *                   in the file
+	 * @throws IllegalArgumentException when start is negative, or pollMillis is
+	 *                                  less than 1
+	 */
+	public PostFileFollowerDW(String filename, long start, long pollMillis, Consumer<List<PostInterface>> consumer) {
+		this(filename, start, pollMillis, new MappedPostReaderDW(), consumer);
+	}
+
+	/**
+	 * Creates a follower that reads a file from the specified offset on through
+	 * the specified reader, checking it at least every pollMillis milliseconds
+	 * once it is started.
+	 *
+	 * @param filename   the path and name of the file to follow
+	 * @param start      the offset to read from, which must be the start of a
+	 *                   line
+	 * @param pollMillis the longest time between checks of the file
+	 * @param reader     reads the posts on the lines added to the file
+	 * @param consumer   is given the posts of each read, in the order they appear
+	 *                   in the file
+	 * @throws IllegalArgumentException when start is negative, or pollMillis is
+	 *                                  less than 1
+	 */
+	public PostFileFollowerDW(String filename, long start, long pollMillis, MappedPostReaderDW reader,
+			Consumer<List<PostInterface>> consumer) {
+		if (start < 0 || pollMillis < 1)
+			throw new IllegalArgumentException("start must not be negative, and pollMillis must be at least 1");
+		this.filename = filename;
+		this.reader = reader;
+		this.offset = start;
+		this.pollMillis = pollMillis;
+		this.consumer = consumer;
+	}
+
+	/**
+	 * Reads every complete line added to the file since it was last read, and
+	 * hands their posts to the consumer, if there are any.
+	 *
+	 * @return the number of posts read
+	 * @throws FileNotFoundException when the file cannot be read from
+	 * @throws UncheckedIOException  when reading the file fails, or the file is
+	 *                               now shorter than the offset to read from
+	 */
+	public synchronized int poll() throws FileNotFoundException {
+		Path path = Paths.get(filename);
+		long changed;
+		long size;
+		try {
+			// the time of the change before the size, so that the lag is never too short
+			changed = Files.getLastModifiedTime(path).toMillis();
+			size = Files.size(path);
+		} catch (IOException e) {
+			throw new FileNotFoundException(filename);
+		}
+		if (size < offset)
+			throw new UncheckedIOException(
+					new IOException(filename + " has shrunk from " + offset + " to " + size + " bytes"));
+		List<PostInterface> posts = new ArrayList<>();
+		if (size > offset)
+			offset = reader.readPostsFromFile(filename, offset, false, posts::add);
+		pendingBytes = Math.max(0, size - offset);
+		if (posts.isEmpty())
+			return 0;
+		consumer.accept(posts);
+		long lag = Math.max(0, System.currentTimeMillis() - changed);
+		postCount += posts.size();
+		reads++;
+		lastLagMillis = lag;
+		maxLagMillis = Math.max(maxLagMillis, lag);
+		return posts.size();
+	}
+
+	/**
+	 * Starts following the file on a thread of the follower's own, which reads
+	 * whatever is added to it until the follower is closed or reading fails.
+	 */
+	public synchronized void start() {
+		if (thread != null || closed)
+			return;
+		try {
+			Path folder = Paths.get(filename).toAbsolutePath().getParent();
+			watcher = folder.getFileSystem().newWatchService();
+			folder.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+		} catch (IOException | UnsupportedOperationException e) {
+			watcher = null; // the file is then only checked every pollMillis milliseconds
+		}
+		thread = new Thread(this::follow, "follower of " + filename);
+		thread.setDaemon(true); // so that following never keeps the program running
+		thread.start();
+	}
+
+	private void follow() {
+		try {
+			while (!closed) {
+				poll();
+				waitForChange();
+			}
+		} catch (FileNotFoundException | RuntimeException e) {
+			if (!closed)
+				failure = e;
+		}
+	}
+
+	/**
+	 * Waits until a file in the followed file's folder changes, or until
+	 * pollMillis milliseconds have passed.
+	 */
+	private void waitForChange() {
+		try {
+			if (watcher == null) {
+				synchronized (this) {
+					if (!closed)
+						wait(pollMillis); // or until close() notifies
+				}
+				return;
+			}
+			WatchKey key = watcher.poll(pollMillis, TimeUnit.MILLISECONDS);
+			if (key != null) {
+				key.pollEvents(); // whichever file changed, checking the followed one is cheap
+				key.reset();
+			}
+		} catch (InterruptedException | ClosedWatchServiceException e) {
+			closed = true;
+		}
+	}
+
+	/**
+	 * Stops following the file, and waits for the follower's thread to finish
+	 * the read it is in the middle of, if any. The thread is woken rather than
+	 * interrupted, so that a read is never stopped part way through.
+	 */
+	@Override
+	public void close() {
+		Thread following;
+		synchronized (this) {
+			closed = true;
+			following = thread;
+			notifyAll();
+			if (watcher != null) {
+				try {
+					watcher.close();
+				} catch (IOException e) {
+					// nothing is waiting on it any more
+				}
+			}
+		}
+		if (following != null && following != Thread.currentThread()) {
+			try {
+				following.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * @return the path and name of the file being followed
+	 */
+	public String getFilename() {
+		return filename;
+	}
+
+	/**
+	 * @return the offset just past the last line read, which a new follower of
+	 *         the file can start from
+	 */
+	public long getOffset() {
+		return offset;
+	}
+
+	/**
+	 * @return the bytes after the offset when the file was last read, which are
+	 *         a line that is still being written
+	 */
+	public long getPendingBytes() {
+		return pendingBytes;
+	}
+
+	/**
+	 * @return the number of posts read
+	 */
+	public long getPostCount() {
+		return postCount;
+	}
+
+	/**
+	 * @return the number of reads that found new posts
+	 */
+	public long getReads() {
+		return reads;
+	}
+
+	/**
+	 * @return the ingest lag of the last read that found new posts, in
+	 *         milliseconds
+	 */
+	public long getLastLagMillis() {
+		return lastLagMillis;
+	}
+
+	/**
+	 * @return the longest ingest lag of any read, in milliseconds
+	 */
+	public long getMaxLagMillis() {
+		return maxLagMillis;
+	}
+
+	/**
+	 * @return what made the follower stop following the file, or null if it
+	 *         has not failed
+	 */
+	public Exception getFailure() {
+		return failure;
+	}
+
+	/**
+	 * @return true while the follower's thread is following the file
+	 */
+	public boolean isFollowing() {
+		Thread following = thread;
+		return following != null && following.isAlive();
+	}
+}
@@ -8,7 +8,8 @@ import java.io.FileNotFoundException;
  * This class reads reddit post data from a text file in which each post is
  * stored as a single line of text. Each of these lines contains a post title,
  * then url, and then body text in that order and these three fields are
- * separated by a three character delimiter: +++.
+ * separated by a three character delimiter: +++. The file is read as UTF-8,
+ * like MappedPostReaderDW reads it, whatever the platform's default charset.
  * 
  * @author DataWrangler, courtesy of the CS400 course staff.
  */
@@ -27,7 +28,7 @@ public class PostReaderDW implements PostReaderInterface {
 	public List<PostInterface> readPostsFromFile(String filename) throws FileNotFoundException {
 		// use scanner to read from the specified file, and store results in posts
 		ArrayList<PostInterface> posts = new ArrayList<>();
-		Scanner in = new Scanner(new File(filename));
+		Scanner in = new Scanner(new File(filename), "UTF-8");
 
 		while (in.hasNextLine()) {
 			// for each line in the file being read:
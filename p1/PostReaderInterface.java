@@ -1,7 +1,16 @@
 import java.util.List;
+import java.util.function.Consumer;
 import java.io.FileNotFoundException;
 
 public interface PostReaderInterface {
     // public PostReaderInterface();
     public List<PostInterface> readPostsFromFile(String filename) throws FileNotFoundException;
+
+    // passes each post to consumer in file order, readers that can do so without
+    // first reading the whole file should override this
+    public default void readPostsFromFile(String filename, Consumer<PostInterface> consumer)
+            throws FileNotFoundException {
+        for (PostInterface post : readPostsFromFile(filename))
+            consumer.accept(post);
+    }
 }
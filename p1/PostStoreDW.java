@@ -0,0 +1,246 @@
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * This class reads reddit post data from the same text files as
+ * MappedPostReaderDW, but does not keep the bodies of posts in memory, since
+ * searches only ever show the title and url of each post.
+ *
+ * The title and url of every post are copied, as the UTF-8 bytes they are in
+ * the file, one after the other into an arena of large byte arrays, and are
+ * only decoded into Strings when they are asked for. The body of each post is
+ * not copied at all: each post keeps the offset and length of its body in the
+ * file, and reads it from a memory mapped view of the file whenever it is
+ * asked for. The operating system keeps as much of the file in memory as there
+ * is room for, outside the Java heap.
+ *
+ * Files that posts have been read from must not be changed or deleted while
+ * those posts are in use.
+ *
+ * @author DataWrangler
+ */
+public class PostStoreDW extends MappedPostReaderDW {
+
+	protected static final int ARENA_CHUNK_SIZE = 1 << 20; // bytes of titles and urls in each array of the arena
+	protected static final int VIEW_REGION_SIZE = 1 << 30; // bytes of a file in each region of its view
+
+	private final int viewRegionSize;
+	private String filename; // the file being read
+	private MappedFile file; // the view of the file being read
+	private byte[] chunk = new byte[0]; // the array of the arena that titles and urls are being added to
+	private int chunkUsed; // the bytes of chunk in use
+	private long arenaBytes; // the bytes in every array of the arena
+	private long textBytes; // the bytes of every title and url
+	private long bodyBytes; // the bytes of every body, which are left in the files
+	private int postCount;
+
+	/**
+	 * A view of every byte of a file, made up of memory mapped regions.
+	 */
+	private static class MappedFile {
+		final MappedByteBuffer[] regions;
+		final int regionSize;
+		final long size; // the size of the file when it was mapped
+
+		MappedFile(String filename, int regionSize) throws IOException {
+			this.regionSize = regionSize;
+			try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+				size = channel.size();
+				regions = new MappedByteBuffer[(int) ((size + regionSize - 1) / regionSize)];
+				for (int i = 0; i < regions.length; i++) {
+					long start = (long) i * regionSize;
+					regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(regionSize, size - start));
+				}
+			}
+		}
+
+		/**
+		 * @return the UTF-8 text of the specified number of bytes from offset start
+		 *         of the file, which can span several regions
+		 */
+		String read(long start, int length) {
+			byte[] bytes = new byte[length];
+			for (int copied = 0; copied < length;) {
+				long at = start + copied;
+				int offset = (int) (at % regionSize);
+				int count = Math.min(length - copied, regionSize - offset);
+				regions[(int) (at / regionSize)].get(offset, bytes, copied, count);
+				copied += count;
+			}
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+	}
+
+	/**
+	 * A post whose title and url are in the arena, and whose body is read from
+	 * the view of its file when it is asked for. Every field is final, so the
+	 * bytes of the arena that were written before the post was created are seen
+	 * by every thread that the post is passed to.
+	 */
+	private static class StoredPost implements PostInterface {
+		final byte[] text; // the array of the arena holding the title, followed by the url
+		final int titleStart;
+		final int titleLength;
+		final int urlLength;
+		final MappedFile file;
+		final long bodyStart; // the offset of the body in file
+		final int bodyLength;
+
+		StoredPost(byte[] text, int titleStart, int titleLength, int urlLength, MappedFile file, long bodyStart,
+				int bodyLength) {
+			this.text = text;
+			this.titleStart = titleStart;
+			this.titleLength = titleLength;
+			this.urlLength = urlLength;
+			this.file = file;
+			this.bodyStart = bodyStart;
+			this.bodyLength = bodyLength;
+		}
+
+		@Override
+		public String getTitle() {
+			return new String(text, titleStart, titleLength, StandardCharsets.UTF_8);
+		}
+
+		@Override
+		public String getUrl() {
+			return new String(text, titleStart + titleLength, urlLength, StandardCharsets.UTF_8);
+		}
+
+		@Override
+		public String getBody() {
+			return bodyLength == 0 ? "" : file.read(bodyStart, bodyLength);
+		}
+	}
+
+	/**
+	 * Creates a store that reads files in regions of MappedPostReaderDW's size,
+	 * and views them in regions of VIEW_REGION_SIZE.
+	 */
+	public PostStoreDW() {
+		this(REGION_SIZE, VIEW_REGION_SIZE);
+	}
+
+	/**
+	 * Creates a store that reads and views files the specified number of bytes
+	 * at a time.
+	 *
+	 * @param regionSize     the number of bytes to map at a time while reading
+	 * @param viewRegionSize the number of bytes in each region of the view that
+	 *                       bodies are read from
+	 * @throws IllegalArgumentException when either size is less than 1
+	 */
+	public PostStoreDW(int regionSize, int viewRegionSize) {
+		super(regionSize);
+		if (viewRegionSize < 1)
+			throw new IllegalArgumentException("viewRegionSize must be at least 1");
+		this.viewRegionSize = viewRegionSize;
+	}
+
+	/**
+	 * This method reads each line from the specified offset of the specified file
+	 * on, and passes a post with the corresponding data to consumer before
+	 * reading the next. The file stays mapped for as long as any of its posts are
+	 * in use.
+	 *
+	 * @param filename contains the path and name of the data file that should be
+	 *                 read from
+	 * @param start    the offset of the first byte to read, which must be the
+	 *                 start of a line
+	 * @param complete true when nothing more will be written to the file, so its
+	 *                 last line is read even without a line break
+	 * @param consumer is given each post, in the order they appear in the file
+	 * @return the offset just past the last line that was read, where the next
+	 *         call should start
+	 * @throws FileNotFoundException when a file corresponding to the provided
+	 *                               filename cannot be read from
+	 * @throws UncheckedIOException  when the file can be opened, but reading from
+	 *                               it fails
+	 */
+	@Override
+	public synchronized long readPostsFromFile(String filename, long start, boolean complete,
+			Consumer<PostInterface> consumer) throws FileNotFoundException {
+		try {
+			file = new MappedFile(filename, viewRegionSize);
+		} catch (IOException e) {
+			throw new FileNotFoundException(filename);
+		}
+		this.filename = filename;
+		try {
+			return super.readPostsFromFile(filename, start, complete, consumer);
+		} finally {
+			this.filename = null;
+			file = null;
+		}
+	}
+
+	/**
+	 * Creates a post that keeps its title and url in the arena, and the offset
+	 * of its body in the file being read.
+	 */
+	@Override
+	protected PostInterface createPost(MappedByteBuffer region, long regionStart, int titleStart, int titleEnd,
+			int urlStart, int urlEnd, int bodyStart, int bodyEnd) {
+		int titleLength = titleEnd - titleStart;
+		int urlLength = urlEnd - urlStart;
+		if (regionStart + bodyEnd > file.size) {
+			// the file has grown since it was mapped, so map all of it again
+			try {
+				file = new MappedFile(filename, viewRegionSize);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		if (chunkUsed + titleLength + urlLength > chunk.length) {
+			chunk = new byte[Math.max(ARENA_CHUNK_SIZE, titleLength + urlLength)];
+			chunkUsed = 0;
+			arenaBytes += chunk.length;
+		}
+		region.get(titleStart, chunk, chunkUsed, titleLength);
+		region.get(urlStart, chunk, chunkUsed + titleLength, urlLength);
+		PostInterface post = new StoredPost(chunk, chunkUsed, titleLength, urlLength, file, regionStart + bodyStart,
+				bodyEnd - bodyStart);
+		chunkUsed += titleLength + urlLength;
+		textBytes += titleLength + urlLength;
+		bodyBytes += bodyEnd - bodyStart;
+		postCount++;
+		return post;
+	}
+
+	/**
+	 * @return the number of posts read by this store
+	 */
+	public synchronized int getPostCount() {
+		return postCount;
+	}
+
+	/**
+	 * @return the bytes of the arrays that hold the titles and urls of the posts,
+	 *         including the unused end of each
+	 */
+	public synchronized long getArenaBytes() {
+		return arenaBytes;
+	}
+
+	/**
+	 * @return the bytes of the titles and urls of the posts, in UTF-8
+	 */
+	public synchronized long getTextBytes() {
+		return textBytes;
+	}
+
+	/**
+	 * @return the bytes of the bodies of the posts, in UTF-8, which are read from
+	 *         their files rather than held in memory
+	 */
+	public synchronized long getBodyBytes() {
+		return bodyBytes;
+	}
+}
@@ -0,0 +1,773 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
+
+/**
+ * A compressed set of non-negative int ids (such as post ids), organized like a
+ * roaring bitmap. Ids are grouped into containers by their upper 16 bits, and
+ * each container stores the lower 16 bits of its ids in one of two ways:
+ *
+ * - an array container is a sorted char array, two bytes per id, used while a
+ * container holds at most 4096 ids
+ * - a bitmap container is 1024 longs (8KB) with one bit per possible id, used
+ * once a container holds more than 4096 ids, since at that point it is smaller
+ *
+ * Union, intersection, and difference are computed container by container, so
+ * they never need to expand either set into individual ids, and ids come back
+ * out in increasing order.
+ */
+public class PostingBitmap {
+
+    protected static final int MAX_ARRAY_SIZE = 4096; // larger containers become bitmaps
+    protected static final int BITMAP_WORDS = 1024; // 65536 bits per bitmap container
+
+    private char[] keys = new char[2]; // the upper 16 bits of each container's ids, sorted
+    private Object[] containers = new Object[2]; // a char[] or long[] for each key
+    private int[] cardinalities = new int[2]; // the number of ids in each container
+    private int count; // the number of containers in use
+
+    /**
+     * Creates an empty bitmap.
+     */
+    public PostingBitmap() {
+    }
+
+    /**
+     * Creates a bitmap holding the specified ids.
+     *
+     * @param ids the ids to add, in any order
+     * @return a new bitmap with those ids
+     */
+    public static PostingBitmap of(int... ids) {
+        PostingBitmap bitmap = new PostingBitmap();
+        for (int id : ids)
+            bitmap.add(id);
+        return bitmap;
+    }
+
+    /**
+     * Finds the container for the specified upper 16 bits.
+     *
+     * @return the index of that container, or -(insertion point) - 1
+     */
+    private int containerIndex(char key) {
+        if (count > 0 && keys[count - 1] == key) // ids are usually added in order
+            return count - 1;
+        return Arrays.binarySearch(keys, 0, count, key);
+    }
+
+    /**
+     * Adds an id to this bitmap.
+     *
+     * @param id the id to add, must not be negative
+     * @return true if the id was added, false if it was already present
+     */
+    public boolean add(int id) {
+        char key = (char) (id >>> 16);
+        char low = (char) id;
+        int index = containerIndex(key);
+        if (index < 0) {
+            index = -index - 1;
+            insertContainer(index, key, new char[4], 0);
+        }
+
+        Object container = containers[index];
+        int cardinality = cardinalities[index];
+        if (container instanceof long[]) {
+            long[] bits = (long[]) container;
+            long mask = 1L << low;
+            if ((bits[low >>> 6] & mask) != 0)
+                return false;
+            bits[low >>> 6] |= mask;
+            cardinalities[index]++;
+            return true;
+        }
+
+        char[] array = (char[]) container;
+        int position;
+        if (cardinality == 0 || array[cardinality - 1] < low) {
+            position = cardinality; // append fast path
+        } else {
+            position = Arrays.binarySearch(array, 0, cardinality, low);
+            if (position >= 0)
+                return false;
+            position = -position - 1;
+        }
+        if (cardinality == MAX_ARRAY_SIZE) { // this container is now smaller as a bitmap
+            long[] bits = toBits(array, cardinality);
+            bits[low >>> 6] |= 1L << low;
+            containers[index] = bits;
+            cardinalities[index]++;
+            return true;
+        }
+        if (cardinality == array.length) {
+            array = Arrays.copyOf(array, Math.min(MAX_ARRAY_SIZE, array.length * 2));
+            containers[index] = array;
+        }
+        System.arraycopy(array, position, array, position + 1, cardinality - position);
+        array[position] = low;
+        cardinalities[index]++;
+        return true;
+    }
+
+    /**
+     * Removes an id from this bitmap.
+     *
+     * @param id the id to remove
+     * @return true if the id was removed, false if it was not present
+     */
+    public boolean remove(int id) {
+        if (id < 0)
+            return false;
+        int index = containerIndex((char) (id >>> 16));
+        if (index < 0)
+            return false;
+        char low = (char) id;
+        Object container = containers[index];
+        int cardinality = cardinalities[index];
+        if (container instanceof long[]) {
+            long[] bits = (long[]) container;
+            long mask = 1L << low;
+            if ((bits[low >>> 6] & mask) == 0)
+                return false;
+            bits[low >>> 6] &= ~mask;
+            if (--cardinalities[index] == MAX_ARRAY_SIZE) // small enough to be an array again
+                containers[index] = toArray(bits, MAX_ARRAY_SIZE);
+            return true;
+        }
+        char[] array = (char[]) container;
+        int position = Arrays.binarySearch(array, 0, cardinality, low);
+        if (position < 0)
+            return false;
+        System.arraycopy(array, position + 1, array, position, cardinality - position - 1);
+        if (--cardinalities[index] == 0)
+            removeContainer(index);
+        return true;
+    }
+
+    /**
+     * Returns true when this bitmap holds the specified id.
+     *
+     * @param id the id to look for
+     * @return true if that id is present
+     */
+    public boolean contains(int id) {
+        if (id < 0)
+            return false;
+        int index = containerIndex((char) (id >>> 16));
+        if (index < 0)
+            return false;
+        char low = (char) id;
+        Object container = containers[index];
+        if (container instanceof long[])
+            return (((long[]) container)[low >>> 6] & (1L << low)) != 0;
+        return Arrays.binarySearch((char[]) container, 0, cardinalities[index], low) >= 0;
+    }
+
+    /**
+     * @return the number of ids in this bitmap
+     */
+    public int getCardinality() {
+        int total = 0;
+        for (int i = 0; i < count; i++)
+            total += cardinalities[i];
+        return total;
+    }
+
+    /**
+     * @return true when this bitmap holds no ids
+     */
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * Returns the largest id in this bitmap.
+     *
+     * @return the largest id
+     * @throws NoSuchElementException when this bitmap is empty
+     */
+    public int last() {
+        if (count == 0)
+            throw new NoSuchElementException("Bitmap is empty");
+        Object container = containers[count - 1];
+        int low;
+        if (container instanceof long[]) {
+            long[] bits = (long[]) container;
+            int word = BITMAP_WORDS - 1;
+            while (bits[word] == 0)
+                word--;
+            low = word * 64 + 63 - Long.numberOfLeadingZeros(bits[word]);
+        } else {
+            low = ((char[]) container)[cardinalities[count - 1] - 1];
+        }
+        return (keys[count - 1] << 16) | low;
+    }
+
+    /**
+     * Returns the largest id in this bitmap that is less than the specified id.
+     *
+     * @param id the id to look below
+     * @return that id, or -1 when there is none
+     */
+    public int lower(int id) {
+        if (id <= 0)
+            return -1;
+        id--; // the largest id that would do
+        int index = containerIndex((char) (id >>> 16));
+        int low = id & 0xFFFF;
+        if (index < 0) { // every id of the container before where it would be is smaller
+            index = -index - 2;
+            low = 0xFFFF;
+        }
+        for (; index >= 0; index--, low = 0xFFFF) {
+            int found = floor(index, low);
+            if (found >= 0)
+                return (keys[index] << 16) | found;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the smallest id in this bitmap that is greater than the specified
+     * id.
+     *
+     * @param id the id to look above, which can be -1 to find the smallest id
+     * @return that id, or -1 when there is none
+     */
+    public int higher(int id) {
+        if (id == Integer.MAX_VALUE)
+            return -1;
+        id = Math.max(id + 1, 0); // the smallest id that would do
+        int index = containerIndex((char) (id >>> 16));
+        int low = id & 0xFFFF;
+        if (index < 0) { // every id of the container where it would be is larger
+            index = -index - 1;
+            low = 0;
+        }
+        for (; index < count; index++, low = 0) {
+            int found = ceiling(index, low);
+            if (found >= 0)
+                return (keys[index] << 16) | found;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the largest lower 16 bits in the specified container that are at
+     *         most low, or -1 when there are none
+     */
+    private int floor(int index, int low) {
+        Object container = containers[index];
+        if (container instanceof long[]) {
+            long[] bits = (long[]) container;
+            int word = low >>> 6;
+            long candidates = bits[word] & (-1L >>> (63 - (low & 63)));
+            while (candidates == 0) {
+                if (--word < 0)
+                    return -1;
+                candidates = bits[word];
+            }
+            return word * 64 + 63 - Long.numberOfLeadingZeros(candidates);
+        }
+        char[] array = (char[]) container;
+        int position = Arrays.binarySearch(array, 0, cardinalities[index], (char) low);
+        if (position < 0)
+            position = -position - 2;
+        return position >= 0 ? array[position] : -1;
+    }
+
+    /**
+     * @return the smallest lower 16 bits in the specified container that are at
+     *         least low, or -1 when there are none
+     */
+    private int ceiling(int index, int low) {
+        Object container = containers[index];
+        if (container instanceof long[]) {
+            long[] bits = (long[]) container;
+            int word = low >>> 6;
+            long candidates = bits[word] & (-1L << (low & 63));
+            while (candidates == 0) {
+                if (++word == BITMAP_WORDS)
+                    return -1;
+                candidates = bits[word];
+            }
+            return word * 64 + Long.numberOfTrailingZeros(candidates);
+        }
+        char[] array = (char[]) container;
+        int position = Arrays.binarySearch(array, 0, cardinalities[index], (char) low);
+        if (position < 0)
+            position = -position - 1;
+        return position < cardinalities[index] ? array[position] : -1;
+    }
+
+    /**
+     * Passes each id in this bitmap to the specified action, in increasing order.
+     *
+     * @param action is called once for each id
+     */
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < count; i++) {
+            int high = keys[i] << 16;
+            Object container = containers[i];
+            if (container instanceof long[]) {
+                long[] bits = (long[]) container;
+                for (int word = 0; word < BITMAP_WORDS; word++) {
+                    long remaining = bits[word];
+                    while (remaining != 0) {
+                        action.accept(high | (word * 64 + Long.numberOfTrailingZeros(remaining)));
+                        remaining &= remaining - 1;
+                    }
+                }
+            } else {
+                char[] array = (char[]) container;
+                for (int j = 0; j < cardinalities[i]; j++)
+                    action.accept(high | array[j]);
+            }
+        }
+    }
+
+    /**
+     * Steps through the ids of a bitmap in increasing order without copying them
+     * out first. The bitmap must not be modified while this is in use.
+     */
+    public class IdIterator {
+        private int container = 0; // the container that next() reads from
+        private int position = 0; // the index within an array container
+        private int word = -1; // the word within a bitmap container
+        private long remaining = 0; // the bits of that word not yet returned
+
+        /**
+         * @return true while there are more ids to return
+         */
+        public boolean hasNext() {
+            while (container < count) {
+                Object current = containers[container];
+                if (current instanceof long[]) {
+                    long[] bits = (long[]) current;
+                    while (remaining == 0 && word < BITMAP_WORDS - 1)
+                        remaining = bits[++word];
+                    if (remaining != 0)
+                        return true;
+                } else if (position < cardinalities[container]) {
+                    return true;
+                }
+                container++; // this container is used up
+                position = 0;
+                word = -1;
+                remaining = 0;
+            }
+            return false;
+        }
+
+        /**
+         * @return the next id
+         * @throws NoSuchElementException when every id has been returned
+         */
+        public int next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            int high = keys[container] << 16;
+            if (containers[container] instanceof long[]) {
+                int low = word * 64 + Long.numberOfTrailingZeros(remaining);
+                remaining &= remaining - 1;
+                return high | low;
+            }
+            return high | ((char[]) containers[container])[position++];
+        }
+    }
+
+    /**
+     * @return an iterator over the ids in this bitmap, in increasing order
+     */
+    public IdIterator iterator() {
+        return new IdIterator();
+    }
+
+    /**
+     * @return every id in this bitmap, in increasing order
+     */
+    public int[] toArray() {
+        int[] ids = new int[getCardinality()];
+        int[] next = { 0 };
+        forEach(id -> ids[next[0]++] = id);
+        return ids;
+    }
+
+    /**
+     * @return an estimate of the number of bytes this bitmap occupies
+     */
+    public long getSizeInBytes() {
+        long bytes = 16 + keys.length * 2L + containers.length * 4L + cardinalities.length * 4L;
+        for (int i = 0; i < count; i++) {
+            Object container = containers[i];
+            bytes += 16 + (container instanceof long[] ? BITMAP_WORDS * 8L : ((char[]) container).length * 2L);
+        }
+        return bytes;
+    }
+
+    /**
+     * @return a copy of this bitmap that can be modified independently
+     */
+    public PostingBitmap copy() {
+        PostingBitmap copy = new PostingBitmap();
+        for (int i = 0; i < count; i++) {
+            Object container = containers[i];
+            container = container instanceof long[] ? ((long[]) container).clone() : ((char[]) container).clone();
+            copy.appendContainer(keys[i], container, cardinalities[i]);
+        }
+        return copy;
+    }
+
+    /**
+     * Returns the ids that are in either bitmap.
+     *
+     * @param a one bitmap
+     * @param b the other bitmap
+     * @return a new bitmap holding the union of a and b
+     */
+    public static PostingBitmap or(PostingBitmap a, PostingBitmap b) {
+        PostingBitmap result = new PostingBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < a.count || j < b.count) {
+            if (j == b.count || (i < a.count && a.keys[i] < b.keys[j])) {
+                result.appendCopy(a, i++);
+            } else if (i == a.count || b.keys[j] < a.keys[i]) {
+                result.appendCopy(b, j++);
+            } else if (a.containers[i] instanceof char[] && b.containers[j] instanceof char[]
+                    && a.cardinalities[i] + b.cardinalities[j] <= MAX_ARRAY_SIZE) {
+                result.appendArray(a.keys[i], merge((char[]) a.containers[i], a.cardinalities[i],
+                        (char[]) b.containers[j], b.cardinalities[j]));
+                i++;
+                j++;
+            } else {
+                long[] bits = new long[BITMAP_WORDS];
+                orInto(bits, a.containers[i], a.cardinalities[i]);
+                orInto(bits, b.containers[j], b.cardinalities[j]);
+                result.appendBits(a.keys[i], bits);
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the ids that are in any of the bitmaps. Every container key is only
+     * built once: when several bitmaps have a container with that key, their ids
+     * are all set in one bitmap container, so unioning many bitmaps (such as the
+     * posting lists of every word a wildcard matches) copies each id once,
+     * rather than once for every or(a, b) after it is added.
+     *
+     * @param bitmaps the bitmaps to union
+     * @return a new bitmap holding the union of all of them
+     */
+    public static PostingBitmap or(List<PostingBitmap> bitmaps) {
+        int total = 0;
+        for (PostingBitmap bitmap : bitmaps)
+            total += bitmap.count;
+        char[] keys = new char[total]; // every container key, sorted and then without duplicates
+        int distinct = 0;
+        for (PostingBitmap bitmap : bitmaps) {
+            System.arraycopy(bitmap.keys, 0, keys, distinct, bitmap.count);
+            distinct += bitmap.count;
+        }
+        Arrays.sort(keys);
+        distinct = 0;
+        for (int i = 0; i < total; i++)
+            if (i == 0 || keys[i] != keys[i - 1])
+                keys[distinct++] = keys[i];
+
+        PostingBitmap[] first = new PostingBitmap[distinct]; // the first bitmap with each key
+        int[] firstIndex = new int[distinct]; // the index of that container in it
+        long[][] bits = new long[distinct][]; // the union, once a second bitmap has the key
+        for (PostingBitmap bitmap : bitmaps) {
+            for (int i = 0; i < bitmap.count; i++) {
+                int k = Arrays.binarySearch(keys, 0, distinct, bitmap.keys[i]);
+                if (first[k] == null) {
+                    first[k] = bitmap;
+                    firstIndex[k] = i;
+                    continue;
+                }
+                if (bits[k] == null) {
+                    bits[k] = new long[BITMAP_WORDS];
+                    orInto(bits[k], first[k].containers[firstIndex[k]], first[k].cardinalities[firstIndex[k]]);
+                }
+                orInto(bits[k], bitmap.containers[i], bitmap.cardinalities[i]);
+            }
+        }
+        PostingBitmap result = new PostingBitmap();
+        for (int k = 0; k < distinct; k++) {
+            if (bits[k] == null)
+                result.appendCopy(first[k], firstIndex[k]);
+            else
+                result.appendBits(keys[k], bits[k]);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the ids that are in both bitmaps.
+     *
+     * @param a one bitmap
+     * @param b the other bitmap
+     * @return a new bitmap holding the intersection of a and b
+     */
+    public static PostingBitmap and(PostingBitmap a, PostingBitmap b) {
+        PostingBitmap result = new PostingBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < a.count && j < b.count) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            } else if (b.keys[j] < a.keys[i]) {
+                j++;
+            } else {
+                Object x = a.containers[i];
+                Object y = b.containers[j];
+                if (x instanceof long[] && y instanceof long[]) {
+                    long[] bits = ((long[]) x).clone();
+                    long[] other = (long[]) y;
+                    for (int w = 0; w < BITMAP_WORDS; w++)
+                        bits[w] &= other[w];
+                    result.appendBits(a.keys[i], bits);
+                } else if (x instanceof long[]) {
+                    result.appendArray(a.keys[i], filter((char[]) y, b.cardinalities[j], (long[]) x, true));
+                } else if (y instanceof long[]) {
+                    result.appendArray(a.keys[i], filter((char[]) x, a.cardinalities[i], (long[]) y, true));
+                } else {
+                    result.appendArray(a.keys[i],
+                            intersect((char[]) x, a.cardinalities[i], (char[]) y, b.cardinalities[j]));
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the ids that are in the first bitmap but not in the second.
+     *
+     * @param a the bitmap to take ids from
+     * @param b the bitmap of ids to leave out
+     * @return a new bitmap holding the difference a - b
+     */
+    public static PostingBitmap andNot(PostingBitmap a, PostingBitmap b) {
+        PostingBitmap result = new PostingBitmap();
+        int j = 0;
+        for (int i = 0; i < a.count; i++) {
+            while (j < b.count && b.keys[j] < a.keys[i])
+                j++;
+            if (j == b.count || b.keys[j] != a.keys[i]) {
+                result.appendCopy(a, i);
+                continue;
+            }
+            Object x = a.containers[i];
+            Object y = b.containers[j];
+            if (x instanceof long[]) {
+                long[] bits = ((long[]) x).clone();
+                if (y instanceof long[]) {
+                    long[] other = (long[]) y;
+                    for (int w = 0; w < BITMAP_WORDS; w++)
+                        bits[w] &= ~other[w];
+                } else {
+                    char[] other = (char[]) y;
+                    for (int k = 0; k < b.cardinalities[j]; k++)
+                        bits[other[k] >>> 6] &= ~(1L << other[k]);
+                }
+                result.appendBits(a.keys[i], bits);
+            } else if (y instanceof long[]) {
+                result.appendArray(a.keys[i], filter((char[]) x, a.cardinalities[i], (long[]) y, false));
+            } else {
+                result.appendArray(a.keys[i],
+                        subtract((char[]) x, a.cardinalities[i], (char[]) y, b.cardinalities[j]));
+            }
+        }
+        return result;
+    }
+
+    // helpers for building the result of a set operation, one container at a time
+
+    private void appendCopy(PostingBitmap source, int index) {
+        Object container = source.containers[index];
+        container = container instanceof long[] ? ((long[]) container).clone()
+                : Arrays.copyOf((char[]) container, source.cardinalities[index]);
+        appendContainer(source.keys[index], container, source.cardinalities[index]);
+    }
+
+    private void appendBits(char key, long[] bits) {
+        int cardinality = 0;
+        for (long word : bits)
+            cardinality += Long.bitCount(word);
+        if (cardinality == 0)
+            return;
+        if (cardinality <= MAX_ARRAY_SIZE)
+            appendContainer(key, toArray(bits, cardinality), cardinality);
+        else
+            appendContainer(key, bits, cardinality);
+    }
+
+    private void appendArray(char key, char[] array) {
+        if (array.length > 0)
+            appendContainer(key, array, array.length);
+    }
+
+    private void appendContainer(char key, Object container, int cardinality) {
+        insertContainer(count, key, container, cardinality);
+    }
+
+    private void insertContainer(int index, char key, Object container, int cardinality) {
+        if (count == keys.length) {
+            keys = Arrays.copyOf(keys, count * 2);
+            containers = Arrays.copyOf(containers, count * 2);
+            cardinalities = Arrays.copyOf(cardinalities, count * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, count - index);
+        System.arraycopy(containers, index, containers, index + 1, count - index);
+        System.arraycopy(cardinalities, index, cardinalities, index + 1, count - index);
+        keys[index] = key;
+        containers[index] = container;
+        cardinalities[index] = cardinality;
+        count++;
+    }
+
+    private void removeContainer(int index) {
+        System.arraycopy(keys, index + 1, keys, index, count - index - 1);
+        System.arraycopy(containers, index + 1, containers, index, count - index - 1);
+        System.arraycopy(cardinalities, index + 1, cardinalities, index, count - index - 1);
+        count--;
+        containers[count] = null;
+    }
+
+    // helpers that work on the contents of individual containers
+
+    private static long[] toBits(char[] array, int cardinality) {
+        long[] bits = new long[BITMAP_WORDS];
+        for (int i = 0; i < cardinality; i++)
+            bits[array[i] >>> 6] |= 1L << array[i];
+        return bits;
+    }
+
+    private static char[] toArray(long[] bits, int cardinality) {
+        char[] array = new char[cardinality];
+        int next = 0;
+        for (int word = 0; word < BITMAP_WORDS; word++) {
+            long remaining = bits[word];
+            while (remaining != 0) {
+                array[next++] = (char) (word * 64 + Long.numberOfTrailingZeros(remaining));
+                remaining &= remaining - 1;
+            }
+        }
+        return array;
+    }
+
+    private static void orInto(long[] bits, Object container, int cardinality) {
+        if (container instanceof long[]) {
+            long[] other = (long[]) container;
+            for (int w = 0; w < BITMAP_WORDS; w++)
+                bits[w] |= other[w];
+        } else {
+            char[] array = (char[]) container;
+            for (int i = 0; i < cardinality; i++)
+                bits[array[i] >>> 6] |= 1L << array[i];
+        }
+    }
+
+    /**
+     * Keeps the values of a sorted array that are (or are not) set in a bitmap.
+     */
+    private static char[] filter(char[] array, int cardinality, long[] bits, boolean keepIfSet) {
+        char[] result = new char[cardinality];
+        int next = 0;
+        for (int i = 0; i < cardinality; i++)
+            if (((bits[array[i] >>> 6] & (1L << array[i])) != 0) == keepIfSet)
+                result[next++] = array[i];
+        return Arrays.copyOf(result, next);
+    }
+
+    /**
+     * Intersects two sorted arrays. When one is much shorter than the other, each
+     * of its values is found in the longer one by galloping (doubling the step
+     * until it is passed, then binary searching), so the cost depends mostly on
+     * the length of the shorter array.
+     */
+    private static char[] intersect(char[] x, int xSize, char[] y, int ySize) {
+        if (xSize > ySize)
+            return intersect(y, ySize, x, xSize);
+        char[] result = new char[xSize];
+        int next = 0;
+        if (xSize * 32 < ySize) {
+            int from = 0;
+            for (int i = 0; i < xSize && from < ySize; i++) {
+                from = gallop(y, from, ySize, x[i]);
+                if (from < ySize && y[from] == x[i])
+                    result[next++] = x[i];
+            }
+        } else {
+            int i = 0;
+            int j = 0;
+            while (i < xSize && j < ySize) {
+                if (x[i] < y[j])
+                    i++;
+                else if (y[j] < x[i])
+                    j++;
+                else {
+                    result[next++] = x[i];
+                    i++;
+                    j++;
+                }
+            }
+        }
+        return Arrays.copyOf(result, next);
+    }
+
+    /**
+     * Returns the first index at or after from whose value is at least target.
+     */
+    static int gallop(char[] array, int from, int size, char target) {
+        int step = 1;
+        int high = from;
+        while (high < size && array[high] < target) {
+            from = high + 1;
+            high += step;
+            step <<= 1;
+        }
+        int index = Arrays.binarySearch(array, from, Math.min(high + 1, size), target);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    private static char[] merge(char[] x, int xSize, char[] y, int ySize) {
+        char[] result = new char[xSize + ySize];
+        int next = 0;
+        int i = 0;
+        int j = 0;
+        while (i < xSize || j < ySize) {
+            if (j == ySize || (i < xSize && x[i] < y[j]))
+                result[next++] = x[i++];
+            else if (i == xSize || y[j] < x[i])
+                result[next++] = y[j++];
+            else {
+                result[next++] = x[i++];
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, next);
+    }
+
+    private static char[] subtract(char[] x, int xSize, char[] y, int ySize) {
+        char[] result = new char[xSize];
+        int next = 0;
+        int j = 0;
+        for (int i = 0; i < xSize; i++) {
+            while (j < ySize && y[j] < x[i])
+                j++;
+            if (j == ySize || y[j] != x[i])
+                result[next++] = x[i];
+        }
+        return Arrays.copyOf(result, next);
+    }
+
+}
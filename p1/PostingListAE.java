@@ -0,0 +1,236 @@
+import java.util.AbstractSequentialList;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+
+/**
+ * This list holds the values that HashtableWithDuplicateKeysAE maps one key to.
+ * Rather than storing a reference to each value, it stores the dense int id that
+ * its hashtable assigned to that value, in a PostingBitmap. Small lists take two
+ * bytes per id, and lists that cover much of the id space take one bit per
+ * possible id, so common words stay cheap.
+ *
+ * Because ids are kept sorted, adding a value whose id is larger than every id
+ * already stored is an append, and a duplicate of the most recently added value
+ * is detected by comparing against the last id alone. Lists can also be
+ * combined with each other (union, intersection, difference) through their
+ * bitmaps without looking up any of their values.
+ *
+ * @param <ValueType> the type of the values in this list
+ */
+public class PostingListAE<ValueType> extends AbstractSequentialList<ValueType> {
+
+	private final HashtableWithDuplicateKeysAE<?, ValueType> owner; // maps ids to values
+	private PostingBitmap ids = new PostingBitmap(); // the ids of this list's values
+	private int size; // the number of ids stored
+	private int lastId = -1; // the largest id stored
+
+	/**
+	 * Creates an empty list, whose ids are assigned by the specified hashtable.
+	 *
+	 * @param owner the hashtable that maps this list's ids to values
+	 */
+	public PostingListAE(HashtableWithDuplicateKeysAE<?, ValueType> owner) {
+		this.owner = owner;
+	}
+
+	/**
+	 * @param table a hashtable
+	 * @return true if the ids of this list were assigned by that hashtable
+	 */
+	boolean belongsTo(HashtableWithDuplicateKeysAE<?, ?> table) {
+		return owner == table;
+	}
+
+	/**
+	 * Adds the value with the specified id to this list, if it is not already
+	 * stored.
+	 *
+	 * @param id the id of the value to add
+	 * @return true if the id was added, false if it was already in this list
+	 */
+	public boolean addId(int id) {
+		if (id == lastId) // the common case of a value being added again right away
+			return false;
+		if (!ids.add(id))
+			return false;
+		if (id > lastId)
+			lastId = id;
+		size++;
+		owner.keyAdded(id);
+		return true;
+	}
+
+	/**
+	 * Removes the value with the specified id from this list.
+	 *
+	 * @param id the id of the value to remove
+	 * @return true if the id was removed, false if it was not in this list
+	 */
+	public boolean removeId(int id) {
+		if (id > lastId || !ids.remove(id))
+			return false;
+		size--;
+		if (id == lastId)
+			lastId = size == 0 ? -1 : ids.last();
+		owner.keyRemoved(id);
+		return true;
+	}
+
+	/**
+	 * Returns true when this list holds the value with the specified id.
+	 *
+	 * @param id the id to look for
+	 * @return true if that id is in this list
+	 */
+	public boolean containsId(int id) {
+		return id == lastId || (id < lastId && ids.contains(id));
+	}
+
+	/**
+	 * @return the ids in this list, in increasing order
+	 */
+	public int[] toIdArray() {
+		return ids.toArray();
+	}
+
+	/**
+	 * Returns the bitmap of ids that backs this list. It is shared rather than
+	 * copied, so it must only be read, and only while this list is not changing.
+	 *
+	 * @return the ids of this list's values
+	 */
+	public PostingBitmap getBitmap() {
+		return ids;
+	}
+
+	/**
+	 * @return the largest id in this list, or -1 when it is empty
+	 */
+	public int getLastId() {
+		return lastId;
+	}
+
+	/**
+	 * @return an estimate of the number of bytes used to store this list's ids
+	 */
+	public long getSizeInBytes() {
+		return ids.getSizeInBytes();
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean add(ValueType value) {
+		return addId(owner.idOf(value));
+	}
+
+	@Override
+	public boolean contains(Object value) {
+		int id = owner.findId(value);
+		return id >= 0 && containsId(id);
+	}
+
+	@Override
+	public boolean remove(Object value) {
+		int id = owner.findId(value);
+		return id >= 0 && removeId(id);
+	}
+
+	@Override
+	public void clear() {
+		ids.forEach(owner::keyRemoved);
+		ids = new PostingBitmap();
+		size = 0;
+		lastId = -1;
+	}
+
+	/**
+	 * Returns an iterator that steps through the ids (and looks up their values)
+	 * one at a time, in either direction. Going forwards from the start reads the
+	 * bitmap in order; going backwards, or on after a removal, finds each id by
+	 * searching the bitmap from its neighbour. Values cannot be set or added
+	 * through the iterator, since the list is kept in id order.
+	 */
+	@Override
+	public ListIterator<ValueType> listIterator(int index) {
+		if (index < 0 || index > size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		ListIterator<ValueType> iterator = new ListIterator<ValueType>() {
+			PostingBitmap.IdIterator forward = ids.iterator(); // null once the iterator has gone back or removed
+			int before = -1; // the id just before the iterator's position, or -1 at the start
+			int nextIndex = 0; // the index of the id that next() returns
+			int lastReturned = -1; // the id that remove() would remove
+
+			@Override
+			public boolean hasNext() {
+				return nextIndex < size;
+			}
+
+			@Override
+			public ValueType next() {
+				if (nextIndex >= size)
+					throw new NoSuchElementException();
+				before = forward != null ? forward.next() : ids.higher(before);
+				lastReturned = before;
+				nextIndex++;
+				return owner.getValueById(lastReturned);
+			}
+
+			@Override
+			public boolean hasPrevious() {
+				return nextIndex > 0;
+			}
+
+			@Override
+			public ValueType previous() {
+				if (nextIndex <= 0)
+					throw new NoSuchElementException();
+				forward = null;
+				lastReturned = before;
+				before = ids.lower(before);
+				nextIndex--;
+				return owner.getValueById(lastReturned);
+			}
+
+			@Override
+			public void remove() {
+				if (lastReturned < 0)
+					throw new IllegalStateException();
+				forward = null; // removing may reorganize the bitmap
+				if (lastReturned == before) { // it was returned by next(), so it is before the position
+					before = ids.lower(before);
+					nextIndex--;
+				}
+				removeId(lastReturned);
+				lastReturned = -1;
+			}
+
+			@Override
+			public int nextIndex() {
+				return nextIndex;
+			}
+
+			@Override
+			public int previousIndex() {
+				return nextIndex - 1;
+			}
+
+			@Override
+			public void set(ValueType value) {
+				throw new UnsupportedOperationException("posting lists are kept sorted by id");
+			}
+
+			@Override
+			public void add(ValueType value) {
+				throw new UnsupportedOperationException("posting lists are kept sorted by id");
+			}
+		};
+		for (int i = 0; i < index; i++)
+			iterator.next();
+		return iterator;
+	}
+
+}
@@ -0,0 +1,201 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remembers the results of recent searches, so that a query that is asked
+ * again (as popular queries are, over and over) is answered without searching
+ * the dataset. Each query is stored under a key that names the kind of search
+ * along with its normalized words.
+ *
+ * The cache holds at most a fixed number of result strings in total, plus one
+ * for each query, so a query with many results takes up more of it than one
+ * with few. When a new query does not fit, the least recently used queries are
+ * evicted to make room, but only if the new query has been asked more often
+ * than the first of them (TinyLFU admission). How often each key has been asked
+ * is estimated with a count-min sketch of small counters, which are halved
+ * every so often so that old popularity fades. This keeps a burst of one-off
+ * queries from flushing out the popular ones.
+ *
+ * Results are only valid for the dataset that they were found in, so invalidate
+ * must be called whenever the dataset changes. Every invalidation starts a new
+ * version, and results found in an older version are not stored, since the
+ * dataset might have changed while they were being found.
+ *
+ * Methods are synchronized, so that queries on several threads share one
+ * cache.
+ *
+ * @author BackendDeveloper
+ */
+public class QueryCacheBD {
+
+	public static final int CAPACITY = 1 << 16; // the default number of result strings held in total
+
+	private final LinkedHashMap<String, List<String>> results; // in order of use, least recent first
+	private final int capacity; // the most result strings (plus one per query) held at once
+	private long weight; // the result strings (plus one per query) now held
+	private long version; // changed by every invalidation
+
+	private final byte[][] counts; // the count-min sketch, with one row per hash function
+	private final int mask; // the number of counters in each row, minus one
+	private int samples; // the queries counted since the counters were last halved
+
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * Creates an empty cache.
+	 *
+	 * @param capacity the most result strings to hold at once, across all
+	 *                 queries, with each query counting as one more
+	 * @throws IllegalArgumentException when capacity is less than 1
+	 */
+	public QueryCacheBD(int capacity) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("capacity must be at least 1");
+		this.capacity = capacity;
+		this.results = new LinkedHashMap<>(16, 0.75f, true);
+		int width = Integer.highestOneBit(Math.max(64, Math.min(capacity, 1 << 20)) - 1) << 1;
+		this.counts = new byte[4][width];
+		this.mask = width - 1;
+	}
+
+	/**
+	 * @return the slot of key's counter in the specified row of the sketch
+	 */
+	private int slot(String key, int row) {
+		int h = (key.hashCode() + row) * (0x9E3779B9 + 2 * row); // a different odd multiplier for each row
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	/**
+	 * Counts one more request for key, halving every counter once the sketch has
+	 * counted ten requests for each counter in a row.
+	 */
+	private void recordRequest(String key) {
+		for (int row = 0; row < counts.length; row++) {
+			int slot = slot(key, row);
+			if (counts[row][slot] < 15) // counters stop at 15, which is plenty to compare queries by
+				counts[row][slot]++;
+		}
+		if (++samples == 10 * counts[0].length) {
+			for (byte[] row : counts)
+				for (int i = 0; i < row.length; i++)
+					row[i] >>= 1;
+			samples = 0;
+		}
+	}
+
+	/**
+	 * @return about how many times key has been requested recently, which can be
+	 *         more but never less than the true number
+	 */
+	private int frequency(String key) {
+		int frequency = Integer.MAX_VALUE;
+		for (int row = 0; row < counts.length; row++)
+			frequency = Math.min(frequency, counts[row][slot(key, row)]);
+		return frequency;
+	}
+
+	/**
+	 * @return the version of the dataset that results are now stored for, to be
+	 *         passed to put along with the results found
+	 */
+	public synchronized long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Looks up the results stored for a query, and counts it as requested once
+	 * more, whether or not they are found.
+	 *
+	 * @param key the kind of search and normalized words of the query
+	 * @return the results of the query, or null when they are not stored
+	 */
+	public synchronized List<String> get(String key) {
+		recordRequest(key);
+		List<String> found = results.get(key);
+		if (found == null)
+			misses++;
+		else
+			hits++;
+		return found;
+	}
+
+	/**
+	 * Stores the results of a query, evicting the least recently used queries to
+	 * make room for them if the query is more popular than the first of those.
+	 * Results found in an older version of the dataset are not stored.
+	 *
+	 * @param key     the kind of search and normalized words of the query
+	 * @param version the version returned by getVersion before the search began
+	 * @param found   the results of the query, which must not be changed later
+	 */
+	public synchronized void put(String key, long version, List<String> found) {
+		if (version != this.version || results.containsKey(key))
+			return;
+		long size = found.size() + 1;
+		if (size > capacity)
+			return;
+		if (weight + size > capacity) {
+			Iterator<Map.Entry<String, List<String>>> eldest = results.entrySet().iterator();
+			if (frequency(key) <= frequency(eldest.next().getKey()))
+				return;
+			eldest = results.entrySet().iterator();
+			while (weight + size > capacity) {
+				weight -= eldest.next().getValue().size() + 1;
+				eldest.remove();
+				evictions++;
+			}
+		}
+		results.put(key, found);
+		weight += size;
+	}
+
+	/**
+	 * Forgets every stored result and starts a new version, once the dataset has
+	 * changed. How often each query has been asked is kept.
+	 */
+	public synchronized void invalidate() {
+		results.clear();
+		weight = 0;
+		version++;
+	}
+
+	/**
+	 * @return the number of lookups that found stored results
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return the number of lookups that found no stored results
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return the number of queries evicted to make room for others
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * @return the number of queries whose results are stored
+	 */
+	public synchronized int getSize() {
+		return results.size();
+	}
+
+	/**
+	 * @return the number of result strings stored, across all queries
+	 */
+	public synchronized long getResultCount() {
+		return weight - results.size();
+	}
+}
@@ -0,0 +1,139 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.IntFunction;
+
+/**
+ * Returns the title - url strings of the posts that a search found, in sorted
+ * order and without duplicates, a page at a time, so that showing the first
+ * few results of a search does not build the strings of all of them.
+ *
+ * A cursor over a broad search (one that found a good share of the dataset)
+ * walks through the ids of every post in the order of their strings, and
+ * returns the ones that the search found. Since most posts were found, the
+ * first page is found after looking at a few times as many posts as it has,
+ * however many posts were found in all. Posts that share a title and url are
+ * next to each other in that order, so a string is skipped when it is the
+ * same as the one before. A cursor over a narrow search is simply given the
+ * sorted strings of its posts, which are few.
+ *
+ * @author BackendDeveloper
+ */
+public class ResultCursorBD implements Iterator<String> {
+
+	private final PostingBitmap ids; // the posts that were found, when walking
+	private final int[] order; // the ids of every post, in the order of their strings
+	private final IntFunction<String> postString; // builds the title - url string of a post
+	private int position; // the next index of order to look at
+
+	private final List<String> results; // every result in order, when not walking
+	private final int postCount; // the number of posts that were found
+	private String next; // the next result, once it has been found
+	private String last; // the result returned before next, to skip duplicates of
+
+	/**
+	 * Creates a cursor that walks through every post in sorted order, returning
+	 * the strings of the ones that were found.
+	 *
+	 * @param ids        the ids of the posts that were found
+	 * @param order      the ids of at least every post whose id is in ids, in
+	 *                   the order of their title - url strings
+	 * @param postString builds the title - url string of the post with an id,
+	 *                   or returns null for a post that has been removed
+	 */
+	public ResultCursorBD(PostingBitmap ids, int[] order, IntFunction<String> postString) {
+		this.ids = ids;
+		this.order = order;
+		this.postString = postString;
+		this.results = null;
+		this.postCount = ids.getCardinality();
+	}
+
+	/**
+	 * Creates a cursor over results that have already been found.
+	 *
+	 * @param results the sorted title - url strings of the posts that were found,
+	 *                without duplicates
+	 */
+	public ResultCursorBD(List<String> results) {
+		this.ids = null;
+		this.order = null;
+		this.postString = null;
+		this.results = results;
+		this.postCount = results.size();
+	}
+
+	/**
+	 * @return true if there are more results
+	 */
+	@Override
+	public boolean hasNext() {
+		if (next != null)
+			return true;
+		if (results != null) {
+			if (position < results.size())
+				next = results.get(position++);
+			return next != null;
+		}
+		while (position < order.length) {
+			int id = order[position++];
+			if (!ids.contains(id))
+				continue;
+			String found = postString.apply(id);
+			if (found != null && !found.equals(last)) { // null when it has been removed since
+				next = found;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the next result
+	 * @throws NoSuchElementException when there are no more results
+	 */
+	@Override
+	public String next() {
+		if (!hasNext())
+			throw new NoSuchElementException("No more results");
+		last = next;
+		next = null;
+		return last;
+	}
+
+	/**
+	 * Skips over results, such as those on the pages before the one to show.
+	 *
+	 * @param count the number of results to skip
+	 * @return the number of results skipped, which is less than count when the
+	 *         results ran out first
+	 */
+	public int skip(int count) {
+		int skipped = 0;
+		for (; skipped < count && hasNext(); skipped++)
+			next();
+		return skipped;
+	}
+
+	/**
+	 * Returns the next results, as many as fit on one page.
+	 *
+	 * @param limit the most results to return
+	 * @return the next results, fewer than limit when the results run out
+	 */
+	public List<String> nextPage(int limit) {
+		List<String> page = new ArrayList<>(Math.min(limit, 64));
+		while (page.size() < limit && hasNext())
+			page.add(next());
+		return page;
+	}
+
+	/**
+	 * @return the number of posts that were found, which is more than the number
+	 *         of results when some of those posts share a title and url
+	 */
+	public int getPostCount() {
+		return postCount;
+	}
+}
@@ -0,0 +1,398 @@
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+/**
+ * This abstract data type represents a collection that maps keys to values,
+ * utilizing open addressing with Robin Hood linear probing, in which duplicate
+ * keys are not allowed (each key maps to exactly one value).
+ *
+ * Every slot remembers how far its entry is from its home index. While a new
+ * entry is being inserted, it takes the slot of any entry that is closer to its
+ * own home, and that displaced entry continues probing instead. This keeps the
+ * probe lengths of all entries close to each other, which shortens the long
+ * tail that plain linear probing builds up under clustered keys. It also lets a
+ * lookup for a missing key stop as soon as it reaches an entry that is closer to
+ * home than the search has already travelled.
+ *
+ * Lookups record how many slots they inspected, and these counters (mean, max,
+ * and a histogram) can be read back to monitor tail lookup cost.
+ *
+ * @param <KeyType>   the key type
+ * @param <ValueType> the value type
+ * @see this class is based on the MapADT interface
+ */
+@SuppressWarnings("unchecked")
+public class RobinHoodHashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueType> {
+
+    // lookups that inspect this many slots or more share the last histogram bucket
+    public static final int HISTOGRAM_BUCKETS = 32;
+
+    protected Object[] keys; // the key stored in each slot
+    protected Object[] values; // the value stored in each slot
+    protected int[] hashes; // the spread hash code of the key stored in each slot
+    protected int[] probes; // distance from home + 1 for each slot, 0 when the slot is empty
+    protected int size; // the number of items in the hashtable
+    protected int capacity; // the capacity of the hashtable, always a power of two
+    protected int mask; // capacity - 1, used in place of % capacity
+    protected final double LOAD_FACTOR = 0.85; // Robin Hood probing tolerates a fuller table
+
+    private long lookups; // the number of lookups recorded since the last reset
+    private long totalProbes; // the number of slots those lookups inspected
+    private int maxProbes; // the most slots that any one of those lookups inspected
+    private long[] probeHistogram = new long[HISTOGRAM_BUCKETS + 1]; // lookups by slots inspected
+
+    /**
+     * Creates a new RobinHoodHashtableMap with the specified capacity. The
+     * capacity is rounded up to the nearest power of two.
+     *
+     * @param capacity the initial capacity of the hashtable
+     */
+    public RobinHoodHashtableMap(int capacity) {
+        allocate(HashtableMap.tableSizeFor(capacity));
+        this.size = 0;
+    }
+
+    /**
+     * Creates a new RobinHoodHashtableMap with the default capacity. Default
+     * capacity is 8.
+     */
+    public RobinHoodHashtableMap() {
+        this(8);
+    }
+
+    /**
+     * Replaces the backing arrays with empty arrays of the specified capacity.
+     *
+     * @param newCapacity the new capacity, must be a power of two
+     */
+    private void allocate(int newCapacity) {
+        this.capacity = newCapacity;
+        this.mask = newCapacity - 1;
+        this.keys = new Object[newCapacity];
+        this.values = new Object[newCapacity];
+        this.hashes = new int[newCapacity];
+        this.probes = new int[newCapacity];
+    }
+
+    /**
+     * Finds the slot holding the specified key, and records the number of slots
+     * that were inspected along the way.
+     *
+     * @param key the key to search for, must not be null
+     * @return the index of the slot holding this key, or -1 when it is not stored
+     */
+    protected int indexOf(Object key) {
+        int hash = HashtableMap.spread(key);
+        int index = hash & mask; // get the home index of the key
+        int distance = 1;
+        // an entry closer to its home than we are to ours means the key is absent
+        while (probes[index] >= distance) {
+            if (hashes[index] == hash && (keys[index] == key || keys[index].equals(key))) {
+                recordLookup(distance);
+                return index;
+            }
+            index = (index + 1) & mask;
+            distance++;
+        }
+        recordLookup(distance);
+        return -1;
+    }
+
+    /**
+     * Adds the number of slots inspected by one lookup to the probe counters.
+     *
+     * @param slots the number of slots that lookup inspected
+     */
+    private void recordLookup(int slots) {
+        lookups++;
+        totalProbes += slots;
+        if (slots > maxProbes)
+            maxProbes = slots;
+        probeHistogram[Math.min(slots, HISTOGRAM_BUCKETS)]++;
+    }
+
+    /**
+     * Adds a new key-value pair/mapping to this collection. Throws exception when
+     * key is null or duplicate of one already stored. If the load factor is greater
+     * than 0.85, the hashtable is resized.
+     *
+     * @param key   the key to be added
+     * @param value the value to be added
+     * @throws IllegalArgumentException when key is null or duplicate of one already
+     */
+    @Override
+    public void put(KeyType key, ValueType value) throws IllegalArgumentException {
+        if (key == null)
+            throw new IllegalArgumentException("Key cannot be null");
+        if (indexOf(key) >= 0)
+            throw new IllegalArgumentException("Key already exists");
+
+        insert(key, value, HashtableMap.spread(key));
+        size++;
+
+        // resize the hashtable if the load factor is greater than 0.85
+        if ((double) size / capacity >= LOAD_FACTOR)
+            rehash();
+    }
+
+    /**
+     * Places an entry that is known not to be stored yet, swapping it with any
+     * entry it passes that sits closer to its own home index.
+     *
+     * @param key   the key to place
+     * @param value the value to place
+     * @param hash  the spread hash code of that key
+     */
+    private void insert(Object key, Object value, int hash) {
+        int index = hash & mask;
+        int distance = 1;
+        while (probes[index] != 0) {
+            if (probes[index] < distance) {
+                // take from the rich (close to home) and give to the poor
+                Object swapKey = keys[index];
+                Object swapValue = values[index];
+                int swapHash = hashes[index];
+                int swapDistance = probes[index];
+                keys[index] = key;
+                values[index] = value;
+                hashes[index] = hash;
+                probes[index] = distance;
+                key = swapKey;
+                value = swapValue;
+                hash = swapHash;
+                distance = swapDistance;
+            }
+            index = (index + 1) & mask;
+            distance++;
+        }
+        keys[index] = key;
+        values[index] = value;
+        hashes[index] = hash;
+        probes[index] = distance;
+    }
+
+    /**
+     * Resizes the hashtable to twice its current capacity, reinserting every entry
+     * from its cached hash.
+     */
+    private void rehash() {
+        Object[] oldKeys = keys;
+        Object[] oldValues = values;
+        int[] oldHashes = hashes;
+        int[] oldProbes = probes;
+
+        allocate(capacity * 2);
+        for (int i = 0; i < oldKeys.length; i++)
+            if (oldProbes[i] != 0)
+                insert(oldKeys[i], oldValues[i], oldHashes[i]);
+    }
+
+    /**
+     * Returns true if this collection contains a mapping for the specified key.
+     *
+     * @param key the key to be checked
+     * @return true if this collection contains a mapping for the specified key
+     */
+    @Override
+    public boolean containsKey(KeyType key) {
+        if (key == null) // key cannot be null
+            return false;
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * Returns the value associated with the specified key. Throws exception when
+     * key is null or not found.
+     *
+     * @param key the key to be checked
+     * @throws NoSuchElementException when key is null or not found
+     * @return the value associated with the specified key
+     */
+    @Override
+    public ValueType get(KeyType key) throws NoSuchElementException {
+        if (key == null) // key cannot be null
+            throw new NoSuchElementException("Key cannot be null");
+        int index = indexOf(key);
+        if (index < 0)
+            throw new NoSuchElementException("Key not found");
+        return (ValueType) values[index];
+    }
+
+    /**
+     * Returns the value associated with the specified key, or defaultValue when
+     * the key is null or not found, with a single lookup and no exception.
+     *
+     * @param key          the key to be checked
+     * @param defaultValue the value to return when the key is not found
+     * @return the value associated with the specified key, or defaultValue
+     */
+    @Override
+    public ValueType getOrDefault(KeyType key, ValueType defaultValue) {
+        if (key == null)
+            return defaultValue;
+        int index = indexOf(key);
+        return index >= 0 ? (ValueType) values[index] : defaultValue;
+    }
+
+    /**
+     * Returns the value associated with the specified key, first adding the value
+     * that mappingFunction computes from the key when the key is not found. A
+     * missing key is looked up once and then inserted, without the second lookup
+     * that put would make to check for a duplicate.
+     *
+     * @param key             the key to look up or add
+     * @param mappingFunction computes the value for a key that is not found, and
+     *                        must not change this hashtable
+     * @return the value associated with the key, or null when it was not found
+     *         and mappingFunction returned null (which is not stored)
+     * @throws IllegalArgumentException when key is null
+     */
+    @Override
+    public ValueType computeIfAbsent(KeyType key, Function<? super KeyType, ? extends ValueType> mappingFunction)
+            throws IllegalArgumentException {
+        if (key == null)
+            throw new IllegalArgumentException("Key cannot be null");
+        int index = indexOf(key);
+        if (index >= 0)
+            return (ValueType) values[index];
+        ValueType value = mappingFunction.apply(key);
+        if (value == null)
+            return null;
+        insert(key, value, HashtableMap.spread(key));
+        size++;
+        if ((double) size / capacity >= LOAD_FACTOR)
+            rehash();
+        return value;
+    }
+
+    /**
+     * Returns the removed value associated with the specified key. The entries
+     * that follow it are shifted back one slot each, until one that is already at
+     * its home index (or an empty slot) is reached.
+     *
+     * @param key the key to be removed
+     * @throws NoSuchElementException when key is null or not found
+     * @return the value that this key mapped to
+     */
+    @Override
+    public ValueType remove(KeyType key) throws NoSuchElementException {
+        if (key == null) // key cannot be null
+            throw new NoSuchElementException("Key cannot be null");
+        int hole = indexOf(key);
+        if (hole < 0) // key must be found
+            throw new NoSuchElementException("Key not found");
+
+        ValueType value = (ValueType) values[hole];
+        int next = (hole + 1) & mask;
+        while (probes[next] > 1) {
+            keys[hole] = keys[next];
+            values[hole] = values[next];
+            hashes[hole] = hashes[next];
+            probes[hole] = probes[next] - 1;
+            hole = next;
+            next = (next + 1) & mask;
+        }
+        keys[hole] = null;
+        values[hole] = null;
+        probes[hole] = 0;
+        size--;
+        return value;
+    }
+
+    /**
+     * Clear each index of the hashtable.
+     */
+    @Override
+    public void clear() {
+        for (int i = 0; i < capacity; i++) {
+            keys[i] = null;
+            values[i] = null;
+            probes[i] = 0;
+        }
+        size = 0;
+    }
+
+    /**
+     * Returns the size.
+     *
+     * @return the number of key-value pairs in this collection
+     */
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the capacity.
+     *
+     * @return the capacity of this collection
+     */
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of lookups (by put, get, containsKey, or remove) that
+     * have been recorded since these counters were last reset.
+     *
+     * @return the number of recorded lookups
+     */
+    public long getLookupCount() {
+        return lookups;
+    }
+
+    /**
+     * Returns the mean number of slots inspected per recorded lookup.
+     *
+     * @return the mean probe length, or 0.0 when no lookups have been recorded
+     */
+    public double getMeanProbeLength() {
+        return lookups == 0 ? 0.0 : (double) totalProbes / lookups;
+    }
+
+    /**
+     * Returns the largest number of slots inspected by any one recorded lookup.
+     *
+     * @return the max probe length
+     */
+    public int getMaxProbeLength() {
+        return maxProbes;
+    }
+
+    /**
+     * Returns a copy of the probe length histogram. Index i holds the number of
+     * recorded lookups that inspected exactly i slots, except for the last index
+     * which holds all lookups that inspected HISTOGRAM_BUCKETS slots or more.
+     *
+     * @return the number of lookups for each probe length
+     */
+    public long[] getProbeHistogram() {
+        return probeHistogram.clone();
+    }
+
+    /**
+     * Returns the largest distance between any stored entry and its home index,
+     * which bounds the number of slots any successful lookup can inspect.
+     *
+     * @return the max distance from home, 0 when this collection is empty
+     */
+    public int getMaxDistanceFromHome() {
+        int max = 0;
+        for (int i = 0; i < capacity; i++)
+            if (probes[i] - 1 > max)
+                max = probes[i] - 1;
+        return max;
+    }
+
+    /**
+     * Resets the lookup counters and histogram to zero.
+     */
+    public void resetProbeStatistics() {
+        lookups = 0;
+        totalProbes = 0;
+        maxProbes = 0;
+        probeHistogram = new long[HISTOGRAM_BUCKETS + 1];
+    }
+
+}
@@ -0,0 +1,552 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A positional index that posts can be added to and removed from at any time,
+ * without rebuilding what is already indexed. It is made up of segments, each
+ * a PositionalIndexBD, kept in the order their posts were added. New posts go
+ * into the last segment, which lives in memory, and once it holds flushSize
+ * posts it is sealed, never to change again, and a new last segment is started.
+ * Removing a post marks its id in its segment's tombstone bitmap, and searches
+ * leave marked posts out.
+ *
+ * Sealed segments are merged on a background thread by a tiered policy: a
+ * segment's tier is how many times larger than flushSize it is, in powers of
+ * mergeFactor, and whenever mergeFactor neighbouring segments share a tier
+ * they are merged into one segment of the next tier, dropping their removed
+ * posts. A segment that has lost over half its posts is also rewritten on its
+ * own. A post is copied once for each tier it moves up through, and there are
+ * only logarithmically many tiers, so adding a post never costs more than a
+ * few copies however many posts are already indexed, and searches read fewer
+ * than mergeFactor segments per tier.
+ *
+ * Only neighbouring segments are merged, so the posts of every segment stay
+ * in the order they were added, and a post's global id (its id within its
+ * segment, plus the posts in the segments before it) gives ties between
+ * equally good posts the same order as a single PositionalIndexBD would. Posts
+ * are ranked by statistics added up over every segment, so merging never
+ * changes the results of a search.
+ *
+ * Changes are synchronized. Searches read the list of segments that is current
+ * when they start, which is replaced rather than changed, so they never wait
+ * for a merge. A snapshot keeps such a list of sealed segments, for searches
+ * that must all see the same posts while more are being added.
+ *
+ * @author BackendDeveloper
+ */
+public class SegmentedIndexBD {
+
+	/**
+	 * One segment, along with the ids of the posts removed from it.
+	 */
+	static class Segment {
+		final PositionalIndexBD index;
+		volatile PostingBitmap removed = new PostingBitmap(); // replaced rather than changed
+
+		Segment(PositionalIndexBD index) {
+			this.index = index;
+		}
+
+		int getLiveCount() {
+			return index.getPostCount() - removed.getCardinality();
+		}
+	}
+
+	protected static final int FLUSH_SIZE = 4096; // posts added to a segment before it is sealed
+	protected static final int MERGE_FACTOR = 4; // segments of one tier that are merged together
+
+	private final TermDictionaryBD terms;
+	private final int flushSize;
+	private final int mergeFactor;
+	private volatile List<Segment> segments; // oldest first, ending with the one posts are added to
+	private ExecutorService merger; // started by the first merge
+	private boolean mergeRunning;
+	private long mergeCount; // the number of merges that have finished
+
+	/**
+	 * Creates an empty index, whose in-memory segments identify words by their ids
+	 * in the specified dictionary.
+	 *
+	 * @param terms the dictionary that term ids come from
+	 */
+	public SegmentedIndexBD(TermDictionaryBD terms) {
+		this(terms, FLUSH_SIZE, MERGE_FACTOR);
+	}
+
+	/**
+	 * Creates an empty index that seals and merges segments at the specified
+	 * sizes.
+	 *
+	 * @param terms       the dictionary that term ids come from
+	 * @param flushSize   the number of posts added to a segment before it is sealed
+	 * @param mergeFactor the number of segments of one tier that are merged
+	 */
+	public SegmentedIndexBD(TermDictionaryBD terms, int flushSize, int mergeFactor) {
+		if (flushSize < 1 || mergeFactor < 2)
+			throw new IllegalArgumentException("flushSize must be at least 1, and mergeFactor at least 2");
+		this.terms = terms;
+		this.flushSize = flushSize;
+		this.mergeFactor = mergeFactor;
+		this.segments = List.of(new Segment(new PositionalIndexBD(terms)));
+	}
+
+	/**
+	 * @return the segment that posts are added to
+	 */
+	private Segment last() {
+		return segments.get(segments.size() - 1);
+	}
+
+	/**
+	 * Adds a post to the in-memory segment, along with the ids of the words in its
+	 * title and body, as for PositionalIndexBD.addPost.
+	 *
+	 * @param post        the post to add
+	 * @param termIds     the ids of the words in that post's title, in order,
+	 *                    followed by those in its body
+	 * @param titleLength the number of those words that are in the title
+	 * @param length      the number of words in termIds
+	 */
+	public synchronized void addPost(PostInterface post, int[] termIds, int titleLength, int length) {
+		last().index.addPost(post, termIds, titleLength, length);
+		if (last().index.getPostCount() >= flushSize)
+			seal();
+	}
+
+	/**
+	 * Adds every post of another index to the in-memory segment, as for
+	 * PositionalIndexBD.addAll.
+	 *
+	 * @param other the index to add the posts of, which is left unchanged
+	 * @return the id in this index's dictionary of each term id of other's
+	 */
+	public synchronized int[] addAll(PositionalIndexBD other) {
+		int[] termIds = last().index.addAll(other);
+		if (last().index.getPostCount() >= flushSize)
+			seal();
+		return termIds;
+	}
+
+	/**
+	 * Adds a whole index, such as one read from a file, as a segment of its own
+	 * after every post added so far.
+	 *
+	 * @param index the index to add, which must not be changed afterwards
+	 */
+	public synchronized void addSegment(PositionalIndexBD index) {
+		List<Segment> changed = new ArrayList<>(segments);
+		if (last().index.getPostCount() == 0)
+			changed.remove(changed.size() - 1);
+		changed.add(new Segment(index));
+		changed.add(new Segment(new PositionalIndexBD(terms)));
+		segments = Collections.unmodifiableList(changed);
+	}
+
+	/**
+	 * Seals the in-memory segment, starts a new one, and merges segments if that
+	 * fills up a tier.
+	 */
+	private void seal() {
+		List<Segment> changed = new ArrayList<>(segments);
+		changed.add(new Segment(new PositionalIndexBD(terms)));
+		segments = Collections.unmodifiableList(changed);
+		maybeMerge();
+	}
+
+	/**
+	 * Removes one post with the same title, url and body as the specified post.
+	 * The posts searched are those that contain word in field, or every post
+	 * when word is null.
+	 *
+	 * @param post  has the title, url and body of the post to remove
+	 * @param word  a word of that post, or null if it has none
+	 * @param field the field of the post that contains word
+	 * @return true if a post was removed, false if there was no such post
+	 */
+	public synchronized boolean removePost(PostInterface post, String word, int field) {
+		for (Segment segment : segments) {
+			PostingBitmap candidates;
+			if (word != null) {
+				candidates = segment.index.getPostIds(word, field);
+			} else {
+				candidates = new PostingBitmap();
+				for (int id = 0; id < segment.index.getPostCount(); id++)
+					candidates.add(id);
+			}
+			for (PostingBitmap.IdIterator it = candidates.iterator(); it.hasNext();) {
+				int id = it.next();
+				if (segment.removed.contains(id) || !sameContents(segment.index.getPost(id), post))
+					continue;
+				PostingBitmap removed = segment.removed.copy();
+				removed.add(id);
+				segment.removed = removed;
+				if (segment != last())
+					maybeMerge();
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return true if both posts have the same title, url and body
+	 */
+	static boolean sameContents(PostInterface a, PostInterface b) {
+		return a.getTitle().equals(b.getTitle()) && a.getUrl().equals(b.getUrl()) && a.getBody().equals(b.getBody());
+	}
+
+	/**
+	 * @return the tier of a segment: 0 up to mergeFactor times flushSize posts,
+	 *         then 1 up to mergeFactor times that, and so on
+	 */
+	private int tier(Segment segment) {
+		int tier = 0;
+		for (long size = (long) flushSize * mergeFactor; segment.getLiveCount() >= size; size *= mergeFactor)
+			tier++;
+		return tier;
+	}
+
+	/**
+	 * Starts merging segments on the background thread, if no merge is running
+	 * and some sealed segments are due to be merged: the first run of mergeFactor
+	 * neighbours in one tier, or else the first segment that has lost over half
+	 * its posts.
+	 */
+	private void maybeMerge() {
+		if (mergeRunning)
+			return;
+		List<Segment> sealed = segments.subList(0, segments.size() - 1);
+		List<Segment> sources = null;
+		for (int start = 0; sources == null && start + mergeFactor <= sealed.size(); start++) {
+			int tier = tier(sealed.get(start));
+			int end = start + 1;
+			while (end < start + mergeFactor && tier(sealed.get(end)) == tier)
+				end++;
+			if (end == start + mergeFactor)
+				sources = new ArrayList<>(sealed.subList(start, end));
+		}
+		for (int i = 0; sources == null && i < sealed.size(); i++)
+			if (sealed.get(i).removed.getCardinality() * 2 > sealed.get(i).index.getPostCount())
+				sources = List.of(sealed.get(i));
+		if (sources == null)
+			return;
+		mergeRunning = true;
+		if (merger == null) {
+			merger = Executors.newSingleThreadExecutor(task -> {
+				Thread thread = new Thread(task, "segment merger");
+				thread.setDaemon(true); // so that merging never keeps the program running
+				return thread;
+			});
+		}
+		List<Segment> merging = sources;
+		merger.execute(() -> merge(merging));
+	}
+
+	/**
+	 * Merges neighbouring segments into one, leaving out the posts removed from
+	 * them, and then puts it in their place. Posts that are removed while the
+	 * merge runs are marked as removed in the merged segment.
+	 */
+	private void merge(List<Segment> sources) {
+		Segment merged = null;
+		PostingBitmap[] removed = new PostingBitmap[sources.size()];
+		try {
+			PositionalIndexBD index = new PositionalIndexBD(terms);
+			for (int i = 0; i < removed.length; i++) {
+				removed[i] = sources.get(i).removed;
+				index.addAll(sources.get(i).index, removed[i]);
+			}
+			merged = new Segment(index);
+		} finally {
+			synchronized (this) {
+				if (merged != null)
+					replace(sources, removed, merged);
+				mergeRunning = false;
+				mergeCount++;
+				notifyAll();
+				if (merged != null)
+					maybeMerge();
+			}
+		}
+	}
+
+	/**
+	 * Puts a merged segment in place of the segments it was merged from, and
+	 * marks the posts that were removed from those since the merge began.
+	 *
+	 * @param sources the segments that were merged, in order
+	 * @param removed the posts of each source that the merge left out
+	 * @param merged  the merged segment
+	 */
+	private void replace(List<Segment> sources, PostingBitmap[] removed, Segment merged) {
+		PostingBitmap lateRemoved = new PostingBitmap();
+		int offset = 0; // the id in merged of the first post kept from the current source
+		for (int i = 0; i < removed.length; i++) {
+			PostingBitmap now = sources.get(i).removed;
+			for (int id = 0; id < sources.get(i).index.getPostCount(); id++) {
+				if (removed[i].contains(id))
+					continue; // the merge left this post out
+				if (now.contains(id))
+					lateRemoved.add(offset);
+				offset++;
+			}
+		}
+		merged.removed = lateRemoved;
+		List<Segment> changed = new ArrayList<>(segments);
+		int start = changed.indexOf(sources.get(0));
+		changed.subList(start, start + sources.size()).clear();
+		changed.add(start, merged);
+		segments = Collections.unmodifiableList(changed);
+	}
+
+	/**
+	 * Waits until no merge is running or due, so that the segments no longer
+	 * change until more posts are added or removed.
+	 */
+	public synchronized void awaitMerges() {
+		while (mergeRunning) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return the number of posts in this index, not counting removed posts
+	 */
+	public int getPostCount() {
+		int count = 0;
+		for (Segment segment : segments)
+			count += segment.getLiveCount();
+		return count;
+	}
+
+	/**
+	 * @return the number of segments that this index is currently made up of,
+	 *         including the in-memory one
+	 */
+	public int getSegmentCount() {
+		return segments.size();
+	}
+
+	/**
+	 * @return the number of merges that have finished
+	 */
+	public synchronized long getMergeCount() {
+		return mergeCount;
+	}
+
+	/**
+	 * Returns a snapshot of this index as it is now, which searches can keep
+	 * reading while posts are added, removed and merged. The in-memory segment
+	 * is sealed first (when it has any posts), so that every segment of the
+	 * snapshot is one that never changes again.
+	 *
+	 * @return a snapshot of every post added so far
+	 */
+	public synchronized Snapshot snapshot() {
+		if (last().index.getPostCount() > 0)
+			seal();
+		return new Snapshot(segments.subList(0, segments.size() - 1));
+	}
+
+	/**
+	 * Finds the posts in which the specified words appear one right after the
+	 * other, as for PositionalIndexBD.findPhrase, in every segment.
+	 *
+	 * @param field  TermDictionaryBD.TITLE or TermDictionaryBD.BODY, the field to
+	 *               search in
+	 * @param phrase the words of the phrase, in order
+	 * @return the matching posts, in the order they were added
+	 */
+	public List<PostInterface> findPhrase(int field, List<String> phrase) {
+		return new Snapshot(segments).findPhrase(field, phrase);
+	}
+
+	/**
+	 * Finds the k posts that best match the specified words, as for
+	 * Snapshot.findTopPosts, in every segment.
+	 *
+	 * @param query the words to search for
+	 * @param k     the most posts to return
+	 * @return the best matching posts, best first, with ties going to the post
+	 *         that was added first
+	 */
+	public List<PostInterface> findTopPosts(List<String> query, int k) {
+		return new Snapshot(segments).findTopPosts(query, k);
+	}
+
+	/**
+	 * Finds the posts that contain a word in a field. Posts are identified by
+	 * global ids, which only stay the same until posts are added or removed.
+	 *
+	 * @param word  the word to search for
+	 * @param field TermDictionaryBD.TITLE or TermDictionaryBD.BODY
+	 * @return the global ids of the posts that contain that word in that field
+	 */
+	public PostingBitmap getPostIds(String word, int field) {
+		return new Snapshot(segments).getPostIds(word, field);
+	}
+
+	/**
+	 * Returns the post with the specified global id.
+	 *
+	 * @param id a global id returned by getPostIds
+	 * @return the post with that id
+	 */
+	public PostInterface getPost(int id) {
+		return new Snapshot(segments).getPost(id);
+	}
+
+	/**
+	 * The segments of an index at one moment, along with the posts that had been
+	 * removed from each, which is what every search reads. The list of segments
+	 * is replaced rather than changed, and the posts removed from a segment are
+	 * too, so a snapshot returned by snapshot() (whose segments are all sealed)
+	 * never changes, and global ids mean the same posts for as long as it is
+	 * used.
+	 */
+	public static class Snapshot {
+		private final List<Segment> segments;
+		private final PostingBitmap[] removed; // the posts removed from each segment
+
+		Snapshot(List<Segment> segments) {
+			this.segments = segments;
+			this.removed = new PostingBitmap[segments.size()];
+			for (int i = 0; i < removed.length; i++)
+				removed[i] = segments.get(i).removed;
+		}
+
+		/**
+		 * @return the number of posts in this snapshot, not counting removed posts
+		 */
+		public int getPostCount() {
+			int count = 0;
+			for (int i = 0; i < removed.length; i++)
+				count += segments.get(i).index.getPostCount() - removed[i].getCardinality();
+			return count;
+		}
+
+		/**
+		 * Finds the posts in which the specified words appear one right after the
+		 * other, as for PositionalIndexBD.findPhrase, in every segment.
+		 *
+		 * @param field  TermDictionaryBD.TITLE or TermDictionaryBD.BODY, the field
+		 *               to search in
+		 * @param phrase the words of the phrase, in order
+		 * @return the matching posts, in the order they were added
+		 */
+		public List<PostInterface> findPhrase(int field, List<String> phrase) {
+			List<PostInterface> found = new ArrayList<>();
+			for (int i = 0; i < removed.length; i++) {
+				PositionalIndexBD index = segments.get(i).index;
+				for (int id : index.findPhrase(field, phrase))
+					if (!removed[i].contains(id))
+						found.add(index.getPost(id));
+			}
+			return found;
+		}
+
+		/**
+		 * Finds the k posts that best match the specified words, as for
+		 * PositionalIndexBD.findTopPosts, scoring posts by BM25 statistics of
+		 * every segment together. Each segment finds its own best k, and the best
+		 * k of these are kept.
+		 *
+		 * @param query the words to search for
+		 * @param k     the most posts to return
+		 * @return the best matching posts, best first, with ties going to the post
+		 *         that was added first
+		 */
+		public List<PostInterface> findTopPosts(List<String> query, int k) {
+			PositionalIndexBD.Statistics statistics = new PositionalIndexBD.Statistics(query);
+			for (int i = 0; i < removed.length; i++)
+				segments.get(i).index.addStatistics(statistics, removed[i]);
+			List<PositionalIndexBD.ScoredPost> best = new ArrayList<>();
+			List<PostInterface> posts = new ArrayList<>();
+			int offset = 0; // the global id of each segment's first post
+			for (int i = 0; i < removed.length; i++) {
+				PositionalIndexBD index = segments.get(i).index;
+				int count = index.getPostCount();
+				for (PositionalIndexBD.ScoredPost post : index.findTopPosts(statistics, k, removed[i])) {
+					best.add(new PositionalIndexBD.ScoredPost(offset + post.post, post.score));
+					posts.add(index.getPost(post.post));
+				}
+				offset += count;
+			}
+			Integer[] order = new Integer[best.size()];
+			for (int i = 0; i < order.length; i++)
+				order[i] = i;
+			Arrays.sort(order, (a, b) -> best.get(b).compareTo(best.get(a)));
+			List<PostInterface> ranked = new ArrayList<>();
+			for (int i = 0; i < order.length && i < k; i++)
+				ranked.add(posts.get(order[i]));
+			return ranked;
+		}
+
+		/**
+		 * Finds the posts that contain a word in a field.
+		 *
+		 * @param word  the word to search for
+		 * @param field TermDictionaryBD.TITLE or TermDictionaryBD.BODY
+		 * @return the global ids of the posts that contain that word in that field
+		 */
+		public PostingBitmap getPostIds(String word, int field) {
+			PostingBitmap ids = new PostingBitmap();
+			int offset = 0;
+			for (int i = 0; i < removed.length; i++) {
+				PositionalIndexBD index = segments.get(i).index;
+				PostingBitmap removedIds = removed[i];
+				int base = offset;
+				index.getPostIds(word, field).forEach(id -> {
+					if (!removedIds.contains(id))
+						ids.add(base + id);
+				});
+				offset += index.getPostCount();
+			}
+			return ids;
+		}
+
+		/**
+		 * Returns the post with the specified global id.
+		 *
+		 * @param id a global id returned by getPostIds
+		 * @return the post with that id
+		 */
+		public PostInterface getPost(int id) {
+			for (Segment segment : segments) {
+				int count = segment.index.getPostCount();
+				if (id < count)
+					return segment.index.getPost(id);
+				id -= count;
+			}
+			throw new IndexOutOfBoundsException("No post with id " + id);
+		}
+	}
+
+	/**
+	 * Returns one index holding every post of this one that has not been removed,
+	 * in order, such as to save to a file. When this index is a single segment
+	 * with nothing removed, that segment itself is returned.
+	 *
+	 * @return an index of every post
+	 */
+	public synchronized PositionalIndexBD compact() {
+		List<Segment> current = new ArrayList<>(segments);
+		if (current.get(current.size() - 1).index.getPostCount() == 0 && current.size() > 1)
+			current.remove(current.size() - 1);
+		if (current.size() == 1 && current.get(0).removed.isEmpty())
+			return current.get(0).index;
+		PositionalIndexBD index = new PositionalIndexBD(terms);
+		for (Segment segment : current)
+			index.addAll(segment.index, segment.removed);
+		return index;
+	}
+}
@@ -0,0 +1,448 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Assigns each distinct word (term) a dense int id, starting from 0 in the order
+ * terms are first seen. Terms can be looked up straight from the char buffer
+ * that TokenizerBD fills in, so finding the id of a word that is already known
+ * creates no objects at all.
+ *
+ * The chars of every term are stored one after the other in a single array,
+ * and an open addressing table (like HashtableMap's, with linear probing over a
+ * power of two capacity) maps the hash of a term's chars to its id. The
+ * hashtable key of each term in each field ("T:" or "B:" followed by the term)
+ * is built the first time it is asked for and then kept, so that every
+ * occurrence of a word shares one key String, whose hash code is cached.
+ *
+ * For prefix and wildcard searches, the ids are also kept sorted by the chars
+ * of their terms, in one int array, so the terms starting with a prefix are a
+ * range of it that a binary search finds. Terms added since the last such
+ * search are the ids from the end of that array on, and they are sorted and
+ * merged in when the next one begins. Fuzzy searches run a
+ * LevenshteinAutomatonBD over the same sorted ids.
+ *
+ * Methods are synchronized, so that queries can look up terms while another
+ * thread is adding them.
+ *
+ * @author BackendDeveloper
+ */
+public class TermDictionaryBD {
+
+	public static final int TITLE = 0; // the fields a term can occur in
+	public static final int BODY = 1;
+	protected static final String[] PREFIXES = { "T:", "B:" }; // the key prefix of each field
+	protected final double LOAD_FACTOR = 0.70;
+
+	private char[] chars = new char[1024]; // the chars of every term, in id order
+	private int charCount;
+	private int[] starts = new int[65]; // term id's chars are chars[starts[id]] to chars[starts[id + 1] - 1]
+	private int[] hashes = new int[64]; // the hash of each term, by id
+	private String[] keys = new String[128]; // the key of each term in each field, at id * 2 + field
+	private int size; // the number of terms
+	private int[] slots = new int[128]; // term id + 1 for each slot of the table, or 0 when empty
+	private int mask = slots.length - 1;
+	private int[] sorted = new int[0]; // the ids of the first sortedCount terms, in order of their chars
+	private int sortedCount;
+	private final SortedView sortedView = new SortedView();
+
+	/**
+	 * The terms in sorted order, as a LevenshteinAutomatonBD reads them. Only used
+	 * while holding this dictionary's lock.
+	 */
+	private class SortedView implements LevenshteinAutomatonBD.SortedTerms {
+		@Override
+		public int getSortedCount() {
+			return sortedCount;
+		}
+
+		@Override
+		public int getLength(int index) {
+			return starts[sorted[index] + 1] - starts[sorted[index]];
+		}
+
+		@Override
+		public char getChar(int index, int position) {
+			return chars[starts[sorted[index]] + position];
+		}
+
+		@Override
+		public String getSortedTerm(int index) {
+			return getTerm(sorted[index]);
+		}
+	}
+
+	/**
+	 * @return the hash of the chars from buffer[start] to buffer[start + length - 1]
+	 */
+	private static int hash(char[] buffer, int start, int length) {
+		int h = 0;
+		for (int i = start; i < start + length; i++)
+			h = 31 * h + buffer[i];
+		h *= 0x9E3779B9; // multiply by the 32 bit golden ratio
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * @return the hash of the chars of term, the same as for a buffer holding them
+	 *         and as getHash returns once term is added
+	 */
+	public static int hash(String term) {
+		int h = term.hashCode(); // the same 31 * h + c sum, and cached by String
+		h *= 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * @return true if the term with the specified id has these chars
+	 */
+	private boolean matches(int id, char[] buffer, int start, int length) {
+		int from = starts[id];
+		if (starts[id + 1] - from != length)
+			return false;
+		for (int i = 0; i < length; i++)
+			if (chars[from + i] != buffer[start + i])
+				return false;
+		return true;
+	}
+
+	/**
+	 * @return true if the term with the specified id has the chars of term
+	 */
+	private boolean matches(int id, String term) {
+		int from = starts[id];
+		if (starts[id + 1] - from != term.length())
+			return false;
+		for (int i = 0; i < term.length(); i++)
+			if (chars[from + i] != term.charAt(i))
+				return false;
+		return true;
+	}
+
+	/**
+	 * Returns the id of the term made up of the specified chars, adding that term
+	 * with the next unused id if it is new.
+	 *
+	 * @param buffer holds the chars of the term
+	 * @param start  the index of the term's first char
+	 * @param length the number of chars in the term
+	 * @return the id of that term
+	 */
+	public synchronized int idOf(char[] buffer, int start, int length) {
+		int hash = hash(buffer, start, length);
+		int index = hash & mask;
+		for (int slot; (slot = slots[index]) != 0; index = (index + 1) & mask)
+			if (hashes[slot - 1] == hash && matches(slot - 1, buffer, start, length))
+				return slot - 1;
+		return add(buffer, start, length, hash, index);
+	}
+
+	/**
+	 * Returns the id of the specified term, adding it if it is new.
+	 *
+	 * @param term the term to look up
+	 * @return the id of that term
+	 */
+	public synchronized int idOf(String term) {
+		int id = find(term);
+		if (id >= 0)
+			return id;
+		char[] buffer = term.toCharArray();
+		return idOf(buffer, 0, buffer.length);
+	}
+
+	/**
+	 * Returns the id of the specified term, without adding it.
+	 *
+	 * @param term the term to look up
+	 * @return the id of that term, or -1 when it has never been added
+	 */
+	public synchronized int find(String term) {
+		int hash = hash(term);
+		for (int index = hash & mask, slot; (slot = slots[index]) != 0; index = (index + 1) & mask)
+			if (hashes[slot - 1] == hash && matches(slot - 1, term))
+				return slot - 1;
+		return -1;
+	}
+
+	/**
+	 * Stores a new term, at the empty slot that its lookup ended at.
+	 */
+	private int add(char[] buffer, int start, int length, int hash, int index) {
+		int id = size++;
+		if (charCount + length > chars.length)
+			chars = Arrays.copyOf(chars, Math.max(chars.length * 2, charCount + length));
+		System.arraycopy(buffer, start, chars, charCount, length);
+		charCount += length;
+		if (id + 1 == hashes.length) {
+			hashes = Arrays.copyOf(hashes, hashes.length * 2);
+			starts = Arrays.copyOf(starts, hashes.length + 1);
+			keys = Arrays.copyOf(keys, hashes.length * 2);
+		}
+		hashes[id] = hash;
+		starts[id + 1] = charCount;
+		slots[index] = id + 1;
+		if (size >= LOAD_FACTOR * slots.length)
+			rehash();
+		return id;
+	}
+
+	/**
+	 * Doubles the capacity of the table, and places every term again.
+	 */
+	private void rehash() {
+		slots = new int[slots.length * 2];
+		mask = slots.length - 1;
+		for (int id = 0; id < size; id++) {
+			int index = hashes[id] & mask;
+			while (slots[index] != 0)
+				index = (index + 1) & mask;
+			slots[index] = id + 1;
+		}
+	}
+
+	/**
+	 * Returns the term with the specified id.
+	 *
+	 * @param id the id of the term
+	 * @return that term
+	 */
+	public synchronized String getTerm(int id) {
+		if (id < 0 || id >= size)
+			throw new IndexOutOfBoundsException("No term with id " + id);
+		return new String(chars, starts[id], starts[id + 1] - starts[id]);
+	}
+
+	/**
+	 * Returns the hash of the term with the specified id, which is what hash
+	 * returns for that term.
+	 *
+	 * @param id the id of the term
+	 * @return the hash of that term
+	 */
+	public synchronized int getHash(int id) {
+		if (id < 0 || id >= size)
+			throw new IndexOutOfBoundsException("No term with id " + id);
+		return hashes[id];
+	}
+
+	/**
+	 * Returns the hashtable key of the specified term in the specified field,
+	 * which is "T:" or "B:" followed by the term. The same String is returned
+	 * every time.
+	 *
+	 * @param id    the id of the term
+	 * @param field TITLE or BODY
+	 * @return the key of that term in that field
+	 */
+	public synchronized String getKey(int id, int field) {
+		if (id < 0 || id >= size)
+			throw new IndexOutOfBoundsException("No term with id " + id);
+		String key = keys[id * 2 + field];
+		if (key == null) {
+			String prefix = PREFIXES[field];
+			char[] buffer = new char[prefix.length() + starts[id + 1] - starts[id]];
+			prefix.getChars(0, prefix.length(), buffer, 0);
+			System.arraycopy(chars, starts[id], buffer, prefix.length(), buffer.length - prefix.length());
+			key = new String(buffer);
+			keys[id * 2 + field] = key;
+		}
+		return key;
+	}
+
+	/**
+	 * Returns the terms that match a wildcard pattern, in which * stands for any
+	 * number of chars (including none) and ? for exactly one, so that "recip*"
+	 * matches "recipe" and "recipes". Only the terms that start with the chars
+	 * before the pattern's first wildcard are looked at, so patterns that start
+	 * with a wildcard look at every term.
+	 *
+	 * @param pattern the pattern to match
+	 * @param limit   the most terms to return
+	 * @return the first limit matching terms, in sorted order
+	 */
+	public synchronized List<String> findMatching(String pattern, int limit) {
+		sortNewTerms();
+		String prefix = literalPrefix(pattern);
+		// find the first term that is not less than the prefix
+		int low = 0;
+		int high = sortedCount;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (compare(sorted[middle], prefix) < 0)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		List<String> matching = new ArrayList<>();
+		for (int i = low; i < sortedCount && matching.size() < limit; i++) {
+			int id = sorted[i];
+			if (!startsWith(id, prefix))
+				break; // past the terms that start with the prefix
+			if (matchesWildcard(pattern, chars, starts[id], starts[id + 1] - starts[id]))
+				matching.add(getTerm(id));
+		}
+		return matching;
+	}
+
+	/**
+	 * Returns the terms that are within a few edits of a word, by running a
+	 * Levenshtein automaton for that word over the sorted terms.
+	 *
+	 * @param automaton accepts the terms within some distance of the word
+	 * @return the matching terms, in sorted order, with their distances
+	 */
+	public synchronized List<LevenshteinAutomatonBD.Match> findSimilar(LevenshteinAutomatonBD automaton) {
+		sortNewTerms();
+		return automaton.intersect(sortedView);
+	}
+
+	/**
+	 * @return the chars of pattern before its first * or ?
+	 */
+	public static String literalPrefix(String pattern) {
+		int end = 0;
+		while (end < pattern.length() && pattern.charAt(end) != '*' && pattern.charAt(end) != '?')
+			end++;
+		return pattern.substring(0, end);
+	}
+
+	/**
+	 * Checks whether the chars from buffer[start] to buffer[start + length - 1]
+	 * match a wildcard pattern, in which * stands for any number of chars and ?
+	 * for exactly one. When a * has been passed, a mismatch is retried with that *
+	 * matching one more char, so this takes at most length times the pattern's
+	 * length steps.
+	 *
+	 * @param pattern the pattern to match
+	 * @param buffer  holds the chars of the term
+	 * @param start   the index of the term's first char
+	 * @param length  the number of chars in the term
+	 * @return true if the whole term matches the whole pattern
+	 */
+	public static boolean matchesWildcard(String pattern, char[] buffer, int start, int length) {
+		int p = 0;
+		int star = -1; // the index in pattern of the last * passed
+		int starMatched = 0; // the chars of the term before the chars that * matches
+		for (int t = 0; t < length;) {
+			char c = p < pattern.length() ? pattern.charAt(p) : 0;
+			if (c == '*') {
+				star = p++;
+				starMatched = t;
+			} else if (c != 0 && (c == '?' || c == buffer[start + t])) {
+				p++;
+				t++;
+			} else if (star >= 0) {
+				p = star + 1;
+				t = ++starMatched;
+			} else {
+				return false;
+			}
+		}
+		while (p < pattern.length() && pattern.charAt(p) == '*')
+			p++;
+		return p == pattern.length();
+	}
+
+	/**
+	 * @return how the chars of the term with the specified id compare to term, in
+	 *         the same order as String.compareTo
+	 */
+	private int compare(int id, String term) {
+		int from = starts[id];
+		int length = starts[id + 1] - from;
+		for (int i = 0; i < length && i < term.length(); i++)
+			if (chars[from + i] != term.charAt(i))
+				return chars[from + i] - term.charAt(i);
+		return length - term.length();
+	}
+
+	/**
+	 * @return true if the term with the specified id starts with the chars of
+	 *         prefix
+	 */
+	private boolean startsWith(int id, String prefix) {
+		int from = starts[id];
+		if (starts[id + 1] - from < prefix.length())
+			return false;
+		for (int i = 0; i < prefix.length(); i++)
+			if (chars[from + i] != prefix.charAt(i))
+				return false;
+		return true;
+	}
+
+	/**
+	 * @return how the chars of the terms with the specified ids compare, in the
+	 *         same order as String.compareTo
+	 */
+	private int compare(int a, int b) {
+		int fromA = starts[a];
+		int fromB = starts[b];
+		int lengthA = starts[a + 1] - fromA;
+		int lengthB = starts[b + 1] - fromB;
+		for (int i = 0; i < lengthA && i < lengthB; i++)
+			if (chars[fromA + i] != chars[fromB + i])
+				return chars[fromA + i] - chars[fromB + i];
+		return lengthA - lengthB;
+	}
+
+	/**
+	 * Sorts the ids of the terms added since this was last called, and merges them
+	 * into the sorted ids of the terms before them.
+	 */
+	private void sortNewTerms() {
+		if (sortedCount == size)
+			return;
+		int[] added = new int[size - sortedCount];
+		for (int i = 0; i < added.length; i++)
+			added[i] = sortedCount + i;
+		mergeSort(added, new int[added.length], 0, added.length);
+		int[] merged = new int[size];
+		int i = 0;
+		int j = 0;
+		for (int k = 0; k < size; k++)
+			merged[k] = j == added.length || (i < sortedCount && compare(sorted[i], added[j]) < 0) ? sorted[i++]
+					: added[j++];
+		sorted = merged;
+		sortedCount = size;
+	}
+
+	/**
+	 * Sorts ids[from] to ids[to - 1] by the chars of their terms, using buffer
+	 * (as long as ids) for merging.
+	 */
+	private void mergeSort(int[] ids, int[] buffer, int from, int to) {
+		if (to - from < 2)
+			return;
+		int middle = (from + to) >>> 1;
+		mergeSort(ids, buffer, from, middle);
+		mergeSort(ids, buffer, middle, to);
+		if (compare(ids[middle - 1], ids[middle]) <= 0)
+			return; // already in order
+		System.arraycopy(ids, from, buffer, from, to - from);
+		int i = from;
+		int j = middle;
+		for (int k = from; k < to; k++)
+			ids[k] = j == to || (i < middle && compare(buffer[i], buffer[j]) <= 0) ? buffer[i++] : buffer[j++];
+	}
+
+	/**
+	 * @return the number of terms in this dictionary
+	 */
+	public synchronized int getSize() {
+		return size;
+	}
+
+	/**
+	 * @return an estimate of the number of bytes used by this dictionary,
+	 *         including the keys it has built
+	 */
+	public synchronized long getSizeInBytes() {
+		long bytes = 2L * chars.length + 4L * (starts.length + hashes.length + slots.length + sorted.length)
+				+ 4L * keys.length;
+		for (int i = 0; i < size * 2; i++)
+			if (keys[i] != null)
+				bytes += 40 + keys[i].length(); // the String, and its Latin-1 bytes
+		return bytes;
+	}
+}
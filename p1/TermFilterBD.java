@@ -0,0 +1,215 @@
+import java.util.BitSet;
+
+/**
+ * A counting Bloom filter over the terms of a TermDictionaryBD that are in the
+ * dataset, which answers whether a word might be in some post without looking
+ * it up in the dictionary. Most words that people search for and that are in
+ * no post (typos, and words from other languages) are rejected by the filter,
+ * and only the few that it lets through by mistake (false positives) are then
+ * looked up.
+ *
+ * Each term sets several counters, picked by hashing the term's hash once for
+ * each, and a word can only be in the dataset if all of its counters are set.
+ * Counters are four bits, two to a byte, and stop at 15: a counter that has
+ * reached 15 is never decreased again, since it no longer says how many terms
+ * set it. A term is removed by decreasing its counters once no post contains
+ * it, so the filter keeps rejecting words that have left the dataset.
+ *
+ * The filter is sized for the false positive rate it was created with, for a
+ * number of terms that doubles whenever the dataset outgrows it. The counters
+ * are then rebuilt from the hashes that the dictionary keeps for each term.
+ *
+ * Methods are synchronized, so that queries can use the filter while another
+ * thread is adding terms.
+ *
+ * @author BackendDeveloper
+ */
+public class TermFilterBD {
+
+	protected static final int MIN_COUNTERS = 64; // the fewest counters, even at a rate close to 1
+
+	private final TermDictionaryBD terms;
+	private final double falsePositiveRate;
+	private final BitSet present = new BitSet(); // the ids of the terms in the filter
+	private int size; // the number of terms in the filter
+	private int capacity = 1024; // the number of terms that the counters are sized for
+	private byte[] counts; // two four bit counters to a byte
+	private int mask; // the number of counters, minus one
+	private int hashCount; // the number of counters that each term sets
+
+	private long lookups;
+	private long rejections;
+	private long falsePositives;
+
+	/**
+	 * Creates an empty filter.
+	 *
+	 * @param terms             the dictionary of the terms that will be added
+	 * @param falsePositiveRate the fraction of words that are in no post but
+	 *                          should still get through the filter, between 0
+	 *                          and 1
+	 * @throws IllegalArgumentException when falsePositiveRate is not between 0
+	 *                                  and 1
+	 */
+	public TermFilterBD(TermDictionaryBD terms, double falsePositiveRate) {
+		if (!(falsePositiveRate > 0 && falsePositiveRate < 1))
+			throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1");
+		this.terms = terms;
+		this.falsePositiveRate = falsePositiveRate;
+		allocate();
+	}
+
+	/**
+	 * Makes room for capacity terms at the false positive rate: a Bloom filter
+	 * needs -ln(rate) / ln(2)^2 counters per term, each set by ln(2) times that
+	 * many hashes. A rate close to 1 needs less than a counter per term, so
+	 * there are always at least MIN_COUNTERS.
+	 */
+	private void allocate() {
+		double perTerm = -Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+		double wanted = Math.max(MIN_COUNTERS, Math.min(1 << 30, Math.ceil(capacity * perTerm)));
+		int counters = Integer.highestOneBit((int) wanted - 1) << 1;
+		counts = new byte[counters / 2];
+		mask = counters - 1;
+		hashCount = (int) Math.max(1, Math.min(16, Math.round(perTerm * Math.log(2))));
+	}
+
+	/**
+	 * @return the index of the specified one of a term's counters, from the
+	 *         term's hash and a second hash mixed from it
+	 */
+	private int counter(int hash, int i) {
+		int step = (Integer.rotateLeft(hash, 16) * 0x85EBCA6B) | 1; // odd, so the counters differ
+		return (hash + i * step) & mask;
+	}
+
+	private int get(int counter) {
+		return (counts[counter >>> 1] >>> ((counter & 1) << 2)) & 15;
+	}
+
+	private void set(int counter, int value) {
+		int shift = (counter & 1) << 2;
+		counts[counter >>> 1] = (byte) ((counts[counter >>> 1] & ~(15 << shift)) | (value << shift));
+	}
+
+	private void increment(int hash) {
+		for (int i = 0; i < hashCount; i++) {
+			int counter = counter(hash, i);
+			int value = get(counter);
+			if (value < 15)
+				set(counter, value + 1);
+		}
+	}
+
+	/**
+	 * Adds a term that is now in some post, unless it is already in the filter.
+	 *
+	 * @param termId the id of the term in the dictionary
+	 */
+	public synchronized void add(int termId) {
+		if (present.get(termId))
+			return;
+		present.set(termId);
+		size++;
+		if (size > capacity) {
+			// twice as many terms, so the counters are rebuilt from every term's hash
+			capacity *= 2;
+			allocate();
+			for (int id = present.nextSetBit(0); id >= 0; id = present.nextSetBit(id + 1))
+				increment(terms.getHash(id));
+		} else
+			increment(terms.getHash(termId));
+	}
+
+	/**
+	 * Removes a term that is no longer in any post, if it is in the filter.
+	 *
+	 * @param termId the id of the term in the dictionary
+	 */
+	public synchronized void remove(int termId) {
+		if (!present.get(termId))
+			return;
+		present.clear(termId);
+		size--;
+		int hash = terms.getHash(termId);
+		for (int i = 0; i < hashCount; i++) {
+			int counter = counter(hash, i);
+			int value = get(counter);
+			if (value > 0 && value < 15)
+				set(counter, value - 1);
+		}
+	}
+
+	/**
+	 * Checks whether a word might be in the dataset, and counts the lookup.
+	 *
+	 * @param word the word to check
+	 * @return false if no post contains word, or true if one might
+	 */
+	public synchronized boolean mightContain(String word) {
+		lookups++;
+		int hash = TermDictionaryBD.hash(word);
+		for (int i = 0; i < hashCount; i++) {
+			if (get(counter(hash, i)) == 0) {
+				rejections++;
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Counts a word that mightContain let through as a false positive, if it
+	 * turned out not to be in the dataset.
+	 *
+	 * @param termId the id that the dictionary found for the word, or -1 when it
+	 *               has none
+	 */
+	public synchronized void checkLookup(int termId) {
+		if (termId < 0 || !present.get(termId))
+			falsePositives++;
+	}
+
+	/**
+	 * @return the false positive rate that the filter was sized for
+	 */
+	public double getFalsePositiveRate() {
+		return falsePositiveRate;
+	}
+
+	/**
+	 * @return the number of words checked by mightContain
+	 */
+	public synchronized long getLookups() {
+		return lookups;
+	}
+
+	/**
+	 * @return the number of words that mightContain rejected
+	 */
+	public synchronized long getRejections() {
+		return rejections;
+	}
+
+	/**
+	 * @return the number of words that mightContain let through, but that were
+	 *         in no post
+	 */
+	public synchronized long getFalsePositives() {
+		return falsePositives;
+	}
+
+	/**
+	 * @return the number of terms in the filter
+	 */
+	public synchronized int getSize() {
+		return size;
+	}
+
+	/**
+	 * @return the number of bytes used by the counters
+	 */
+	public synchronized long getSizeInBytes() {
+		return counts.length;
+	}
+}
@@ -0,0 +1,73 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Breaks text into the words that posts are stored and searched under. Words
+ * are separated by spaces, upper case letters are converted to lower case, and
+ * every other character (punctuation, digits, and so on) is left out, as if it
+ * were not there at all: "Don't" is the word "dont". Runs of spaces do not
+ * produce empty words.
+ *
+ * The text is read once, one char at a time, and each word is built up in a
+ * buffer that is reused for every word, so tokenizing creates no Strings of its
+ * own. Each instance should only be used by one thread at a time.
+ *
+ * @author BackendDeveloper
+ */
+public class TokenizerBD {
+
+	/**
+	 * Receives each word found by a tokenizer.
+	 */
+	@FunctionalInterface
+	public interface TokenConsumer {
+		/**
+		 * @param token  holds the word in its first length chars, and is
+		 *               overwritten by the next word, so it must not be kept
+		 * @param length the number of chars in the word
+		 */
+		void accept(char[] token, int length);
+	}
+
+	private char[] buffer = new char[32]; // the current word
+
+	/**
+	 * Passes each word of the specified text to consumer.
+	 *
+	 * @param text     the text to break into words
+	 * @param consumer is given each word, in order
+	 */
+	public void tokenize(CharSequence text, TokenConsumer consumer) {
+		int length = 0;
+		for (int i = 0, end = text.length(); i < end; i++) {
+			char c = text.charAt(i);
+			if (c >= 'A' && c <= 'Z') {
+				c += 'a' - 'A';
+			} else if (c < 'a' || c > 'z') {
+				if (c == ' ' && length > 0) {
+					consumer.accept(buffer, length);
+					length = 0;
+				}
+				continue; // anything else is left out
+			}
+			if (length == buffer.length)
+				buffer = Arrays.copyOf(buffer, length * 2);
+			buffer[length++] = c;
+		}
+		if (length > 0)
+			consumer.accept(buffer, length);
+	}
+
+	/**
+	 * Returns the words of the specified text, as used to parse search queries.
+	 *
+	 * @param text the text to break into words
+	 * @return list of lowercase words without punctuation
+	 */
+	public List<String> words(CharSequence text) {
+		List<String> words = new ArrayList<>();
+		tokenize(text, (token, length) -> words.add(new String(token, 0, length)));
+		return words;
+	}
+}